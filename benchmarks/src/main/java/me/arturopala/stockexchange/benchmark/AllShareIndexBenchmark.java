@@ -0,0 +1,68 @@
+package me.arturopala.stockexchange.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.openjdk.jmh.annotations.*;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.simpleimpl.*;
+import me.arturopala.stockexchange.util.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.NANOSECONDS)
+public class AllShareIndexBenchmark {
+
+	@Param({"5", "500", "50000"})
+	public int listedStocks;
+
+	private SimpleStockExchange exchange;
+	private AllShareIndex index;
+	private long[] prices;
+	private int next = 0;
+
+	/** Trades every stock of the exchange once at the same prices the index starts with. */
+	@Setup
+	public void setup() throws InterruptedException {
+		Set<Stock> listing = Listings.generate(listedStocks);
+		List<Stock> stocks = new ArrayList<>(listing);
+		exchange = new SimpleStockExchange(listing);
+		exchange.open();
+		index = new AllShareIndex();
+		prices = new long[listedStocks];
+		Random random = new Random(listedStocks);
+		for(int i = 0; i < listedStocks; i++){
+			prices[i] = FixedMoney.valueOf(1 + random.nextInt(1000));
+			index.update(FixedMoney.UNDEFINED, prices[i]);
+			exchange.sell(stocks.get(i), 1, FixedMoney.toMoney(prices[i]));
+		}
+		long deadline = System.currentTimeMillis() + 60000;
+		while(Math.abs(exchange.calculateAllShareIndex() - index.value()) > 1e-9 * index.value()){
+			if(System.currentTimeMillis() > deadline) throw new IllegalStateException("Exchange has not traded all stocks in time");
+			Thread.sleep(10);
+		}
+	}
+
+	@TearDown
+	public void tearDown(){
+		exchange.close();
+	}
+
+	@Benchmark
+	public double incrementalUpdate(){
+		int i = next;
+		next = (next + 1) % prices.length;
+		long previous = prices[i];
+		long current = previous + 1;
+		prices[i] = current;
+		index.update(previous, current);
+		return index.value();
+	}
+
+	@Benchmark
+	public double fullRecalculation(){
+		return exchange.calculateAllShareIndex();
+	}
+
+}
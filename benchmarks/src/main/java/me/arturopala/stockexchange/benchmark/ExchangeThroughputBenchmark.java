@@ -0,0 +1,92 @@
+package me.arturopala.stockexchange.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import org.openjdk.jmh.annotations.*;
+import me.arturopala.stockexchange.api.*;
+import me.arturopala.stockexchange.simpleimpl.SimpleStockExchange;
+import me.arturopala.stockexchange.matchingimpl.MatchingStockExchange;
+import me.arturopala.stockexchange.ringimpl.RingStockExchange;
+import me.arturopala.stockexchange.util.Money;
+import akka.actor.ActorSystem;
+
+/**
+ * End-to-end order entry rate of buy and sell calls. Every engine admits orders with
+ * {@link Admission#block}, so a call returns only once its trade was accepted and the score
+ * is bounded by how fast the engine takes trades off the stock order queues, not by how
+ * fast it reports them full.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.SECONDS)
+public class ExchangeThroughputBenchmark {
+
+	@Param({"5", "500", "50000"})
+	public int listedStocks;
+
+	@Param({"simple", "matching", "ring"})
+	public String engine;
+
+	private static final Duration ADMISSION_TIMEOUT = Duration.ofSeconds(10);
+
+	private StockExchange exchange;
+	private Stock[] stocks;
+	private Money[] prices;
+
+	@Setup
+	public void setup(){
+		java.util.Set<Stock> listing = Listings.generate(listedStocks);
+		switch(engine){
+			case "matching":
+				exchange = new MatchingStockExchange(listing, ActorSystem.create("stockexchange"), options(Admission.DEFAULT_CAPACITY));
+				break;
+			case "ring":
+				exchange = new RingStockExchange(listing, options(ExchangeOptions.DEFAULT_RING_SIZE));
+				break;
+			default:
+				exchange = new SimpleStockExchange(listing, options(Admission.DEFAULT_CAPACITY));
+		}
+		exchange.open();
+		stocks = listing.toArray(new Stock[listing.size()]);
+		prices = new Money[100];
+		for(int i = 0; i < prices.length; i++){
+			prices[i] = new Money(50 + i);
+		}
+	}
+
+	private static ExchangeOptions options(int capacity){
+		return new ExchangeOptions.Builder().admission(Admission.block(capacity, ADMISSION_TIMEOUT)).build();
+	}
+
+	@TearDown
+	public void tearDown(){
+		exchange.close();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void buySell1Producer(){
+		trade();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void buySell4Producers(){
+		trade();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public void buySellMaxProducers(){
+		trade();
+	}
+
+	private void trade(){
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Stock stock = stocks[random.nextInt(stocks.length)];
+		Money price = prices[random.nextInt(prices.length)];
+		if(random.nextBoolean()) exchange.buy(stock, 1 + random.nextInt(1000), price);
+		else exchange.sell(stock, 1 + random.nextInt(1000), price);
+	}
+
+}
@@ -0,0 +1,62 @@
+package me.arturopala.stockexchange.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.stock.ListingAnalytics;
+import me.arturopala.stockexchange.util.FixedMoney;
+import me.arturopala.stockexchange.util.Money;
+
+/**
+ * Dividend yield and P/E ratio of the whole listing, stock by stock through the
+ * {@link Stock} methods versus in bulk over price arrays.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MICROSECONDS)
+public class ListingAnalyticsBenchmark {
+
+	@Param({"10000", "100000"})
+	public int listedStocks;
+
+	private List<Stock> stocks;
+	private ListingAnalytics analytics;
+	private Money[] prices;
+	private double[] doublePrices;
+	private double[] dividendYields;
+	private double[] peRatios;
+
+	@Setup
+	public void setup(){
+		stocks = new ArrayList<>(Listings.generate(listedStocks));
+		analytics = new ListingAnalytics(stocks);
+		Random random = new Random(listedStocks);
+		prices = new Money[listedStocks];
+		doublePrices = new double[listedStocks];
+		for(int i = 0; i < listedStocks; i++){
+			prices[i] = new Money(1 + random.nextInt(1000));
+			doublePrices[i] = FixedMoney.doubleValue(FixedMoney.valueOf(prices[i]));
+		}
+		dividendYields = new double[listedStocks];
+		peRatios = new double[listedStocks];
+	}
+
+	@Benchmark
+	public void perStock(Blackhole blackhole){
+		for(int i = 0; i < listedStocks; i++){
+			Stock stock = stocks.get(i);
+			blackhole.consume(stock.calculateDividendYield(prices[i]));
+			blackhole.consume(stock.calculatePERatio(prices[i]));
+		}
+	}
+
+	@Benchmark
+	public double[] bulk(){
+		analytics.calculate(doublePrices, dividendYields, peRatios);
+		return peRatios;
+	}
+
+}
@@ -0,0 +1,58 @@
+package me.arturopala.stockexchange.benchmark;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.*;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.util.ParseUtils;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MILLISECONDS)
+public class ListingParseBenchmark {
+
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int lines;
+
+	private byte[] text;
+	private Path file;
+
+	@Setup
+	public void setup() throws IOException {
+		text = Listings.text(lines);
+		file = Files.createTempFile("listing", ".txt");
+		Files.write(file, text);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public Set<Stock> parseStockListing(){
+		return ParseUtils.parseStockListing(new ByteArrayInputStream(text));
+	}
+
+	@Benchmark
+	public long streamStockListingFile() throws IOException {
+		LongAdder count = new LongAdder();
+		ParseUtils.streamStockListing(file, stock -> count.increment());
+		return count.sum();
+	}
+
+	@Benchmark
+	public Set<Stock> parseLineByLine(){
+		BufferedReader source = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(text), StandardCharsets.UTF_8));
+		return source.lines().skip(1).map(ParseUtils.STOCK_PARSER).collect(Collectors.toSet());
+	}
+
+}
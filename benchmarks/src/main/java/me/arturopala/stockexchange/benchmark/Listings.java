@@ -0,0 +1,45 @@
+package me.arturopala.stockexchange.benchmark;
+
+import java.util.*;
+import java.nio.charset.StandardCharsets;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.stock.*;
+import me.arturopala.stockexchange.util.Money;
+
+final class Listings {
+
+	static Set<Stock> generate(int size){
+		Set<Stock> listing = new HashSet<>(size * 2);
+		Random random = new Random(size);
+		for(int i = 0; i < size; i++){
+			Money parValue = new Money(10 + random.nextInt(990));
+			Money lastDividend = new Money(random.nextInt(20));
+			if(i % 5 == 0) listing.add(new PreferredStock(symbol(i), parValue, lastDividend, new java.math.BigDecimal("0.02")));
+			else listing.add(new CommonStock(symbol(i), parValue, lastDividend));
+		}
+		return listing;
+	}
+
+	static byte[] text(int lines){
+		StringBuilder sb = new StringBuilder(lines * 32);
+		sb.append("Symbol\tType\t\tLastDividend\tFixedDividend\tParValue\n");
+		Random random = new Random(lines);
+		for(int i = 0; i < lines; i++){
+			if(i % 5 == 0) sb.append(symbol(i)).append(";Preferred;").append(random.nextInt(20)).append(";2%;").append(10 + random.nextInt(990)).append(";\n");
+			else sb.append(symbol(i)).append(", Common, ").append(random.nextInt(20)).append("; -, ").append(10 + random.nextInt(990)).append('\n');
+		}
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	static String symbol(int i){
+		StringBuilder sb = new StringBuilder(6);
+		do {
+			sb.append((char)('A' + i % 26));
+			i = i / 26;
+		} while(i > 0);
+		return sb.reverse().toString();
+	}
+
+	private Listings(){}
+
+}
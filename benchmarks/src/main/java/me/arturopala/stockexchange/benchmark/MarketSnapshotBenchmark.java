@@ -0,0 +1,57 @@
+package me.arturopala.stockexchange.benchmark;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.openjdk.jmh.annotations.*;
+import me.arturopala.stockexchange.api.MarketSnapshot;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.simpleimpl.*;
+import me.arturopala.stockexchange.util.FixedMoney;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.MICROSECONDS)
+public class MarketSnapshotBenchmark {
+
+	@Param({"500", "50000"})
+	public int listedStocks;
+
+	/** tickers published between two snapshots */
+	@Param({"0", "10", "1000"})
+	public int changes;
+
+	private final MarketSnapshots snapshots = new MarketSnapshots();
+	private final Instant timestamp = Instant.now();
+	private List<TickerImpl> tickers;
+	private Random random;
+
+	@Setup
+	public void setup(){
+		tickers = new ArrayList<>(listedStocks);
+		for(Stock stock: Listings.generate(listedStocks)){
+			tickers.add(new TickerImpl(stock));
+		}
+		snapshots.layout(tickers);
+		random = new Random(listedStocks);
+		for(TickerImpl ticker: tickers){
+			publish(ticker);
+		}
+		snapshots.take(timestamp);
+	}
+
+	@Benchmark
+	public MarketSnapshot take(){
+		for(int i = 0; i < changes; i++){
+			publish(tickers.get(random.nextInt(listedStocks)));
+		}
+		return snapshots.take(timestamp);
+	}
+
+	private void publish(TickerImpl ticker){
+		long price = FixedMoney.valueOf(1 + random.nextInt(1000));
+		ticker.slot().publish(price, 10, FixedMoney.multiply(price, 10));
+	}
+
+}
@@ -0,0 +1,78 @@
+package me.arturopala.stockexchange.benchmark;
+
+import java.math.BigDecimal;
+import org.openjdk.jmh.annotations.*;
+import me.arturopala.stockexchange.util.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.NANOSECONDS)
+public class MoneyBenchmark {
+
+	private Money price;
+	private Money total;
+	private long fixedPrice;
+	private long fixedTotal;
+	private int quantity;
+	private final MoneyAccumulator accumulator = new MoneyAccumulator();
+
+	@Setup
+	public void setup(){
+		price = Money.parse("12.3456");
+		total = Money.parse("738743.7899");
+		fixedPrice = FixedMoney.valueOf(price);
+		fixedTotal = FixedMoney.valueOf(total);
+		quantity = 178;
+	}
+
+	@Benchmark
+	public Money moneyMultiplyAdd(){
+		return total.add(price.multiply(quantity));
+	}
+
+	@Benchmark
+	public Money moneyDivide(){
+		return total.divide(quantity);
+	}
+
+	@Benchmark
+	public double moneyDivideMoney(){
+		return total.divide(price);
+	}
+
+	@Benchmark
+	public String moneyFormat(){
+		return total.toString();
+	}
+
+	@Benchmark
+	public Money moneyParse(){
+		return Money.parse("738743.7899");
+	}
+
+	@Benchmark
+	public long fixedMultiplyAdd(){
+		return FixedMoney.add(fixedTotal, FixedMoney.multiply(fixedPrice, quantity));
+	}
+
+	@Benchmark
+	public long fixedDivide(){
+		return FixedMoney.divide(fixedTotal, quantity);
+	}
+
+	@Benchmark
+	public double fixedDivideMoney(){
+		return FixedMoney.divide(fixedTotal, fixedPrice);
+	}
+
+	@Benchmark
+	public String fixedFormat(){
+		return FixedMoney.toString(fixedTotal);
+	}
+
+	@Benchmark
+	public long accumulatorAddSubtract(){
+		return accumulator.add(fixedPrice, quantity).subtract(fixedPrice, quantity).value();
+	}
+
+}
@@ -0,0 +1,94 @@
+package me.arturopala.stockexchange.benchmark;
+
+import java.time.Instant;
+import org.openjdk.jmh.annotations.*;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.stock.CommonStock;
+import me.arturopala.stockexchange.simpleimpl.*;
+import me.arturopala.stockexchange.journal.Journal;
+import me.arturopala.stockexchange.journal.SnapshotStore;
+import me.arturopala.stockexchange.util.Money;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.TestActorRef;
+
+/**
+ * Trade ingestion by a single TickerActor, invoked directly on the underlying actor
+ * so that only the price window logic is measured, without mailbox or dispatcher.
+ * Trades are a microsecond apart and the clock moves on with every invocation, so
+ * expiring against the current time keeps windowSize trades in the window.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.SECONDS)
+public class TickerActorBenchmark {
+
+	private static final int TRADES = 1024;
+	private static final long TRADE_INTERVAL_NANOS = 1000;
+
+	@Param({"1000", "100000"})
+	public int windowSize;
+
+	private ActorSystem system;
+	private TickerActor actor;
+	private Stock stock;
+	private Money[] prices;
+	private Trade[] trades;
+	private Instant next;
+
+	@Setup
+	public void setup() throws Exception {
+		system = ActorSystem.create("benchmark");
+		stock = new CommonStock("TEA", new Money(100), new Money(8));
+		TickerState state = new TickerState(new TickerSlots(1).allocate(), new AllShareIndex());
+		TestActorRef<TickerActor> ref = TestActorRef.create(system, Props.create(TickerActor.class, stock, state, Journal.NONE, SnapshotStore.NONE));
+		actor = ref.underlyingActor();
+		prices = new Money[100];
+		for(int i = 0; i < prices.length; i++){
+			prices[i] = new Money(5 + i);
+		}
+		next = Instant.now();
+		for(int i = 0; i < windowSize; i++){
+			actor.onReceive(new Trade(next, TradeType.SELL, stock, 1 + i % 100, prices[i % 50]));
+			next = next.plusNanos(TRADE_INTERVAL_NANOS);
+		}
+		trades = new Trade[TRADES];
+	}
+
+	/** Expires the trades beyond the window and prepares the following ones, outside of the measurement. */
+	@Setup(Level.Invocation)
+	public void nextTrades(){
+		actor.cleanAndUpdate(windowStart());
+		for(int i = 0; i < TRADES; i++){
+			trades[i] = new Trade(next, i % 2 == 0 ? TradeType.BUY : TradeType.SELL, stock, 1 + i % 1000, prices[i % prices.length]);
+			next = next.plusNanos(TRADE_INTERVAL_NANOS);
+		}
+	}
+
+	@TearDown
+	public void tearDown(){
+		system.shutdown();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TRADES)
+	public void ingestTrades() throws Exception {
+		for(Trade trade: trades){
+			actor.onReceive(trade);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TRADES)
+	public void ingestTradesAndExpire() throws Exception {
+		for(Trade trade: trades){
+			actor.onReceive(trade);
+		}
+		actor.cleanAndUpdate(windowStart());
+	}
+
+	private Instant windowStart(){
+		return next.minusNanos(windowSize * TRADE_INTERVAL_NANOS);
+	}
+
+}
@@ -1,84 +1,145 @@
 package me.arturopala.stockexchange;
 
 import me.arturopala.stockexchange.gbce.GBCE;
+import me.arturopala.stockexchange.api.ExchangeOptions;
+import me.arturopala.stockexchange.api.MarketSnapshot;
 import me.arturopala.stockexchange.api.StockExchange;
 import me.arturopala.stockexchange.api.Ticker;
 import me.arturopala.stockexchange.util.Money;
+import me.arturopala.stockexchange.journal.Journal;
+import me.arturopala.stockexchange.journal.TradeJournal;
+import me.arturopala.stockexchange.journal.SnapshotStore;
+import me.arturopala.stockexchange.journal.FileSnapshotStore;
+import me.arturopala.stockexchange.metrics.MetricsSnapshot;
+import me.arturopala.stockexchange.gateway.OrderGateway;
+import me.arturopala.stockexchange.feed.MarketDataPublisher;
+import me.arturopala.stockexchange.load.LoadGenerator;
+import me.arturopala.stockexchange.load.LoadReport;
+import me.arturopala.stockexchange.partition.PartitionNode;
+import me.arturopala.stockexchange.partition.PartitionedStockExchange;
+import me.arturopala.stockexchange.partition.Partitioning;
 import java.time.Clock;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.IntStream;
-import java.util.stream.Collectors;
+import java.util.Map;
 import java.math.BigDecimal;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import akka.actor.*;
-import akka.routing.*;
 import scala.concurrent.duration.FiniteDuration;
 
 public class GBCEApplication {
 	
-	public static void main(String[] args){
-		int numberOfTraders = 100;
-		if(args.length>0) try { numberOfTraders = Integer.parseInt(args[0]);} catch (Exception e ){}
+	/**
+	 * Runs seeded load against the chosen engine, reporting tickers every 5 seconds and the
+	 * load report at the end. Arguments are optional name=value pairs:
+	 * engine=simple|matching|ring|partitioned, mode=open|closed, rate (orders/s), threads, duration and
+	 * warmup (seconds), skew (Zipf exponent), seed and journal (directory).
+	 * The partitioned engine runs partitions=N nodes in this JVM, or connects to nodes started
+	 * by {@link PartitionNodeApplication} when given their comma separated actor paths as nodes.
+	 * Local partitions journal to their own partition-{n} subdirectories of the journal directory,
+	 * while connected nodes keep their own journals, so journal cannot be combined with nodes.
+	 * With gateway (port) the exchange also takes orders from other processes over the {@link OrderGateway}.
+	 * With feed (file) ticker updates are also published for other processes by a {@link MarketDataPublisher}.
+	 */
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = new HashMap<>();
+		for(String arg: args){
+			int separator = arg.indexOf('=');
+			if(separator > 0) options.put(arg.substring(0, separator).toLowerCase(), arg.substring(separator + 1));
+		}
+		String engineName = options.getOrDefault("engine", "simple").toUpperCase();
+		LoadGenerator generator = new LoadGenerator.Builder()
+			.mode(LoadGenerator.Mode.valueOf(options.getOrDefault("mode", "open").toUpperCase()))
+			.rate(Double.parseDouble(options.getOrDefault("rate", "10000")))
+			.threads(Integer.parseInt(options.getOrDefault("threads", "1")))
+			.duration(Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30"))))
+			.warmup(Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "5"))))
+			.skew(Double.parseDouble(options.getOrDefault("skew", "0")))
+			.seed(Long.parseLong(options.getOrDefault("seed", "42")))
+			.build();
+
+		Journal journal = Journal.NONE;
+		TradeJournal tradeJournal = null;
+		SnapshotStore snapshots = SnapshotStore.NONE;
+		List<TradeJournal> tradeJournals = new ArrayList<>();
+		if(engineName.equals("PARTITIONED") && options.containsKey("journal") && options.containsKey("nodes")){
+			throw new IllegalArgumentException("Connected partition nodes keep their own journals, start them with journal instead");
+		} else if(options.containsKey("journal") && !engineName.equals("PARTITIONED")){
+			journal = tradeJournal = new TradeJournal(Paths.get(options.get("journal")));
+			snapshots = new FileSnapshotStore(Paths.get(options.get("journal"), "snapshots"));
+		}
 
-		ActorSystem actorSystem = ActorSystem.create("gbce");
-		StockExchange exchange = GBCE.simpleStockExchange(Clock.systemUTC(), Duration.ofMinutes(15), actorSystem);
+		ActorSystem actorSystem;
+		StockExchange exchange;
+		List<PartitionNode> nodes = new ArrayList<>();
+		if(engineName.equals("PARTITIONED") && options.containsKey("nodes")){
+			actorSystem = ActorSystem.create("gbce", PartitionNodeApplication.remoting("127.0.0.1", 0));
+			exchange = PartitionedStockExchange.connect(GBCE.LISTING, actorSystem, Arrays.asList(options.get("nodes").split(",")), Duration.ofSeconds(10));
+		} else if(engineName.equals("PARTITIONED")){
+			actorSystem = ActorSystem.create("gbce");
+			int partitions = Integer.parseInt(options.getOrDefault("partitions", "2"));
+			Partitioning partitioning = new Partitioning(GBCE.LISTING, partitions);
+			List<ActorRef> refs = new ArrayList<>();
+			for(int p = 0; p < partitions; p++){
+				ExchangeOptions.Builder nodeOptions = new ExchangeOptions.Builder().clock(Clock.systemUTC()).priceCalculationPeriod(Duration.ofMinutes(15));
+				if(options.containsKey("journal")){
+					Path directory = Paths.get(options.get("journal"), "partition-"+p);
+					TradeJournal partitionJournal = new TradeJournal(directory);
+					tradeJournals.add(partitionJournal);
+					nodeOptions.journal(partitionJournal).snapshots(new FileSnapshotStore(directory.resolve("snapshots")));
+				}
+				PartitionNode node = new PartitionNode(partitioning, p, ActorSystem.create("gbce-"+p), nodeOptions.build()).open();
+				nodes.add(node);
+				refs.add(node.ref());
+			}
+			exchange = new PartitionedStockExchange(GBCE.LISTING, actorSystem, refs);
+		} else {
+			actorSystem = ActorSystem.create("gbce");
+			exchange = GBCE.stockExchange(GBCE.Engine.valueOf(engineName), Clock.systemUTC(), Duration.ofMinutes(15), actorSystem, journal, snapshots);
+		}
 		exchange.open();
-
-		ActorRef traderPool = actorSystem.actorOf(Trader.props(exchange).withRouter(new BroadcastPool(numberOfTraders)));
-		FiniteDuration tradeTick = FiniteDuration.create(100,"millis");
-		Runnable tradeTask = () -> {
-			traderPool.tell(Trader.TRADE, ActorRef.noSender());
-		};
-		actorSystem.scheduler().schedule(tradeTick, tradeTick, tradeTask, actorSystem.dispatcher());
+		OrderGateway gateway = null;
+		if(options.containsKey("gateway")){
+			gateway = new OrderGateway(exchange, new InetSocketAddress(Integer.parseInt(options.get("gateway")))).start();
+			System.out.println("Order gateway listening on "+gateway.localAddress());
+		}
+		MarketDataPublisher feed = null;
+		if(options.containsKey("feed")){
+			feed = new MarketDataPublisher(Paths.get(options.get("feed")), exchange.listing());
+			feed.attach(exchange);
+			System.out.println("Market data feed written to "+options.get("feed"));
+		}
 
 		ActorRef reporter = actorSystem.actorOf(Reporter.props(exchange));
 		FiniteDuration reportTick = FiniteDuration.create(5,"seconds");
 		Runnable reportTask = () -> {
 			reporter.tell(Reporter.REPORT, ActorRef.noSender());
 		};
-		actorSystem.scheduler().schedule(reportTick, reportTick, reportTask, actorSystem.dispatcher());
-
-		actorSystem.awaitTermination();
-	}
-
-	private static class Trader extends UntypedActor {
-
-		private final StockExchange stockExchange;
-
-		public Trader(StockExchange stockExchange){
-			this.stockExchange = stockExchange;
+		Cancellable reports = actorSystem.scheduler().schedule(reportTick, reportTick, reportTask, actorSystem.dispatcher());
+
+		LoadReport report = generator.run(exchange);
+		reports.cancel();
+		System.out.println(report);
+		if(gateway != null) gateway.stop();
+		// closing the feed first cancels its subscription to the exchange
+		if(feed != null) feed.close();
+		exchange.close();
+		for(PartitionNode node: nodes){
+			node.close();
+			node.actorSystem().shutdown();
 		}
-
-		public void onReceive(Object message) throws Exception {
-			if(message == TRADE){
-				doTrade();
-			} else unhandled(message);
-	  	}
-
-	  	private void doTrade(){
-	  		BigDecimal margin = new BigDecimal(1 + Math.random());
-	  		stockExchange.listing().stream().forEach(stock -> {
-	  			Ticker ticker = stockExchange.watch(stock);
-	  			Money sellPrice = ticker.price().multiply(margin);
-	  			if(!sellPrice.isDefined()){
-	  				sellPrice = Money.random(stock.parValue());
-	  			}
-	  			stockExchange.sell(stock, randomQuantity(1000), sellPrice);
-	  			Money buyPrice = ticker.price().divide(margin);
-	  			if(!buyPrice.isDefined()){
-	  				buyPrice = Money.random(stock.parValue());
-	  			}
-	  			stockExchange.buy(stock, randomQuantity(1000), buyPrice);
-	  		});
-	  	}
-
-		public static final String TRADE = "TRADE";
-	  	public static Props props(StockExchange stockExchange){
-	  		return Props.create(Trader.class,stockExchange);
-	  	}
-	  	public static int randomQuantity(int max){
-	  		return (int) Math.round(Math.random() * max + 1);
-	  	}
+		if(tradeJournal != null) tradeJournal.close();
+		for(TradeJournal partitionJournal: tradeJournals){
+			partitionJournal.close();
+		}
+		actorSystem.shutdown();
+		actorSystem.awaitTermination();
 	}
 
 	private static class Reporter extends UntypedActor {
@@ -99,12 +160,19 @@ public class GBCEApplication {
 	  	}
 
 	  	private void doReport(){
-	  		System.out.println("INDEX\t: "+Money.FORMAT.format(stockExchange.allShareIndex()));
-	  		System.out.println("SYMBOL        PRICE       QUANTITY           VOLUME[MLN] ");
-	  		stockExchange.listing().stream().forEach(stock -> {
-	  			Ticker ticker = stockExchange.watch(stock);
-	  			System.out.println(stock.symbol()+"  "+pad(" "+ticker.price())+pad(" "+ticker.quantity())+pad(" "+ticker.volume().divide(new BigDecimal(100000))));
-	  		});
+	  		MarketSnapshot snapshot = stockExchange.snapshot();
+	  		System.out.println("INDEX\t: "+Money.FORMAT.format(snapshot.allShareIndex())+" (epoch "+snapshot.epoch()+")");
+	  		System.out.println("SYMBOL        PRICE       QUANTITY           VOLUME[MLN]       YIELD          P/E ");
+	  		for(Ticker ticker: snapshot.tickers()){
+	  			System.out.println(ticker.stock().symbol()+"  "+pad(" "+ticker.price())+pad(" "+ticker.quantity())+pad(" "+ticker.volume().divide(new BigDecimal(100000)))
+	  				+pad(" "+ratio(ticker.dividendYield()))+pad(" "+ratio(ticker.peRatio())));
+	  		}
+	  		MetricsSnapshot metrics = stockExchange.metrics();
+	  		System.out.println("TRADES\t: accepted "+metrics.tradesAccepted+", rejected "+metrics.tradesRejected+", queued "+metrics.queued);
+	  		System.out.println("LATENCY\t: trade to publish [ns] "+metrics.tradeToPublish);
+	  		if(metrics.journalAppend.count > 0){
+	  			System.out.println("JOURNAL\t: append [ns] "+metrics.journalAppend+", fsync [ns] "+metrics.journalFsync);
+	  		}
 	  		printSeparator();
 	  	}
 
@@ -122,6 +190,10 @@ public class GBCEApplication {
 	  		return sb.toString();
 	  	}
 
+	  	private String ratio(double value){
+	  		return Double.isNaN(value) ? "-" : Money.FORMAT.format(value);
+	  	}
+
 	  	private void printSeparator(){
 	  		System.out.println("----------------------------------------------------");
 	  	}
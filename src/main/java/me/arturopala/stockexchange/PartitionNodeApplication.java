@@ -0,0 +1,62 @@
+package me.arturopala.stockexchange;
+
+import me.arturopala.stockexchange.gbce.GBCE;
+import me.arturopala.stockexchange.api.ExchangeOptions;
+import me.arturopala.stockexchange.journal.FileSnapshotStore;
+import me.arturopala.stockexchange.journal.TradeJournal;
+import me.arturopala.stockexchange.partition.PartitionNode;
+import me.arturopala.stockexchange.partition.Partitioning;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+public class PartitionNodeApplication {
+
+	/**
+	 * Runs one node of a partitioned GBCE exchange until the JVM is stopped. Arguments are
+	 * name=value pairs: partition, partitions, host, port and journal (directory). The node is then reachable at
+	 * akka.tcp://gbce-{partition}@{host}:{port}/user/partition.
+	 */
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = new HashMap<>();
+		for(String arg: args){
+			int separator = arg.indexOf('=');
+			if(separator > 0) options.put(arg.substring(0, separator).toLowerCase(), arg.substring(separator + 1));
+		}
+		int partition = Integer.parseInt(options.getOrDefault("partition", "0"));
+		int partitions = Integer.parseInt(options.getOrDefault("partitions", "1"));
+		String host = options.getOrDefault("host", "127.0.0.1");
+		int port = Integer.parseInt(options.getOrDefault("port", String.valueOf(2552 + partition)));
+		ActorSystem actorSystem = ActorSystem.create("gbce-"+partition, remoting(host, port));
+		ExchangeOptions.Builder exchangeOptions = new ExchangeOptions.Builder();
+		TradeJournal journal = null;
+		if(options.containsKey("journal")){
+			journal = new TradeJournal(Paths.get(options.get("journal")));
+			exchangeOptions.journal(journal).snapshots(new FileSnapshotStore(Paths.get(options.get("journal"), "snapshots")));
+		}
+		PartitionNode node = new PartitionNode(new Partitioning(GBCE.LISTING, partitions), partition, actorSystem, exchangeOptions.build()).open();
+		TradeJournal nodeJournal = journal;
+		System.out.println("Partition "+partition+" of "+partitions+" with "+node.exchange().listing().size()+" stocks at "
+			+"akka.tcp://"+actorSystem.name()+"@"+host+":"+port+PartitionNode.PATH);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			node.close();
+			if(nodeJournal != null) nodeJournal.close();
+			actorSystem.shutdown();
+		}));
+	}
+
+	/** @return configuration of an actor system reachable over Akka remoting, port 0 for any free port */
+	public static Config remoting(String host, int port){
+		return ConfigFactory.parseString(
+			"akka.actor.provider = \"akka.remote.RemoteActorRefProvider\"\n"
+			+"akka.remote.enabled-transports = [\"akka.remote.netty.tcp\"]\n"
+			+"akka.remote.netty.tcp.hostname = \""+host+"\"\n"
+			+"akka.remote.netty.tcp.port = "+port
+		).withFallback(ConfigFactory.load());
+	}
+
+}
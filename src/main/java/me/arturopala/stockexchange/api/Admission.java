@@ -0,0 +1,41 @@
+package me.arturopala.stockexchange.api;
+
+import java.time.Duration;
+
+/**
+ * Bound of the order queue of each stock and what buy and sell do when it is full:
+ * either throw {@link OrderRejectedException} at once, or wait up to the timeout for room first.
+ */
+public final class Admission {
+
+	public enum Policy { REJECT, BLOCK }
+
+	public static final int DEFAULT_CAPACITY = 512;
+	/** rejects at once, so that buy and sell never block their callers unless asked to */
+	public static final Admission DEFAULT = reject(DEFAULT_CAPACITY);
+
+	public final Policy policy;
+	public final int capacity;
+	public final Duration timeout;
+
+	private Admission(Policy policy, int capacity, Duration timeout){
+		if(capacity < 1) throw new IllegalArgumentException("Queue capacity must be positive");
+		this.policy = policy;
+		this.capacity = capacity;
+		this.timeout = timeout;
+	}
+
+	public static Admission reject(int capacity){
+		return new Admission(Policy.REJECT, capacity, Duration.ZERO);
+	}
+
+	public static Admission block(int capacity, Duration timeout){
+		return new Admission(Policy.BLOCK, capacity, timeout);
+	}
+
+	@Override
+	public String toString(){
+		return "Admission("+policy+", capacity="+capacity+", timeout="+timeout+")";
+	}
+
+}
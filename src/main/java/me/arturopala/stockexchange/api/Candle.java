@@ -0,0 +1,40 @@
+package me.arturopala.stockexchange.api;
+
+import java.time.Instant;
+import me.arturopala.stockexchange.util.Money;
+
+/** Open, high, low and close price with traded quantity and volume of one time bar. */
+public final class Candle {
+
+	public final Resolution resolution;
+	public final Instant start;
+	public final Money open;
+	public final Money high;
+	public final Money low;
+	public final Money close;
+	public final long quantity;
+	public final Money volume;
+	public final int trades;
+
+	public Candle(Resolution resolution, Instant start, Money open, Money high, Money low, Money close, long quantity, Money volume, int trades){
+		this.resolution = resolution;
+		this.start = start;
+		this.open = open;
+		this.high = high;
+		this.low = low;
+		this.close = close;
+		this.quantity = quantity;
+		this.volume = volume;
+		this.trades = trades;
+	}
+
+	public Instant end(){
+		return start.plus(resolution.duration());
+	}
+
+	@Override
+	public String toString(){
+		return "Candle("+resolution+","+start+",O="+open+",H="+high+",L="+low+",C="+close+",Q="+quantity+",V="+volume+")";
+	}
+
+}
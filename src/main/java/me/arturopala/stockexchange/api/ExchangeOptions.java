@@ -0,0 +1,141 @@
+package me.arturopala.stockexchange.api;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import me.arturopala.stockexchange.journal.Journal;
+import me.arturopala.stockexchange.journal.SnapshotStore;
+
+/**
+ * Optional settings of a stock exchange, each engine using those it has a use for:
+ * partitions and ring size only matter to the ring engine, expiry resolution only to actor engines.
+ * Built with {@link Builder}, every setting not given keeps its default.
+ */
+public final class ExchangeOptions {
+
+	public static final Duration DEFAULT_PRICE_CALCULATION_PERIOD = Duration.ofMinutes(15);
+	public static final int DEFAULT_RING_SIZE = 1 << 16;
+	public static final Duration DEFAULT_EXPIRY_RESOLUTION = Duration.ofMillis(10);
+
+	public static final ExchangeOptions DEFAULT = new Builder().build();
+
+	public final Clock clock;
+	public final Duration priceCalculationPeriod;
+	public final int partitions;
+	public final int ringSize;
+	public final Journal journal;
+	public final SnapshotStore snapshots;
+	/** where trade history is memory-mapped, or null to keep it in direct memory */
+	public final Path historyDirectory;
+	/** bound of each stock order queue, or null for the engine default */
+	public final Admission admission;
+	/** granularity of price window expiry, at least a millisecond */
+	public final Duration expiryResolution;
+
+	private ExchangeOptions(Builder builder){
+		this.clock = builder.clock;
+		this.priceCalculationPeriod = builder.priceCalculationPeriod;
+		this.partitions = builder.partitions;
+		this.ringSize = builder.ringSize;
+		this.journal = builder.journal;
+		this.snapshots = builder.snapshots;
+		this.historyDirectory = builder.historyDirectory;
+		this.admission = builder.admission;
+		this.expiryResolution = builder.expiryResolution;
+	}
+
+	/** @return admission of these options, or the given one if not set */
+	public Admission admission(Admission engineDefault){
+		return admission != null ? admission : engineDefault;
+	}
+
+	public Builder toBuilder(){
+		return new Builder(this);
+	}
+
+	@Override
+	public String toString(){
+		return "ExchangeOptions(period="+priceCalculationPeriod+", partitions="+partitions+", ringSize="+ringSize
+			+", admission="+admission+", expiryResolution="+expiryResolution+")";
+	}
+
+	public static class Builder {
+
+		private Clock clock = Clock.systemUTC();
+		private Duration priceCalculationPeriod = DEFAULT_PRICE_CALCULATION_PERIOD;
+		private int partitions = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		private int ringSize = DEFAULT_RING_SIZE;
+		private Journal journal = Journal.NONE;
+		private SnapshotStore snapshots = SnapshotStore.NONE;
+		private Path historyDirectory = null;
+		private Admission admission = null;
+		private Duration expiryResolution = DEFAULT_EXPIRY_RESOLUTION;
+
+		public Builder(){
+		}
+
+		private Builder(ExchangeOptions options){
+			this.clock = options.clock;
+			this.priceCalculationPeriod = options.priceCalculationPeriod;
+			this.partitions = options.partitions;
+			this.ringSize = options.ringSize;
+			this.journal = options.journal;
+			this.snapshots = options.snapshots;
+			this.historyDirectory = options.historyDirectory;
+			this.admission = options.admission;
+			this.expiryResolution = options.expiryResolution;
+		}
+
+		public Builder clock(Clock clock){
+			this.clock = clock;
+			return this;
+		}
+
+		public Builder priceCalculationPeriod(Duration priceCalculationPeriod){
+			this.priceCalculationPeriod = priceCalculationPeriod;
+			return this;
+		}
+
+		public Builder partitions(int partitions){
+			if(partitions < 1) throw new IllegalArgumentException("At least one partition required");
+			this.partitions = partitions;
+			return this;
+		}
+
+		public Builder ringSize(int ringSize){
+			this.ringSize = ringSize;
+			return this;
+		}
+
+		public Builder journal(Journal journal){
+			this.journal = journal;
+			return this;
+		}
+
+		public Builder snapshots(SnapshotStore snapshots){
+			this.snapshots = snapshots;
+			return this;
+		}
+
+		public Builder historyDirectory(Path historyDirectory){
+			this.historyDirectory = historyDirectory;
+			return this;
+		}
+
+		public Builder admission(Admission admission){
+			this.admission = admission;
+			return this;
+		}
+
+		public Builder expiryResolution(Duration expiryResolution){
+			if(expiryResolution.compareTo(Duration.ofMillis(1)) < 0) throw new IllegalArgumentException("Expiry resolution must be at least 1 ms");
+			this.expiryResolution = expiryResolution;
+			return this;
+		}
+
+		public ExchangeOptions build(){
+			return new ExchangeOptions(this);
+		}
+	}
+
+}
@@ -0,0 +1,36 @@
+package me.arturopala.stockexchange.api;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable view of every listed ticker and the all share index. Each ticker is one published
+ * state of the stock and the index is the geometric mean of exactly the prices in the view.
+ * A later snapshot has a higher epoch if anything changed in between, the same epoch otherwise.
+ */
+public interface MarketSnapshot {
+
+	long epoch();
+
+	/** @return when the exchange was first seen in this state */
+	Instant timestamp();
+
+	double allShareIndex();
+
+	/** @return listed stocks ordered by symbol and type */
+	List<Stock> stocks();
+
+	/** @return state of the stock ticker, or null if the stock was not listed */
+	Ticker ticker(Stock stock);
+
+	default List<Ticker> tickers(){
+		List<Stock> stocks = stocks();
+		List<Ticker> tickers = new ArrayList<>(stocks.size());
+		for(Stock stock: stocks){
+			tickers.add(ticker(stock));
+		}
+		return tickers;
+	}
+
+}
@@ -0,0 +1,32 @@
+package me.arturopala.stockexchange.api;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Implemented by exchanges whose listing can change while they run.
+ * Engines with a listing fixed at construction do not implement it.
+ */
+public interface MutableListing {
+
+	/**
+	 * Lists stocks without stopping the exchange.
+	 * @return number of stocks not listed before
+	 */
+	int list(Collection<Stock> stocks);
+
+	/**
+	 * Delists stocks without stopping the exchange, removing their prices from the all share index.
+	 * @return number of stocks that were listed
+	 */
+	int delist(Collection<Stock> stocks);
+
+	default boolean list(Stock stock){
+		return list(Collections.singleton(stock)) == 1;
+	}
+
+	default boolean delist(Stock stock){
+		return delist(Collections.singleton(stock)) == 1;
+	}
+
+}
@@ -0,0 +1,10 @@
+package me.arturopala.stockexchange.api;
+
+/** Outcome of a non-blocking order offer. */
+public enum OfferResult {
+	ACCEPTED,
+	/** order queue of the stock is full, the order may be retried later */
+	FULL,
+	/** non-positive quantity, undefined price or stock not listed */
+	INVALID
+}
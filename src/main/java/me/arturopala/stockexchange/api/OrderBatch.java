@@ -0,0 +1,112 @@
+package me.arturopala.stockexchange.api;
+
+import java.util.Arrays;
+import me.arturopala.stockexchange.util.Money;
+import me.arturopala.stockexchange.util.FixedMoney;
+
+/**
+ * Reusable buffer of buy and sell orders to be submitted to the exchange at once.
+ * Records are kept in parallel arrays, so refilling a cleared batch allocates nothing.
+ */
+public final class OrderBatch {
+
+	private Stock[] stocks;
+	private boolean[] buys;
+	private int[] quantities;
+	private long[] prices;
+	private int size = 0;
+
+	public OrderBatch(){
+		this(64);
+	}
+
+	public OrderBatch(int initialCapacity){
+		int capacity = Math.max(1, initialCapacity);
+		stocks = new Stock[capacity];
+		buys = new boolean[capacity];
+		quantities = new int[capacity];
+		prices = new long[capacity];
+	}
+
+	/** A price too large to be held as a fixed value makes the order invalid. */
+	public OrderBatch buy(Stock stock, int quantity, Money price){
+		return add(stock, true, quantity, fixed(price));
+	}
+
+	public OrderBatch buy(Stock stock, int quantity, long fixedPrice){
+		return add(stock, true, quantity, fixedPrice);
+	}
+
+	/** A price too large to be held as a fixed value makes the order invalid. */
+	public OrderBatch sell(Stock stock, int quantity, Money price){
+		return add(stock, false, quantity, fixed(price));
+	}
+
+	public OrderBatch sell(Stock stock, int quantity, long fixedPrice){
+		return add(stock, false, quantity, fixedPrice);
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	public Stock stock(int index){
+		checkIndex(index);
+		return stocks[index];
+	}
+
+	public boolean isBuy(int index){
+		checkIndex(index);
+		return buys[index];
+	}
+
+	public int quantity(int index){
+		checkIndex(index);
+		return quantities[index];
+	}
+
+	public long fixedPrice(int index){
+		checkIndex(index);
+		return prices[index];
+	}
+
+	public Money price(int index){
+		return FixedMoney.toMoney(fixedPrice(index));
+	}
+
+	public OrderBatch clear(){
+		Arrays.fill(stocks, 0, size, null);
+		size = 0;
+		return this;
+	}
+
+	private static long fixed(Money price){
+		return FixedMoney.fits(price) ? FixedMoney.valueOf(price) : FixedMoney.UNDEFINED;
+	}
+
+	private OrderBatch add(Stock stock, boolean buy, int quantity, long price){
+		if(stock == null) throw new IllegalArgumentException("Stock cannot be null!");
+		if(size == stocks.length){
+			int capacity = size << 1;
+			stocks = Arrays.copyOf(stocks, capacity);
+			buys = Arrays.copyOf(buys, capacity);
+			quantities = Arrays.copyOf(quantities, capacity);
+			prices = Arrays.copyOf(prices, capacity);
+		}
+		stocks[size] = stock;
+		buys[size] = buy;
+		quantities[size] = quantity;
+		prices[size] = price;
+		size++;
+		return this;
+	}
+
+	private void checkIndex(int index){
+		if(index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: "+index+", size: "+size);
+	}
+
+}
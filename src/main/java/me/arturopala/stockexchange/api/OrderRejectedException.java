@@ -0,0 +1,32 @@
+package me.arturopala.stockexchange.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/** Thrown when the order queue of a stock is full and the admission policy gives up on the order. */
+public class OrderRejectedException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient List<Stock> stocks;
+
+	public OrderRejectedException(Stock stock){
+		this(Collections.singletonList(stock));
+	}
+
+	/** @param stocks all stocks with orders rejected, orders of other stocks were accepted */
+	public OrderRejectedException(Collection<Stock> stocks){
+		super("Order queue of "+stocks.stream().map(Stock::symbol).collect(Collectors.joining(", "))
+			+(stocks.size() > 1 ? " are full" : " is full"));
+		this.stocks = Collections.unmodifiableList(new ArrayList<>(stocks));
+	}
+
+	/** @return stocks with orders rejected, empty when deserialized */
+	public List<Stock> stocks(){
+		return stocks != null ? stocks : Collections.<Stock>emptyList();
+	}
+
+}
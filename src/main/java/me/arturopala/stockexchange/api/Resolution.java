@@ -0,0 +1,22 @@
+package me.arturopala.stockexchange.api;
+
+import java.time.Duration;
+
+public enum Resolution {
+
+	SECOND(Duration.ofSeconds(1)),
+	MINUTE(Duration.ofMinutes(1)),
+	FIVE_MINUTES(Duration.ofMinutes(5)),
+	FIFTEEN_MINUTES(Duration.ofMinutes(15));
+
+	private final Duration duration;
+
+	Resolution(Duration duration){
+		this.duration = duration;
+	}
+
+	public Duration duration(){
+		return duration;
+	}
+
+}
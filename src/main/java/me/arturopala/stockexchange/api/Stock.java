@@ -15,4 +15,32 @@ public interface Stock {
 	
 	double calculatePERatio(Money tickerMoney);
 
+	/** by default calculated from the price converted to {@link Money} */
+	default double calculateDividendYield(long fixedTickerPrice){
+		return calculateDividendYield(FixedMoney.toMoney(fixedTickerPrice));
+	}
+
+	/** by default calculated from the price converted to {@link Money} */
+	default double calculatePERatio(long fixedTickerPrice){
+		return calculatePERatio(FixedMoney.toMoney(fixedTickerPrice));
+	}
+
+	/**
+	 * @return dividend per share the dividend yield is calculated from,
+	 * by default the dividend yield at a price of one
+	 */
+	default long fixedDividendValue(){
+		double dividendYield = calculateDividendYield(FixedMoney.SCALE);
+		return Double.isFinite(dividendYield) ? Math.round(dividendYield * FixedMoney.SCALE) : FixedMoney.UNDEFINED;
+	}
+
+	/**
+	 * @return last dividend per share the P/E ratio is calculated from,
+	 * by default the inverse of the P/E ratio at a price of one, zero if there is no ratio
+	 */
+	default long fixedLastDividend(){
+		double peRatio = calculatePERatio(FixedMoney.SCALE);
+		return Double.isFinite(peRatio) && peRatio > 0 ? Math.round(FixedMoney.SCALE / peRatio) : FixedMoney.ZERO;
+	}
+
 }
\ No newline at end of file
@@ -1,8 +1,17 @@
 package me.arturopala.stockexchange.api;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Optional;
 import java.util.Set;
+import java.util.List;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.stream.Collectors;
 import me.arturopala.stockexchange.util.Money;
+import me.arturopala.stockexchange.util.FixedMoney;
+import me.arturopala.stockexchange.metrics.MetricsSnapshot;
 
 public interface StockExchange {
 
@@ -10,14 +19,102 @@ public interface StockExchange {
 
 	Optional<Stock> find(String symbol);
 
-	void sell(Stock stock, int quantity, Money price) throws StockExchangeClosedException;
+	default List<Stock> findByPrefix(String prefix, int limit){
+		return listing().stream()
+			.filter(stock -> stock.symbol().startsWith(prefix))
+			.sorted(Comparator.comparing(Stock::symbol))
+			.limit(limit)
+			.collect(Collectors.toList());
+	}
 
-	void buy(Stock stock, int quantity, Money price) throws StockExchangeClosedException;
+	default List<Stock> findInRange(String fromSymbol, String toSymbol, int limit){
+		return listing().stream()
+			.filter(stock -> stock.symbol().compareTo(fromSymbol) >= 0 && stock.symbol().compareTo(toSymbol) < 0)
+			.sorted(Comparator.comparing(Stock::symbol))
+			.limit(limit)
+			.collect(Collectors.toList());
+	}
+
+
+	/** @throws OrderRejectedException if the stock order queue stays full, see {@link Admission} */
+	void sell(Stock stock, int quantity, Money price) throws StockExchangeClosedException, OrderRejectedException;
+
+	/** @throws OrderRejectedException if the stock order queue stays full, see {@link Admission} */
+	void buy(Stock stock, int quantity, Money price) throws StockExchangeClosedException, OrderRejectedException;
+
+	/** Non-blocking sell: never waits for room in the stock order queue. */
+	OfferResult offerSell(Stock stock, int quantity, Money price) throws StockExchangeClosedException;
+
+	/** Non-blocking buy: never waits for room in the stock order queue. */
+	OfferResult offerBuy(Stock stock, int quantity, Money price) throws StockExchangeClosedException;
+
+	/** @return used fraction of the stock order queue, from 0 to 1, to shed load before the exchange falls behind */
+	double occupancy(Stock stock);
+
+	/**
+	 * Submits all orders of the batch, waiting for room in stock order queues as buy and sell do.
+	 * Invalid orders are rejected as by buy and sell, without failing the rest of the batch.
+	 * @throws OrderRejectedException naming every stock with orders rejected, after the other orders were accepted
+	 */
+	default void submit(OrderBatch batch) throws StockExchangeClosedException, OrderRejectedException {
+		Set<Stock> rejected = null;
+		for(int i = 0; i < batch.size(); i++){
+			// a raw price that is not a valid Money is passed on as undefined, for the exchange to reject
+			Money price = FixedMoney.isDefined(batch.fixedPrice(i)) ? batch.price(i) : Money.UNDEFINED;
+			try {
+				if(batch.isBuy(i)) buy(batch.stock(i), batch.quantity(i), price);
+				else sell(batch.stock(i), batch.quantity(i), price);
+			} catch (OrderRejectedException e){
+				if(rejected == null) rejected = new LinkedHashSet<>();
+				rejected.addAll(e.stocks());
+			}
+		}
+		if(rejected != null) throw new OrderRejectedException(rejected);
+	}
+
+	/**
+	 * Non-blocking submission of the batch: never waits for room in stock order queues.
+	 * Orders with a non-positive quantity or an undefined, zero or negative price are invalid.
+	 * @param results filled with the outcome of each order of the batch, at least as long as the batch
+	 */
+	default void offer(OrderBatch batch, OfferResult[] results) throws StockExchangeClosedException {
+		for(int i = 0; i < batch.size(); i++){
+			long price = batch.fixedPrice(i);
+			if(batch.quantity(i) <= 0 || !FixedMoney.isDefined(price)) results[i] = OfferResult.INVALID;
+			else if(batch.isBuy(i)) results[i] = offerBuy(batch.stock(i), batch.quantity(i), batch.price(i));
+			else results[i] = offerSell(batch.stock(i), batch.quantity(i), batch.price(i));
+		}
+	}
 
 	Ticker watch(Stock stock);
 
+	/**
+	 * Pushes ticker updates of the stocks to the listener, starting with their current state.
+	 * Updates are conflated per subscription, so a slow listener only ever sees the latest state.
+	 */
+	Subscription subscribe(Collection<Stock> stocks, TickerListener listener);
+
+	default Subscription subscribe(Stock stock, TickerListener listener){
+		return subscribe(Collections.singleton(stock), listener);
+	}
+
+	/** @return up to count latest bars of the stock, oldest first */
+	List<Candle> candles(Stock stock, Resolution resolution, int count);
+
+	/**
+	 * @return totals and price range of the retained stock trades within [from, to).
+	 * How many trades are retained, and for how long, is implementation-defined.
+	 */
+	TradeSummary history(Stock stock, Instant from, Instant to);
+
 	double allShareIndex();
 
+	/** @return consistent view of all tickers and the index, cheap enough to take many times a second */
+	MarketSnapshot snapshot();
+
+	/** @return trade counters and engine latency histograms, also exposed over JMX while open */
+	MetricsSnapshot metrics();
+
 	StockExchange open();
 
 	StockExchange close();
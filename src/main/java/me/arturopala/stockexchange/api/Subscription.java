@@ -0,0 +1,9 @@
+package me.arturopala.stockexchange.api;
+
+public interface Subscription {
+
+	void cancel();
+
+	boolean isCancelled();
+
+}
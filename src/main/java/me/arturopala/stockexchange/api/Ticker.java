@@ -13,4 +13,14 @@ public interface Ticker {
 
 	int quantity();
 
+	/** @return dividend yield at the current price, NaN if not defined */
+	default double dividendYield(){
+		return stock().calculateDividendYield(price());
+	}
+
+	/** @return P/E ratio at the current price, NaN if not defined */
+	default double peRatio(){
+		return stock().calculatePERatio(price());
+	}
+
 }
\ No newline at end of file
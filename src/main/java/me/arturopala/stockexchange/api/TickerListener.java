@@ -0,0 +1,13 @@
+package me.arturopala.stockexchange.api;
+
+@FunctionalInterface
+public interface TickerListener {
+
+	/**
+	 * Receives immutable state of a subscribed ticker. Calls for one subscription
+	 * never overlap, and intermediate states may be skipped if the listener is slower
+	 * than the updates. An exception thrown here cancels the subscription.
+	 */
+	void onUpdate(Ticker ticker);
+
+}
@@ -0,0 +1,38 @@
+package me.arturopala.stockexchange.api;
+
+import java.time.Instant;
+import me.arturopala.stockexchange.util.Money;
+
+/** Totals and price range of the trades of one stock within [from, to). */
+public final class TradeSummary {
+
+	public final Instant from;
+	public final Instant to;
+	public final long trades;
+	public final long quantity;
+	public final Money volume;
+	public final Money vwap;
+	public final Money low;
+	public final Money high;
+
+	public TradeSummary(Instant from, Instant to, long trades, long quantity, Money volume, Money vwap, Money low, Money high){
+		this.from = from;
+		this.to = to;
+		this.trades = trades;
+		this.quantity = quantity;
+		this.volume = volume;
+		this.vwap = vwap;
+		this.low = low;
+		this.high = high;
+	}
+
+	public static TradeSummary empty(Instant from, Instant to){
+		return new TradeSummary(from, to, 0, 0, Money.ZERO, Money.UNDEFINED, Money.UNDEFINED, Money.UNDEFINED);
+	}
+
+	@Override
+	public String toString(){
+		return "TradeSummary("+from+","+to+",N="+trades+",Q="+quantity+",V="+volume+",VWAP="+vwap+",L="+low+",H="+high+")";
+	}
+
+}
@@ -0,0 +1,69 @@
+package me.arturopala.stockexchange.feed;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of the market data ring file:
+ * <pre>
+ * header:    magic(4) version(4) capacity(4) stocks(4) dataOffset(4) session(8) at 24
+ *            writePosition(8) at 64, snapshotPosition(8) at 128, each on its own cache line
+ * directory: from 192, for every stock id: type(1) symbolLength(2) symbol(n)
+ * ring:      capacity bytes from dataOffset, records addressed by position modulo capacity
+ * </pre>
+ * Records start with a kind byte followed by unsigned varints:
+ * <pre>
+ * SNAPSHOT: kind stocks                                  , followed by a FULL record of every stock
+ * FULL:     kind stockId price quantity volume           , values zigzag encoded
+ * DELTA:    kind stockId dPrice dQuantity dVolume        , zigzag differences to the previous state
+ * PAD:      kind                                         , rest of the ring up to its end is unused
+ * </pre>
+ * A record never wraps around the end of the ring. Positions only grow, so the writer
+ * publishes a record by moving writePosition past it, and the latest complete snapshot
+ * by setting snapshotPosition to its start. A restarted writer never rewrites the file in
+ * place: it moves a new file over it, then sets the session of the old one to the new session,
+ * telling readers still mapping the old file to open the new one.
+ */
+final class MarketDataFormat {
+
+	static final int MAGIC = 0x53584D44;
+	static final int VERSION = 2;
+
+	static final int CAPACITY = 8;
+	static final int STOCKS = 12;
+	static final int DATA_OFFSET = 16;
+	static final int SESSION = 24;
+	static final int WRITE_POSITION = 64;
+	static final int SNAPSHOT_POSITION = 128;
+	static final int DIRECTORY = 192;
+
+	static final byte PAD = 1;
+	static final byte SNAPSHOT = 2;
+	static final byte FULL = 3;
+	static final byte DELTA = 4;
+
+	/** kind, stock id and three 64 bit values */
+	static final int MAX_RECORD = 1 + 5 + 3 * 10;
+	/** bytes beyond writePosition the writer may be overwriting: a record and the padding before it */
+	static final int MAX_IN_FLIGHT = 2 * MAX_RECORD;
+
+	private MarketDataFormat(){}
+
+	static long zigzag(long value){
+		return (value << 1) ^ (value >> 63);
+	}
+
+	static long unzigzag(long value){
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/** @return index after the written varint */
+	static int putVarint(ByteBuffer buffer, int index, long value){
+		while((value & ~0x7FL) != 0){
+			buffer.put(index++, (byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put(index++, (byte) value);
+		return index;
+	}
+
+}
@@ -0,0 +1,218 @@
+package me.arturopala.stockexchange.feed;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import me.arturopala.stockexchange.api.*;
+import me.arturopala.stockexchange.util.FixedMoney;
+import static me.arturopala.stockexchange.feed.MarketDataFormat.*;
+
+/**
+ * Single writer of ticker updates into a memory-mapped ring file, read by any number of
+ * {@link MarketDataReader}s in other processes. Every change is written as the difference
+ * to the previous state of the stock, and the full state of every stock is written again
+ * as a snapshot each quarter of the ring, so a reader overtaken by the writer can resync.
+ * Subscribed to an exchange, the publisher writes every update delivered to it, which are
+ * only conflated while it is still writing the previous one. An existing file is replaced,
+ * never truncated, as readers of it may still have it mapped.
+ */
+public final class MarketDataPublisher implements TickerListener, Closeable {
+
+	public static final int DEFAULT_CAPACITY = 16 << 20;
+
+	private final List<Stock> stocks;
+	private final Map<Stock, Integer> stockIds;
+	private final MappedByteBuffer buffer;
+	private final ByteBuffer ring;
+	private final int capacity;
+	private final int mask;
+	private final long snapshotInterval;
+	private final long[] prices;
+	private final int[] quantities;
+	private final long[] volumes;
+	private final MemoryFence fence = new MemoryFence();
+
+	private Subscription subscription;
+	private long position = 0;
+	private long snapshotPosition = 0;
+	private long updates = 0;
+
+	public MarketDataPublisher(Path file, Collection<Stock> listing) throws IOException {
+		this(file, listing, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param listing stocks to publish, their ids are positions ordered by symbol and type
+	 * @param capacity bytes of the ring, a power of 2 holding at least 4 snapshots of the listing
+	 */
+	public MarketDataPublisher(Path file, Collection<Stock> listing, int capacity) throws IOException {
+		this.stocks = new ArrayList<>(listing);
+		this.stocks.sort(Comparator.comparing(Stock::symbol).thenComparing(Stock::type));
+		if(Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("Capacity must be a power of 2 but was "+capacity);
+		long snapshotSize = 1 + 5 + (long) stocks.size() * MAX_RECORD;
+		if(capacity < 4 * (snapshotSize + MAX_RECORD)) throw new IllegalArgumentException("Capacity of "+capacity+" bytes is too small for snapshots of "+stocks.size()+" stocks");
+		this.stockIds = new HashMap<>(stocks.size() * 2);
+		byte[][] symbols = new byte[stocks.size()][];
+		int directorySize = 0;
+		for(int i = 0; i < stocks.size(); i++){
+			stockIds.put(stocks.get(i), i);
+			symbols[i] = stocks.get(i).symbol().getBytes(StandardCharsets.UTF_8);
+			directorySize += 3 + symbols[i].length;
+		}
+		int dataOffset = (DIRECTORY + directorySize + 63) & ~63;
+		MappedByteBuffer previous = header(file);
+		long session = previous != null ? previous.getLong(SESSION) + 1 : System.currentTimeMillis();
+		Path directory = file.toAbsolutePath().getParent();
+		Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) dataOffset + capacity);
+		} catch (IOException e){
+			Files.deleteIfExists(temporary);
+			throw e;
+		}
+		int index = DIRECTORY;
+		for(int i = 0; i < symbols.length; i++){
+			buffer.put(index, (byte) stocks.get(i).type().ordinal());
+			buffer.putShort(index + 1, (short) symbols[i].length);
+			for(int j = 0; j < symbols[i].length; j++){
+				buffer.put(index + 3 + j, symbols[i][j]);
+			}
+			index += 3 + symbols[i].length;
+		}
+		buffer.putInt(CAPACITY, capacity);
+		buffer.putInt(STOCKS, stocks.size());
+		buffer.putInt(DATA_OFFSET, dataOffset);
+		buffer.putLong(SESSION, session);
+		buffer.putLong(WRITE_POSITION, 0);
+		buffer.putLong(SNAPSHOT_POSITION, 0);
+		ByteBuffer data = buffer.duplicate();
+		data.position(dataOffset);
+		this.ring = data.slice();
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.snapshotInterval = capacity / 4;
+		this.prices = new long[stocks.size()];
+		this.quantities = new int[stocks.size()];
+		this.volumes = new long[stocks.size()];
+		Arrays.fill(prices, FixedMoney.UNDEFINED);
+		Arrays.fill(volumes, FixedMoney.UNDEFINED);
+		snapshot();
+		fence.release();
+		buffer.putInt(4, VERSION);
+		buffer.putInt(0, MAGIC);
+		buffer.force();
+		Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		if(previous != null){
+			previous.putLong(SESSION, session);
+			previous.force();
+		}
+	}
+
+	/** @return header of an existing market data file to retire, or null */
+	private static MappedByteBuffer header(Path file) throws IOException {
+		if(!Files.exists(file)) return null;
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+			if(channel.size() < DIRECTORY) return null;
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, DIRECTORY);
+			return header.getInt(0) == MAGIC && header.getInt(4) == VERSION ? header : null;
+		}
+	}
+
+	/** Publishes updates of every stock of the exchange from now on, until closed. */
+	public Subscription attach(StockExchange exchange){
+		subscription = exchange.subscribe(stocks, this);
+		return subscription;
+	}
+
+	@Override
+	public void onUpdate(Ticker ticker){
+		Integer stockId = stockIds.get(ticker.stock());
+		if(stockId != null){
+			publish(stockId, FixedMoney.valueOf(ticker.price()), ticker.quantity(), FixedMoney.valueOf(ticker.volume()));
+		}
+	}
+
+	/** Writes the state of the stock if it changed, callers must not publish concurrently. */
+	public void publish(int stockId, long price, int quantity, long volume){
+		if(prices[stockId] == price && quantities[stockId] == quantity && volumes[stockId] == volume) return;
+		if(position - snapshotPosition >= snapshotInterval) snapshot();
+		int index = claim();
+		ring.put(index++, DELTA);
+		index = putVarint(ring, index, stockId);
+		index = putVarint(ring, index, zigzag(price - prices[stockId]));
+		index = putVarint(ring, index, zigzag(quantity - quantities[stockId]));
+		index = putVarint(ring, index, zigzag(volume - volumes[stockId]));
+		prices[stockId] = price;
+		quantities[stockId] = quantity;
+		volumes[stockId] = volume;
+		commit(index);
+		updates++;
+	}
+
+	/** Writes the full state of every stock, where readers that fell behind start over. */
+	public void snapshot(){
+		long start = position;
+		int index = claim();
+		ring.put(index++, SNAPSHOT);
+		commit(putVarint(ring, index, stocks.size()));
+		for(int i = 0; i < stocks.size(); i++){
+			index = claim();
+			ring.put(index++, FULL);
+			index = putVarint(ring, index, i);
+			index = putVarint(ring, index, zigzag(prices[i]));
+			index = putVarint(ring, index, zigzag(quantities[i]));
+			index = putVarint(ring, index, zigzag(volumes[i]));
+			commit(index);
+		}
+		snapshotPosition = start;
+		fence.release();
+		buffer.putLong(SNAPSHOT_POSITION, start);
+	}
+
+	/** @return stocks by id */
+	public List<Stock> stocks(){
+		return Collections.unmodifiableList(stocks);
+	}
+
+	/** @return bytes written since the start */
+	public long position(){
+		return position;
+	}
+
+	/** @return updates written, not counting snapshots */
+	public long updates(){
+		return updates;
+	}
+
+	/** Cancels the subscription to the exchange, if attached, and flushes the file. */
+	@Override
+	public void close(){
+		if(subscription != null) subscription.cancel();
+		buffer.force();
+	}
+
+	/** @return ring index of the next record, padding the end of the ring if the record may not fit */
+	private int claim(){
+		int index = (int) (position & mask);
+		if(capacity - index < MAX_RECORD){
+			ring.put(index, PAD);
+			position += capacity - index;
+			index = 0;
+		}
+		return index;
+	}
+
+	private void commit(int end){
+		position = (position & ~(long) mask) + end;
+		fence.release();
+		buffer.putLong(WRITE_POSITION, position);
+		// the next record must not overwrite the ring before readers can see how far it may reach
+		fence.full();
+	}
+
+}
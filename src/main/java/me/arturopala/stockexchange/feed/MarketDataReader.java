@@ -0,0 +1,247 @@
+package me.arturopala.stockexchange.feed;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import me.arturopala.stockexchange.api.StockType;
+import static me.arturopala.stockexchange.feed.MarketDataFormat.*;
+
+/**
+ * Reader of a market data ring file written by a {@link MarketDataPublisher}, possibly in
+ * another process. Each reader keeps its own position and the state of every stock, starting
+ * from the latest snapshot. A reader the writer has lapped, so that records it has not read
+ * yet were overwritten, goes on from the latest snapshot again. When the writer restarts,
+ * the reader opens the new file at its next poll, with stock ids of the new listing.
+ * Not thread-safe.
+ */
+public final class MarketDataReader implements Closeable {
+
+	public interface Handler {
+		/** @param price fixed-point price, see {@link me.arturopala.stockexchange.util.FixedMoney} */
+		void onUpdate(int stockId, long price, int quantity, long volume);
+	}
+
+	private final Path file;
+	private final MemoryFence fence = new MemoryFence();
+
+	private MappedByteBuffer buffer;
+	private ByteBuffer ring;
+	private int capacity;
+	private int mask;
+	private long session;
+	private String[] symbols;
+	private StockType[] types;
+	private Map<String, Integer> stockIds;
+	private long[] prices;
+	private int[] quantities;
+	private long[] volumes;
+
+	private long position;
+	private long laps = 0;
+	private long restarts = 0;
+	private int cursor;
+
+	public MarketDataReader(Path file) throws IOException {
+		this.file = file;
+		open();
+	}
+
+	/** Maps the file and starts from its latest snapshot. */
+	private void open() throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if(buffer.capacity() < DIRECTORY || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION){
+			throw new IllegalStateException("Not a market data file: "+file);
+		}
+		fence.acquire();
+		this.session = buffer.getLong(SESSION);
+		this.capacity = buffer.getInt(CAPACITY);
+		this.mask = capacity - 1;
+		int count = buffer.getInt(STOCKS);
+		int dataOffset = buffer.getInt(DATA_OFFSET);
+		this.symbols = new String[count];
+		this.types = new StockType[count];
+		this.stockIds = new HashMap<>(count * 2);
+		int index = DIRECTORY;
+		for(int i = 0; i < count; i++){
+			types[i] = StockType.values()[buffer.get(index)];
+			byte[] symbol = new byte[buffer.getShort(index + 1)];
+			for(int j = 0; j < symbol.length; j++){
+				symbol[j] = buffer.get(index + 3 + j);
+			}
+			symbols[i] = new String(symbol, StandardCharsets.UTF_8);
+			stockIds.putIfAbsent(symbols[i] + "/" + types[i], i);
+			index += 3 + symbol.length;
+		}
+		ByteBuffer data = buffer.duplicate();
+		data.position(dataOffset);
+		data.limit(dataOffset + capacity);
+		this.ring = data.slice();
+		this.prices = new long[count];
+		this.quantities = new int[count];
+		this.volumes = new long[count];
+		this.position = snapshotPosition();
+	}
+
+	/**
+	 * Passes every update written since the last poll to the handler, starting with the full
+	 * state of every stock after opening or being lapped.
+	 * @return number of updates handled
+	 */
+	public int poll(Handler handler){
+		if(buffer.getLong(SESSION) != session) restart();
+		int count = 0;
+		long limit = writePosition();
+		while(position < limit){
+			if(limit - position > capacity - MAX_IN_FLIGHT){
+				lapped();
+				continue;
+			}
+			int index = (int) (position & mask);
+			byte kind = ring.get(index);
+			cursor = index + 1;
+			long stockId = 0, first = 0, second = 0, third = 0;
+			if(kind != PAD){
+				stockId = varint();
+			}
+			if(kind == FULL || kind == DELTA){
+				first = varint();
+				second = varint();
+				third = varint();
+			}
+			// the record is intact only if the writer has not come round to it meanwhile
+			fence.full();
+			limit = buffer.getLong(WRITE_POSITION);
+			if(limit + MAX_IN_FLIGHT - position > capacity){
+				lapped();
+				continue;
+			}
+			if(kind == PAD){
+				position += capacity - index;
+				continue;
+			}
+			if(kind == SNAPSHOT){
+				position += cursor - index;
+				continue;
+			}
+			if(stockId < 0 || stockId >= prices.length || (kind != FULL && kind != DELTA)){
+				throw new IllegalStateException("Corrupted record at position "+position);
+			}
+			int id = (int) stockId;
+			if(kind == FULL){
+				prices[id] = unzigzag(first);
+				quantities[id] = (int) unzigzag(second);
+				volumes[id] = unzigzag(third);
+			} else {
+				prices[id] += unzigzag(first);
+				quantities[id] += (int) unzigzag(second);
+				volumes[id] += unzigzag(third);
+			}
+			position += cursor - index;
+			handler.onUpdate(id, prices[id], quantities[id], volumes[id]);
+			count++;
+		}
+		return count;
+	}
+
+	/** @return times the reader was lapped and started over from a snapshot */
+	public long laps(){
+		return laps;
+	}
+
+	/** @return times the writer restarted and the reader opened the new file */
+	public long restarts(){
+		return restarts;
+	}
+
+	/** @return position of the next record to read */
+	public long position(){
+		return position;
+	}
+
+	/** @return records not read yet, in bytes */
+	public long lag(){
+		return writePosition() - position;
+	}
+
+	public int stocks(){
+		return symbols.length;
+	}
+
+	public String symbol(int stockId){
+		return symbols[stockId];
+	}
+
+	public StockType type(int stockId){
+		return types[stockId];
+	}
+
+	/** @return id of the stock, or -1 if not in the feed */
+	public int stockId(String symbol, StockType type){
+		Integer id = stockIds.get(symbol + "/" + type);
+		return id != null ? id : -1;
+	}
+
+	/** @return last price read of the stock */
+	public long price(int stockId){
+		return prices[stockId];
+	}
+
+	public int quantity(int stockId){
+		return quantities[stockId];
+	}
+
+	public long volume(int stockId){
+		return volumes[stockId];
+	}
+
+	@Override
+	public void close(){
+		// the mapping is released with the buffer
+	}
+
+	private void restart(){
+		restarts++;
+		try {
+			open();
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void lapped(){
+		laps++;
+		position = snapshotPosition();
+	}
+
+	private long writePosition(){
+		long writePosition = buffer.getLong(WRITE_POSITION);
+		fence.acquire();
+		return writePosition;
+	}
+
+	private long snapshotPosition(){
+		long snapshotPosition = buffer.getLong(SNAPSHOT_POSITION);
+		fence.acquire();
+		return snapshotPosition;
+	}
+
+	/** Reads an unsigned varint at the cursor, the cursor never leaves the ring. */
+	private long varint(){
+		long value = 0;
+		for(int shift = 0; shift < 64; shift += 7){
+			byte b = ring.get(cursor++ & mask);
+			value |= (long) (b & 0x7F) << shift;
+			if(b >= 0) return value;
+		}
+		return value;
+	}
+
+}
@@ -0,0 +1,29 @@
+package me.arturopala.stockexchange.feed;
+
+/**
+ * Mapped buffers have no ordered accesses in Java 8. HotSpot keeps memory accesses before
+ * a volatile write ahead of it, and those after a volatile read behind it, which orders
+ * plain buffer accesses for other processes on the same box. Each writer and reader owns
+ * a fence, so they do not share its cache line.
+ */
+final class MemoryFence {
+
+	private volatile int fence;
+
+	/** Accesses before stay before. */
+	void release(){
+		fence = 0;
+	}
+
+	/** Accesses after stay after. */
+	void acquire(){
+		int ignored = fence;
+	}
+
+	/** Accesses do not cross in either direction. */
+	void full(){
+		fence = 0;
+		int ignored = fence;
+	}
+
+}
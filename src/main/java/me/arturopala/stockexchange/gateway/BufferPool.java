@@ -0,0 +1,31 @@
+package me.arturopala.stockexchange.gateway;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/** Direct buffers of one size, reused across connections. Not thread-safe. */
+final class BufferPool {
+
+	private final int bufferSize;
+	private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+
+	BufferPool(int bufferSize){
+		this.bufferSize = bufferSize;
+	}
+
+	ByteBuffer acquire(){
+		ByteBuffer buffer = free.poll();
+		if(buffer == null) return ByteBuffer.allocateDirect(bufferSize);
+		buffer.clear();
+		return buffer;
+	}
+
+	void release(ByteBuffer buffer){
+		free.push(buffer);
+	}
+
+	int free(){
+		return free.size();
+	}
+
+}
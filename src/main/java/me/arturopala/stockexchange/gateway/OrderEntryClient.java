@@ -0,0 +1,101 @@
+package me.arturopala.stockexchange.gateway;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import static me.arturopala.stockexchange.gateway.OrderEntryProtocol.*;
+
+/**
+ * Blocking client of the {@link OrderGateway}. Orders are buffered and sent by {@link #flush()}
+ * or when the buffer fills up, acks are read by {@link #receive(AckHandler)}. One thread may send
+ * while another one receives; a single thread should not send more orders than the gateway
+ * buffers hold before receiving their acks, or both sides end up waiting for each other.
+ */
+public final class OrderEntryClient implements Closeable {
+
+	public interface AckHandler {
+		void onAck(long orderId, int result);
+	}
+
+	private final SocketChannel channel;
+	private final ByteBuffer orders;
+	private final ByteBuffer acks;
+
+	public OrderEntryClient(InetSocketAddress address) throws IOException {
+		this(address, OrderGateway.DEFAULT_BUFFER_SIZE);
+	}
+
+	public OrderEntryClient(InetSocketAddress address, int bufferSize) throws IOException {
+		this.channel = SocketChannel.open(address);
+		this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		this.orders = ByteBuffer.allocateDirect(Math.max(ORDER_LENGTH, bufferSize));
+		this.acks = ByteBuffer.allocateDirect(Math.max(ACK_LENGTH, bufferSize));
+	}
+
+	/** @param price fixed-point price, see {@link me.arturopala.stockexchange.util.FixedMoney} */
+	public void buy(long orderId, int stockId, int quantity, long price) throws IOException {
+		send(orderId, stockId, BUY, quantity, price);
+	}
+
+	/** @param price fixed-point price, see {@link me.arturopala.stockexchange.util.FixedMoney} */
+	public void sell(long orderId, int stockId, int quantity, long price) throws IOException {
+		send(orderId, stockId, SELL, quantity, price);
+	}
+
+	public void send(long orderId, int stockId, int side, int quantity, long price) throws IOException {
+		if(orders.remaining() < ORDER_LENGTH) flush();
+		putOrder(orders, orderId, stockId, side, quantity, price);
+	}
+
+	/** Sends raw bytes as they are, bypassing the order buffer. */
+	public void sendRaw(ByteBuffer bytes) throws IOException {
+		flush();
+		while(bytes.hasRemaining()){
+			channel.write(bytes);
+		}
+	}
+
+	public void flush() throws IOException {
+		orders.flip();
+		while(orders.hasRemaining()){
+			channel.write(orders);
+		}
+		orders.clear();
+	}
+
+	/** Sends buffered orders and tells the gateway that no more follow, their acks can still be received. */
+	public void finish() throws IOException {
+		flush();
+		channel.shutdownOutput();
+	}
+
+	/**
+	 * Waits for at least one ack and passes every complete ack received to the handler.
+	 * @return number of acks handled, or -1 if the gateway closed the connection
+	 */
+	public int receive(AckHandler handler) throws IOException {
+		while(acks.position() < ACK_LENGTH){
+			if(channel.read(acks) < 0) return -1;
+		}
+		acks.flip();
+		int count = 0;
+		while(acks.remaining() >= ACK_LENGTH){
+			long orderId = acks.getLong();
+			int result = acks.getInt();
+			acks.getInt();
+			handler.onAck(orderId, result);
+			count++;
+		}
+		acks.compact();
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
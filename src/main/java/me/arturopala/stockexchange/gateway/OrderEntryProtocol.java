@@ -0,0 +1,66 @@
+package me.arturopala.stockexchange.gateway;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import me.arturopala.stockexchange.api.OfferResult;
+import me.arturopala.stockexchange.api.Stock;
+
+/**
+ * Fixed-length binary messages of the order entry gateway, big-endian.
+ * <pre>
+ * order (32 bytes): long orderId | int stockId | int quantity | long price | int side | int reserved
+ * ack   (16 bytes): long orderId | int result  | int reserved
+ * </pre>
+ * Prices are fixed-point with 4 decimal places, as in {@link me.arturopala.stockexchange.util.FixedMoney}.
+ * Stock ids are positions in the listing ordered by symbol and type, see {@link #stocks(Collection)}.
+ * Every order is acked, in the order received on the connection.
+ */
+public final class OrderEntryProtocol {
+
+	public static final int ORDER_LENGTH = 32;
+	public static final int ACK_LENGTH = 16;
+
+	public static final int BUY = 1;
+	public static final int SELL = 2;
+
+	public static final int ACCEPTED = 0;
+	/** order queue of the stock is full, the order may be retried later */
+	public static final int FULL = 1;
+	/** unknown stock id or side, non-positive quantity or undefined price */
+	public static final int INVALID = 2;
+	/** exchange is closed */
+	public static final int CLOSED = 3;
+
+	static final int ORDER_ID = 0;
+	static final int STOCK_ID = 8;
+	static final int QUANTITY = 12;
+	static final int PRICE = 16;
+	static final int SIDE = 24;
+	static final int ACK_RESULT = 8;
+
+	private OrderEntryProtocol(){}
+
+	/** @return stocks of the listing in the order of their ids */
+	public static List<Stock> stocks(Collection<Stock> listing){
+		List<Stock> stocks = new ArrayList<>(listing);
+		stocks.sort(Comparator.comparing(Stock::symbol).thenComparing(Stock::type));
+		return stocks;
+	}
+
+	public static void putOrder(ByteBuffer buffer, long orderId, int stockId, int side, int quantity, long price){
+		buffer.putLong(orderId).putInt(stockId).putInt(quantity).putLong(price).putInt(side).putInt(0);
+	}
+
+	public static void putAck(ByteBuffer buffer, long orderId, int result){
+		buffer.putLong(orderId).putInt(result).putInt(0);
+	}
+
+	public static int resultOf(OfferResult result){
+		switch(result){
+			case ACCEPTED: return ACCEPTED;
+			case FULL: return FULL;
+			default: return INVALID;
+		}
+	}
+
+}
@@ -0,0 +1,335 @@
+package me.arturopala.stockexchange.gateway;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import me.arturopala.stockexchange.api.*;
+import static me.arturopala.stockexchange.gateway.OrderEntryProtocol.*;
+
+/**
+ * TCP order entry to a {@link StockExchange}, in the {@link OrderEntryProtocol} format.
+ * One selector thread serves every connection: orders are decoded in place from the
+ * connection's pooled direct buffer into a reused {@link OrderBatch}, offered to the exchange
+ * at once, and acked in the same order. Nothing is allocated per order. A connection is not
+ * read while its acks cannot be written, so a client that stops reading acks is pushed back.
+ * A client closing its side of the connection is still acked every complete order it sent,
+ * and the connection closes once those acks are written.
+ * A connection failing for any reason, including while it is accepted, is closed alone,
+ * the others are served on. If accepting fails, for lack of file descriptors say,
+ * new clients wait until one of the open connections closes.
+ * Stock ids are fixed when the gateway is created: stocks listed later have no id,
+ * and orders for stocks delisted since are acked as invalid by the exchange.
+ */
+public final class OrderGateway {
+
+	public static final int DEFAULT_BUFFER_SIZE = 64 << 10;
+
+	private final StockExchange exchange;
+	private final InetSocketAddress address;
+	private final Stock[] stocks;
+	private final int bufferSize;
+	private final BufferPool buffers;
+	private final Set<Connection> connections = new HashSet<>();
+	private final AtomicLong ordersReceived = new AtomicLong();
+
+	private volatile boolean running = false;
+	private Selector selector;
+	private ServerSocketChannel server;
+	private Thread thread;
+
+	public OrderGateway(StockExchange exchange, InetSocketAddress address){
+		this(exchange, address, OrderEntryProtocol.stocks(exchange.listing()));
+	}
+
+	public OrderGateway(StockExchange exchange, InetSocketAddress address, List<Stock> stocks){
+		this(exchange, address, stocks, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param stocks stocks by id, see {@link OrderEntryProtocol#stocks(Collection)}, not refreshed
+	 * when the exchange listing changes
+	 * @param bufferSize bytes of orders read and of acks written at once per connection
+	 */
+	public OrderGateway(StockExchange exchange, InetSocketAddress address, List<Stock> stocks, int bufferSize){
+		if(bufferSize < ORDER_LENGTH) throw new IllegalArgumentException("Buffer size must be at least "+ORDER_LENGTH+" but was "+bufferSize);
+		this.exchange = exchange;
+		this.address = address;
+		this.stocks = stocks.toArray(new Stock[stocks.size()]);
+		this.bufferSize = bufferSize;
+		this.buffers = new BufferPool(bufferSize);
+	}
+
+	public synchronized OrderGateway start(){
+		if(!running){
+			try {
+				selector = Selector.open();
+				server = ServerSocketChannel.open();
+				server.bind(address);
+				server.configureBlocking(false);
+				server.register(selector, SelectionKey.OP_ACCEPT);
+			} catch (IOException e){
+				closeQuietly(server);
+				closeQuietly(selector);
+				throw new UncheckedIOException(e);
+			}
+			running = true;
+			thread = new Thread(this::run, "order-gateway-"+localAddress().getPort());
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return this;
+	}
+
+	/** Stops accepting orders and closes every connection. */
+	public synchronized OrderGateway stop(){
+		if(running){
+			running = false;
+			selector.wakeup();
+			try {
+				thread.join();
+			} catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+			thread = null;
+		}
+		return this;
+	}
+
+	public boolean isRunning(){
+		return running;
+	}
+
+	/** @return address the gateway listens on, with the actual port if bound to port 0 */
+	public InetSocketAddress localAddress(){
+		try {
+			return (InetSocketAddress) server.getLocalAddress();
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/** @return stocks by id */
+	public List<Stock> stocks(){
+		return Collections.unmodifiableList(Arrays.asList(stocks));
+	}
+
+	public long ordersReceived(){
+		return ordersReceived.get();
+	}
+
+	private void run(){
+		try {
+			while(running){
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext()){
+					SelectionKey key = keys.next();
+					keys.remove();
+					if(!key.isValid()) continue;
+					if(key.isAcceptable()){
+						accept();
+					} else {
+						Connection connection = (Connection) key.attachment();
+						try {
+							if(key.isWritable()) flush(connection);
+							if(key.isReadable() && !read(connection)){
+								connection.ended = true;
+							}
+							serve(connection);
+							if(connection.ended && connection.drained()){
+								close(connection);
+								continue;
+							}
+							connection.updateInterest();
+						} catch (IOException | RuntimeException e){
+							// bad input or a failing exchange call closes only this connection
+							close(connection);
+						}
+					}
+				}
+			}
+		} catch (IOException | ClosedSelectorException e){
+			running = false;
+		} finally {
+			for(Connection connection: new ArrayList<>(connections)){
+				close(connection);
+			}
+			closeQuietly(server);
+			closeQuietly(selector);
+		}
+	}
+
+	/** Accepts pending connections, one failing to accept or to set up is closed alone. */
+	private void accept(){
+		while(true){
+			SocketChannel channel;
+			try {
+				channel = server.accept();
+			} catch (IOException e){
+				// out of file descriptors or the like, pending clients wait until a connection closes
+				pauseAccept(true);
+				return;
+			}
+			if(channel == null) return;
+			try {
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			} catch (IOException e){
+				closeQuietly(channel);
+				continue;
+			}
+			Connection connection = new Connection(channel, buffers.acquire(), buffers.acquire(), bufferSize / ORDER_LENGTH);
+			try {
+				connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			} catch (ClosedChannelException e){
+				closeQuietly(channel);
+				buffers.release(connection.in);
+				buffers.release(connection.out);
+				continue;
+			}
+			connections.add(connection);
+		}
+	}
+
+	/** @return false if the client closed the connection */
+	private boolean read(Connection connection) throws IOException {
+		return connection.channel.read(connection.in) >= 0;
+	}
+
+	/** Processes buffered orders and writes their acks, again as long as the acks written leave room for more. */
+	private void serve(Connection connection) throws IOException {
+		do {
+			process(connection);
+			flush(connection);
+		} while(connection.in.position() >= ORDER_LENGTH && connection.out.position() == 0);
+	}
+
+	/** Decodes every complete order that there is room to ack, offers them to the exchange and writes the acks. */
+	private void process(Connection connection){
+		ByteBuffer in = connection.in;
+		ByteBuffer out = connection.out;
+		int orders = Math.min(in.position() / ORDER_LENGTH, out.remaining() / ACK_LENGTH);
+		if(orders == 0) return;
+		OrderBatch batch = connection.batch.clear();
+		long[] orderIds = connection.orderIds;
+		int[] acks = connection.acks;
+		int[] positions = connection.positions;
+		for(int i = 0; i < orders; i++){
+			int offset = i * ORDER_LENGTH;
+			orderIds[i] = in.getLong(offset + ORDER_ID);
+			int stockId = in.getInt(offset + STOCK_ID);
+			int side = in.getInt(offset + SIDE);
+			if(stockId >= 0 && stockId < stocks.length && (side == BUY || side == SELL)){
+				int quantity = in.getInt(offset + QUANTITY);
+				long price = in.getLong(offset + PRICE);
+				positions[batch.size()] = i;
+				if(side == BUY) batch.buy(stocks[stockId], quantity, price);
+				else batch.sell(stocks[stockId], quantity, price);
+			} else {
+				acks[i] = INVALID;
+			}
+		}
+		if(!batch.isEmpty()){
+			OfferResult[] results = connection.results;
+			try {
+				exchange.offer(batch, results);
+				for(int j = 0; j < batch.size(); j++){
+					acks[positions[j]] = resultOf(results[j]);
+				}
+			} catch (StockExchangeClosedException e){
+				for(int j = 0; j < batch.size(); j++){
+					acks[positions[j]] = CLOSED;
+				}
+			}
+		}
+		for(int i = 0; i < orders; i++){
+			putAck(out, orderIds[i], acks[i]);
+		}
+		in.flip();
+		in.position(orders * ORDER_LENGTH);
+		in.compact();
+		ordersReceived.addAndGet(orders);
+	}
+
+	private void flush(Connection connection) throws IOException {
+		ByteBuffer out = connection.out;
+		if(out.position() > 0){
+			out.flip();
+			connection.channel.write(out);
+			out.compact();
+		}
+	}
+
+	private void close(Connection connection){
+		if(connections.remove(connection)){
+			connection.key.cancel();
+			closeQuietly(connection.channel);
+			buffers.release(connection.in);
+			buffers.release(connection.out);
+			pauseAccept(false);
+		}
+	}
+
+	private void pauseAccept(boolean paused){
+		SelectionKey key = server.keyFor(selector);
+		if(key != null && key.isValid()) key.interestOps(paused ? 0 : SelectionKey.OP_ACCEPT);
+	}
+
+	private static void closeQuietly(java.io.Closeable closeable){
+		if(closeable != null){
+			try {
+				closeable.close();
+			} catch (IOException e){
+				// nothing more to release
+			}
+		}
+	}
+
+	private static final class Connection {
+
+		final SocketChannel channel;
+		/** received orders from 0 to position */
+		final ByteBuffer in;
+		/** acks to send from 0 to position */
+		final ByteBuffer out;
+		final OrderBatch batch;
+		final OfferResult[] results;
+		final long[] orderIds;
+		final int[] acks;
+		/** order index of each batch entry */
+		final int[] positions;
+		SelectionKey key;
+		/** the client sent its last order, nothing more is read */
+		boolean ended = false;
+
+		Connection(SocketChannel channel, ByteBuffer in, ByteBuffer out, int maxOrders){
+			this.channel = channel;
+			this.in = in;
+			this.out = out;
+			this.batch = new OrderBatch(maxOrders);
+			this.results = new OfferResult[maxOrders];
+			this.orderIds = new long[maxOrders];
+			this.acks = new int[maxOrders];
+			this.positions = new int[maxOrders];
+		}
+
+		/** Writes pending acks when possible, reads orders only while there is room to ack them. */
+		void updateInterest(){
+			int interest = 0;
+			if(out.position() > 0) interest |= SelectionKey.OP_WRITE;
+			if(!ended && in.hasRemaining() && out.remaining() >= ACK_LENGTH) interest |= SelectionKey.OP_READ;
+			key.interestOps(interest);
+		}
+
+		/** @return true if no complete order waits to be acked and no ack waits to be written */
+		boolean drained(){
+			return in.position() < ORDER_LENGTH && out.position() == 0;
+		}
+	}
+
+}
@@ -3,6 +3,10 @@ package me.arturopala.stockexchange.gbce;
 import me.arturopala.stockexchange.api.*;
 import me.arturopala.stockexchange.util.ParseUtils;
 import me.arturopala.stockexchange.simpleimpl.SimpleStockExchange;
+import me.arturopala.stockexchange.matchingimpl.MatchingStockExchange;
+import me.arturopala.stockexchange.ringimpl.RingStockExchange;
+import me.arturopala.stockexchange.journal.Journal;
+import me.arturopala.stockexchange.journal.SnapshotStore;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Collections;
@@ -24,6 +28,28 @@ public class GBCE {
 
 	public static final Set<Stock> LISTING;
 
+	public enum Engine {
+		SIMPLE, MATCHING, RING
+	}
+
+	public static StockExchange stockExchange(Engine engine, Clock clock, Duration priceCalculationPeriod, ActorSystem actorSystem){
+		return stockExchange(engine, clock, priceCalculationPeriod, actorSystem, Journal.NONE, SnapshotStore.NONE);
+	}
+
+	public static StockExchange stockExchange(Engine engine, Clock clock, Duration priceCalculationPeriod, ActorSystem actorSystem, Journal journal, SnapshotStore snapshots){
+		ExchangeOptions options = new ExchangeOptions.Builder()
+			.clock(clock)
+			.priceCalculationPeriod(priceCalculationPeriod)
+			.journal(journal)
+			.snapshots(snapshots)
+			.build();
+		switch(engine){
+			case MATCHING: return new MatchingStockExchange(LISTING, actorSystem, options);
+			case RING: return new RingStockExchange(LISTING, options);
+			default: return new SimpleStockExchange(LISTING, actorSystem, options);
+		}
+	}
+
 	public static StockExchange simpleStockExchange(){
 		return new SimpleStockExchange(LISTING);
 	}
@@ -32,6 +58,22 @@ public class GBCE {
 		return new SimpleStockExchange(LISTING, clock, priceCalculationPeriod, actorSystem);
 	}
 
+	public static StockExchange matchingStockExchange(){
+		return new MatchingStockExchange(LISTING);
+	}
+
+	public static StockExchange matchingStockExchange(Clock clock, Duration priceCalculationPeriod, ActorSystem actorSystem){
+		return new MatchingStockExchange(LISTING, clock, priceCalculationPeriod, actorSystem);
+	}
+
+	public static StockExchange ringStockExchange(){
+		return new RingStockExchange(LISTING);
+	}
+
+	public static StockExchange ringStockExchange(Clock clock, Duration priceCalculationPeriod){
+		return new RingStockExchange(LISTING, clock, priceCalculationPeriod);
+	}
+
 	static {
 		String csvFilePath = "/gbce-listing.txt";
 		InputStream inputStream = GBCE.class.getResourceAsStream(csvFilePath);
@@ -0,0 +1,341 @@
+package me.arturopala.stockexchange.history;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.api.TradeSummary;
+import me.arturopala.stockexchange.simpleimpl.TradeWindow;
+import me.arturopala.stockexchange.util.FixedMoney;
+
+/**
+ * Append-only history of the trades of one stock, kept off the heap in fixed-size blocks
+ * of columns: timestamp, price, quantity and the running totals of quantity and value.
+ * Blocks are direct buffers or, when a directory is given, memory-mapped files.
+ * The first direct block holds only {@link #FIRST_BLOCK_CAPACITY} trades and doubles as it fills,
+ * up to the block size, so a listing of many rarely traded stocks reserves little memory.
+ * Every block knows its first and last timestamp and its price range, so a range query
+ * finds its bounds with two binary searches, takes totals as a difference of running
+ * totals and scans trades only in the two edge blocks.
+ * Only the newest blocks, up to the given budget, are retained: when a new block is needed
+ * the oldest one is dropped and queries cover the retained trades only.
+ * Meant to have a single writer; queries may run concurrently with it.
+ */
+public final class TradeHistory {
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 12;
+	public static final int DEFAULT_MAX_BLOCKS = 256;
+	public static final int FIRST_BLOCK_CAPACITY = 16;
+
+	private static final int TRADE_BYTES = 8 + 8 + 4 + 8 + 8;
+	private static final Block[] NO_BLOCKS = new Block[0];
+
+	private final int blockSize;
+	private final int maxBlocks;
+	private final Path directory;
+	private final String name;
+
+	private volatile Block[] blocks = NO_BLOCKS;
+	private volatile long size = 0;
+
+	private long lastTimestamp = Long.MIN_VALUE;
+	private long totalQuantity = 0;
+	private long totalValue = 0;
+
+	/** History in direct memory. */
+	public TradeHistory(){
+		this(DEFAULT_BLOCK_SIZE, DEFAULT_MAX_BLOCKS, null, null);
+	}
+
+	public TradeHistory(int blockSize, Path directory, String name){
+		this(blockSize, DEFAULT_MAX_BLOCKS, directory, name);
+	}
+
+	/**
+	 * @param maxBlocks how many of the newest blocks are retained
+	 * @param directory where block files are mapped, or null to use direct memory.
+	 * Files are deleted as soon as they are mapped: the history lives as long as the process.
+	 */
+	public TradeHistory(int blockSize, int maxBlocks, Path directory, String name){
+		if(blockSize < 1 || blockSize > Integer.MAX_VALUE / TRADE_BYTES) throw new IllegalArgumentException("Block size must be positive and fit in a buffer");
+		if(maxBlocks < 1) throw new IllegalArgumentException("At least one block must be retained");
+		this.blockSize = blockSize;
+		this.maxBlocks = maxBlocks;
+		this.directory = directory;
+		this.name = name;
+	}
+
+	public static TradeHistory of(Stock stock, Path directory){
+		if(directory == null) return new TradeHistory();
+		try {
+			return new TradeHistory(DEFAULT_BLOCK_SIZE, Files.createDirectories(directory), URLEncoder.encode(stock.symbol(), "UTF-8")+"-"+stock.type());
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Appends trade, with timestamp in microseconds. Trade older than the newest one
+	 * is recorded at the newest timestamp, so that the columns stay sorted.
+	 */
+	public void add(long timestamp, long price, int quantity){
+		long newTotalQuantity = Math.addExact(totalQuantity, quantity);
+		long newTotalValue = Math.addExact(totalValue, FixedMoney.multiply(price, quantity));
+		long index = size;
+		Block[] current = blocks;
+		int offset = (int)(index % blockSize);
+		if(offset == 0){
+			int retained = Math.min(current.length, maxBlocks - 1);
+			Block[] next = new Block[retained + 1];
+			System.arraycopy(current, current.length - retained, next, 0, retained);
+			next[retained] = allocate(index);
+			current = next;
+			blocks = current;
+		} else if(offset == current[current.length - 1].capacity){
+			// readers of the old array keep the old block, which holds every trade they counted
+			int capacity = Math.min(blockSize, 2 * offset);
+			Block[] next = current.clone();
+			next[next.length - 1] = current[current.length - 1].resize(ByteBuffer.allocateDirect(capacity * TRADE_BYTES), capacity, offset);
+			current = next;
+			blocks = current;
+		}
+		Block block = current[current.length - 1];
+		if(timestamp < lastTimestamp) timestamp = lastTimestamp;
+		block.set(offset, timestamp, price, quantity, newTotalQuantity, newTotalValue);
+		totalQuantity = newTotalQuantity;
+		totalValue = newTotalValue;
+		lastTimestamp = timestamp;
+		size = index + 1;
+	}
+
+	/** @return false if adding the trade would overflow the running totals */
+	public boolean canAdd(long price, int quantity){
+		try {
+			return canAddTotals(FixedMoney.multiply(price, quantity), quantity);
+		} catch (ArithmeticException e){
+			return false;
+		}
+	}
+
+	/** @return false if adding trades of the total value and quantity would overflow the running totals */
+	public boolean canAddTotals(long value, long quantity){
+		try {
+			Math.addExact(totalQuantity, quantity);
+			Math.addExact(totalValue, value);
+			return true;
+		} catch (ArithmeticException e){
+			return false;
+		}
+	}
+
+	public long size(){
+		return size;
+	}
+
+	public int blocks(){
+		return blocks.length;
+	}
+
+	/** @return bytes of the retained blocks */
+	public long reservedBytes(){
+		long trades = 0;
+		for(Block block: blocks){
+			trades += block.capacity;
+		}
+		return trades * TRADE_BYTES;
+	}
+
+	public TradeSummary summary(Instant from, Instant to){
+		return summary(TradeWindow.timestampOf(from), TradeWindow.timestampOf(to), from, to);
+	}
+
+	/** @return summary of the retained trades with timestamp in [from, to), in microseconds */
+	public TradeSummary summary(long from, long to){
+		return summary(from, to, instantOf(from), instantOf(to));
+	}
+
+	private TradeSummary summary(long from, long to, Instant fromInstant, Instant toInstant){
+		long count = size;
+		Block[] current = blocks;
+		if(to <= from || count == 0) return TradeSummary.empty(fromInstant, toInstant);
+		long start = current[0].start;
+		// the writer has dropped all blocks holding the counted trades meanwhile
+		if(count <= start) return TradeSummary.empty(fromInstant, toInstant);
+		long first = indexOf(from, current, start, count);
+		long end = indexOf(to, current, start, count);
+		if(first == end) return TradeSummary.empty(fromInstant, toInstant);
+		long quantity = totalQuantity(end - 1, current, start) - (first > start ? totalQuantity(first - 1, current, start) : current[0].baseQuantity);
+		long value = totalValue(end - 1, current, start) - (first > start ? totalValue(first - 1, current, start) : current[0].baseValue);
+		long low = Long.MAX_VALUE;
+		long high = Long.MIN_VALUE;
+		int firstBlock = (int)((first - start) / blockSize);
+		for(int b = firstBlock, last = (int)((end - 1 - start) / blockSize); b <= last; b++){
+			Block block = current[b];
+			int fromOffset = b == firstBlock ? (int)(first % blockSize) : 0;
+			int toOffset = b == last ? (int)((end - 1) % blockSize) + 1 : blockSize;
+			if(fromOffset == 0 && toOffset == blockSize){
+				low = Math.min(low, block.low);
+				high = Math.max(high, block.high);
+			} else {
+				for(int i = fromOffset; i < toOffset; i++){
+					long price = block.price(i);
+					if(price < low) low = price;
+					if(price > high) high = price;
+				}
+			}
+		}
+		return new TradeSummary(fromInstant, toInstant, end - first, quantity, FixedMoney.toMoney(value),
+			FixedMoney.toMoney(average(value, quantity)), FixedMoney.toMoney(low), FixedMoney.toMoney(high));
+	}
+
+	// same half-up rounding as FixedMoney.divide, for quantities beyond int
+	private static long average(long value, long quantity){
+		if(quantity == 0) return FixedMoney.UNDEFINED;
+		long quotient = value / quantity;
+		long remainder = value % quantity;
+		return (remainder << 1) >= quantity ? quotient + 1 : quotient;
+	}
+
+	/** @return index of the first of count trades, retained from start, with timestamp not lower than given */
+	private long indexOf(long timestamp, Block[] current, long start, long count){
+		int filled = (int)((count - start + blockSize - 1) / blockSize);
+		int low = 0;
+		int high = filled - 1;
+		while(low <= high){
+			int mid = (low + high) >>> 1;
+			if(current[mid].firstTimestamp < timestamp) low = mid + 1;
+			else high = mid - 1;
+		}
+		if(low == 0) return start;
+		Block block = current[low - 1];
+		int length = (int) Math.min(blockSize, count - block.start);
+		if(length == blockSize && block.lastTimestamp < timestamp) return block.start + blockSize;
+		int from = 0;
+		int to = length - 1;
+		while(from <= to){
+			int mid = (from + to) >>> 1;
+			if(block.timestamp(mid) < timestamp) from = mid + 1;
+			else to = mid - 1;
+		}
+		return block.start + from;
+	}
+
+	private long totalQuantity(long index, Block[] current, long start){
+		return current[(int)((index - start) / blockSize)].totalQuantity((int)(index % blockSize));
+	}
+
+	private long totalValue(long index, Block[] current, long start){
+		return current[(int)((index - start) / blockSize)].totalValue((int)(index % blockSize));
+	}
+
+	private Block allocate(long start){
+		int bytes = blockSize * TRADE_BYTES;
+		if(directory == null){
+			int capacity = start == 0 ? Math.min(blockSize, FIRST_BLOCK_CAPACITY) : blockSize;
+			return new Block(ByteBuffer.allocateDirect(capacity * TRADE_BYTES), capacity, start, totalQuantity, totalValue);
+		}
+		Path path = directory.resolve(name+"-"+(start / blockSize)+".bin");
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)){
+			return new Block(channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes), blockSize, start, totalQuantity, totalValue);
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static Instant instantOf(long timestamp){
+		return Instant.ofEpochSecond(Math.floorDiv(timestamp, 1000000L), Math.floorMod(timestamp, 1000000L) * 1000L);
+	}
+
+	/**
+	 * Columns of one block, starting at the given trade index with the running totals of all trades before it.
+	 * Summary fields are read only when the block is full.
+	 */
+	private static final class Block {
+
+		final ByteBuffer buffer;
+		final int capacity;
+		final long start;
+		final long baseQuantity;
+		final long baseValue;
+		final int prices;
+		final int quantities;
+		final int totalQuantities;
+		final int totalValues;
+
+		long firstTimestamp = Long.MAX_VALUE;
+		long lastTimestamp = Long.MIN_VALUE;
+		long low = Long.MAX_VALUE;
+		long high = Long.MIN_VALUE;
+
+		Block(ByteBuffer buffer, int capacity, long start, long baseQuantity, long baseValue){
+			this.buffer = buffer;
+			this.capacity = capacity;
+			this.start = start;
+			this.baseQuantity = baseQuantity;
+			this.baseValue = baseValue;
+			this.prices = capacity * 8;
+			this.quantities = capacity * 16;
+			this.totalQuantities = capacity * 20;
+			this.totalValues = capacity * 28;
+		}
+
+		void set(int offset, long timestamp, long price, int quantity, long totalQuantity, long totalValue){
+			buffer.putLong(offset << 3, timestamp);
+			buffer.putLong(prices + (offset << 3), price);
+			buffer.putInt(quantities + (offset << 2), quantity);
+			buffer.putLong(totalQuantities + (offset << 3), totalQuantity);
+			buffer.putLong(totalValues + (offset << 3), totalValue);
+			if(offset == 0) firstTimestamp = timestamp;
+			lastTimestamp = timestamp;
+			if(price < low) low = price;
+			if(price > high) high = price;
+		}
+
+		/** @return copy of the first length trades in a buffer of the given capacity */
+		Block resize(ByteBuffer target, int capacity, int length){
+			Block block = new Block(target, capacity, start, baseQuantity, baseValue);
+			copy(0, block, 0, length << 3);
+			copy(prices, block, block.prices, length << 3);
+			copy(quantities, block, block.quantities, length << 2);
+			copy(totalQuantities, block, block.totalQuantities, length << 3);
+			copy(totalValues, block, block.totalValues, length << 3);
+			block.firstTimestamp = firstTimestamp;
+			block.lastTimestamp = lastTimestamp;
+			block.low = low;
+			block.high = high;
+			return block;
+		}
+
+		private void copy(int from, Block block, int to, int bytes){
+			ByteBuffer source = buffer.duplicate();
+			source.limit(from + bytes).position(from);
+			ByteBuffer target = block.buffer.duplicate();
+			target.position(to);
+			target.put(source);
+		}
+
+		long timestamp(int offset){
+			return buffer.getLong(offset << 3);
+		}
+
+		long price(int offset){
+			return buffer.getLong(prices + (offset << 3));
+		}
+
+		long totalQuantity(int offset){
+			return buffer.getLong(totalQuantities + (offset << 3));
+		}
+
+		long totalValue(int offset){
+			return buffer.getLong(totalValues + (offset << 3));
+		}
+	}
+
+}
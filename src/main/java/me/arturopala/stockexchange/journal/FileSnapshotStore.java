@@ -0,0 +1,156 @@
+package me.arturopala.stockexchange.journal;
+
+import java.io.*;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.simpleimpl.TickerSnapshot;
+
+/**
+ * Keeps the latest snapshot of each stock in its own file, and the checkpoint in another.
+ * A new snapshot is written to a temporary file and atomically moved over the previous one,
+ * so a crash while saving leaves the older snapshot in place. Files failing the checksum are ignored.
+ */
+public class FileSnapshotStore implements SnapshotStore {
+
+	public static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(1);
+
+	private static final int MAGIC = 0x53534E50;
+	private static final int VERSION = 1;
+	private static final int CHECKPOINT_MAGIC = 0x53434B50;
+	private static final String CHECKPOINT = "checkpoint.bin";
+
+	private final Path directory;
+	private final Duration interval;
+
+	public FileSnapshotStore(Path directory) throws IOException {
+		this(directory, DEFAULT_INTERVAL);
+	}
+
+	public FileSnapshotStore(Path directory, Duration interval) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.interval = interval;
+	}
+
+	@Override
+	public Optional<TickerSnapshot> load(Stock stock){
+		Path path = path(stock);
+		if(!Files.exists(path)) return Optional.empty();
+		CRC32 checksum = new CRC32();
+		try(DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(Files.newInputStream(path)), checksum))){
+			if(in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(stock.symbol())) return Optional.empty();
+			long journalPosition = in.readLong();
+			int quantity = in.readInt();
+			long accumulated = in.readLong();
+			long volume = in.readLong();
+			int size = in.readInt();
+			long[] timestamps = new long[size];
+			long[] prices = new long[size];
+			int[] quantities = new int[size];
+			for(int i = 0; i < size; i++){
+				timestamps[i] = in.readLong();
+				prices[i] = in.readLong();
+				quantities[i] = in.readInt();
+			}
+			long expected = checksum.getValue();
+			if(in.readLong() != expected) return Optional.empty();
+			return Optional.of(new TickerSnapshot(journalPosition, quantity, accumulated, volume, timestamps, prices, quantities));
+		} catch (IOException | RuntimeException e){
+			return Optional.empty();
+		}
+	}
+
+	@Override
+	public boolean save(Stock stock, TickerSnapshot snapshot){
+		Path path = path(stock);
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		CRC32 checksum = new CRC32();
+		try {
+			try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+				DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)), checksum))){
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(stock.symbol());
+				out.writeLong(snapshot.journalPosition);
+				out.writeInt(snapshot.quantity);
+				out.writeLong(snapshot.accumulated);
+				out.writeLong(snapshot.volume);
+				out.writeInt(snapshot.size());
+				for(int i = 0; i < snapshot.size(); i++){
+					out.writeLong(snapshot.timestamps[i]);
+					out.writeLong(snapshot.prices[i]);
+					out.writeInt(snapshot.quantities[i]);
+				}
+				out.writeLong(checksum.getValue());
+				out.flush();
+				channel.force(false);
+			}
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} catch (IOException e){
+			return false;
+		}
+	}
+
+	@Override
+	public long checkpoint(){
+		Path path = directory.resolve(CHECKPOINT);
+		if(!Files.exists(path)) return 0L;
+		CRC32 checksum = new CRC32();
+		try(DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(Files.newInputStream(path)), checksum))){
+			if(in.readInt() != CHECKPOINT_MAGIC || in.readInt() != VERSION) return 0L;
+			long journalPosition = in.readLong();
+			long expected = checksum.getValue();
+			return in.readLong() == expected ? journalPosition : 0L;
+		} catch (IOException e){
+			return 0L;
+		}
+	}
+
+	@Override
+	public boolean checkpoint(long journalPosition){
+		Path path = directory.resolve(CHECKPOINT);
+		Path temporary = path.resolveSibling(CHECKPOINT + ".tmp");
+		CRC32 checksum = new CRC32();
+		try {
+			try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+				DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)), checksum))){
+				out.writeInt(CHECKPOINT_MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(journalPosition);
+				out.writeLong(checksum.getValue());
+				out.flush();
+				channel.force(false);
+			}
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} catch (IOException e){
+			return false;
+		}
+	}
+
+	@Override
+	public Duration interval(){
+		return interval;
+	}
+
+	public Path directory(){
+		return directory;
+	}
+
+	private Path path(Stock stock){
+		try {
+			return directory.resolve("snapshot-" + URLEncoder.encode(stock.symbol(), "UTF-8") + "-" + stock.type() + ".bin");
+		} catch (UnsupportedEncodingException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
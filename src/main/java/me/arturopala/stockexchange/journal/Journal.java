@@ -0,0 +1,74 @@
+package me.arturopala.stockexchange.journal;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.simpleimpl.TradeBatch;
+import me.arturopala.stockexchange.simpleimpl.TradeType;
+
+public interface Journal {
+
+	long FAILED = -1L;
+
+	int register(Stock stock);
+
+	/** @return journal position just after the appended record or {@link #FAILED} */
+	long append(int stockId, TradeType type, long price, int quantity, long timestamp);
+
+	/**
+	 * Appends the trades of the batch flagged as included, all with the timestamp,
+	 * waiting for them to be durable at most once.
+	 * @return journal position just after the last appended record or {@link #FAILED}
+	 */
+	long append(int stockId, TradeBatch batch, long timestamp, boolean[] included);
+
+	void flush();
+
+	/** @return journal position just after the last appended record */
+	long position();
+
+	/** Lets the journal reuse segments whose records all end at or before the position, as snapshots cover them. */
+	void truncate(long position);
+
+	/** @return segment files to replay, ordered by sequence */
+	List<Path> segments();
+
+	/** @return append and fsync latencies of the journal */
+	JournalStats stats();
+
+	Journal NONE = new Journal(){
+
+		public int register(Stock stock){
+			return 0;
+		}
+
+		public long append(int stockId, TradeType type, long price, int quantity, long timestamp){
+			return 0L;
+		}
+
+		public long append(int stockId, TradeBatch batch, long timestamp, boolean[] included){
+			return 0L;
+		}
+
+		public void flush(){}
+
+		public long position(){
+			return 0L;
+		}
+
+		public void truncate(long position){}
+
+		public List<Path> segments(){
+			return Collections.<Path>emptyList();
+		}
+
+		public JournalStats stats(){
+			return STATS;
+		}
+	};
+
+	/** never recorded into, stats of {@link #NONE} */
+	JournalStats STATS = new JournalStats();
+
+}
@@ -0,0 +1,40 @@
+package me.arturopala.stockexchange.journal;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public final class JournalReader {
+
+	/** Replays every complete trade record of the journal directory in append order. */
+	public static void replay(Path directory, JournalRecordHandler handler) throws IOException {
+		replay(segments(directory), 0L, handler);
+	}
+
+	/** Replays trade records of the segments ending after the given journal position. */
+	public static void replay(List<Path> segments, long fromPosition, JournalRecordHandler handler) throws IOException {
+		for(Path segment: segments){
+			replay(segment, fromPosition, handler);
+		}
+	}
+
+	public static void replay(Path segment, long fromPosition, JournalRecordHandler handler) throws IOException {
+		JournalSegment.read(segment, fromPosition, handler);
+	}
+
+	/** @return journal segment files of the directory ordered by sequence */
+	public static List<Path> segments(Path directory) throws IOException {
+		if(!Files.isDirectory(directory)) return Collections.<Path>emptyList();
+		try(Stream<Path> files = Files.list(directory)){
+			return files
+				.filter(path -> JournalSegment.sequenceOf(path) >= 0)
+				.sorted(Comparator.comparingLong(JournalSegment::sequenceOf))
+				.collect(Collectors.toList());
+		}
+	}
+
+	private JournalReader(){}
+
+}
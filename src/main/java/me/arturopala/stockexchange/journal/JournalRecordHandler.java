@@ -0,0 +1,12 @@
+package me.arturopala.stockexchange.journal;
+
+import me.arturopala.stockexchange.api.StockType;
+import me.arturopala.stockexchange.simpleimpl.TradeType;
+
+@FunctionalInterface
+public interface JournalRecordHandler {
+
+	/** @param position journal position just after the record */
+	void onTrade(String symbol, StockType stockType, TradeType type, long price, int quantity, long timestamp, long position);
+
+}
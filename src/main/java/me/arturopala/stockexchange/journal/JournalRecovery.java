@@ -0,0 +1,111 @@
+package me.arturopala.stockexchange.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.api.StockType;
+import me.arturopala.stockexchange.simpleimpl.TickerState;
+import me.arturopala.stockexchange.simpleimpl.TradeWindow;
+
+/**
+ * Restores ticker states on startup from the latest snapshot of each stock
+ * and the journal records appended after it, so the work done is bounded by
+ * snapshot size and journal tail rather than the whole trading history.
+ * The journal is replayed from the checkpoint of the snapshot store, so stocks
+ * that did not trade for a long time, or never, do not hold recovery back.
+ * Snapshots are loaded and journal segments decoded in parallel, then each
+ * stock applies its own tail in parallel with the others.
+ */
+public final class JournalRecovery {
+
+	/**
+	 * @param windowStart timestamp of the oldest trade still inside price calculation period
+	 * @return stocks whose state was restored from a snapshot or the journal
+	 */
+	public static Set<Stock> recover(Map<Stock, TickerState> states, SnapshotStore snapshots, Journal journal, long windowStart){
+		Set<Stock> restored = states.entrySet().parallelStream()
+			.filter(entry -> snapshots.load(entry.getKey()).map(snapshot -> {
+				entry.getValue().restore(snapshot);
+				return true;
+			}).orElse(false))
+			.map(Map.Entry::getKey)
+			.collect(Collectors.toCollection(HashSet::new));
+		long fromPosition = replayPosition(states, snapshots);
+		// no journaled trade of a stock up to its own snapshot or the checkpoint is missing from its state
+		for(TickerState state: states.values()){
+			state.saved(Math.max(fromPosition, state.journalPosition()));
+		}
+		Map<String, Stock> stocks = new HashMap<>();
+		for(Stock stock: states.keySet()){
+			stocks.put(key(stock.symbol(), stock.type()), stock);
+		}
+		List<Map<Stock, Tail>> tails = journal.segments().parallelStream()
+			.map(segment -> read(segment, fromPosition, stocks, states))
+			.collect(Collectors.toList());
+		Set<Stock> replayed = states.entrySet().parallelStream()
+			.filter(entry -> {
+				Stock stock = entry.getKey();
+				TickerState state = entry.getValue();
+				boolean applied = false;
+				for(Map<Stock, Tail> segmentTails: tails){
+					Tail tail = segmentTails.get(stock);
+					if(tail != null){
+						for(int i = 0; i < tail.trades.size(); i++){
+							state.add(tail.trades.timestamp(i), tail.trades.price(i), tail.trades.quantity(i));
+						}
+						state.journalPosition(tail.position);
+						state.unsaved();
+						applied = true;
+					}
+				}
+				state.expire(windowStart);
+				return applied;
+			})
+			.map(Map.Entry::getKey)
+			.collect(Collectors.toCollection(HashSet::new));
+		restored.addAll(replayed);
+		return restored;
+	}
+
+	/** @return journal position to replay from once the snapshots are restored */
+	public static long replayPosition(Map<Stock, TickerState> states, SnapshotStore snapshots){
+		long oldestSnapshot = states.values().stream().mapToLong(TickerState::journalPosition).min().orElse(0L);
+		return Math.max(snapshots.checkpoint(), oldestSnapshot);
+	}
+
+	private static Map<Stock, Tail> read(Path segment, long fromPosition, Map<String, Stock> stocks, Map<Stock, TickerState> states){
+		Map<Stock, Tail> tails = new HashMap<>();
+		try {
+			JournalReader.replay(segment, fromPosition, (symbol, stockType, type, price, quantity, timestamp, position) -> {
+				Stock stock = stocks.get(key(symbol, stockType));
+				if(stock != null && position > states.get(stock).journalPosition()){
+					Tail tail = tails.get(stock);
+					if(tail == null){
+						tail = new Tail();
+						tails.put(stock, tail);
+					}
+					tail.trades.add(timestamp, price, quantity);
+					tail.position = position;
+				}
+			});
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+		return tails;
+	}
+
+	private static String key(String symbol, StockType stockType){
+		return symbol + "-" + stockType;
+	}
+
+	private static final class Tail {
+		final TradeWindow trades = new TradeWindow(16);
+		long position;
+	}
+
+	private JournalRecovery(){}
+
+}
@@ -0,0 +1,189 @@
+package me.arturopala.stockexchange.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.BitSet;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.api.StockType;
+import me.arturopala.stockexchange.simpleimpl.TradeType;
+
+/**
+ * Memory-mapped journal file. Layout: 16 byte header (magic, version, sequence)
+ * followed by records, each starting with a kind byte:
+ * <pre>
+ * STOCK: kind(1) stockId(4) stockType(1) symbolLength(2) symbol(n)
+ * BUY|SELL: kind(1) stockId(4) quantity(4) price(8) timestamp(8)
+ * </pre>
+ * Stocks are defined once per segment, before their first trade, so each segment
+ * can be read on its own. A record's kind byte is written last, after a zero
+ * end marker behind it, so readers stop at the last complete record. The order
+ * of those writes is not guaranteed to reach the disk, so a recycled file is
+ * zeroed and forced before it gets its new header, and older records can never
+ * be read as part of the new segment.
+ */
+final class JournalSegment {
+
+	static final int MAGIC = 0x534A524E;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 16;
+	static final int TRADE_SIZE = 25;
+
+	static final byte END = 0;
+	static final byte BUY = 1;
+	static final byte SELL = 2;
+	static final byte STOCK = 3;
+
+	private static final String PREFIX = "journal-";
+	private static final String SUFFIX = ".log";
+
+	final long sequence;
+	final Path path;
+
+	private final MappedByteBuffer buffer;
+	private final BitSet defined = new BitSet();
+	private int position = HEADER_SIZE;
+
+	private JournalSegment(long sequence, Path path, MappedByteBuffer buffer){
+		this.sequence = sequence;
+		this.path = path;
+		this.buffer = buffer;
+	}
+
+	static JournalSegment create(Path path, long sequence, int size) throws IOException {
+		return create(path, sequence, size, false);
+	}
+
+	/** @param recycled whether the file holds records of an older segment, which are zeroed first */
+	static JournalSegment create(Path path, long sequence, int size, boolean recycled) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			if(recycled){
+				int i = 0;
+				for(; i + 8 <= size; i += 8) buffer.putLong(i, 0L);
+				for(; i < size; i++) buffer.put(i, END);
+				buffer.force();
+			}
+			buffer.put(HEADER_SIZE, END);
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, VERSION);
+			buffer.putLong(8, sequence);
+			return new JournalSegment(sequence, path, buffer);
+		}
+	}
+
+	static Path path(Path directory, long sequence){
+		return directory.resolve(String.format("%s%019d%s", PREFIX, sequence, SUFFIX));
+	}
+
+	static long sequenceOf(Path path){
+		String name = path.getFileName().toString();
+		if(!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) return -1;
+		try {
+			return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+		} catch (NumberFormatException e){
+			return -1;
+		}
+	}
+
+	static int stockRecordSize(Stock stock){
+		return 8 + stock.symbol().getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	boolean hasRoom(int size){
+		return position + size + 1 <= buffer.capacity();
+	}
+
+	boolean isDefined(int stockId){
+		return defined.get(stockId);
+	}
+
+	int position(){
+		return position;
+	}
+
+	void writeStock(int stockId, Stock stock){
+		byte[] symbol = stock.symbol().getBytes(StandardCharsets.UTF_8);
+		int start = position;
+		buffer.putInt(start + 1, stockId);
+		buffer.put(start + 5, (byte) stock.type().ordinal());
+		buffer.putShort(start + 6, (short) symbol.length);
+		for(int i = 0; i < symbol.length; i++){
+			buffer.put(start + 8 + i, symbol[i]);
+		}
+		commit(start, 8 + symbol.length, STOCK);
+		defined.set(stockId);
+	}
+
+	void writeTrade(int stockId, TradeType type, long price, int quantity, long timestamp){
+		int start = position;
+		buffer.putInt(start + 1, stockId);
+		buffer.putInt(start + 5, quantity);
+		buffer.putLong(start + 9, price);
+		buffer.putLong(start + 17, timestamp);
+		commit(start, TRADE_SIZE, type == TradeType.BUY ? BUY : SELL);
+	}
+
+	void force(){
+		buffer.force();
+	}
+
+	private void commit(int start, int size, byte kind){
+		if(start + size < buffer.capacity()) buffer.put(start + size, END);
+		buffer.put(start, kind);
+		position = start + size;
+	}
+
+	/** Reads all complete records of the segment file ending after the given journal position. */
+	static void read(Path path, long fromPosition, JournalRecordHandler handler) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			long size = channel.size();
+			long sequence = sequenceOf(path);
+			if(size < HEADER_SIZE || (sequence + 1) * size <= fromPosition) return;
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) return;
+			if(buffer.getLong(8) != sequence) return;
+			long base = sequence * size;
+			String[] symbols = new String[16];
+			StockType[] stockTypes = new StockType[16];
+			int position = HEADER_SIZE;
+			int limit = buffer.capacity();
+			while(position < limit){
+				byte kind = buffer.get(position);
+				if(kind == STOCK && position + 8 <= limit){
+					int stockId = buffer.getInt(position + 1);
+					StockType stockType = StockType.values()[buffer.get(position + 5)];
+					int length = buffer.getShort(position + 6);
+					if(position + 8 + length > limit) return;
+					byte[] symbol = new byte[length];
+					for(int i = 0; i < length; i++){
+						symbol[i] = buffer.get(position + 8 + i);
+					}
+					if(stockId >= symbols.length){
+						int capacity = Math.max(stockId + 1, symbols.length << 1);
+						symbols = Arrays.copyOf(symbols, capacity);
+						stockTypes = Arrays.copyOf(stockTypes, capacity);
+					}
+					symbols[stockId] = new String(symbol, StandardCharsets.UTF_8);
+					stockTypes[stockId] = stockType;
+					position += 8 + length;
+				} else if((kind == BUY || kind == SELL) && position + TRADE_SIZE <= limit){
+					int stockId = buffer.getInt(position + 1);
+					if(stockId < 0 || stockId >= symbols.length || symbols[stockId] == null) return;
+					int record = position;
+					position += TRADE_SIZE;
+					if(base + position > fromPosition){
+						handler.onTrade(symbols[stockId], stockTypes[stockId], kind == BUY ? TradeType.BUY : TradeType.SELL,
+							buffer.getLong(record + 9), buffer.getInt(record + 5), buffer.getLong(record + 17), base + position);
+					}
+				} else {
+					return;
+				}
+			}
+		}
+	}
+
+}
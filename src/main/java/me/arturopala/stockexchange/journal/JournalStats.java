@@ -0,0 +1,55 @@
+package me.arturopala.stockexchange.journal;
+
+import java.util.concurrent.atomic.LongAdder;
+import me.arturopala.stockexchange.metrics.LatencyHistogram;
+
+/**
+ * What durability costs on the trade path: latency of each append call (including waiting
+ * for a covering fsync under SYNC policy) and of each force, in nanoseconds.
+ * Exchanges report the histograms with their own metrics, see
+ * {@link me.arturopala.stockexchange.metrics.ExchangeMetrics#journal(JournalStats)}.
+ */
+public final class JournalStats {
+
+	public final LatencyHistogram append = new LatencyHistogram();
+	public final LatencyHistogram fsync = new LatencyHistogram();
+
+	private final LongAdder appends = new LongAdder();
+	private final LongAdder fsyncs = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+
+	/** Records trades appended at once, which took the nanos in total. */
+	void recordAppends(int trades, long nanos){
+		appends.add(trades);
+		append.record(nanos);
+	}
+
+	void recordFsync(long nanos){
+		fsyncs.increment();
+		fsync.record(nanos);
+	}
+
+	void recordFailure(){
+		failures.increment();
+	}
+
+	/** @return trades appended, a batch counting each of its trades */
+	public long appends(){
+		return appends.sum();
+	}
+
+	public long fsyncs(){
+		return fsyncs.sum();
+	}
+
+	public long failures(){
+		return failures.sum();
+	}
+
+	@Override
+	public String toString(){
+		return "JournalStats(appends="+appends()+", append="+append.snapshot()+", fsyncs="+fsyncs()+", fsync="+fsync.snapshot()
+			+", failures="+failures()+")";
+	}
+
+}
@@ -0,0 +1,48 @@
+package me.arturopala.stockexchange.journal;
+
+import java.time.Duration;
+import java.util.Optional;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.simpleimpl.TickerSnapshot;
+
+public interface SnapshotStore {
+
+	/** @return latest readable snapshot of the stock */
+	Optional<TickerSnapshot> load(Stock stock);
+
+	/** Replaces the latest snapshot of the stock, returns false if it could not be written. */
+	boolean save(Stock stock, TickerSnapshot snapshot);
+
+	/** @return how often tickers should take a snapshot */
+	Duration interval();
+
+	/** @return journal position up to which the saved snapshots hold every trade of every stock, 0 if unknown */
+	long checkpoint();
+
+	/** Replaces the checkpoint, returns false if it could not be written. */
+	boolean checkpoint(long journalPosition);
+
+	SnapshotStore NONE = new SnapshotStore(){
+
+		public Optional<TickerSnapshot> load(Stock stock){
+			return Optional.empty();
+		}
+
+		public boolean save(Stock stock, TickerSnapshot snapshot){
+			return true;
+		}
+
+		public Duration interval(){
+			return Duration.ZERO;
+		}
+
+		public long checkpoint(){
+			return 0L;
+		}
+
+		public boolean checkpoint(long journalPosition){
+			return true;
+		}
+	};
+
+}
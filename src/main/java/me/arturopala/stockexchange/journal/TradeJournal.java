@@ -0,0 +1,353 @@
+package me.arturopala.stockexchange.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.simpleimpl.TradeBatch;
+import me.arturopala.stockexchange.simpleimpl.TradeType;
+
+/**
+ * Append-only trade journal written through memory-mapped segment files.
+ * Appends only copy a record into the mapped segment; a flusher thread forces
+ * the segment to disk, so one fsync covers every trade appended since the last one.
+ * Appends waiting for that fsync do so after releasing the append lock, and a batch
+ * of trades is written under one acquisition of the lock and waits only once.
+ * When a segment is full the journal rolls over to the next one. Once the configured
+ * number of segments is reached it reuses the oldest file, but only if snapshots cover
+ * every record in it, see {@link #truncate(long)}; otherwise it keeps adding segments.
+ */
+public class TradeJournal implements Journal, Closeable {
+
+	public enum FsyncPolicy {
+		/** Never force, leave write-back to the operating system. */
+		NEVER,
+		/** Force in the background every fsync interval, appends do not wait. */
+		ASYNC,
+		/** Appends wait until a group force covers them. */
+		SYNC
+	}
+
+	public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+	public static final int DEFAULT_MAX_SEGMENTS = 16;
+	public static final Duration DEFAULT_FSYNC_INTERVAL = Duration.ofMillis(10);
+
+	private final Path directory;
+	private final int segmentSize;
+	private final int maxSegments;
+	private final FsyncPolicy policy;
+	private final long fsyncIntervalNanos;
+	private final JournalStats stats = new JournalStats();
+
+	/** guards the segments and every write to them */
+	private final ReentrantLock lock = new ReentrantLock();
+	/** guards waiting for fsyncs, never taken before the append lock */
+	private final ReentrantLock flushLock = new ReentrantLock();
+	private final Condition flushRequested = flushLock.newCondition();
+	private final Condition flushCompleted = flushLock.newCondition();
+	private final Map<Stock, Integer> stockIds = new HashMap<>();
+	private final List<Stock> stocks = new ArrayList<>();
+	private final Deque<Path> segments = new ArrayDeque<>();
+	private final Thread flusher;
+
+	private JournalSegment current;
+	private long nextSequence;
+	private volatile long written = 0;
+	private long flushed = 0;
+	private long truncated = 0;
+	private volatile boolean closed = false;
+
+	public TradeJournal(Path directory) throws IOException {
+		this(directory, FsyncPolicy.ASYNC);
+	}
+
+	public TradeJournal(Path directory, FsyncPolicy policy) throws IOException {
+		this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS, policy, DEFAULT_FSYNC_INTERVAL);
+	}
+
+	public TradeJournal(Path directory, int segmentSize, int maxSegments, FsyncPolicy policy, Duration fsyncInterval) throws IOException {
+		if(segmentSize < 1024) throw new IllegalArgumentException("Segment size must be at least 1024 bytes");
+		if(maxSegments < 2) throw new IllegalArgumentException("At least 2 segments required");
+		this.directory = Files.createDirectories(directory);
+		this.segmentSize = segmentSize;
+		this.maxSegments = maxSegments;
+		this.policy = policy;
+		this.fsyncIntervalNanos = fsyncInterval.toNanos();
+		for(Path path: JournalReader.segments(directory)){
+			segments.addLast(path);
+			nextSequence = JournalSegment.sequenceOf(path) + 1;
+		}
+		roll();
+		if(policy != FsyncPolicy.NEVER){
+			flusher = new Thread(this::flushLoop, "stockexchange-journal-flusher");
+			flusher.setDaemon(true);
+			flusher.start();
+		} else {
+			flusher = null;
+		}
+	}
+
+	@Override
+	public int register(Stock stock){
+		lock.lock();
+		try {
+			Integer id = stockIds.get(stock);
+			if(id == null){
+				id = stocks.size();
+				stocks.add(stock);
+				stockIds.put(stock, id);
+			}
+			return id;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long append(int stockId, TradeType type, long price, int quantity, long timestamp){
+		long start = System.nanoTime();
+		long position;
+		lock.lock();
+		try {
+			if(closed){
+				stats.recordFailure();
+				return FAILED;
+			}
+			position = write(stockId, type, price, quantity, timestamp);
+		} catch (IOException | RuntimeException e){
+			stats.recordFailure();
+			return FAILED;
+		} finally {
+			lock.unlock();
+		}
+		if(!awaitDurable(position)) return FAILED;
+		stats.recordAppends(1, System.nanoTime() - start);
+		return position;
+	}
+
+	@Override
+	public long append(int stockId, TradeBatch batch, long timestamp, boolean[] included){
+		long start = System.nanoTime();
+		long position = FAILED;
+		int appended = 0;
+		lock.lock();
+		try {
+			if(closed){
+				stats.recordFailure();
+				return FAILED;
+			}
+			for(int i = 0; i < batch.size; i++){
+				if(included[i]){
+					position = write(stockId, batch.type(i), batch.fixedPrice(i), batch.quantity(i), timestamp);
+					appended++;
+				}
+			}
+		} catch (IOException | RuntimeException e){
+			stats.recordFailure();
+			return FAILED;
+		} finally {
+			lock.unlock();
+		}
+		if(appended == 0 || !awaitDurable(position)) return FAILED;
+		stats.recordAppends(appended, System.nanoTime() - start);
+		return position;
+	}
+
+	/** Copies the trade into the current segment, rolling over when full, called holding the append lock. */
+	private long write(int stockId, TradeType type, long price, int quantity, long timestamp) throws IOException {
+		Stock stock = stocks.get(stockId);
+		int size = JournalSegment.TRADE_SIZE + (current.isDefined(stockId) ? 0 : JournalSegment.stockRecordSize(stock));
+		if(!current.hasRoom(size)){
+			roll();
+		}
+		if(!current.isDefined(stockId)){
+			current.writeStock(stockId, stock);
+		}
+		current.writeTrade(stockId, type, price, quantity, timestamp);
+		long position = position(current);
+		written = position;
+		return position;
+	}
+
+	/** Waits, without holding the append lock, until a force covers the position if the policy asks for it. */
+	private boolean awaitDurable(long position){
+		if(policy != FsyncPolicy.SYNC) return true;
+		flushLock.lock();
+		try {
+			flushRequested.signal();
+			while(flushed < position && !closed){
+				flushCompleted.await();
+			}
+			return true;
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			stats.recordFailure();
+			return false;
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	@Override
+	public void flush(){
+		lock.lock();
+		try {
+			if(!closed){
+				force(current);
+				flushed(written);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long position(){
+		lock.lock();
+		try {
+			return written;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void truncate(long position){
+		lock.lock();
+		try {
+			truncated = Math.max(truncated, position);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void close(){
+		lock.lock();
+		try {
+			if(closed) return;
+			force(current);
+			closed = true;
+			flushed(written);
+		} finally {
+			lock.unlock();
+		}
+		if(flusher != null){
+			try {
+				flusher.join();
+			} catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public Path directory(){
+		return directory;
+	}
+
+	public FsyncPolicy policy(){
+		return policy;
+	}
+
+	@Override
+	public JournalStats stats(){
+		return stats;
+	}
+
+	@Override
+	public List<Path> segments(){
+		lock.lock();
+		try {
+			return new ArrayList<>(segments);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private long position(JournalSegment segment){
+		return segment.sequence * segmentSize + segment.position();
+	}
+
+	private void roll() throws IOException {
+		if(current != null){
+			if(policy != FsyncPolicy.NEVER){
+				force(current);
+				flushed(written);
+			}
+			current = null;
+		}
+		long sequence = nextSequence++;
+		Path path = JournalSegment.path(directory, sequence);
+		while(segments.size() > maxSegments && isTruncated(segments.peekFirst())){
+			Files.deleteIfExists(segments.pollFirst());
+		}
+		boolean recycled = false;
+		if(segments.size() >= maxSegments && isTruncated(segments.peekFirst())){
+			Files.move(segments.pollFirst(), path, StandardCopyOption.REPLACE_EXISTING);
+			recycled = true;
+		}
+		current = JournalSegment.create(path, sequence, segmentSize, recycled);
+		segments.addLast(path);
+		written = Math.max(written, position(current));
+		if(policy == FsyncPolicy.NEVER) flushed(written);
+	}
+
+	/** Records that everything up to the position is forced, waking appends waiting for it and the flusher when closed. */
+	private void flushed(long position){
+		flushLock.lock();
+		try {
+			flushed = Math.max(flushed, position);
+			flushCompleted.signalAll();
+			if(closed) flushRequested.signalAll();
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	private boolean isTruncated(Path segment){
+		return (JournalSegment.sequenceOf(segment) + 1) * segmentSize <= truncated;
+	}
+
+	private void force(JournalSegment segment){
+		long start = System.nanoTime();
+		segment.force();
+		stats.recordFsync(System.nanoTime() - start);
+	}
+
+	private void flushLoop(){
+		try {
+			while(true){
+				flushLock.lock();
+				try {
+					if(closed) return;
+					if(written <= flushed || policy == FsyncPolicy.ASYNC){
+						flushRequested.awaitNanos(fsyncIntervalNanos);
+					}
+					if(closed || written <= flushed) continue;
+				} finally {
+					flushLock.unlock();
+				}
+				JournalSegment segment;
+				long target;
+				lock.lock();
+				try {
+					segment = current;
+					target = written;
+				} finally {
+					lock.unlock();
+				}
+				force(segment);
+				flushed(target);
+			}
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,228 @@
+package me.arturopala.stockexchange.load;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import me.arturopala.stockexchange.api.OrderRejectedException;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.api.StockExchange;
+import me.arturopala.stockexchange.api.StockExchangeClosedException;
+import me.arturopala.stockexchange.metrics.LatencyHistogram;
+import me.arturopala.stockexchange.metrics.MetricsSnapshot;
+
+/**
+ * Drives any {@link StockExchange} with seeded, repeatable order streams, one per worker thread.
+ * In {@link Mode#OPEN} mode orders follow a fixed schedule at the target rate regardless of how
+ * fast the exchange takes them; in {@link Mode#CLOSED} mode each worker sends the next order as
+ * soon as the previous call returns. Latency is measured from the intended send time, so a stalled
+ * call also delays, and is charged to, every order scheduled behind it.
+ */
+public final class LoadGenerator {
+
+	public enum Mode { OPEN, CLOSED }
+
+	private static final long SPIN_THRESHOLD_NANOS = 50000;
+
+	private final Mode mode;
+	private final double rate;
+	private final int threads;
+	private final Duration duration;
+	private final Duration warmup;
+	private final Duration drainTimeout;
+	private final long seed;
+	private final double skew;
+	private final int maxQuantity;
+
+	private LoadGenerator(Builder builder){
+		this.mode = builder.mode;
+		this.rate = builder.rate;
+		this.threads = builder.threads;
+		this.duration = builder.duration;
+		this.warmup = builder.warmup;
+		this.drainTimeout = builder.drainTimeout;
+		this.seed = builder.seed;
+		this.skew = builder.skew;
+		this.maxQuantity = builder.maxQuantity;
+	}
+
+	/** Runs warmup and measured period against the open exchange and waits for it to drain. */
+	public LoadReport run(StockExchange exchange){
+		Stock[] stocks = popularityOrder(exchange, seed);
+		ZipfDistribution distribution = new ZipfDistribution(stocks.length, skew);
+		LatencyHistogram latency = new LatencyHistogram();
+		AtomicLong measured = new AtomicLong();
+		long start = System.nanoTime() + 10000000L;
+		long measureFrom = start + warmup.toNanos();
+		long end = measureFrom + duration.toNanos();
+		Thread[] workers = new Thread[threads];
+		for(int w = 0; w < threads; w++){
+			OrderSource source = new OrderSource(stocks, distribution, seed * 31 + w, maxQuantity);
+			long offset = w;
+			workers[w] = new Thread(() -> {
+				if(mode == Mode.OPEN) openLoop(exchange, source, start + offset * intervalNanos() / threads, measureFrom, end, latency, measured);
+				else closedLoop(exchange, source, start, measureFrom, end, latency, measured);
+			}, "stockexchange-load-"+w);
+			workers[w].start();
+		}
+		waitUntil(measureFrom);
+		MetricsSnapshot before = exchange.metrics();
+		for(Thread worker: workers){
+			try {
+				worker.join();
+			} catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+		}
+		long sentUntil = System.nanoTime();
+		long drainDeadline = sentUntil + drainTimeout.toNanos();
+		MetricsSnapshot engine = exchange.metrics();
+		while(engine.queued > 0 && System.nanoTime() < drainDeadline){
+			LockSupport.parkNanos(1000000);
+			engine = exchange.metrics();
+		}
+		long drained = System.nanoTime();
+		double sendRate = measured.get() * 1e9 / Math.max(1, Math.min(sentUntil, end) - measureFrom);
+		// orders the exchange shed do not count, however quickly they came back
+		long accepted = engine.tradesAccepted - before.tradesAccepted - engine.queued;
+		long rejected = engine.tradesRejected - before.tradesRejected;
+		double throughput = accepted * 1e9 / Math.max(1, drained - measureFrom);
+		boolean sustained = engine.queued == 0 && rejected == 0 && (mode == Mode.CLOSED || (sendRate >= rate * 0.95 && throughput >= rate * 0.95));
+		return new LoadReport(mode, threads, rate, duration, measured.get(), sendRate, throughput, rejected, sustained, latency.snapshot(), engine);
+	}
+
+	private long intervalNanos(){
+		return (long)(threads * 1e9 / rate);
+	}
+
+	private void openLoop(StockExchange exchange, OrderSource source, long first, long measureFrom, long end, LatencyHistogram latency, AtomicLong measured){
+		long interval = intervalNanos();
+		for(long intended = first; intended < end; intended += interval){
+			waitUntil(intended);
+			if(!send(exchange, source)) break;
+			if(intended >= measureFrom){
+				latency.record(System.nanoTime() - intended);
+				measured.incrementAndGet();
+			}
+		}
+	}
+
+	private void closedLoop(StockExchange exchange, OrderSource source, long start, long measureFrom, long end, LatencyHistogram latency, AtomicLong measured){
+		waitUntil(start);
+		long intended;
+		while((intended = System.nanoTime()) < end){
+			if(!send(exchange, source)) break;
+			if(intended >= measureFrom){
+				latency.record(System.nanoTime() - intended);
+				measured.incrementAndGet();
+			}
+		}
+	}
+
+	private static boolean send(StockExchange exchange, OrderSource source){
+		source.next();
+		try {
+			if(source.isBuy()) exchange.buy(source.stock(), source.quantity(), source.price());
+			else exchange.sell(source.stock(), source.quantity(), source.price());
+			return true;
+		} catch (OrderRejectedException e){
+			// counted by the exchange as rejected
+			return true;
+		} catch (StockExchangeClosedException e){
+			return false;
+		}
+	}
+
+	private static void waitUntil(long deadline){
+		long remaining;
+		while((remaining = deadline - System.nanoTime()) > 0){
+			if(remaining > SPIN_THRESHOLD_NANOS) LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+			else Thread.yield();
+		}
+	}
+
+	/** @return listed stocks in a seeded random order, so which stocks are hot depends only on the seed */
+	static Stock[] popularityOrder(StockExchange exchange, long seed){
+		Stock[] stocks = exchange.listing().stream()
+			.sorted(Comparator.comparing(Stock::symbol).thenComparing(Stock::type))
+			.toArray(Stock[]::new);
+		SplittableRandom random = new SplittableRandom(seed);
+		for(int i = stocks.length - 1; i > 0; i--){
+			int j = random.nextInt(i + 1);
+			Stock stock = stocks[i];
+			stocks[i] = stocks[j];
+			stocks[j] = stock;
+		}
+		return stocks;
+	}
+
+	public static class Builder {
+
+		private Mode mode = Mode.OPEN;
+		private double rate = 10000;
+		private int threads = 1;
+		private Duration duration = Duration.ofSeconds(10);
+		private Duration warmup = Duration.ofSeconds(2);
+		private Duration drainTimeout = Duration.ofSeconds(10);
+		private long seed = 42;
+		private double skew = 0;
+		private int maxQuantity = 100;
+
+		public Builder mode(Mode mode){
+			this.mode = mode;
+			return this;
+		}
+
+		/** Total orders per second of all workers, used in open-loop mode. */
+		public Builder rate(double rate){
+			if(rate <= 0) throw new IllegalArgumentException("Rate must be positive");
+			this.rate = rate;
+			return this;
+		}
+
+		public Builder threads(int threads){
+			if(threads < 1) throw new IllegalArgumentException("At least one thread required");
+			this.threads = threads;
+			return this;
+		}
+
+		public Builder duration(Duration duration){
+			this.duration = duration;
+			return this;
+		}
+
+		public Builder warmup(Duration warmup){
+			this.warmup = warmup;
+			return this;
+		}
+
+		public Builder drainTimeout(Duration drainTimeout){
+			this.drainTimeout = drainTimeout;
+			return this;
+		}
+
+		public Builder seed(long seed){
+			this.seed = seed;
+			return this;
+		}
+
+		/** Zipf exponent of stock popularity, 0 for uniform. */
+		public Builder skew(double skew){
+			if(skew < 0) throw new IllegalArgumentException("Skew cannot be negative");
+			this.skew = skew;
+			return this;
+		}
+
+		public Builder maxQuantity(int maxQuantity){
+			if(maxQuantity < 1) throw new IllegalArgumentException("Max quantity must be positive");
+			this.maxQuantity = maxQuantity;
+			return this;
+		}
+
+		public LoadGenerator build(){
+			return new LoadGenerator(this);
+		}
+	}
+
+}
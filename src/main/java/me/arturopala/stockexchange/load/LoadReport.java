@@ -0,0 +1,58 @@
+package me.arturopala.stockexchange.load;
+
+import java.time.Duration;
+import me.arturopala.stockexchange.metrics.HistogramSnapshot;
+import me.arturopala.stockexchange.metrics.MetricsSnapshot;
+
+/**
+ * Outcome of a {@link LoadGenerator} run. Latency is measured from the intended send time
+ * of each order after warmup, so time an order spent waiting behind a slow one counts too.
+ * Throughput is the rate of trades the exchange accepted after warmup, measured up to the moment
+ * it drained all of them; orders it rejected meanwhile are counted apart and a target with any
+ * rejection is not sustained.
+ */
+public final class LoadReport {
+
+	public final LoadGenerator.Mode mode;
+	public final int threads;
+	public final double targetRate;
+	public final Duration duration;
+	public final long sent;
+	public final double sendRate;
+	public final double throughput;
+	/** trades the exchange rejected after warmup */
+	public final long rejected;
+	public final boolean sustained;
+	public final HistogramSnapshot latency;
+	public final MetricsSnapshot engine;
+
+	public LoadReport(LoadGenerator.Mode mode, int threads, double targetRate, Duration duration, long sent, double sendRate,
+			double throughput, long rejected, boolean sustained, HistogramSnapshot latency, MetricsSnapshot engine){
+		this.mode = mode;
+		this.threads = threads;
+		this.targetRate = targetRate;
+		this.duration = duration;
+		this.sent = sent;
+		this.sendRate = sendRate;
+		this.throughput = throughput;
+		this.rejected = rejected;
+		this.sustained = sustained;
+		this.latency = latency;
+		this.engine = engine;
+	}
+
+	@Override
+	public String toString(){
+		StringBuilder sb = new StringBuilder();
+		sb.append("MODE\t: ").append(mode).append(", threads ").append(threads);
+		if(mode == LoadGenerator.Mode.OPEN) sb.append(", target ").append(Math.round(targetRate)).append(" orders/s");
+		sb.append("\nSENT\t: ").append(sent).append(" orders in ").append(duration.toMillis()).append(" ms, ").append(Math.round(sendRate)).append(" orders/s");
+		sb.append("\nLATENCY\t: from intended send [ns] ").append(latency);
+		sb.append("\nENGINE\t: accepted ").append(engine.tradesAccepted).append(", rejected ").append(engine.tradesRejected)
+			.append(", trade to publish [ns] ").append(engine.tradeToPublish);
+		sb.append("\nTHROUGHPUT\t: ").append(Math.round(throughput)).append(" orders/s accepted, ").append(rejected).append(" rejected")
+			.append(mode == LoadGenerator.Mode.CLOSED ? " (saturated)" : sustained ? " (target sustained)" : " (target NOT sustained)");
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,68 @@
+package me.arturopala.stockexchange.load;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.util.Money;
+
+/**
+ * Seeded, repeatable stream of orders: the stock is drawn from a {@link ZipfDistribution}
+ * over the given popularity order, side is even, quantity is uniform in 1..maxQuantity and
+ * price is one of the precomputed levels within 5% around the stock par value.
+ * Not thread-safe: each load generator worker owns its source.
+ */
+public final class OrderSource {
+
+	private static final int PRICE_LEVELS = 21;
+
+	private final Stock[] stocks;
+	private final Money[][] prices;
+	private final ZipfDistribution distribution;
+	private final SplittableRandom random;
+	private final int maxQuantity;
+
+	private Stock stock;
+	private boolean buy;
+	private int quantity;
+	private Money price;
+
+	/** @param stocks in popularity order, the first one being the hottest */
+	public OrderSource(Stock[] stocks, ZipfDistribution distribution, long seed, int maxQuantity){
+		if(stocks.length != distribution.size()) throw new IllegalArgumentException("Distribution must have a rank per stock");
+		this.stocks = stocks;
+		this.distribution = distribution;
+		this.random = new SplittableRandom(seed);
+		this.maxQuantity = maxQuantity;
+		this.prices = new Money[stocks.length][PRICE_LEVELS];
+		for(int i = 0; i < stocks.length; i++){
+			for(int level = 0; level < PRICE_LEVELS; level++){
+				prices[i][level] = stocks[i].parValue().multiply(BigDecimal.valueOf(9500 + level * 1000 / (PRICE_LEVELS - 1), 4));
+			}
+		}
+	}
+
+	public void next(){
+		int rank = distribution.sample(random);
+		stock = stocks[rank];
+		buy = random.nextBoolean();
+		quantity = 1 + random.nextInt(maxQuantity);
+		price = prices[rank][random.nextInt(PRICE_LEVELS)];
+	}
+
+	public Stock stock(){
+		return stock;
+	}
+
+	public boolean isBuy(){
+		return buy;
+	}
+
+	public int quantity(){
+		return quantity;
+	}
+
+	public Money price(){
+		return price;
+	}
+
+}
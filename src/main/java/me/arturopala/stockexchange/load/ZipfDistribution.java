@@ -0,0 +1,47 @@
+package me.arturopala.stockexchange.load;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zipf distribution over ranks 0..n-1: rank k is drawn with probability
+ * proportional to 1/(k+1)^exponent, so exponent 0 gives uniform choice and
+ * values around 1 make a few ranks hot. Sampling is a binary search over the
+ * precomputed cumulative weights.
+ */
+public final class ZipfDistribution {
+
+	private final double[] cumulative;
+
+	public ZipfDistribution(int size, double exponent){
+		if(size < 1) throw new IllegalArgumentException("Zipf distribution needs at least one rank");
+		if(exponent < 0) throw new IllegalArgumentException("Zipf exponent cannot be negative");
+		cumulative = new double[size];
+		double sum = 0;
+		for(int k = 0; k < size; k++){
+			sum += 1.0 / Math.pow(k + 1, exponent);
+			cumulative[k] = sum;
+		}
+	}
+
+	public int size(){
+		return cumulative.length;
+	}
+
+	public double probability(int rank){
+		double total = cumulative[cumulative.length - 1];
+		return (cumulative[rank] - (rank > 0 ? cumulative[rank - 1] : 0)) / total;
+	}
+
+	public int sample(SplittableRandom random){
+		double u = random.nextDouble() * cumulative[cumulative.length - 1];
+		int low = 0;
+		int high = cumulative.length - 1;
+		while(low < high){
+			int mid = (low + high) >>> 1;
+			if(cumulative[mid] <= u) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+}
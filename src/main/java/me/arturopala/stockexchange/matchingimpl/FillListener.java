@@ -0,0 +1,8 @@
+package me.arturopala.stockexchange.matchingimpl;
+
+@FunctionalInterface
+public interface FillListener {
+
+	void onFill(long restingOrderId, long fixedPrice, int quantity);
+
+}
@@ -0,0 +1,63 @@
+package me.arturopala.stockexchange.matchingimpl;
+
+import java.util.Set;
+import java.time.Clock;
+import java.time.Duration;
+import me.arturopala.stockexchange.api.*;
+import me.arturopala.stockexchange.simpleimpl.*;
+import me.arturopala.stockexchange.journal.Journal;
+import me.arturopala.stockexchange.journal.SnapshotStore;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+
+/**
+ * Stock exchange where buy and sell orders rest in a per-stock limit order book
+ * and the ticker price is calculated from matched fills only. Each book holds a bounded
+ * number of resting orders, which expire once older than the price calculation period.
+ */
+public class MatchingStockExchange extends SimpleStockExchange {
+
+	private final int maxOrders;
+
+	public MatchingStockExchange(Set<Stock> listing){
+		super(listing);
+		this.maxOrders = OrderBook.DEFAULT_MAX_ORDERS;
+	}
+
+	public MatchingStockExchange(Set<Stock> listing, Clock clock){
+		super(listing, clock);
+		this.maxOrders = OrderBook.DEFAULT_MAX_ORDERS;
+	}
+
+	public MatchingStockExchange(Set<Stock> listing, Clock clock, Duration priceCalculationPeriod){
+		super(listing, clock, priceCalculationPeriod);
+		this.maxOrders = OrderBook.DEFAULT_MAX_ORDERS;
+	}
+
+	public MatchingStockExchange(Set<Stock> listing, Clock clock, Duration priceCalculationPeriod, ActorSystem actorSystem){
+		super(listing, clock, priceCalculationPeriod, actorSystem);
+		this.maxOrders = OrderBook.DEFAULT_MAX_ORDERS;
+	}
+
+	public MatchingStockExchange(Set<Stock> listing, ExchangeOptions options){
+		super(listing, options);
+		this.maxOrders = OrderBook.DEFAULT_MAX_ORDERS;
+	}
+
+	public MatchingStockExchange(Set<Stock> listing, ActorSystem actorSystem, ExchangeOptions options){
+		this(listing, actorSystem, options, OrderBook.DEFAULT_MAX_ORDERS);
+	}
+
+	/** @param maxOrders most orders resting in the book of each stock, remainders beyond it are rejected */
+	public MatchingStockExchange(Set<Stock> listing, ActorSystem actorSystem, ExchangeOptions options, int maxOrders){
+		super(listing, actorSystem, options);
+		if(maxOrders <= 0) throw new IllegalArgumentException("Order book must hold at least one order");
+		this.maxOrders = maxOrders;
+	}
+
+	@Override
+	protected Props workerProps(Stock stock, TickerState state, Journal journal, SnapshotStore snapshots){
+		return Props.create(OrderBookActor.class, stock, state, journal, snapshots, new OrderBook(Math.min(1024, maxOrders), maxOrders), tickScheduler());
+	}
+
+}
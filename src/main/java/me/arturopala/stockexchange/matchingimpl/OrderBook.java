@@ -0,0 +1,314 @@
+package me.arturopala.stockexchange.matchingimpl;
+
+import java.util.Arrays;
+import me.arturopala.stockexchange.simpleimpl.TradeType;
+import me.arturopala.stockexchange.util.FixedMoney;
+
+/**
+ * Price-time priority limit order book of a single stock.
+ * Resting orders live in a pool of primitive arrays and are linked into
+ * intrusive FIFO lists, one per price level. Levels of each side are kept
+ * in arrays sorted so that the best price is always the last element,
+ * which makes insert, cancel and fill at the top of the book O(1).
+ * The number of resting orders is bounded; remainders beyond the bound
+ * are rejected rather than rested. Resting orders are also linked in arrival
+ * order, so that those older than a cutoff expire oldest first without a scan.
+ * Not thread-safe: meant to be owned by a single actor.
+ */
+public final class OrderBook {
+
+	public static final long NO_ORDER = -1L;
+	/** returned when the remainder did not fit in a full book */
+	public static final long REJECTED = -2L;
+
+	public static final int DEFAULT_MAX_ORDERS = 1 << 16;
+
+	private static final int NIL = -1;
+
+	private final Side bids = new Side(true);
+	private final Side asks = new Side(false);
+
+	private int[] orderQuantity;
+	private long[] orderPrice;
+	private int[] orderNext;
+	private int[] orderPrev;
+	private int[] orderGeneration;
+	private boolean[] orderIsBid;
+	private long[] orderTimestamp;
+	private int[] arrivalNext;
+	private int[] arrivalPrev;
+
+	private int freeHead = NIL;
+	private int oldest = NIL;
+	private int newest = NIL;
+	private int allocated = 0;
+	private int resting = 0;
+
+	private final int maxOrders;
+
+	public OrderBook(){
+		this(1024);
+	}
+
+	public OrderBook(int initialCapacity){
+		this(initialCapacity, DEFAULT_MAX_ORDERS);
+	}
+
+	public OrderBook(int initialCapacity, int maxOrders){
+		if(maxOrders <= 0) throw new IllegalArgumentException("Order book must hold at least one order");
+		this.maxOrders = maxOrders;
+		int capacity = Math.max(16, initialCapacity);
+		orderQuantity = new int[capacity];
+		orderPrice = new long[capacity];
+		orderNext = new int[capacity];
+		orderPrev = new int[capacity];
+		orderGeneration = new int[capacity];
+		orderIsBid = new boolean[capacity];
+		orderTimestamp = new long[capacity];
+		arrivalNext = new int[capacity];
+		arrivalPrev = new int[capacity];
+	}
+
+	/** Submits order whose resting remainder never expires, see {@link #submit(TradeType, long, int, long, FillListener)}. */
+	public long submit(TradeType type, long price, int quantity, FillListener listener){
+		return submit(type, price, quantity, Long.MAX_VALUE, listener);
+	}
+
+	/**
+	 * Matches incoming limit order against the opposite side and rests the remainder.
+	 * @param timestamp arrival time of the order, not earlier than of orders submitted before
+	 * @return id of the resting remainder, {@link #NO_ORDER} if fully filled
+	 * or {@link #REJECTED} if the book was too full to rest the remainder
+	 */
+	public long submit(TradeType type, long price, int quantity, long timestamp, FillListener listener){
+		if(quantity <= 0 || !FixedMoney.isDefined(price)) throw new IllegalArgumentException("Order must have positive quantity and defined price");
+		boolean isBid = type == TradeType.BUY;
+		Side opposite = isBid ? asks : bids;
+		int remaining = quantity;
+		while(remaining > 0 && opposite.count > 0){
+			int best = opposite.count - 1;
+			long levelPrice = opposite.prices[best];
+			if(isBid ? levelPrice > price : levelPrice < price) break;
+			int order = opposite.heads[best];
+			while(remaining > 0 && order != NIL){
+				int fill = Math.min(remaining, orderQuantity[order]);
+				orderQuantity[order] -= fill;
+				opposite.quantities[best] -= fill;
+				remaining -= fill;
+				listener.onFill(orderId(order), levelPrice, fill);
+				int next = orderNext[order];
+				if(orderQuantity[order] == 0){
+					opposite.heads[best] = next;
+					if(next != NIL) orderPrev[next] = NIL;
+					else opposite.tails[best] = NIL;
+					release(order);
+				}
+				order = next;
+			}
+			if(opposite.heads[best] == NIL) opposite.count--;
+		}
+		if(remaining == 0) return NO_ORDER;
+		else if(resting == maxOrders) return REJECTED;
+		else return rest(isBid, price, remaining, timestamp);
+	}
+
+	public boolean cancel(long orderId){
+		int order = (int) orderId;
+		if(orderId < 0 || order >= allocated || orderGeneration[order] != (int)(orderId >>> 32) || orderQuantity[order] == 0) return false;
+		remove(order);
+		return true;
+	}
+
+	/**
+	 * Cancels resting orders which arrived before the cutoff, oldest first, stopping at the first one which did not.
+	 * @return number of orders expired
+	 */
+	public int expire(long cutoff){
+		int expired = 0;
+		while(oldest != NIL && orderTimestamp[oldest] < cutoff){
+			remove(oldest);
+			expired++;
+		}
+		return expired;
+	}
+
+	/** @return arrival time of the oldest resting order, or Long.MAX_VALUE if there is none */
+	public long oldestTimestamp(){
+		return oldest == NIL ? Long.MAX_VALUE : orderTimestamp[oldest];
+	}
+
+	private void remove(int order){
+		Side side = orderIsBid[order] ? bids : asks;
+		int level = side.find(orderPrice[order]);
+		int prev = orderPrev[order];
+		int next = orderNext[order];
+		if(prev != NIL) orderNext[prev] = next; else side.heads[level] = next;
+		if(next != NIL) orderPrev[next] = prev; else side.tails[level] = prev;
+		side.quantities[level] -= orderQuantity[order];
+		if(side.heads[level] == NIL) side.remove(level);
+		release(order);
+	}
+
+	public long bestBid(){
+		return bids.best();
+	}
+
+	public long bestAsk(){
+		return asks.best();
+	}
+
+	public long depth(TradeType type, long price){
+		Side side = type == TradeType.BUY ? bids : asks;
+		int level = side.find(price);
+		return level < 0 ? 0 : side.quantities[level];
+	}
+
+	public int levels(TradeType type){
+		return type == TradeType.BUY ? bids.count : asks.count;
+	}
+
+	public int restingOrders(){
+		return resting;
+	}
+
+	public int maxOrders(){
+		return maxOrders;
+	}
+
+	private long rest(boolean isBid, long price, int quantity, long timestamp){
+		Side side = isBid ? bids : asks;
+		int order = allocate();
+		orderQuantity[order] = quantity;
+		orderPrice[order] = price;
+		orderIsBid[order] = isBid;
+		orderNext[order] = NIL;
+		orderTimestamp[order] = timestamp;
+		arrivalPrev[order] = newest;
+		arrivalNext[order] = NIL;
+		if(newest != NIL) arrivalNext[newest] = order; else oldest = order;
+		newest = order;
+		int level = side.find(price);
+		if(level < 0){
+			level = side.insert(-level - 1, price);
+			side.heads[level] = order;
+			orderPrev[order] = NIL;
+		} else {
+			int tail = side.tails[level];
+			orderNext[tail] = order;
+			orderPrev[order] = tail;
+		}
+		side.tails[level] = order;
+		side.quantities[level] += quantity;
+		return orderId(order);
+	}
+
+	private long orderId(int order){
+		return ((long) orderGeneration[order] << 32) | order;
+	}
+
+	private int allocate(){
+		resting++;
+		if(freeHead != NIL){
+			int order = freeHead;
+			freeHead = orderNext[order];
+			return order;
+		}
+		if(allocated == orderQuantity.length) grow();
+		return allocated++;
+	}
+
+	private void release(int order){
+		resting--;
+		int prev = arrivalPrev[order];
+		int next = arrivalNext[order];
+		if(prev != NIL) arrivalNext[prev] = next; else oldest = next;
+		if(next != NIL) arrivalPrev[next] = prev; else newest = prev;
+		orderQuantity[order] = 0;
+		orderGeneration[order]++;
+		orderNext[order] = freeHead;
+		freeHead = order;
+	}
+
+	private void grow(){
+		int capacity = orderQuantity.length << 1;
+		orderQuantity = Arrays.copyOf(orderQuantity, capacity);
+		orderPrice = Arrays.copyOf(orderPrice, capacity);
+		orderNext = Arrays.copyOf(orderNext, capacity);
+		orderPrev = Arrays.copyOf(orderPrev, capacity);
+		orderGeneration = Arrays.copyOf(orderGeneration, capacity);
+		orderIsBid = Arrays.copyOf(orderIsBid, capacity);
+		orderTimestamp = Arrays.copyOf(orderTimestamp, capacity);
+		arrivalNext = Arrays.copyOf(arrivalNext, capacity);
+		arrivalPrev = Arrays.copyOf(arrivalPrev, capacity);
+	}
+
+	/** Price levels of one side, ordered from the worst to the best price. */
+	private static final class Side {
+
+		private final boolean isBid;
+
+		private long[] prices = new long[64];
+		private long[] quantities = new long[64];
+		private int[] heads = new int[64];
+		private int[] tails = new int[64];
+		private int count = 0;
+
+		Side(boolean isBid){
+			this.isBid = isBid;
+		}
+
+		long best(){
+			return count == 0 ? FixedMoney.UNDEFINED : prices[count - 1];
+		}
+
+		/** @return level index or (-(insertion point) - 1) if there is no such level */
+		int find(long price){
+			if(count > 0 && prices[count - 1] == price) return count - 1;
+			int low = 0;
+			int high = count - 1;
+			while(low <= high){
+				int mid = (low + high) >>> 1;
+				long midPrice = prices[mid];
+				if(midPrice == price) return mid;
+				if(isBid ? midPrice < price : midPrice > price) low = mid + 1;
+				else high = mid - 1;
+			}
+			return -(low + 1);
+		}
+
+		int insert(int index, long price){
+			if(count == prices.length){
+				int capacity = count << 1;
+				prices = Arrays.copyOf(prices, capacity);
+				quantities = Arrays.copyOf(quantities, capacity);
+				heads = Arrays.copyOf(heads, capacity);
+				tails = Arrays.copyOf(tails, capacity);
+			}
+			if(index < count){
+				int length = count - index;
+				System.arraycopy(prices, index, prices, index + 1, length);
+				System.arraycopy(quantities, index, quantities, index + 1, length);
+				System.arraycopy(heads, index, heads, index + 1, length);
+				System.arraycopy(tails, index, tails, index + 1, length);
+			}
+			prices[index] = price;
+			quantities[index] = 0;
+			heads[index] = NIL;
+			tails[index] = NIL;
+			count++;
+			return index;
+		}
+
+		void remove(int index){
+			count--;
+			if(index < count){
+				int length = count - index;
+				System.arraycopy(prices, index + 1, prices, index, length);
+				System.arraycopy(quantities, index + 1, quantities, index, length);
+				System.arraycopy(heads, index + 1, heads, index, length);
+				System.arraycopy(tails, index + 1, tails, index, length);
+			}
+		}
+	}
+
+}
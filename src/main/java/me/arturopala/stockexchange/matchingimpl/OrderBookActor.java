@@ -0,0 +1,83 @@
+package me.arturopala.stockexchange.matchingimpl;
+
+import java.util.concurrent.atomic.AtomicReference;
+import me.arturopala.stockexchange.api.*;
+import me.arturopala.stockexchange.simpleimpl.*;
+import me.arturopala.stockexchange.journal.Journal;
+import me.arturopala.stockexchange.journal.SnapshotStore;
+
+/**
+ * Ticker worker which treats incoming trades as limit orders, matches them in the
+ * stock's {@link OrderBook} and records only the resulting fills in the price window.
+ * Remainders which do not fit in a full book are counted as rejected, and resting
+ * orders expire together with the trades of the price calculation period.
+ */
+public class OrderBookActor extends TickerActor implements FillListener {
+
+	private final OrderBook book;
+
+	private TradeType orderType;
+	private long orderTimestamp;
+	private int fills;
+
+	public OrderBookActor(Stock stock, AtomicReference<StockInfo> stockInfoRef){
+		this(stock, new TickerState(stockInfoRef, new AllShareIndex()), Journal.NONE, SnapshotStore.NONE, new OrderBook(), TickScheduler.NONE);
+	}
+
+	public OrderBookActor(Stock stock, TickerState state, Journal journal, SnapshotStore snapshots, OrderBook book, TickScheduler ticks){
+		super(stock, state, journal, snapshots, ticks);
+		this.book = book;
+	}
+
+	@Override
+	public void onReceive(Object message) throws Exception {
+		if (message instanceof Trade) {
+			Trade trade = (Trade) message;
+			state.dequeued(1);
+			orderTimestamp = TradeWindow.timestampOf(trade.timestamp);
+			fills = 0;
+			match(trade.type, trade.fixedPrice, trade.quantity);
+			if(fills > 0){
+				updatePrice();
+				state.published(trade.nanos);
+			}
+			afterTrades();
+		} else if (message instanceof TradeBatch) {
+			TradeBatch batch = (TradeBatch) message;
+			state.dequeued(batch.size);
+			orderTimestamp = TradeWindow.timestampOf(batch.timestamp);
+			fills = 0;
+			for(int i = 0; i < batch.size; i++){
+				match(batch.type(i), batch.fixedPrice(i), batch.quantity(i));
+			}
+			if(fills > 0){
+				updatePrice();
+				state.published(batch.nanos);
+			}
+			afterTrades();
+		} else if (message instanceof Tick) {
+			book.expire(TradeWindow.timestampOf(((Tick) message).timestamp));
+			super.onReceive(message);
+		} else {
+			super.onReceive(message);
+		}
+	}
+
+	private void match(TradeType type, long price, int quantity){
+		orderType = type;
+		if(book.submit(type, price, quantity, orderTimestamp, this) == OrderBook.REJECTED) state.rejected();
+	}
+
+	@Override
+	protected long oldestTimestamp(){
+		return Math.min(super.oldestTimestamp(), book.oldestTimestamp());
+	}
+
+	@Override
+	public void onFill(long restingOrderId, long fixedPrice, int quantity){
+		if(record(orderTimestamp, orderType, fixedPrice, quantity)){
+			fills++;
+		}
+	}
+
+}
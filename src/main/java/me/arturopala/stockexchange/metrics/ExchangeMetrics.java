@@ -0,0 +1,180 @@
+package me.arturopala.stockexchange.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.journal.Journal;
+import me.arturopala.stockexchange.journal.JournalStats;
+
+/**
+ * Counters and latency histograms of one exchange engine:
+ * <ul>
+ * <li>tradeToPublish: from trade submission to publication of the updated ticker</li>
+ * <li>queueDepth: trades waiting for the ticker, as seen by each trade taken off the queue</li>
+ * <li>tickDelay: from scheduled to actual expiry of the price window</li>
+ * <li>indexUpdate: time spent updating the all share index</li>
+ * </ul>
+ */
+public final class ExchangeMetrics implements ExchangeMetricsMXBean {
+
+	public static final String DOMAIN = "me.arturopala.stockexchange";
+
+	private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+	public final LatencyHistogram tradeToPublish = new LatencyHistogram();
+	public final LatencyHistogram queueDepth = new LatencyHistogram();
+	public final LatencyHistogram tickDelay = new LatencyHistogram();
+	public final LatencyHistogram indexUpdate = new LatencyHistogram();
+
+	private final LongAdder accepted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder queued = new LongAdder();
+	private final ConcurrentMap<String, AtomicInteger> tickerQueues = new ConcurrentHashMap<>();
+
+	private volatile JournalStats journal = Journal.STATS;
+	private volatile ObjectName objectName;
+
+	public void accepted(int trades){
+		accepted.add(trades);
+		queued.add(trades);
+	}
+
+	public void rejected(int trades){
+		rejected.add(trades);
+	}
+
+	/** Records trades taken off a queue of given depth. */
+	public void dequeued(int trades, long depth){
+		queued.add(-trades);
+		queueDepth.record(depth);
+	}
+
+	/** Reports the given queue as the depth of the stock's ticker, until the stock is untracked. */
+	public void track(Stock stock, AtomicInteger queued){
+		tickerQueues.put(key(stock), queued);
+	}
+
+	public void untrack(Stock stock){
+		tickerQueues.remove(key(stock));
+	}
+
+	/** @return trades waiting for each tracked ticker, by SYMBOL-TYPE */
+	public Map<String, Integer> tickerQueues(){
+		if(tickerQueues.isEmpty()) return Collections.emptyMap();
+		Map<String, Integer> depths = new TreeMap<>();
+		tickerQueues.forEach((stock, queued) -> depths.put(stock, queued.get()));
+		return depths;
+	}
+
+	public static String key(Stock stock){
+		return stock.symbol()+"-"+stock.type();
+	}
+
+	/** Reports append and fsync latencies of the journal the engine persists trades to. */
+	public void journal(JournalStats stats){
+		this.journal = stats;
+	}
+
+	public MetricsSnapshot snapshot(){
+		JournalStats stats = journal;
+		return new MetricsSnapshot(accepted.sum(), rejected.sum(), queued.sum(), tradeToPublish.snapshot(),
+			queueDepth.snapshot(), tickDelay.snapshot(), indexUpdate.snapshot(), stats.append.snapshot(), stats.fsync.snapshot(), tickerQueues());
+	}
+
+	/** Registers with the platform MBean server under a name unique for this process. */
+	public synchronized void register(String engine){
+		if(objectName != null) return;
+		try {
+			ObjectName name = new ObjectName(DOMAIN+":type=ExchangeMetrics,name="+engine+"-"+SEQUENCE.incrementAndGet());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			objectName = name;
+		} catch (JMException e){
+			// metrics remain available through snapshot()
+		}
+	}
+
+	public synchronized void unregister(){
+		if(objectName == null) return;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if(server.isRegistered(objectName)) server.unregisterMBean(objectName);
+		} catch (JMException e){
+			// already gone
+		}
+		objectName = null;
+	}
+
+	public ObjectName objectName(){
+		return objectName;
+	}
+
+	@Override
+	public long getTradesAccepted(){
+		return accepted.sum();
+	}
+
+	@Override
+	public long getTradesRejected(){
+		return rejected.sum();
+	}
+
+	@Override
+	public long getQueued(){
+		return queued.sum();
+	}
+
+	@Override
+	public Map<String, Integer> getTickerQueues(){
+		return tickerQueues();
+	}
+
+	@Override
+	public Map<String, Long> getTradeToPublish(){
+		return tradeToPublish.snapshot().toMap();
+	}
+
+	@Override
+	public Map<String, Long> getQueueDepth(){
+		return queueDepth.snapshot().toMap();
+	}
+
+	@Override
+	public Map<String, Long> getTickDelay(){
+		return tickDelay.snapshot().toMap();
+	}
+
+	@Override
+	public Map<String, Long> getIndexUpdate(){
+		return indexUpdate.snapshot().toMap();
+	}
+
+	@Override
+	public Map<String, Long> getJournalAppend(){
+		return journal.append.snapshot().toMap();
+	}
+
+	@Override
+	public Map<String, Long> getJournalFsync(){
+		return journal.fsync.snapshot().toMap();
+	}
+
+	@Override
+	public void reset(){
+		tradeToPublish.reset();
+		queueDepth.reset();
+		tickDelay.reset();
+		indexUpdate.reset();
+		journal.append.reset();
+		journal.fsync.reset();
+	}
+
+}
@@ -0,0 +1,34 @@
+package me.arturopala.stockexchange.metrics;
+
+import java.util.Map;
+
+/** JMX view of {@link ExchangeMetrics}, latencies in nanoseconds. */
+public interface ExchangeMetricsMXBean {
+
+	long getTradesAccepted();
+
+	long getTradesRejected();
+
+	long getQueued();
+
+	Map<String, Integer> getTickerQueues();
+
+	Map<String, Long> getTradeToPublish();
+
+	Map<String, Long> getQueueDepth();
+
+	Map<String, Long> getTickDelay();
+
+	Map<String, Long> getIndexUpdate();
+
+	Map<String, Long> getJournalAppend();
+
+	Map<String, Long> getJournalFsync();
+
+	/**
+	 * Resets the histograms only. Trade counters stay cumulative since the start,
+	 * as orders in flight to partition nodes are counted against them.
+	 */
+	void reset();
+
+}
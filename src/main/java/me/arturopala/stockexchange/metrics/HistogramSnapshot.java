@@ -0,0 +1,57 @@
+package me.arturopala.stockexchange.metrics;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Point-in-time view of a {@link LatencyHistogram}. */
+public final class HistogramSnapshot implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public final long count;
+	public final double mean;
+	public final long p50;
+	public final long p90;
+	public final long p99;
+	public final long p999;
+	public final long max;
+
+	public HistogramSnapshot(long count, double mean, long p50, long p90, long p99, long p999, long max){
+		this.count = count;
+		this.mean = mean;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.p999 = p999;
+		this.max = max;
+	}
+
+	/**
+	 * Combines snapshots of separate histograms, such as of the nodes of a partitioned exchange.
+	 * Percentiles cannot be merged exactly, so each is the higher of the two, an upper bound.
+	 */
+	public HistogramSnapshot combine(HistogramSnapshot other){
+		long total = count + other.count;
+		return new HistogramSnapshot(total, total > 0 ? (mean * count + other.mean * other.count) / total : 0,
+			Math.max(p50, other.p50), Math.max(p90, other.p90), Math.max(p99, other.p99), Math.max(p999, other.p999), Math.max(max, other.max));
+	}
+
+	public Map<String, Long> toMap(){
+		Map<String, Long> map = new LinkedHashMap<>();
+		map.put("count", count);
+		map.put("mean", Math.round(mean));
+		map.put("p50", p50);
+		map.put("p90", p90);
+		map.put("p99", p99);
+		map.put("p999", p999);
+		map.put("max", max);
+		return map;
+	}
+
+	@Override
+	public String toString(){
+		return "(count="+count+", mean="+Math.round(mean)+", p50="+p50+", p90="+p90+", p99="+p99+", p999="+p999+", max="+max+")";
+	}
+
+}
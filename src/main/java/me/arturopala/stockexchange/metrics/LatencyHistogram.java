@@ -0,0 +1,83 @@
+package me.arturopala.stockexchange.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values with HDR-style log-linear buckets:
+ * every power of two is split into 32 sub-buckets, so any recorded value is
+ * reported within about 3% of its real value. Recording is a bucket increment
+ * and allocates nothing; snapshots may be taken from any thread.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long value){
+		if(value < 0) value = 0;
+		counts.incrementAndGet(bucketOf(value));
+		long current = max.get();
+		while(value > current && !max.compareAndSet(current, value)){
+			current = max.get();
+		}
+	}
+
+	/** @return recorded values and percentiles, with percentiles at the upper bound of their bucket */
+	public HistogramSnapshot snapshot(){
+		long[] copy = new long[BUCKETS];
+		long count = 0;
+		double sum = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			long c = counts.get(i);
+			copy[i] = c;
+			count += c;
+			sum += c * ((lowestOf(i) + highestOf(i)) / 2.0);
+		}
+		long maxValue = max.get();
+		return new HistogramSnapshot(count, count > 0 ? sum / count : 0,
+			percentile(copy, count, 0.5, maxValue), percentile(copy, count, 0.9, maxValue),
+			percentile(copy, count, 0.99, maxValue), percentile(copy, count, 0.999, maxValue), maxValue);
+	}
+
+	public void reset(){
+		for(int i = 0; i < BUCKETS; i++){
+			counts.set(i, 0);
+		}
+		max.set(0);
+	}
+
+	static int bucketOf(long value){
+		if(value < SUB_BUCKETS) return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int)(value >>> shift) - SUB_BUCKETS;
+	}
+
+	static long lowestOf(int bucket){
+		if(bucket < SUB_BUCKETS) return bucket;
+		int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+		return (long)((bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS) << shift;
+	}
+
+	static long highestOf(int bucket){
+		if(bucket < SUB_BUCKETS) return bucket;
+		int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+		return lowestOf(bucket) + (1L << shift) - 1;
+	}
+
+	private static long percentile(long[] counts, long count, double percentile, long max){
+		if(count == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile * count));
+		long seen = 0;
+		for(int i = 0; i < counts.length; i++){
+			seen += counts[i];
+			if(seen >= rank) return Math.min(highestOf(i), max);
+		}
+		return max;
+	}
+
+}
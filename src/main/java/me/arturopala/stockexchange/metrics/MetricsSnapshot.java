@@ -0,0 +1,69 @@
+package me.arturopala.stockexchange.metrics;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Point-in-time view of {@link ExchangeMetrics}, latencies in nanoseconds. */
+public final class MetricsSnapshot implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private static final HistogramSnapshot NONE = new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0);
+
+	public final long tradesAccepted;
+	public final long tradesRejected;
+	public final long queued;
+	public final HistogramSnapshot tradeToPublish;
+	public final HistogramSnapshot queueDepth;
+	public final HistogramSnapshot tickDelay;
+	public final HistogramSnapshot indexUpdate;
+	/** journal append calls, including the wait for a covering fsync under SYNC policy */
+	public final HistogramSnapshot journalAppend;
+	public final HistogramSnapshot journalFsync;
+	/** trades waiting for each ticker, by SYMBOL-TYPE, empty if the engine does not queue per ticker */
+	public final Map<String, Integer> tickerQueues;
+
+	public MetricsSnapshot(long tradesAccepted, long tradesRejected, long queued, HistogramSnapshot tradeToPublish,
+			HistogramSnapshot queueDepth, HistogramSnapshot tickDelay, HistogramSnapshot indexUpdate){
+		this(tradesAccepted, tradesRejected, queued, tradeToPublish, queueDepth, tickDelay, indexUpdate, NONE, NONE, Collections.emptyMap());
+	}
+
+	public MetricsSnapshot(long tradesAccepted, long tradesRejected, long queued, HistogramSnapshot tradeToPublish,
+			HistogramSnapshot queueDepth, HistogramSnapshot tickDelay, HistogramSnapshot indexUpdate,
+			HistogramSnapshot journalAppend, HistogramSnapshot journalFsync, Map<String, Integer> tickerQueues){
+		this.tradesAccepted = tradesAccepted;
+		this.tradesRejected = tradesRejected;
+		this.queued = queued;
+		this.tradeToPublish = tradeToPublish;
+		this.queueDepth = queueDepth;
+		this.tickDelay = tickDelay;
+		this.indexUpdate = indexUpdate;
+		this.journalAppend = journalAppend;
+		this.journalFsync = journalFsync;
+		this.tickerQueues = tickerQueues;
+	}
+
+	/** @return sum of the counters and queue depths and combination of the histograms, see {@link HistogramSnapshot#combine} */
+	public MetricsSnapshot combine(MetricsSnapshot other){
+		Map<String, Integer> queues = tickerQueues;
+		if(!other.tickerQueues.isEmpty()){
+			queues = new TreeMap<>(tickerQueues);
+			for(Map.Entry<String, Integer> entry: other.tickerQueues.entrySet()){
+				queues.merge(entry.getKey(), entry.getValue(), Integer::sum);
+			}
+		}
+		return new MetricsSnapshot(tradesAccepted + other.tradesAccepted, tradesRejected + other.tradesRejected, queued + other.queued,
+			tradeToPublish.combine(other.tradeToPublish), queueDepth.combine(other.queueDepth),
+			tickDelay.combine(other.tickDelay), indexUpdate.combine(other.indexUpdate),
+			journalAppend.combine(other.journalAppend), journalFsync.combine(other.journalFsync), queues);
+	}
+
+	@Override
+	public String toString(){
+		return "Metrics(accepted="+tradesAccepted+", rejected="+tradesRejected+", queued="+queued
+			+", tradeToPublish="+tradeToPublish+", queueDepth="+queueDepth+", tickDelay="+tickDelay+", indexUpdate="+indexUpdate
+			+", journalAppend="+journalAppend+", journalFsync="+journalFsync+")";
+	}
+
+}
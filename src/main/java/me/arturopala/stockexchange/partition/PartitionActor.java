@@ -0,0 +1,111 @@
+package me.arturopala.stockexchange.partition;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import akka.actor.ActorRef;
+import akka.actor.Terminated;
+import akka.actor.UntypedActor;
+import me.arturopala.stockexchange.api.*;
+import me.arturopala.stockexchange.simpleimpl.SimpleStockExchange;
+import me.arturopala.stockexchange.simpleimpl.TradeWindow;
+import me.arturopala.stockexchange.util.FixedMoney;
+
+/**
+ * Entry point of a {@link PartitionNode}. Orders are offered to the node exchange without
+ * waiting, so a full stock queue rejects the order instead of stalling the partition,
+ * and the order sender is told it was dropped.
+ * Every joined front-end gets quotes of all node stocks through one conflating subscription.
+ */
+public class PartitionActor extends UntypedActor {
+
+	private final PartitionNode node;
+	private final SimpleStockExchange exchange;
+	private final Partitioning partitioning;
+	private final Map<ActorRef, Subscription> frontEnds = new HashMap<>();
+
+	public PartitionActor(PartitionNode node){
+		this.node = node;
+		this.exchange = node.exchange();
+		this.partitioning = node.partitioning();
+	}
+
+	@Override
+	public void onReceive(Object message) throws Exception {
+		if(message instanceof PartitionProtocol.Order){
+			PartitionProtocol.Order order = (PartitionProtocol.Order) message;
+			Stock stock = partitioning.stock(order.stock);
+			try {
+				OfferResult result = order.buy
+					? exchange.offerBuy(stock, order.quantity, FixedMoney.toMoney(order.price))
+					: exchange.offerSell(stock, order.quantity, FixedMoney.toMoney(order.price));
+				if(result == OfferResult.FULL && !getSender().equals(getContext().system().deadLetters())){
+					getSender().tell(new PartitionProtocol.Dropped(order.stock), getSelf());
+				}
+			} catch (StockExchangeClosedException e){
+				// node is closing
+			}
+		} else if(message instanceof PartitionProtocol.Join){
+			ActorRef frontEnd = ((PartitionProtocol.Join) message).frontEnd;
+			if(!frontEnds.containsKey(frontEnd)){
+				getContext().watch(frontEnd);
+				frontEnds.put(frontEnd, exchange.subscribe(exchange.listing(),
+					ticker -> frontEnd.tell(node.quote(ticker), ActorRef.noSender())));
+			}
+		} else if(message instanceof PartitionProtocol.Leave){
+			leave(((PartitionProtocol.Leave) message).frontEnd);
+		} else if(message instanceof Terminated){
+			leave(((Terminated) message).getActor());
+		} else if(message instanceof PartitionProtocol.CandlesQuery){
+			PartitionProtocol.CandlesQuery query = (PartitionProtocol.CandlesQuery) message;
+			getSender().tell(bars(exchange.candles(partitioning.stock(query.stock), query.resolution, query.count)), getSelf());
+		} else if(message instanceof PartitionProtocol.HistoryQuery){
+			PartitionProtocol.HistoryQuery query = (PartitionProtocol.HistoryQuery) message;
+			TradeSummary summary = exchange.history(partitioning.stock(query.stock), instantOf(query.from), instantOf(query.to));
+			getSender().tell(new PartitionProtocol.Summary(summary.trades, summary.quantity, FixedMoney.valueOf(summary.volume),
+				FixedMoney.valueOf(summary.vwap), FixedMoney.valueOf(summary.low), FixedMoney.valueOf(summary.high)), getSelf());
+		} else if(message == PartitionProtocol.METRICS_QUERY){
+			getSender().tell(exchange.metrics(), getSelf());
+		} else {
+			unhandled(message);
+		}
+	}
+
+	@Override
+	public void postStop(){
+		for(Subscription subscription: frontEnds.values()){
+			subscription.cancel();
+		}
+		frontEnds.clear();
+	}
+
+	private void leave(ActorRef frontEnd){
+		Subscription subscription = frontEnds.remove(frontEnd);
+		if(subscription != null){
+			subscription.cancel();
+			getContext().unwatch(frontEnd);
+		}
+	}
+
+	private static PartitionProtocol.Bars bars(List<Candle> candles){
+		PartitionProtocol.Bars bars = new PartitionProtocol.Bars(candles.size());
+		for(int i = 0; i < candles.size(); i++){
+			Candle candle = candles.get(i);
+			bars.starts[i] = TradeWindow.timestampOf(candle.start);
+			bars.opens[i] = FixedMoney.valueOf(candle.open);
+			bars.highs[i] = FixedMoney.valueOf(candle.high);
+			bars.lows[i] = FixedMoney.valueOf(candle.low);
+			bars.closes[i] = FixedMoney.valueOf(candle.close);
+			bars.quantities[i] = candle.quantity;
+			bars.volumes[i] = FixedMoney.valueOf(candle.volume);
+			bars.trades[i] = candle.trades;
+		}
+		return bars;
+	}
+
+	static Instant instantOf(long timestamp){
+		return Instant.ofEpochSecond(Math.floorDiv(timestamp, 1000000L), Math.floorMod(timestamp, 1000000L) * 1000L);
+	}
+
+}
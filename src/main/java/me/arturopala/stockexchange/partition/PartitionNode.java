@@ -0,0 +1,101 @@
+package me.arturopala.stockexchange.partition;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Set;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import me.arturopala.stockexchange.api.ExchangeOptions;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.api.Ticker;
+import me.arturopala.stockexchange.simpleimpl.AllShareIndex;
+import me.arturopala.stockexchange.simpleimpl.SimpleStockExchange;
+import me.arturopala.stockexchange.util.FixedMoney;
+
+/**
+ * One partition of a partitioned exchange: a {@link SimpleStockExchange} of the stocks
+ * the {@link Partitioning} assigns to it, on its own actor system, fronted by a
+ * {@link PartitionActor} at {@link #PATH} that takes orders and queries from the front-end.
+ * With remoting enabled in the actor system configuration the node can live in another JVM.
+ * Each node keeps its own journal and snapshots, given in its {@link ExchangeOptions}.
+ */
+public final class PartitionNode {
+
+	public static final String NAME = "partition";
+	public static final String PATH = "/user/"+NAME;
+
+	private final Partitioning partitioning;
+	private final int partition;
+	private final ActorSystem actorSystem;
+	private final SimpleStockExchange exchange;
+
+	private ActorRef ref;
+
+	public PartitionNode(Set<Stock> listing, int partitions, int partition, ActorSystem actorSystem){
+		this(new Partitioning(listing, partitions), partition, actorSystem, Clock.systemUTC(), Duration.ofMinutes(15));
+	}
+
+	public PartitionNode(Partitioning partitioning, int partition, ActorSystem actorSystem, Clock clock, Duration priceCalculationPeriod){
+		this(partitioning, partition, actorSystem, new ExchangeOptions.Builder().clock(clock).priceCalculationPeriod(priceCalculationPeriod).build());
+	}
+
+	public PartitionNode(Partitioning partitioning, int partition, ActorSystem actorSystem, ExchangeOptions options){
+		if(partition < 0 || partition >= partitioning.partitions()) throw new IllegalArgumentException("No partition "+partition+" of "+partitioning.partitions());
+		this.partitioning = partitioning;
+		this.partition = partition;
+		this.actorSystem = actorSystem;
+		this.exchange = new SimpleStockExchange(partitioning.listing(partition), actorSystem, options);
+	}
+
+	public synchronized PartitionNode open(){
+		if(ref == null){
+			exchange.open();
+			ref = actorSystem.actorOf(Props.create(PartitionActor.class, this), NAME);
+		}
+		return this;
+	}
+
+	public synchronized PartitionNode close(){
+		if(ref != null){
+			actorSystem.stop(ref);
+			ref = null;
+			exchange.close();
+		}
+		return this;
+	}
+
+	public synchronized ActorRef ref(){
+		return ref;
+	}
+
+	public int partition(){
+		return partition;
+	}
+
+	public Partitioning partitioning(){
+		return partitioning;
+	}
+
+	public ActorSystem actorSystem(){
+		return actorSystem;
+	}
+
+	public SimpleStockExchange exchange(){
+		return exchange;
+	}
+
+	/** @return current state of the ticker with the partial index of this partition */
+	PartitionProtocol.Quote quote(Ticker ticker){
+		AllShareIndex index = exchange.index();
+		long logSum;
+		int count;
+		synchronized(index){
+			logSum = index.logSum();
+			count = index.count();
+		}
+		return new PartitionProtocol.Quote(partition, partitioning.id(ticker.stock()), FixedMoney.valueOf(ticker.price()), ticker.quantity(),
+			FixedMoney.valueOf(ticker.volume()), exchange.occupancy(ticker.stock()), logSum, count);
+	}
+
+}
@@ -0,0 +1,189 @@
+package me.arturopala.stockexchange.partition;
+
+import java.io.Serializable;
+import akka.actor.ActorRef;
+import me.arturopala.stockexchange.api.Resolution;
+
+/**
+ * Messages between {@link PartitionedStockExchange} and {@link PartitionNode}s.
+ * Stocks are referred to by their {@link Partitioning} id and prices are fixed-point longs,
+ * so every message is a few primitives and serializes cheaply when sent over remoting.
+ */
+public final class PartitionProtocol {
+
+	/** Buy or sell order routed to the node owning the stock. */
+	public static final class Order implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		public final int stock;
+		public final boolean buy;
+		public final int quantity;
+		public final long price;
+
+		public Order(int stock, boolean buy, int quantity, long price){
+			this.stock = stock;
+			this.buy = buy;
+			this.quantity = quantity;
+			this.price = price;
+		}
+	}
+
+	/** Tells the order sender that the node dropped the order as the stock queue was full. */
+	public static final class Dropped implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		public final int stock;
+
+		public Dropped(int stock){
+			this.stock = stock;
+		}
+	}
+
+	/** Asks the node to push quotes of its stocks to the front-end, starting with their current state. */
+	public static final class Join implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		public final ActorRef frontEnd;
+
+		public Join(ActorRef frontEnd){
+			this.frontEnd = frontEnd;
+		}
+	}
+
+	public static final class Leave implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		public final ActorRef frontEnd;
+
+		public Leave(ActorRef frontEnd){
+			this.frontEnd = frontEnd;
+		}
+	}
+
+	/**
+	 * Ticker state of one stock, with the partial all share index of its partition
+	 * as a sum of scaled logarithms of the defined prices and their count.
+	 */
+	public static final class Quote implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		public final int partition;
+		public final int stock;
+		public final long price;
+		public final int quantity;
+		public final long volume;
+		public final double occupancy;
+		public final long logSum;
+		public final int count;
+
+		public Quote(int partition, int stock, long price, int quantity, long volume, double occupancy, long logSum, int count){
+			this.partition = partition;
+			this.stock = stock;
+			this.price = price;
+			this.quantity = quantity;
+			this.volume = volume;
+			this.occupancy = occupancy;
+			this.logSum = logSum;
+			this.count = count;
+		}
+	}
+
+	/** Answered with {@link Bars}. */
+	public static final class CandlesQuery implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		public final int stock;
+		public final Resolution resolution;
+		public final int count;
+
+		public CandlesQuery(int stock, Resolution resolution, int count){
+			this.stock = stock;
+			this.resolution = resolution;
+			this.count = count;
+		}
+	}
+
+	/** Bars of candles in columns, oldest first, start in microseconds. */
+	public static final class Bars implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		public final long[] starts;
+		public final long[] opens;
+		public final long[] highs;
+		public final long[] lows;
+		public final long[] closes;
+		public final long[] quantities;
+		public final long[] volumes;
+		public final int[] trades;
+
+		public Bars(int size){
+			this.starts = new long[size];
+			this.opens = new long[size];
+			this.highs = new long[size];
+			this.lows = new long[size];
+			this.closes = new long[size];
+			this.quantities = new long[size];
+			this.volumes = new long[size];
+			this.trades = new int[size];
+		}
+	}
+
+	/** Answered with {@link Summary}, timestamps in microseconds. */
+	public static final class HistoryQuery implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		public final int stock;
+		public final long from;
+		public final long to;
+
+		public HistoryQuery(int stock, long from, long to){
+			this.stock = stock;
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	public static final class Summary implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		public final long trades;
+		public final long quantity;
+		public final long volume;
+		public final long vwap;
+		public final long low;
+		public final long high;
+
+		public Summary(long trades, long quantity, long volume, long vwap, long low, long high){
+			this.trades = trades;
+			this.quantity = quantity;
+			this.volume = volume;
+			this.vwap = vwap;
+			this.low = low;
+			this.high = high;
+		}
+	}
+
+	/** Answered with the {@link me.arturopala.stockexchange.metrics.MetricsSnapshot} of the node. */
+	public static final Serializable METRICS_QUERY = new MetricsQuery();
+
+	private static final class MetricsQuery implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private Object readResolve(){
+			return METRICS_QUERY;
+		}
+	}
+
+	private PartitionProtocol(){}
+
+}
@@ -0,0 +1,317 @@
+package me.arturopala.stockexchange.partition;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.pattern.Patterns;
+import scala.concurrent.Await;
+import scala.concurrent.duration.FiniteDuration;
+import me.arturopala.stockexchange.api.*;
+import me.arturopala.stockexchange.util.*;
+import me.arturopala.stockexchange.metrics.MetricsSnapshot;
+import me.arturopala.stockexchange.simpleimpl.AllShareIndex;
+import me.arturopala.stockexchange.simpleimpl.MarketSnapshots;
+import me.arturopala.stockexchange.simpleimpl.TickerImpl;
+import me.arturopala.stockexchange.simpleimpl.TickerSlots;
+import me.arturopala.stockexchange.simpleimpl.TickerSubscriber;
+import me.arturopala.stockexchange.simpleimpl.TickerTopic;
+import me.arturopala.stockexchange.simpleimpl.TradeWindow;
+
+/**
+ * Routing front-end of stocks spread over {@link PartitionNode}s by {@link Partitioning}.
+ * Orders are sent to the owning node without waiting for it, and nodes push quotes back,
+ * which keep local mirrors of the tickers, the queue occupancy of every stock and the
+ * partial log-sums the all share index is aggregated from. Candles, history and metrics
+ * are asked from the nodes. An order accepted here may still be dropped by its node
+ * if the stock queue filled up meanwhile: the node reports it back, see {@link #dropped()}.
+ * Nodes are plain actor references, so they may run in other actor systems of this JVM
+ * or, with remoting configured, in other JVMs.
+ */
+public class PartitionedStockExchange implements StockExchange {
+
+	public static final Duration DEFAULT_QUERY_TIMEOUT = Duration.ofSeconds(5);
+
+	private final Set<Stock> listing;
+	private final SymbolIndex symbolIndex;
+	private final Partitioning partitioning;
+	private final ActorSystem actorSystem;
+	private final ActorRef[] nodes;
+	private final FiniteDuration queryTimeout;
+	private final TickerImpl[] mirrors;
+	private final AtomicLongArray occupancy;
+	private final long[] logSums;
+	private final int[] counts;
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final MarketSnapshots marketSnapshots = new MarketSnapshots();
+
+	private volatile boolean isOpen = false;
+	private volatile double allShareIndex = Double.NaN;
+	private long logSum = 0;
+	private int count = 0;
+	private ActorRef frontEnd;
+
+	public PartitionedStockExchange(Set<Stock> listing, ActorSystem actorSystem, List<ActorRef> nodes){
+		this(listing, actorSystem, nodes, DEFAULT_QUERY_TIMEOUT);
+	}
+
+	/** @param nodes node of every partition, in partition order */
+	public PartitionedStockExchange(Set<Stock> listing, ActorSystem actorSystem, List<ActorRef> nodes, Duration queryTimeout){
+		if(nodes.isEmpty()) throw new IllegalArgumentException("At least one partition node required");
+		this.listing = Collections.unmodifiableSet(listing);
+		this.symbolIndex = new SymbolIndex(listing);
+		this.partitioning = new Partitioning(listing, nodes.size());
+		this.actorSystem = actorSystem;
+		this.nodes = nodes.toArray(new ActorRef[nodes.size()]);
+		this.queryTimeout = FiniteDuration.create(queryTimeout.toMillis(), TimeUnit.MILLISECONDS);
+		this.mirrors = new TickerImpl[partitioning.size()];
+		TickerSlots slots = new TickerSlots(Math.max(1, mirrors.length));
+		for(int id = 0; id < mirrors.length; id++){
+			mirrors[id] = new TickerImpl(partitioning.stock(id), slots.allocate(partitioning.stock(id)), actorSystem.dispatcher(), null, null);
+		}
+		this.marketSnapshots.layout(Arrays.asList(mirrors));
+		this.occupancy = new AtomicLongArray(partitioning.size());
+		this.logSums = new long[nodes.size()];
+		this.counts = new int[nodes.size()];
+	}
+
+	/** Resolves node actor paths, such as akka.tcp://gbce-0@127.0.0.1:2552/user/partition, in partition order. */
+	public static PartitionedStockExchange connect(Set<Stock> listing, ActorSystem actorSystem, List<String> nodePaths, Duration timeout){
+		FiniteDuration resolveTimeout = FiniteDuration.create(timeout.toMillis(), TimeUnit.MILLISECONDS);
+		List<ActorRef> nodes = new ArrayList<>(nodePaths.size());
+		for(String path: nodePaths){
+			try {
+				nodes.add(Await.result(actorSystem.actorSelection(path).resolveOne(resolveTimeout), resolveTimeout));
+			} catch (Exception e){
+				throw new IllegalStateException("Partition node "+path+" not found", e);
+			}
+		}
+		return new PartitionedStockExchange(listing, actorSystem, nodes, timeout);
+	}
+
+	@Override
+	public synchronized StockExchange open(){
+		if(!isOpen){
+			frontEnd = actorSystem.actorOf(Props.create(FrontEndActor.class, this));
+			for(ActorRef node: nodes){
+				node.tell(new PartitionProtocol.Join(frontEnd), frontEnd);
+			}
+			isOpen = true;
+		}
+		return this;
+	}
+
+	@Override
+	public synchronized StockExchange close(){
+		if(isOpen){
+			isOpen = false;
+			for(ActorRef node: nodes){
+				node.tell(new PartitionProtocol.Leave(frontEnd), frontEnd);
+			}
+			actorSystem.stop(frontEnd);
+		}
+		return this;
+	}
+
+	@Override
+	public boolean isOpen(){
+		return isOpen;
+	}
+
+	@Override
+	public Set<Stock> listing(){
+		return listing;
+	}
+
+	@Override
+	public Optional<Stock> find(String symbol){
+		return symbolIndex.find(symbol);
+	}
+
+	@Override
+	public List<Stock> findByPrefix(String prefix, int limit){
+		return symbolIndex.findByPrefix(prefix, limit);
+	}
+
+	@Override
+	public List<Stock> findInRange(String fromSymbol, String toSymbol, int limit){
+		return symbolIndex.findInRange(fromSymbol, toSymbol, limit);
+	}
+
+	/**
+	 * Sends the order to its node; rejects it at once if the node reported the stock queue full.
+	 * Orders dropped later by the node are counted by {@link #dropped()}.
+	 */
+	@Override
+	public void sell(Stock stock, int quantity, Money price){
+		if(route(stock, false, quantity, price) == OfferResult.FULL) throw new OrderRejectedException(stock);
+	}
+
+	/**
+	 * Sends the order to its node; rejects it at once if the node reported the stock queue full.
+	 * Orders dropped later by the node are counted by {@link #dropped()}.
+	 */
+	@Override
+	public void buy(Stock stock, int quantity, Money price){
+		if(route(stock, true, quantity, price) == OfferResult.FULL) throw new OrderRejectedException(stock);
+	}
+
+	@Override
+	public OfferResult offerSell(Stock stock, int quantity, Money price){
+		return route(stock, false, quantity, price);
+	}
+
+	@Override
+	public OfferResult offerBuy(Stock stock, int quantity, Money price){
+		return route(stock, true, quantity, price);
+	}
+
+	/** @return occupancy of the stock queue as last reported by its node */
+	@Override
+	public double occupancy(Stock stock){
+		int id = partitioning.id(stock);
+		return id >= 0 ? Double.longBitsToDouble(occupancy.get(id)) : 0d;
+	}
+
+	@Override
+	public Ticker watch(Stock stock){
+		int id = partitioning.id(stock);
+		return id >= 0 ? mirrors[id] : null;
+	}
+
+	@Override
+	public Subscription subscribe(Collection<Stock> stocks, TickerListener listener){
+		List<TickerTopic> topics = new ArrayList<>(stocks.size());
+		for(Stock stock: stocks){
+			int id = partitioning.id(stock);
+			if(id >= 0) topics.add(mirrors[id].topic());
+		}
+		return new TickerSubscriber(topics, listener, actorSystem.dispatcher());
+	}
+
+	@Override
+	public List<Candle> candles(Stock stock, Resolution resolution, int count){
+		int id = partitioning.id(stock);
+		if(id < 0) return Collections.<Candle>emptyList();
+		PartitionProtocol.Bars bars = (PartitionProtocol.Bars) ask(partitioning.partitionOf(id), new PartitionProtocol.CandlesQuery(id, resolution, count));
+		List<Candle> candles = new ArrayList<>(bars.starts.length);
+		for(int i = 0; i < bars.starts.length; i++){
+			candles.add(new Candle(resolution, PartitionActor.instantOf(bars.starts[i]), FixedMoney.toMoney(bars.opens[i]), FixedMoney.toMoney(bars.highs[i]),
+				FixedMoney.toMoney(bars.lows[i]), FixedMoney.toMoney(bars.closes[i]), bars.quantities[i], FixedMoney.toMoney(bars.volumes[i]), bars.trades[i]));
+		}
+		return candles;
+	}
+
+	@Override
+	public TradeSummary history(Stock stock, Instant from, Instant to){
+		int id = partitioning.id(stock);
+		if(id < 0) return TradeSummary.empty(from, to);
+		PartitionProtocol.Summary summary = (PartitionProtocol.Summary) ask(partitioning.partitionOf(id),
+			new PartitionProtocol.HistoryQuery(id, TradeWindow.timestampOf(from), TradeWindow.timestampOf(to)));
+		return new TradeSummary(from, to, summary.trades, summary.quantity, FixedMoney.toMoney(summary.volume),
+			FixedMoney.toMoney(summary.vwap), FixedMoney.toMoney(summary.low), FixedMoney.toMoney(summary.high));
+	}
+
+	/** @return geometric mean of all defined prices, from the partial log-sums last reported by the nodes */
+	@Override
+	public double allShareIndex(){
+		return allShareIndex;
+	}
+
+	/** @return snapshot of the ticker mirrors, as last reported by the nodes */
+	@Override
+	public MarketSnapshot snapshot(){
+		return marketSnapshots.take(Instant.now());
+	}
+
+	/**
+	 * @return metrics of all nodes combined, with orders rejected by this front-end added and
+	 * orders still on their way to a node counted as queued. Orders dropped by nodes are
+	 * among the rejected ones.
+	 */
+	@Override
+	public MetricsSnapshot metrics(){
+		long routed = sent.sum();
+		MetricsSnapshot total = null;
+		for(int p = 0; p < nodes.length; p++){
+			MetricsSnapshot snapshot = (MetricsSnapshot) ask(p, PartitionProtocol.METRICS_QUERY);
+			total = total == null ? snapshot : total.combine(snapshot);
+		}
+		long inFlight = Math.max(0, routed - total.tradesAccepted - total.tradesRejected);
+		return new MetricsSnapshot(total.tradesAccepted, total.tradesRejected + rejected.sum(), total.queued + inFlight,
+			total.tradeToPublish, total.queueDepth, total.tickDelay, total.indexUpdate, total.journalAppend, total.journalFsync, total.tickerQueues);
+	}
+
+	/** @return orders accepted by this front-end and then dropped by their node as the stock queue was full */
+	public long dropped(){
+		return dropped.sum();
+	}
+
+	public Partitioning partitioning(){
+		return partitioning;
+	}
+
+	private OfferResult route(Stock stock, boolean buy, int quantity, Money price){
+		if(!isOpen) throw new StockExchangeClosedException();
+		int id = partitioning.id(stock);
+		if(id < 0 || quantity <= 0 || !price.isDefined() || !FixedMoney.fits(price)){
+			rejected.increment();
+			return OfferResult.INVALID;
+		}
+		if(Double.longBitsToDouble(occupancy.get(id)) >= 1d){
+			rejected.increment();
+			return OfferResult.FULL;
+		}
+		nodes[partitioning.partitionOf(id)].tell(new PartitionProtocol.Order(id, buy, quantity, FixedMoney.valueOf(price)), frontEnd);
+		sent.increment();
+		return OfferResult.ACCEPTED;
+	}
+
+	private Object ask(int partition, Object query){
+		try {
+			return Await.result(Patterns.ask(nodes[partition], query, queryTimeout.toMillis()), queryTimeout);
+		} catch (Exception e){
+			throw new IllegalStateException("Partition "+partition+" did not answer in "+queryTimeout, e);
+		}
+	}
+
+	// called by the front-end actor only
+	private void update(PartitionProtocol.Quote quote){
+		TickerImpl mirror = mirrors[quote.stock];
+		mirror.slot().publish(quote.price, quote.quantity, quote.volume);
+		occupancy.set(quote.stock, Double.doubleToRawLongBits(quote.occupancy));
+		logSum += quote.logSum - logSums[quote.partition];
+		count += quote.count - counts[quote.partition];
+		logSums[quote.partition] = quote.logSum;
+		counts[quote.partition] = quote.count;
+		allShareIndex = AllShareIndex.valueOf(logSum, count);
+		mirror.topic().publish();
+	}
+
+	private static class FrontEndActor extends UntypedActor {
+
+		private final PartitionedStockExchange exchange;
+
+		public FrontEndActor(PartitionedStockExchange exchange){
+			this.exchange = exchange;
+		}
+
+		@Override
+		public void onReceive(Object message) throws Exception {
+			if(message instanceof PartitionProtocol.Quote){
+				exchange.update((PartitionProtocol.Quote) message);
+			} else if(message instanceof PartitionProtocol.Dropped){
+				exchange.dropped.increment();
+			} else unhandled(message);
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+package me.arturopala.stockexchange.partition;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import me.arturopala.stockexchange.api.Stock;
+
+/**
+ * Assignment of listed stocks to partitions by consistent hashing of {@link Stock#symbol()}.
+ * Every partition owns a number of virtual points on a 64-bit hash ring and a stock belongs
+ * to the owner of the first point at or after the hash of its symbol, so adding a partition
+ * moves only the stocks that land on its points. Stocks are also numbered in symbol order,
+ * which lets nodes and the front-end refer to them by id; any two instances built from the
+ * same listing and number of partitions agree on both.
+ */
+public final class Partitioning {
+
+	public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+	private final int partitions;
+	private final long[] points;
+	private final int[] owners;
+	private final Stock[] stocks;
+	private final int[] partitionOf;
+	private final Map<Stock, Integer> ids = new HashMap<>();
+
+	public Partitioning(Set<Stock> listing, int partitions){
+		this(listing, partitions, DEFAULT_VIRTUAL_NODES);
+	}
+
+	public Partitioning(Set<Stock> listing, int partitions, int virtualNodes){
+		if(partitions < 1) throw new IllegalArgumentException("At least one partition required");
+		if(virtualNodes < 1) throw new IllegalArgumentException("At least one virtual node required");
+		this.partitions = partitions;
+		int size = partitions * virtualNodes;
+		long[][] ring = new long[size][];
+		for(int p = 0; p < partitions; p++){
+			for(int v = 0; v < virtualNodes; v++){
+				ring[p * virtualNodes + v] = new long[]{ mix(p * 0x9E3779B97F4A7C15L + v), p };
+			}
+		}
+		Arrays.sort(ring, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+		this.points = new long[size];
+		this.owners = new int[size];
+		for(int i = 0; i < size; i++){
+			points[i] = ring[i][0];
+			owners[i] = (int) ring[i][1];
+		}
+		this.stocks = listing.stream()
+			.sorted(Comparator.comparing(Stock::symbol).thenComparing(Stock::type))
+			.toArray(Stock[]::new);
+		this.partitionOf = new int[stocks.length];
+		for(int id = 0; id < stocks.length; id++){
+			ids.put(stocks[id], id);
+			partitionOf[id] = partitionOf(stocks[id].symbol());
+		}
+	}
+
+	public int partitions(){
+		return partitions;
+	}
+
+	/** @return owner of the first ring point at or after the symbol hash, wrapping around */
+	public int partitionOf(String symbol){
+		long hash = hash(symbol);
+		int index = Arrays.binarySearch(points, hash);
+		if(index < 0) index = -index - 1;
+		return owners[index == points.length ? 0 : index];
+	}
+
+	public int partitionOf(int id){
+		return partitionOf[id];
+	}
+
+	/** @return id of the listed stock, or -1 */
+	public int id(Stock stock){
+		Integer id = ids.get(stock);
+		return id != null ? id : -1;
+	}
+
+	public Stock stock(int id){
+		return stocks[id];
+	}
+
+	public int size(){
+		return stocks.length;
+	}
+
+	public Set<Stock> listing(int partition){
+		Set<Stock> listing = new HashSet<>();
+		for(int id = 0; id < stocks.length; id++){
+			if(partitionOf[id] == partition) listing.add(stocks[id]);
+		}
+		return Collections.unmodifiableSet(listing);
+	}
+
+	/** FNV-1a of the symbol chars, spread by the MurmurHash3 finalizer. */
+	static long hash(String symbol){
+		long hash = 0xcbf29ce484222325L;
+		for(int i = 0; i < symbol.length(); i++){
+			hash ^= symbol.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return mix(hash);
+	}
+
+	private static long mix(long value){
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+
+}
@@ -0,0 +1,179 @@
+package me.arturopala.stockexchange.ringimpl;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.simpleimpl.TickerState;
+import me.arturopala.stockexchange.simpleimpl.TradeType;
+import me.arturopala.stockexchange.journal.Journal;
+import me.arturopala.stockexchange.journal.SnapshotStore;
+import me.arturopala.stockexchange.metrics.ExchangeMetrics;
+
+/**
+ * Consumer of a single {@link TradeRing}, the only writer of the ticker states
+ * of its partition. Drains all published events at once and publishes
+ * each touched ticker once per drained batch. Periodically, and once more when
+ * stopped, saves snapshots of its changed tickers and runs the exchange checkpoint.
+ */
+final class RingPartition implements Runnable {
+
+	private static final long EXPIRY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final TradeRing ring;
+	private final TickerState[] states;
+	private final int[] ownStocks;
+	private final Journal journal;
+	private final int[] journalIds;
+	private final Clock clock;
+	private final long periodMicros;
+	private final ExchangeMetrics metrics;
+	private final Stock[] stocks;
+	private final SnapshotStore snapshots;
+	private final Runnable checkpoint;
+
+	private final boolean[] isDirty;
+	private final boolean[] changed;
+	private final int[] dirty;
+	private int dirtyCount = 0;
+
+	private volatile boolean running = true;
+
+	RingPartition(TradeRing ring, TickerState[] states, int[] ownStocks, Journal journal, int[] journalIds, Clock clock, long periodMicros, ExchangeMetrics metrics){
+		this(ring, states, ownStocks, journal, journalIds, clock, periodMicros, metrics, null, SnapshotStore.NONE, () -> {});
+	}
+
+	/** @param checkpoint run after each round of snapshots */
+	RingPartition(TradeRing ring, TickerState[] states, int[] ownStocks, Journal journal, int[] journalIds, Clock clock, long periodMicros, ExchangeMetrics metrics,
+			Stock[] stocks, SnapshotStore snapshots, Runnable checkpoint){
+		this.ring = ring;
+		this.states = states;
+		this.ownStocks = ownStocks;
+		this.journal = journal;
+		this.journalIds = journalIds;
+		this.clock = clock;
+		this.periodMicros = periodMicros;
+		this.metrics = metrics;
+		this.stocks = stocks;
+		this.snapshots = snapshots;
+		this.checkpoint = checkpoint;
+		this.isDirty = new boolean[states.length];
+		this.changed = new boolean[states.length];
+		this.dirty = new int[ownStocks.length];
+	}
+
+	@Override
+	public void run(){
+		long next = ring.consumed() + 1;
+		long nextExpiry = System.nanoTime() + EXPIRY_INTERVAL_NANOS;
+		boolean snapshotting = snapshots != SnapshotStore.NONE && !snapshots.interval().isZero();
+		long nextSnapshot = System.nanoTime() + snapshots.interval().toNanos();
+		int idle = 0;
+		while(running){
+			long available = ring.highestPublished(next);
+			if(available >= next){
+				consume(next, available);
+				next = available + 1;
+				idle = 0;
+			} else {
+				idle = idle(idle);
+			}
+			if(System.nanoTime() - nextExpiry >= 0){
+				expire(clock.millis() * 1000L - periodMicros);
+				metrics.tickDelay.record(System.nanoTime() - nextExpiry);
+				nextExpiry = System.nanoTime() + EXPIRY_INTERVAL_NANOS;
+			}
+			if(snapshotting && System.nanoTime() - nextSnapshot >= 0){
+				snapshot();
+				checkpoint.run();
+				nextSnapshot = System.nanoTime() + snapshots.interval().toNanos();
+			}
+		}
+		// stopped only once the ring is sealed and every slot claimed before is published
+		long available;
+		while((available = ring.highestPublished(next)) >= next){
+			consume(next, available);
+			next = available + 1;
+		}
+		snapshot();
+	}
+
+	void stop(){
+		running = false;
+	}
+
+	private void consume(long from, long to){
+		metrics.dequeued((int)(to - from + 1), ring.claimed() - from + 1);
+		for(long sequence = from; sequence <= to; sequence++){
+			int stockId = ring.stockId(sequence);
+			long timestamp = ring.timestamp(sequence);
+			long price = ring.price(sequence);
+			int quantity = ring.quantity(sequence);
+			// checked before journaling, so a trade overflowing the totals is neither journaled nor half applied
+			if(!states[stockId].canAdd(price, quantity)){
+				metrics.rejected(1);
+				continue;
+			}
+			states[stockId].unsaved();
+			long position = journal.append(journalIds[stockId], ring.isBuy(sequence) ? TradeType.BUY : TradeType.SELL, price, quantity, timestamp);
+			if(position == Journal.FAILED){
+				continue;
+			}
+			states[stockId].journalPosition(position);
+			states[stockId].add(timestamp, price, quantity);
+			changed[stockId] = true;
+			if(!isDirty[stockId]){
+				isDirty[stockId] = true;
+				dirty[dirtyCount++] = stockId;
+			}
+		}
+		for(int i = 0; i < dirtyCount; i++){
+			int stockId = dirty[i];
+			isDirty[stockId] = false;
+			states[stockId].publish();
+		}
+		dirtyCount = 0;
+		long published = System.nanoTime();
+		for(long sequence = from; sequence <= to; sequence++){
+			metrics.tradeToPublish.record(published - ring.writtenNanos(sequence));
+		}
+		ring.release(to);
+	}
+
+	private void expire(long last){
+		for(int stockId: ownStocks){
+			if(states[stockId].expire(last)){
+				changed[stockId] = true;
+				states[stockId].publish();
+			}
+		}
+	}
+
+	/** Saves the states of own tickers which changed since their last snapshot. */
+	private void snapshot(){
+		if(snapshots == SnapshotStore.NONE) return;
+		for(int stockId: ownStocks){
+			if(changed[stockId]){
+				// every trade of this partition journaled so far is already in its states
+				long position = journal.position();
+				if(snapshots.save(stocks[stockId], states[stockId].snapshot(position))){
+					states[stockId].saved(position);
+					changed[stockId] = false;
+				}
+			}
+		}
+	}
+
+	private static int idle(int idle){
+		if(idle < 100){
+			return idle + 1;
+		} else if(idle < 200){
+			Thread.yield();
+			return idle + 1;
+		} else {
+			LockSupport.parkNanos(100000);
+			return idle;
+		}
+	}
+
+}
@@ -0,0 +1,412 @@
+package me.arturopala.stockexchange.ringimpl;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.LockSupport;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import me.arturopala.stockexchange.api.*;
+import me.arturopala.stockexchange.util.*;
+import me.arturopala.stockexchange.journal.Journal;
+import me.arturopala.stockexchange.journal.JournalRecovery;
+import me.arturopala.stockexchange.journal.SnapshotStore;
+import me.arturopala.stockexchange.history.TradeHistory;
+import me.arturopala.stockexchange.metrics.ExchangeMetrics;
+import me.arturopala.stockexchange.metrics.MetricsSnapshot;
+import me.arturopala.stockexchange.simpleimpl.AllShareIndex;
+import me.arturopala.stockexchange.simpleimpl.MarketSnapshots;
+import me.arturopala.stockexchange.simpleimpl.TickerImpl;
+import me.arturopala.stockexchange.simpleimpl.TickerSlots;
+import me.arturopala.stockexchange.simpleimpl.TickerState;
+import me.arturopala.stockexchange.simpleimpl.TickerSubscriber;
+import me.arturopala.stockexchange.simpleimpl.TickerTopic;
+import me.arturopala.stockexchange.simpleimpl.TradeWindow;
+
+/**
+ * Stock exchange without actors: stocks are split into partitions, each owned by
+ * a dedicated consumer thread reading its own preallocated {@link TradeRing}.
+ * Producers claim ring slots lock-free and publish by sequence, so a trade costs
+ * no message allocation and no mailbox enqueue. Close seals the rings and waits
+ * until the slots claimed before are published, so that every accepted trade
+ * is consumed and journaled.
+ * With a journal, the first open recovers ticker states from snapshots and the
+ * journal tail, and consumers take snapshots letting the journal reuse segments.
+ */
+public class RingStockExchange implements StockExchange {
+
+	private final Set<Stock> listing;
+	private final SymbolIndex symbolIndex;
+	private final Clock clock;
+	private final Duration priceCalculationPeriod;
+	private final Map<Stock, Integer> stockIds = new HashMap<>();
+	private final TickerImpl[] tickers;
+	private final TickerState[] states;
+	private final int[] partitionOf;
+	private final TradeRing[] rings;
+	private final int[][] partitionStocks;
+	private final int[] journalIds;
+	private final Journal journal;
+	private final SnapshotStore snapshots;
+	private final Stock[] stocks;
+	private final AllShareIndex allShareIndex = new AllShareIndex();
+	private final ExchangeMetrics metrics = new ExchangeMetrics();
+	private final MarketSnapshots marketSnapshots = new MarketSnapshots();
+	private final Admission admission;
+	private final int ringCapacity;
+
+	private volatile boolean isOpen = false;
+	private boolean recovered = false;
+	private volatile long checkpoint = 0;
+	private RingPartition[] consumers;
+	private Thread[] threads;
+
+	private static final long ADMISSION_PARK_NANOS = 10000;
+
+	public RingStockExchange(Set<Stock> listing){
+		this(listing, ExchangeOptions.DEFAULT);
+	}
+
+	public RingStockExchange(Set<Stock> listing, Clock clock){
+		this(listing, new ExchangeOptions.Builder().clock(clock).build());
+	}
+
+	public RingStockExchange(Set<Stock> listing, Clock clock, Duration priceCalculationPeriod){
+		this(listing, new ExchangeOptions.Builder().clock(clock).priceCalculationPeriod(priceCalculationPeriod).build());
+	}
+
+	/**
+	 * @param options clock, period, partitions, ring size, journal, snapshots, history directory and admission
+	 * of the exchange, admission bounding the trades waiting in each partition ring at most to the ring size
+	 */
+	public RingStockExchange(Set<Stock> listing, ExchangeOptions options){
+		int partitions = options.partitions;
+		this.listing = Collections.unmodifiableSet(listing);
+		this.symbolIndex = new SymbolIndex(listing);
+		this.clock = options.clock;
+		this.priceCalculationPeriod = options.priceCalculationPeriod;
+		this.tickers = new TickerImpl[listing.size()];
+		this.states = new TickerState[listing.size()];
+		this.partitionOf = new int[listing.size()];
+		this.rings = new TradeRing[partitions];
+		this.partitionStocks = new int[partitions][];
+		this.journalIds = new int[listing.size()];
+		this.journal = options.journal;
+		metrics.journal(journal.stats());
+		this.snapshots = options.snapshots;
+		this.stocks = new Stock[listing.size()];
+		this.admission = options.admission(Admission.reject(options.ringSize));
+		this.ringCapacity = Math.min(admission.capacity, options.ringSize);
+		int[] partitionSizes = new int[partitions];
+		TickerSlots slots = new TickerSlots(Math.max(1, listing.size()));
+		int id = 0;
+		for(Stock stock: listing){
+			stockIds.put(stock, id);
+			stocks[id] = stock;
+			tickers[id] = new TickerImpl(stock, slots.allocate(stock), ForkJoinPool.commonPool(), TradeHistory.of(stock, options.historyDirectory));
+			states[id] = new TickerState(tickers[id], allShareIndex, metrics);
+			journalIds[id] = journal.register(stock);
+			partitionOf[id] = id % partitions;
+			partitionSizes[id % partitions]++;
+			id++;
+		}
+		for(int p = 0; p < partitions; p++){
+			rings[p] = new TradeRing(options.ringSize);
+			partitionStocks[p] = new int[partitionSizes[p]];
+			partitionSizes[p] = 0;
+		}
+		for(int i = 0; i < id; i++){
+			int p = partitionOf[i];
+			partitionStocks[p][partitionSizes[p]++] = i;
+		}
+		marketSnapshots.layout(Arrays.asList(tickers));
+	}
+
+	@Override
+	public synchronized StockExchange open(){
+		if(!isOpen){
+			if(!recovered){
+				recover();
+				recovered = true;
+			}
+			if(snapshots != SnapshotStore.NONE && !snapshots.interval().isZero()){
+				checkpoint = snapshots.checkpoint();
+				journal.truncate(checkpoint);
+			}
+			long periodMicros = priceCalculationPeriod.toMillis() * 1000L;
+			consumers = new RingPartition[rings.length];
+			threads = new Thread[rings.length];
+			for(int p = 0; p < rings.length; p++){
+				consumers[p] = new RingPartition(rings[p], states, partitionStocks[p], journal, journalIds, clock, periodMicros, metrics,
+					stocks, snapshots, this::checkpoint);
+				threads[p] = new Thread(consumers[p], "stockexchange-ring-"+p);
+				threads[p].setDaemon(true);
+			}
+			for(TradeRing ring: rings){
+				ring.unseal();
+			}
+			metrics.register(getClass().getSimpleName());
+			isOpen = true;
+			for(Thread thread: threads){
+				thread.start();
+			}
+		}
+		return this;
+	}
+
+	@Override
+	public synchronized StockExchange close(){
+		if(isOpen){
+			isOpen = false;
+			// a producer which claimed before sealing still publishes its slot, consumers drain it before they stop
+			for(TradeRing ring: rings){
+				long claimed = ring.seal();
+				while(ring.highestPublished(ring.consumed() + 1) < claimed){
+					LockSupport.parkNanos(ADMISSION_PARK_NANOS);
+				}
+			}
+			for(RingPartition consumer: consumers){
+				consumer.stop();
+			}
+			for(Thread thread: threads){
+				try {
+					thread.join();
+				} catch (InterruptedException e){
+					Thread.currentThread().interrupt();
+				}
+			}
+			// stopped consumers saved their snapshots
+			if(snapshots != SnapshotStore.NONE) checkpoint();
+			journal.flush();
+			metrics.unregister();
+		}
+		return this;
+	}
+
+	/** Rebuilds ticker states from snapshots and journal tail, publishing prices of restored stocks. */
+	private void recover(){
+		if(journal == Journal.NONE && snapshots == SnapshotStore.NONE) return;
+		Map<Stock, TickerState> recovering = new HashMap<>();
+		for(int id = 0; id < stocks.length; id++){
+			recovering.put(stocks[id], states[id]);
+		}
+		long windowStart = TradeWindow.timestampOf(Instant.now(clock).minus(priceCalculationPeriod));
+		for(Stock stock: JournalRecovery.recover(recovering, snapshots, journal, windowStart)){
+			states[stockIds.get(stock)].publish();
+		}
+	}
+
+	/**
+	 * Saves the journal position up to which the ticker snapshots hold every journaled trade,
+	 * where recovery starts replaying, and lets the journal reuse segments before it.
+	 */
+	private void checkpoint(){
+		// read first, a trade journaled after it cannot be missing from the tickers found saved
+		long position = journal.position();
+		for(TickerState state: states){
+			position = Math.min(position, state.savedPosition(position));
+		}
+		synchronized(states){
+			if(position > checkpoint && snapshots.checkpoint(position)){
+				checkpoint = position;
+				journal.truncate(position);
+			}
+		}
+	}
+
+	@Override
+	public boolean isOpen(){
+		return isOpen;
+	}
+
+	@Override
+	public Set<Stock> listing(){
+		return listing;
+	}
+
+	@Override
+	public Optional<Stock> find(String symbol){
+		return symbolIndex.find(symbol);
+	}
+
+	@Override
+	public List<Stock> findByPrefix(String prefix, int limit){
+		return symbolIndex.findByPrefix(prefix, limit);
+	}
+
+	@Override
+	public List<Stock> findInRange(String fromSymbol, String toSymbol, int limit){
+		return symbolIndex.findInRange(fromSymbol, toSymbol, limit);
+	}
+
+	@Override
+	public void sell(Stock stock, int quantity, Money price){
+		publish(stock, false, quantity, price);
+	}
+
+	@Override
+	public void buy(Stock stock, int quantity, Money price){
+		publish(stock, true, quantity, price);
+	}
+
+	@Override
+	public OfferResult offerSell(Stock stock, int quantity, Money price){
+		return offer(stock, false, quantity, price);
+	}
+
+	@Override
+	public OfferResult offerBuy(Stock stock, int quantity, Money price){
+		return offer(stock, true, quantity, price);
+	}
+
+	/** @return used fraction of the ring of the stock partition, shared with other stocks of the partition */
+	@Override
+	public double occupancy(Stock stock){
+		Integer id = stockIds.get(stock);
+		if(id == null) return 0d;
+		TradeRing ring = rings[partitionOf[id]];
+		return Math.min(1d, Math.max(0L, ring.claimed() - ring.consumed()) / (double) ringCapacity);
+	}
+
+	@Override
+	public void submit(OrderBatch batch){
+		if(isOpen){
+			long timestamp = clock.millis() * 1000L;
+			Set<Stock> rejected = null;
+			for(int i = 0; i < batch.size(); i++){
+				if(publish(batch.stock(i), batch.isBuy(i), batch.quantity(i), batch.fixedPrice(i), timestamp, waits()) == OfferResult.FULL){
+					if(rejected == null) rejected = new LinkedHashSet<>();
+					rejected.add(batch.stock(i));
+				}
+			}
+			if(rejected != null) throw new OrderRejectedException(rejected);
+		} else {
+			throw new StockExchangeClosedException();
+		}
+	}
+
+	@Override
+	public void offer(OrderBatch batch, OfferResult[] results){
+		if(isOpen){
+			long timestamp = clock.millis() * 1000L;
+			for(int i = 0; i < batch.size(); i++){
+				results[i] = publish(batch.stock(i), batch.isBuy(i), batch.quantity(i), batch.fixedPrice(i), timestamp, false);
+			}
+		} else {
+			throw new StockExchangeClosedException();
+		}
+	}
+
+	@Override
+	public Ticker watch(Stock stock){
+		Integer id = stockIds.get(stock);
+		return id != null ? tickers[id] : null;
+	}
+
+	@Override
+	public Subscription subscribe(Collection<Stock> stocks, TickerListener listener){
+		List<TickerTopic> topics = new ArrayList<>(stocks.size());
+		for(Stock stock: stocks){
+			Integer id = stockIds.get(stock);
+			if(id != null) topics.add(tickers[id].topic());
+		}
+		return new TickerSubscriber(topics, listener, ForkJoinPool.commonPool());
+	}
+
+	@Override
+	public List<Candle> candles(Stock stock, Resolution resolution, int count){
+		Integer id = stockIds.get(stock);
+		return id != null ? tickers[id].candles().last(resolution, count) : Collections.<Candle>emptyList();
+	}
+
+	@Override
+	public TradeSummary history(Stock stock, Instant from, Instant to){
+		Integer id = stockIds.get(stock);
+		return id != null ? tickers[id].history().summary(from, to) : TradeSummary.empty(from, to);
+	}
+
+	@Override
+	public double allShareIndex(){
+		return allShareIndex.value();
+	}
+
+	@Override
+	public MarketSnapshot snapshot(){
+		return marketSnapshots.take(Instant.now(clock));
+	}
+
+	@Override
+	public MetricsSnapshot metrics(){
+		return metrics.snapshot();
+	}
+
+	public long backlog(){
+		long backlog = 0;
+		for(TradeRing ring: rings){
+			backlog += ring.claimed() - ring.consumed();
+		}
+		return backlog;
+	}
+
+	private void publish(Stock stock, boolean buy, int quantity, Money price){
+		if(publish(stock, buy, quantity, price, waits()) == OfferResult.FULL){
+			throw new OrderRejectedException(stock);
+		}
+	}
+
+	private OfferResult offer(Stock stock, boolean buy, int quantity, Money price){
+		return publish(stock, buy, quantity, price, false);
+	}
+
+	private OfferResult publish(Stock stock, boolean buy, int quantity, Money price, boolean wait){
+		if(isOpen){
+			long fixedPrice = FixedMoney.fits(price) ? FixedMoney.valueOf(price) : FixedMoney.UNDEFINED;
+			return publish(stock, buy, quantity, fixedPrice, clock.millis() * 1000L, wait);
+		} else {
+			throw new StockExchangeClosedException();
+		}
+	}
+
+	private OfferResult publish(Stock stock, boolean buy, int quantity, long price, long timestamp, boolean wait){
+		if(quantity > 0 && FixedMoney.isDefined(price)){
+			Integer id = stockIds.get(stock);
+			if(id != null){
+				TradeRing ring = rings[partitionOf[id]];
+				long sequence = claim(ring, wait);
+				if(sequence < 0){
+					metrics.rejected(1);
+					return OfferResult.FULL;
+				}
+				ring.write(sequence, id, buy, quantity, price, timestamp);
+				metrics.accepted(1);
+				ring.publish(sequence);
+				return OfferResult.ACCEPTED;
+			}
+		}
+		metrics.rejected(1);
+		return OfferResult.INVALID;
+	}
+
+	/**
+	 * @return claimed sequence, or -1 if the ring stayed full, waiting up to the admission timeout if asked to
+	 * @throws StockExchangeClosedException when the ring was sealed by close
+	 */
+	private long claim(TradeRing ring, boolean wait){
+		long sequence = ring.tryClaim(1, ringCapacity);
+		if(sequence >= 0) return sequence;
+		if(ring.isSealed()) throw new StockExchangeClosedException();
+		if(!wait) return sequence;
+		long deadline = System.nanoTime() + admission.timeout.toNanos();
+		while((sequence = ring.tryClaim(1, ringCapacity)) < 0){
+			if(ring.isSealed()) throw new StockExchangeClosedException();
+			if(System.nanoTime() - deadline >= 0) return -1;
+			LockSupport.parkNanos(ADMISSION_PARK_NANOS);
+		}
+		return sequence;
+	}
+
+	private boolean waits(){
+		return admission.policy == Admission.Policy.BLOCK;
+	}
+
+}
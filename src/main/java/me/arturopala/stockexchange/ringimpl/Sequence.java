@@ -0,0 +1,53 @@
+package me.arturopala.stockexchange.ringimpl;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+class LhsPadding {
+	protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+class Value extends LhsPadding {
+	protected volatile long value;
+}
+
+class RhsPadding extends Value {
+	protected long p9, p10, p11, p12, p13, p14, p15;
+}
+
+/**
+ * Sequence counter padded on both sides to keep it on its own cache line.
+ */
+public final class Sequence extends RhsPadding {
+
+	private static final AtomicLongFieldUpdater<Value> UPDATER = AtomicLongFieldUpdater.newUpdater(Value.class, "value");
+
+	public Sequence(long initialValue){
+		UPDATER.lazySet(this, initialValue);
+	}
+
+	public long get(){
+		return value;
+	}
+
+	public void set(long newValue){
+		value = newValue;
+	}
+
+	public void lazySet(long newValue){
+		UPDATER.lazySet(this, newValue);
+	}
+
+	public long getAndAdd(long delta){
+		return UPDATER.getAndAdd(this, delta);
+	}
+
+	public boolean compareAndSet(long expected, long newValue){
+		return UPDATER.compareAndSet(this, expected, newValue);
+	}
+
+	@Override
+	public String toString(){
+		return Long.toString(value);
+	}
+
+}
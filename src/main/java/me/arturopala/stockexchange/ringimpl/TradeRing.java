@@ -0,0 +1,161 @@
+package me.arturopala.stockexchange.ringimpl;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Preallocated multi-producer, single-consumer ring of trade events.
+ * Producers claim sequences with a compare-and-set bounded by the free slots, write the slot columns
+ * and mark the slot as published with its wrap round; the consumer advances
+ * its own gating sequence once the slots are processed. A sealed ring
+ * refuses further claims within the same compare-and-set.
+ */
+public final class TradeRing {
+
+	private final int size;
+	private final int mask;
+	private final int indexShift;
+
+	private final long[] timestamps;
+	private final long[] prices;
+	private final int[] stockIds;
+	private final int[] quantities;
+	private final boolean[] buys;
+	private final long[] written;
+	private final AtomicIntegerArray published;
+
+	/** Offset added to the cursor when sealed, far beyond any sequence actually claimed. */
+	private static final long SEALED = 1L << 62;
+
+	private final Sequence cursor = new Sequence(-1);
+	private final Sequence gating = new Sequence(-1);
+
+	public TradeRing(int requestedSize){
+		if(requestedSize < 1 || Integer.bitCount(requestedSize) != 1) throw new IllegalArgumentException("Ring size must be a power of 2");
+		this.size = requestedSize;
+		this.mask = requestedSize - 1;
+		this.indexShift = Integer.numberOfTrailingZeros(requestedSize);
+		this.timestamps = new long[size];
+		this.prices = new long[size];
+		this.stockIds = new int[size];
+		this.quantities = new int[size];
+		this.buys = new boolean[size];
+		this.written = new long[size];
+		this.published = new AtomicIntegerArray(size);
+		for(int i = 0; i < size; i++){
+			published.lazySet(i, -1);
+		}
+	}
+
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Claims next n sequences only if at most limit slots would then be in use, never waits.
+	 * @return highest claimed sequence, or -1 when there is no room or the ring is sealed
+	 */
+	public long tryClaim(int n, int limit){
+		if(n < 1 || n > size) throw new IllegalArgumentException("Cannot claim "+n+" slots in ring of size "+size);
+		int bound = Math.min(limit, size);
+		long current;
+		do {
+			current = cursor.get();
+			// a sealed cursor never fits the bound
+			if(current + n - gating.get() > bound) return -1;
+		} while(!cursor.compareAndSet(current, current + n));
+		return current + n;
+	}
+
+	public void write(long sequence, int stockId, boolean buy, int quantity, long price, long timestamp){
+		int index = (int) sequence & mask;
+		stockIds[index] = stockId;
+		buys[index] = buy;
+		quantities[index] = quantity;
+		prices[index] = price;
+		timestamps[index] = timestamp;
+		written[index] = System.nanoTime();
+	}
+
+	public void publish(long sequence){
+		published.lazySet((int) sequence & mask, (int) (sequence >>> indexShift));
+	}
+
+	public boolean isPublished(long sequence){
+		return published.get((int) sequence & mask) == (int) (sequence >>> indexShift);
+	}
+
+	/**
+	 * Refuses all further claims.
+	 * @return highest sequence claimed before sealing
+	 */
+	public long seal(){
+		long current;
+		do {
+			current = cursor.get();
+			if(isSealed(current)) return current - SEALED;
+		} while(!cursor.compareAndSet(current, current + SEALED));
+		return current;
+	}
+
+	/** Accepts claims again, continuing from the sequence claimed before sealing. */
+	public void unseal(){
+		long current = cursor.get();
+		if(isSealed(current)) cursor.set(current - SEALED);
+	}
+
+	public boolean isSealed(){
+		return isSealed(cursor.get());
+	}
+
+	private static boolean isSealed(long cursor){
+		return cursor >= SEALED / 2;
+	}
+
+	/** @return highest sequence up to which all slots starting at next are published */
+	public long highestPublished(long next){
+		long available = claimed();
+		for(long sequence = next; sequence <= available; sequence++){
+			if(!isPublished(sequence)) return sequence - 1;
+		}
+		return available;
+	}
+
+	public void release(long sequence){
+		gating.lazySet(sequence);
+	}
+
+	public long consumed(){
+		return gating.get();
+	}
+
+	public long claimed(){
+		long current = cursor.get();
+		return isSealed(current) ? current - SEALED : current;
+	}
+
+	public int stockId(long sequence){
+		return stockIds[(int) sequence & mask];
+	}
+
+	public boolean isBuy(long sequence){
+		return buys[(int) sequence & mask];
+	}
+
+	public int quantity(long sequence){
+		return quantities[(int) sequence & mask];
+	}
+
+	public long price(long sequence){
+		return prices[(int) sequence & mask];
+	}
+
+	public long timestamp(long sequence){
+		return timestamps[(int) sequence & mask];
+	}
+
+	/** @return {@link System#nanoTime()} when the slot was written */
+	public long writtenNanos(long sequence){
+		return written[(int) sequence & mask];
+	}
+
+}
@@ -0,0 +1,57 @@
+package me.arturopala.stockexchange.simpleimpl;
+
+import java.util.concurrent.atomic.LongAdder;
+import me.arturopala.stockexchange.util.FixedMoney;
+
+/**
+ * Geometric mean of all defined stock prices, maintained incrementally as a running
+ * sum of logarithms. Logarithms are kept as fixed-point longs, so replacing a price
+ * subtracts exactly what was added before and the sum never drifts.
+ * Price changes of tickers only add their difference to a striped sum, so tickers
+ * updated by different threads do not contend. The lock is taken only when a price
+ * becomes defined or undefined, which changes the count, and when reading, so a
+ * reader never sees the sum of one count with another count.
+ */
+public class AllShareIndex {
+
+	private static final double LOG_SCALE = 1e12;
+
+	private final LongAdder logSum = new LongAdder();
+	private int count = 0;
+
+	public void update(long previousPrice, long currentPrice){
+		if(previousPrice == currentPrice) return;
+		boolean wasDefined = FixedMoney.isDefined(previousPrice);
+		boolean isDefined = FixedMoney.isDefined(currentPrice);
+		if(!wasDefined && !isDefined) return;
+		long delta = (isDefined ? scaledLog(currentPrice) : 0) - (wasDefined ? scaledLog(previousPrice) : 0);
+		if(wasDefined && isDefined){
+			logSum.add(delta);
+		} else synchronized(this){
+			logSum.add(delta);
+			count += isDefined ? 1 : -1;
+		}
+	}
+
+	public synchronized double value(){
+		return valueOf(logSum.sum(), count);
+	}
+
+	public synchronized long logSum(){
+		return logSum.sum();
+	}
+
+	public synchronized int count(){
+		return count;
+	}
+
+	public static long scaledLog(long fixedPrice){
+		return Math.round(Math.log(FixedMoney.doubleValue(fixedPrice)) * LOG_SCALE);
+	}
+
+	public static double valueOf(long logSum, int count){
+		if(count > 0) return Math.exp(logSum / LOG_SCALE / count);
+		else return Double.NaN;
+	}
+
+}
@@ -0,0 +1,218 @@
+package me.arturopala.stockexchange.simpleimpl;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import me.arturopala.stockexchange.api.Candle;
+import me.arturopala.stockexchange.api.Resolution;
+import me.arturopala.stockexchange.util.FixedMoney;
+
+/**
+ * OHLCV bars of one stock at every {@link Resolution}, each kept in a bounded ring
+ * of primitive columns holding the latest bars with at least one trade.
+ * A trade updates all resolutions in one pass without allocating, and a late trade
+ * moves the open or close of its bar only if it is earlier or later than them.
+ * Meant to have a single writer; readers try an optimistic read first and fall back
+ * to a read lock, blocking the writer while they copy, when a write overlapped it.
+ */
+public final class CandleAggregator {
+
+	public static final int DEFAULT_HISTORY = 256;
+
+	private static final Resolution[] RESOLUTIONS = Resolution.values();
+
+	private final StampedLock lock = new StampedLock();
+	private final Bars[] bars = new Bars[RESOLUTIONS.length];
+
+	public CandleAggregator(){
+		this(DEFAULT_HISTORY);
+	}
+
+	public CandleAggregator(int history){
+		int capacity = Integer.highestOneBit(Math.max(2, history - 1) << 1);
+		for(Resolution resolution: RESOLUTIONS){
+			bars[resolution.ordinal()] = new Bars(resolution.duration().toNanos() / 1000, capacity);
+		}
+	}
+
+	/** @param timestamp trade time in microseconds, see {@link TradeWindow#timestampOf(Instant)} */
+	public void add(long timestamp, long price, int quantity){
+		long value = FixedMoney.multiply(price, quantity);
+		long stamp = lock.writeLock();
+		try {
+			for(Bars resolutionBars: bars){
+				resolutionBars.add(timestamp, price, quantity, value);
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/** @return up to count latest bars, oldest first */
+	public List<Candle> last(Resolution resolution, int count){
+		if(count <= 0) return Collections.<Candle>emptyList();
+		Bars resolutionBars = bars[resolution.ordinal()];
+		Bars copy = new Bars(resolutionBars.width, Integer.highestOneBit(Math.max(2, Math.min(count, resolutionBars.capacity()) - 1) << 1));
+		long stamp = lock.tryOptimisticRead();
+		resolutionBars.copyLast(count, copy);
+		if(!lock.validate(stamp)){
+			stamp = lock.readLock();
+			try {
+				resolutionBars.copyLast(count, copy);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		List<Candle> candles = new ArrayList<>(copy.size);
+		for(int i = 0; i < copy.size; i++){
+			candles.add(copy.candle(resolution, i));
+		}
+		return candles;
+	}
+
+	public int size(Resolution resolution){
+		long stamp = lock.readLock();
+		try {
+			return bars[resolution.ordinal()].size;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/** Bars of one resolution, slot of the newest bar at head. */
+	private static final class Bars {
+
+		final long width;
+		final long[] starts;
+		final long[] opens;
+		final long[] highs;
+		final long[] lows;
+		final long[] closes;
+		final long[] openTimes;
+		final long[] closeTimes;
+		final long[] quantities;
+		final long[] volumes;
+		final int[] trades;
+		final int mask;
+
+		int head = 0;
+		int size = 0;
+
+		Bars(long width, int capacity){
+			this.width = width;
+			this.starts = new long[capacity];
+			this.opens = new long[capacity];
+			this.highs = new long[capacity];
+			this.lows = new long[capacity];
+			this.closes = new long[capacity];
+			this.openTimes = new long[capacity];
+			this.closeTimes = new long[capacity];
+			this.quantities = new long[capacity];
+			this.volumes = new long[capacity];
+			this.trades = new int[capacity];
+			this.mask = capacity - 1;
+		}
+
+		int capacity(){
+			return starts.length;
+		}
+
+		void add(long timestamp, long price, int quantity, long value){
+			long start = timestamp - Math.floorMod(timestamp, width);
+			if(size > 0 && starts[head] == start){
+				update(head, timestamp, price, quantity, value);
+			} else if(size == 0 || starts[head] < start){
+				head = (head + 1) & mask;
+				if(size < starts.length) size++;
+				open(head, start, timestamp, price, quantity, value);
+			} else {
+				addLate(start, timestamp, price, quantity, value);
+			}
+		}
+
+		// trade older than the newest bar: update its bar or insert one, shifting the newer bars
+		private void addLate(long start, long timestamp, long price, int quantity, long value){
+			int age = 0;
+			while(age < size && starts[(head - age) & mask] > start) age++;
+			if(age < size && starts[(head - age) & mask] == start){
+				update((head - age) & mask, timestamp, price, quantity, value);
+				return;
+			}
+			if(age == starts.length) return;
+			for(int i = 0; i < age; i++){
+				move((head + 1 - i) & mask, (head - i) & mask);
+			}
+			head = (head + 1) & mask;
+			if(size < starts.length) size++;
+			open((head - age) & mask, start, timestamp, price, quantity, value);
+		}
+
+		private void open(int slot, long start, long timestamp, long price, int quantity, long value){
+			starts[slot] = start;
+			opens[slot] = price;
+			highs[slot] = price;
+			lows[slot] = price;
+			closes[slot] = price;
+			openTimes[slot] = timestamp;
+			closeTimes[slot] = timestamp;
+			quantities[slot] = quantity;
+			volumes[slot] = value;
+			trades[slot] = 1;
+		}
+
+		private void update(int slot, long timestamp, long price, int quantity, long value){
+			if(timestamp < openTimes[slot]){
+				opens[slot] = price;
+				openTimes[slot] = timestamp;
+			}
+			if(timestamp >= closeTimes[slot]){
+				closes[slot] = price;
+				closeTimes[slot] = timestamp;
+			}
+			if(price > highs[slot]) highs[slot] = price;
+			if(price < lows[slot]) lows[slot] = price;
+			quantities[slot] += quantity;
+			volumes[slot] = FixedMoney.add(volumes[slot], value);
+			trades[slot]++;
+		}
+
+		private void move(int to, int from){
+			starts[to] = starts[from];
+			opens[to] = opens[from];
+			highs[to] = highs[from];
+			lows[to] = lows[from];
+			closes[to] = closes[from];
+			openTimes[to] = openTimes[from];
+			closeTimes[to] = closeTimes[from];
+			quantities[to] = quantities[from];
+			volumes[to] = volumes[from];
+			trades[to] = trades[from];
+		}
+
+		/** Copies up to count newest bars into target, oldest first from slot 0. */
+		void copyLast(int count, Bars target){
+			int n = Math.min(Math.min(count, size), target.capacity());
+			for(int i = 0; i < n; i++){
+				int from = (head - n + 1 + i) & mask;
+				target.starts[i] = starts[from];
+				target.opens[i] = opens[from];
+				target.highs[i] = highs[from];
+				target.lows[i] = lows[from];
+				target.closes[i] = closes[from];
+				target.quantities[i] = quantities[from];
+				target.volumes[i] = volumes[from];
+				target.trades[i] = trades[from];
+			}
+			target.size = n;
+		}
+
+		Candle candle(Resolution resolution, int i){
+			Instant start = Instant.ofEpochSecond(Math.floorDiv(starts[i], 1000000L), Math.floorMod(starts[i], 1000000L) * 1000L);
+			return new Candle(resolution, start, FixedMoney.toMoney(opens[i]), FixedMoney.toMoney(highs[i]), FixedMoney.toMoney(lows[i]),
+				FixedMoney.toMoney(closes[i]), quantities[i], FixedMoney.toMoney(volumes[i]), trades[i]);
+		}
+	}
+
+}
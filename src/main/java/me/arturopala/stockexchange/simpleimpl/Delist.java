@@ -0,0 +1,10 @@
+package me.arturopala.stockexchange.simpleimpl;
+
+/** Tells the ticker actor to leave the all share index and stop, after trades queued before. */
+public final class Delist {
+
+	public static final Delist INSTANCE = new Delist();
+
+	private Delist(){}
+
+}
@@ -0,0 +1,221 @@
+package me.arturopala.stockexchange.simpleimpl;
+
+import java.time.Instant;
+import java.util.*;
+import me.arturopala.stockexchange.api.MarketSnapshot;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.api.Ticker;
+import me.arturopala.stockexchange.util.FixedMoney;
+import me.arturopala.stockexchange.util.Money;
+
+/**
+ * Copy-on-write source of {@link MarketSnapshot}s of a set of tickers. Every ticker slot version
+ * is read once per snapshot and only changed slots are copied out, each one untorn, and the index
+ * is kept from the same states. States are held in chunks of 256 stocks, and only chunks with
+ * a changed ticker are copied, so a new snapshot costs a scan of the versions plus the changes
+ * since the last one, and the trade path is not involved at all.
+ */
+public final class MarketSnapshots {
+
+	private static final int CHUNK_BITS = 8;
+	private static final int CHUNK = 1 << CHUNK_BITS;
+	private static final Comparator<TickerImpl> ORDER = Comparator
+		.comparing((TickerImpl ticker) -> ticker.stock().symbol())
+		.thenComparing(ticker -> ticker.stock().type());
+
+	private TickerSlots.Slot[] slots = new TickerSlots.Slot[0];
+	private long[] versions = new long[0];
+	private List<Stock> stocks = Collections.emptyList();
+	private Map<Stock, Integer> positions = Collections.emptyMap();
+	private Quote[][] chunks = new Quote[0][];
+	private long logSum = 0;
+	private int count = 0;
+	private long epoch = 0;
+	private MarketSnapshot last;
+
+	/** Replaces the tickers to take snapshots of, the next snapshot gets a new epoch. */
+	public synchronized void layout(Collection<TickerImpl> tickers){
+		TickerImpl[] sorted = tickers.toArray(new TickerImpl[tickers.size()]);
+		Arrays.sort(sorted, ORDER);
+		List<Stock> stocks = new ArrayList<>(sorted.length);
+		Map<Stock, Integer> positions = new HashMap<>(sorted.length * 2);
+		for(int i = 0; i < sorted.length; i++){
+			stocks.add(sorted[i].stock());
+			positions.put(sorted[i].stock(), i);
+		}
+		this.slots = new TickerSlots.Slot[sorted.length];
+		for(int i = 0; i < sorted.length; i++){
+			slots[i] = sorted[i].slot;
+		}
+		this.versions = new long[sorted.length];
+		Arrays.fill(versions, -1);
+		this.stocks = Collections.unmodifiableList(stocks);
+		this.positions = positions;
+		this.chunks = new Quote[(sorted.length + CHUNK - 1) >>> CHUNK_BITS][];
+		this.logSum = 0;
+		this.count = 0;
+		this.last = null;
+	}
+
+	/** @return new snapshot if any ticker changed since the last one, the last one otherwise */
+	public synchronized MarketSnapshot take(Instant timestamp){
+		Quote[][] next = null;
+		for(int c = 0; c < chunks.length; c++){
+			Quote[] chunk = chunks[c];
+			int from = c << CHUNK_BITS;
+			int size = Math.min(CHUNK, slots.length - from);
+			Quote[] copy = null;
+			for(int i = 0; i < size; i++){
+				TickerSlots.Slot slot = slots[from + i];
+				if(slot.version() != versions[from + i]){
+					Quote quote = read(stocks.get(from + i), slot);
+					versions[from + i] = quote.info.version;
+					if(copy == null) copy = chunk != null ? chunk.clone() : new Quote[size];
+					account(copy[i], quote.info);
+					copy[i] = quote;
+				}
+			}
+			if(copy != null){
+				if(next == null) next = chunks.clone();
+				next[c] = copy;
+			}
+		}
+		if(next == null && last != null) return last;
+		if(next != null) chunks = next;
+		last = new Snapshot(++epoch, timestamp, AllShareIndex.valueOf(logSum, count), stocks, positions, chunks);
+		return last;
+	}
+
+	/** Reads the ticker state together with the dividend yield and P/E ratio cached for its price. */
+	private static Quote read(Stock stock, TickerSlots.Slot slot){
+		while(true){
+			StockInfo info = slot.stockInfo();
+			double dividendYield = slot.dividendYield();
+			double peRatio = slot.peRatio();
+			if(slot.version() == info.version) return new Quote(stock, info, dividendYield, peRatio);
+		}
+	}
+
+	private void account(Quote previous, StockInfo current){
+		long previousPrice = previous != null ? previous.info.fixedPrice : FixedMoney.UNDEFINED;
+		if(previousPrice == current.fixedPrice) return;
+		if(FixedMoney.isDefined(previousPrice)){
+			logSum -= AllShareIndex.scaledLog(previousPrice);
+			count--;
+		}
+		if(FixedMoney.isDefined(current.fixedPrice)){
+			logSum += AllShareIndex.scaledLog(current.fixedPrice);
+			count++;
+		}
+	}
+
+	private static final class Snapshot implements MarketSnapshot {
+
+		private final long epoch;
+		private final Instant timestamp;
+		private final double allShareIndex;
+		private final List<Stock> stocks;
+		private final Map<Stock, Integer> positions;
+		private final Quote[][] chunks;
+
+		Snapshot(long epoch, Instant timestamp, double allShareIndex, List<Stock> stocks, Map<Stock, Integer> positions, Quote[][] chunks){
+			this.epoch = epoch;
+			this.timestamp = timestamp;
+			this.allShareIndex = allShareIndex;
+			this.stocks = stocks;
+			this.positions = positions;
+			this.chunks = chunks;
+		}
+
+		@Override
+		public long epoch(){
+			return epoch;
+		}
+
+		@Override
+		public Instant timestamp(){
+			return timestamp;
+		}
+
+		@Override
+		public double allShareIndex(){
+			return allShareIndex;
+		}
+
+		@Override
+		public List<Stock> stocks(){
+			return stocks;
+		}
+
+		@Override
+		public Ticker ticker(Stock stock){
+			Integer position = positions.get(stock);
+			return position != null ? quote(position) : null;
+		}
+
+		@Override
+		public List<Ticker> tickers(){
+			List<Ticker> tickers = new ArrayList<>(stocks.size());
+			for(int i = 0; i < stocks.size(); i++){
+				tickers.add(quote(i));
+			}
+			return tickers;
+		}
+
+		private Ticker quote(int position){
+			return chunks[position >>> CHUNK_BITS][position & (CHUNK - 1)];
+		}
+
+		@Override
+		public String toString(){
+			return "MarketSnapshot(epoch="+epoch+", timestamp="+timestamp+", stocks="+stocks.size()+", allShareIndex="+allShareIndex+")";
+		}
+	}
+
+	/** Ticker state as of a snapshot, with the dividend yield and P/E ratio copied from the slot. */
+	private static final class Quote implements Ticker {
+
+		private final Stock stock;
+		private final StockInfo info;
+		private final double dividendYield;
+		private final double peRatio;
+
+		Quote(Stock stock, StockInfo info, double dividendYield, double peRatio){
+			this.stock = stock;
+			this.info = info;
+			this.dividendYield = dividendYield;
+			this.peRatio = peRatio;
+		}
+
+		@Override
+		public Stock stock(){
+			return stock;
+		}
+
+		@Override
+		public Money price(){
+			return info.price();
+		}
+
+		@Override
+		public Money volume(){
+			return info.volume();
+		}
+
+		@Override
+		public int quantity(){
+			return info.quantity;
+		}
+
+		@Override
+		public double dividendYield(){
+			return dividendYield;
+		}
+
+		@Override
+		public double peRatio(){
+			return peRatio;
+		}
+	}
+
+}
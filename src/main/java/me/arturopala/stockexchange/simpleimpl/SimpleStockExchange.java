@@ -4,95 +4,266 @@ import java.util.*;
 import java.util.stream.Stream;
 import java.util.stream.Collectors;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.atomic.LongAdder;
 import java.time.Instant;
 import java.time.Clock;
 import java.time.Duration;
+import java.nio.file.Path;
 import me.arturopala.stockexchange.api.*;
 import me.arturopala.stockexchange.stock.*;
 import me.arturopala.stockexchange.util.*;
+import me.arturopala.stockexchange.journal.Journal;
+import me.arturopala.stockexchange.journal.JournalRecovery;
+import me.arturopala.stockexchange.journal.SnapshotStore;
+import me.arturopala.stockexchange.history.TradeHistory;
+import me.arturopala.stockexchange.metrics.ExchangeMetrics;
+import me.arturopala.stockexchange.metrics.MetricsSnapshot;
 import akka.actor.ActorSystem;
 import akka.actor.ActorRef;
 import akka.actor.Props;
+import akka.actor.Cancellable;
 import akka.actor.PoisonPill;
+import akka.dispatch.OnComplete;
+import akka.pattern.Patterns;
+import scala.concurrent.Await;
 import scala.concurrent.duration.FiniteDuration;
 
-public class SimpleStockExchange implements StockExchange {
+/**
+ * Stock exchange with a {@link TickerActor} per listed stock. Stocks may be listed and delisted
+ * while the exchange is open: tickers and workers live in concurrent maps, so orders and queries
+ * look them up without locking, and the listing with its symbol index is replaced as a whole.
+ * Listing changes are not journaled: a restarted exchange starts with the listing it was
+ * constructed with, and journaled trades of other stocks are skipped on recovery.
+ */
+public class SimpleStockExchange implements StockExchange, MutableListing {
 
-	private final Set<Stock> listing;
+	private volatile Set<Stock> listing;
+	private volatile SymbolIndex symbolIndex;
 	private final Clock clock;
 	private final Duration priceCalculationPeriod;
 	private final ActorSystem actorSystem;
-	private final Map<Stock, TickerImpl> tickers = new HashMap<>();
+	private final Journal journal;
+	private final SnapshotStore snapshots;
+	private final Admission admission;
+	private final Path historyDirectory;
+	private final TimingWheel expiryWheel;
+	private final TickScheduler tickScheduler;
+	private final TickerSlots slots = new TickerSlots(256);
+	private final MarketSnapshots marketSnapshots = new MarketSnapshots();
+	private final ConcurrentMap<Stock, TickerImpl> tickers = new ConcurrentHashMap<>();
 
 	private volatile boolean isOpen = false;
-	private Map<Stock, ActorRef> workers = new HashMap<>();
-	private AtomicReference<Double> allShareIndex = new AtomicReference<Double>(Double.NaN);
+	private final ConcurrentMap<Stock, ActorRef> workers = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Stock, TickerState> states = new ConcurrentHashMap<>();
+	private volatile long checkpoint = 0;
+	private Cancellable checkpoints;
+	private long workerSequence = 0;
+	private final AllShareIndex allShareIndex = new AllShareIndex();
+	private final ExchangeMetrics metrics = new ExchangeMetrics();
 
 	private static final String DEFAULT_ACTOR_SYSTEM_NAME = "stockexchange";
+	private static final long ADMISSION_PARK_NANOS = 10000;
+	private static final FiniteDuration CLOSE_TIMEOUT = FiniteDuration.create(10, TimeUnit.SECONDS);
 
 	public SimpleStockExchange(Set<Stock> listing){
-		this(listing, Clock.systemUTC(), Duration.ofMinutes(15));
+		this(listing, ExchangeOptions.DEFAULT);
 	}
 
 	public SimpleStockExchange(Set<Stock> listing, Clock clock){
-		this(listing, clock, Duration.ofMinutes(15));
+		this(listing, new ExchangeOptions.Builder().clock(clock).build());
 	}
 	
 	public SimpleStockExchange(Set<Stock> listing, Clock clock, Duration priceCalculationPeriod){
-		this(listing, clock, priceCalculationPeriod, ActorSystem.create(DEFAULT_ACTOR_SYSTEM_NAME));
+		this(listing, new ExchangeOptions.Builder().clock(clock).priceCalculationPeriod(priceCalculationPeriod).build());
 	}
 
 	public SimpleStockExchange(Set<Stock> listing, Clock clock, Duration priceCalculationPeriod, ActorSystem actorSystem){
-		this.listing = listing;
-		this.clock = clock;
-		this.priceCalculationPeriod = priceCalculationPeriod;
+		this(listing, actorSystem, new ExchangeOptions.Builder().clock(clock).priceCalculationPeriod(priceCalculationPeriod).build());
+	}
+
+	public SimpleStockExchange(Set<Stock> listing, ExchangeOptions options){
+		this(listing, ActorSystem.create(DEFAULT_ACTOR_SYSTEM_NAME), options);
+	}
+
+	/** @param options clock, period, journal, snapshots, history directory, admission and expiry resolution of the exchange */
+	public SimpleStockExchange(Set<Stock> listing, ActorSystem actorSystem, ExchangeOptions options){
+		this.admission = options.admission(Admission.DEFAULT);
+		if(admission.capacity >= TickerMailbox.capacity(actorSystem)) throw new IllegalArgumentException("Admission capacity must be lower than ticker mailbox capacity");
+		this.clock = options.clock;
+		this.priceCalculationPeriod = options.priceCalculationPeriod;
 		this.actorSystem = actorSystem;
-		listing.stream().forEach( stock -> {
-			final AtomicReference<StockInfo> stockInfoRef = new AtomicReference<StockInfo>(new StockInfo());
-			this.tickers.put(stock, new TickerImpl(stock, stockInfoRef));
-		});
+		this.journal = options.journal;
+		metrics.journal(journal.stats());
+		this.snapshots = options.snapshots;
+		this.historyDirectory = options.historyDirectory;
+		this.expiryWheel = new TimingWheel(options.expiryResolution, "stockexchange-expiry-"+actorSystem.name());
+		this.tickScheduler = new TickScheduler(expiryWheel, clock, priceCalculationPeriod);
+		listing.stream().forEach( stock -> this.tickers.put(stock, newTicker(stock)));
+		updateListing();
+	}
+
+	private TickerImpl newTicker(Stock stock){
+		TickerImpl ticker = new TickerImpl(stock, slots.allocate(stock), actorSystem.dispatcher(), TradeHistory.of(stock, historyDirectory));
+		metrics.track(stock, ticker.queued);
+		return ticker;
+	}
+
+	private void updateListing(){
+		Set<Stock> current = Collections.unmodifiableSet(new HashSet<>(tickers.keySet()));
+		symbolIndex = new SymbolIndex(current);
+		marketSnapshots.layout(tickers.values());
+		listing = current;
 	}
 
 	@Override
-	public synchronized StockExchange open(){
+	public synchronized SimpleStockExchange open(){
 		if(!isOpen){
-			Map<Stock, ActorRef> workers = new HashMap<>();
-			listing.stream().forEach( stock -> {
-				TickerImpl ticker = tickers.get(stock);
-				final ActorRef tickerActorRef = actorSystem.actorOf(
-					Props.create(TickerActor.class, stock, ticker.stockInfoRef),
-					"stock-"+stock.symbol()+"-"+stock.type()
-				);
-				workers.put(stock, tickerActorRef);
-			});
-			this.workers = workers;
-			scheduleTicks();
+			Map<Stock, TickerState> states = recover();
+			expiryWheel.start();
+			states.forEach(this::startWorker);
+			if(snapshots != SnapshotStore.NONE && !snapshots.interval().isZero()){
+				checkpoint = snapshots.checkpoint();
+				journal.truncate(checkpoint);
+				FiniteDuration interval = FiniteDuration.create(snapshots.interval().toNanos(), TimeUnit.NANOSECONDS);
+				checkpoints = actorSystem.scheduler().schedule(interval, interval, this::checkpoint, actorSystem.dispatcher());
+			}
+			metrics.register(getClass().getSimpleName());
 			isOpen = true;
 		}
 		return this;
 	}
 
-	private void scheduleTicks(){
-		FiniteDuration delay = FiniteDuration.create(1,"seconds");
-		Runnable tickTask = () -> {
-			allShareIndex.set(calculateAllShareIndex());
-			Tick tick = new Tick(Instant.now(clock).minus(priceCalculationPeriod));
-			workers.values().stream().forEach(actor -> actor.tell(tick, ActorRef.noSender()));
-		};
-		actorSystem.scheduler().schedule(delay,delay,tickTask,actorSystem.dispatcher());
+	private void startWorker(Stock stock, TickerState state){
+		ActorRef worker = actorSystem.actorOf(
+			workerProps(stock, state, journal, snapshots).withMailbox(TickerMailbox.CONFIG),
+			"stock-"+stock.symbol()+"-"+stock.type()+"-"+(++workerSequence)
+		);
+		workers.put(stock, worker);
+		states.put(stock, state);
+	}
+
+	/**
+	 * Lists stocks while the exchange is open or closed, starting their tickers
+	 * with an empty price window. The symbol index is rebuilt once per call, so
+	 * listing many stocks at once is much cheaper than one by one.
+	 * The change is not journaled, so it does not survive a restart.
+	 * @return number of stocks not listed before
+	 */
+	@Override
+	public synchronized int list(Collection<Stock> stocks){
+		List<Stock> added = new ArrayList<>();
+		for(Stock stock: stocks){
+			if(!tickers.containsKey(stock)){
+				tickers.put(stock, newTicker(stock));
+				added.add(stock);
+			}
+		}
+		if(added.isEmpty()) return 0;
+		updateListing();
+		if(isOpen){
+			for(Stock stock: added){
+				startWorker(stock, new TickerState(tickers.get(stock), allShareIndex, metrics));
+			}
+		}
+		return added.size();
+	}
+
+	/**
+	 * Delists stocks: further orders are rejected as invalid, trades already queued are still
+	 * recorded, or rejected if not taken within a second, then the ticker stops and its price
+	 * leaves the all share index. The ticker keeps its last state for watchers, while its slot
+	 * is reused by stocks listed later.
+	 * The change is not journaled, so it does not survive a restart.
+	 * @return number of stocks that were listed
+	 */
+	@Override
+	public synchronized int delist(Collection<Stock> stocks){
+		int removed = 0;
+		for(Stock stock: stocks){
+			TickerImpl ticker = tickers.remove(stock);
+			if(ticker == null) continue;
+			removed++;
+			metrics.untrack(stock);
+			ActorRef worker = workers.remove(stock);
+			states.remove(stock);
+			if(worker != null){
+				releaseWhenStopped(ticker, worker, Delist.INSTANCE);
+			} else {
+				allShareIndex.update(ticker.slot.price(), FixedMoney.UNDEFINED);
+				slots.release(ticker.detach());
+			}
+		}
+		if(removed > 0) updateListing();
+		return removed;
+	}
+
+	/** Releases the slot of the ticker once its worker stopped publishing to it, stopping the worker if it does not stop in time. */
+	private void releaseWhenStopped(TickerImpl ticker, ActorRef worker, Object stopMessage){
+		Patterns.gracefulStop(worker, CLOSE_TIMEOUT, stopMessage).onComplete(new OnComplete<Boolean>(){
+			@Override
+			public void onComplete(Throwable failure, Boolean stopped){
+				if(failure == null){
+					slots.release(ticker.detach());
+				} else {
+					// still running, so the slot is released only after the worker is known to be terminated
+					actorSystem.stop(worker);
+					releaseWhenStopped(ticker, worker, PoisonPill.getInstance());
+				}
+			}
+		}, actorSystem.dispatcher());
+	}
+
+	protected Props workerProps(Stock stock, TickerState state, Journal journal, SnapshotStore snapshots){
+		return Props.create(TickerActor.class, stock, state, journal, snapshots, tickScheduler);
+	}
+
+	/** @return scheduler waking tickers when their oldest trade expires */
+	protected TickScheduler tickScheduler(){
+		return tickScheduler;
+	}
+
+	/** Rebuilds ticker states from snapshots and journal tail, publishing prices of restored stocks. */
+	private Map<Stock, TickerState> recover(){
+		Map<Stock, TickerState> states = new HashMap<>();
+		tickers.forEach((stock, ticker) -> states.put(stock, new TickerState(ticker, allShareIndex, metrics)));
+		long windowStart = TradeWindow.timestampOf(Instant.now(clock).minus(priceCalculationPeriod));
+		for(Stock stock: JournalRecovery.recover(states, snapshots, journal, windowStart)){
+			states.get(stock).publish();
+		}
+		return states;
+	}
+
+	/**
+	 * Saves the journal position up to which the ticker snapshots hold every journaled trade,
+	 * where recovery starts replaying, and lets the journal reuse segments before it.
+	 */
+	private void checkpoint(){
+		// read first, a trade journaled after it cannot be missing from the tickers found saved
+		long position = journal.position();
+		for(TickerState state: states.values()){
+			position = Math.min(position, state.savedPosition(position));
+		}
+		synchronized(states){
+			if(position > checkpoint && snapshots.checkpoint(position)){
+				checkpoint = position;
+				journal.truncate(position);
+			}
+		}
 	}
 
 	public Double calculateAllShareIndex(){
-		List<Double> prices = tickers.values().stream().map(t -> t.price().doubleValue()).filter(d -> !Double.isNaN(d) && d > 0).collect(Collectors.toList());
-		if(prices.size() > 0){
-			Double accumulated = prices.stream().reduce(1d, (acc,price) -> acc*price);
-			Double order = 1d / prices.size();
-			return Math.pow(accumulated, order);
-		} else {
-			return Double.NaN;
+		long logSum = 0;
+		int count = 0;
+		for(TickerImpl ticker: tickers.values()){
+			long price = ticker.slot.price();
+			if(FixedMoney.isDefined(price)){
+				logSum += AllShareIndex.scaledLog(price);
+				count++;
+			}
 		}
+		return AllShareIndex.valueOf(logSum, count);
 	}
 
     @Override
@@ -102,59 +273,266 @@ public class SimpleStockExchange implements StockExchange {
 
 	@Override
 	public Set<Stock> listing(){
-		return Collections.unmodifiableSet(listing);
+		return listing;
 	}
 
 	@Override
 	public Optional<Stock> find(String symbol){
-		return listing.stream().filter(stock -> stock.symbol().equals(symbol)).findFirst();
+		return symbolIndex.find(symbol);
+	}
+
+	@Override
+	public List<Stock> findByPrefix(String prefix, int limit){
+		return symbolIndex.findByPrefix(prefix, limit);
+	}
+
+	@Override
+	public List<Stock> findInRange(String fromSymbol, String toSymbol, int limit){
+		return symbolIndex.findInRange(fromSymbol, toSymbol, limit);
 	}
 
 	@Override
 	public void sell(Stock stock, int quantity, Money price){
+		trade(TradeType.SELL, stock, quantity, price);
+	}
+
+	@Override
+	public void buy(Stock stock, int quantity, Money price){
+		trade(TradeType.BUY, stock, quantity, price);
+	}
+
+	@Override
+	public OfferResult offerSell(Stock stock, int quantity, Money price){
+		return offer(TradeType.SELL, stock, quantity, price);
+	}
+
+	@Override
+	public OfferResult offerBuy(Stock stock, int quantity, Money price){
+		return offer(TradeType.BUY, stock, quantity, price);
+	}
+
+	@Override
+	public double occupancy(Stock stock){
+		TickerImpl ticker = tickers.get(stock);
+		return ticker != null ? Math.min(1d, (double) ticker.queued.get() / admission.capacity) : 0d;
+	}
+
+	private void trade(TradeType type, Stock stock, int quantity, Money price){
+		if(offer(type, stock, quantity, price, admission.policy == Admission.Policy.BLOCK) == OfferResult.FULL){
+			throw new OrderRejectedException(stock);
+		}
+	}
+
+	private OfferResult offer(TradeType type, Stock stock, int quantity, Money price){
+		return offer(type, stock, quantity, price, false);
+	}
+
+	private OfferResult offer(TradeType type, Stock stock, int quantity, Money price, boolean wait){
 		if(isOpen){
-			if(quantity > 0 && price.isDefined()){
-				Trade trade = new Trade(Instant.now(clock), TradeType.SELL,stock,quantity,price);
-				ActorRef tickerActor = workers.get(stock);
-				if(tickerActor!=null){
-					tickerActor.tell(trade, ActorRef.noSender());
+			ActorRef tickerActor = workers.get(stock);
+			TickerImpl ticker = tickers.get(stock);
+			if(quantity > 0 && price.isDefined() && FixedMoney.fits(price) && tickerActor!=null && ticker!=null){
+				// built before admission, so nothing can fail between reserving room and sending
+				Trade trade = new Trade(Instant.now(clock), type,stock,quantity,price);
+				if(!admit(ticker.queued, 1, wait)){
+					metrics.rejected(1);
+					return OfferResult.FULL;
 				}
+				if(!admitted(stock, tickerActor, ticker, 1)) return OfferResult.INVALID;
+				metrics.accepted(1);
+				tickerActor.tell(trade, ActorRef.noSender());
+				return OfferResult.ACCEPTED;
+			} else {
+				metrics.rejected(1);
+				return OfferResult.INVALID;
 			}
 		} else {
 			throw new StockExchangeClosedException();
 		}
 	}
 
+	/**
+	 * Reserves room for trades in the stock queue, waiting up to the admission timeout if asked to.
+	 * A batch larger than the capacity is admitted only into an empty queue.
+	 */
+	private boolean admit(AtomicInteger queued, int trades, boolean wait){
+		long deadline = 0;
+		while(true){
+			int current = queued.get();
+			if(current + trades <= admission.capacity || current == 0){
+				if(queued.compareAndSet(current, current + trades)) return true;
+			} else if(!wait){
+				return false;
+			} else if(deadline == 0){
+				deadline = System.nanoTime() + admission.timeout.toNanos();
+			} else if(System.nanoTime() - deadline >= 0){
+				return false;
+			} else if(!isOpen){
+				throw new StockExchangeClosedException();
+			} else {
+				LockSupport.parkNanos(ADMISSION_PARK_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Checks the stock was not delisted while its trades were being admitted, taking them
+	 * off the queue again if it was. A worker delisted after this check waits for the
+	 * admitted trades before it stops.
+	 */
+	private boolean admitted(Stock stock, ActorRef tickerActor, TickerImpl ticker, int trades){
+		if(workers.get(stock) == tickerActor) return true;
+		ticker.queued.addAndGet(-trades);
+		metrics.rejected(trades);
+		return false;
+	}
+
 	@Override
-	public void buy(Stock stock, int quantity, Money price){
+	public void submit(OrderBatch batch){
+		List<Stock> rejected = dispatch(batch, admission.policy == Admission.Policy.BLOCK, null);
+		if(rejected != null) throw new OrderRejectedException(rejected);
+	}
+
+	@Override
+	public void offer(OrderBatch batch, OfferResult[] results){
+		dispatch(batch, false, results);
+	}
+
+	/**
+	 * Sends orders of the batch to tickers in one trade batch per stock, admitted or rejected as a whole.
+	 * @param results filled with the outcome of each order, or null
+	 * @return stocks with orders rejected for a full queue, or null
+	 */
+	private List<Stock> dispatch(OrderBatch batch, boolean wait, OfferResult[] results){
 		if(isOpen){
-			if(quantity > 0 && price.isDefined()){
-				Trade trade = new Trade(Instant.now(clock), TradeType.BUY,stock,quantity,price);
-				ActorRef tickerActor = workers.get(stock);
-				if(tickerActor!=null){
-					tickerActor.tell(trade, ActorRef.noSender());
+			Instant timestamp = Instant.now(clock);
+			Map<Stock, TradeBatch.Builder> batches = new HashMap<>();
+			for(int i = 0; i < batch.size(); i++){
+				int quantity = batch.quantity(i);
+				long price = batch.fixedPrice(i);
+				if(quantity > 0 && FixedMoney.isDefined(price)){
+					Stock stock = batch.stock(i);
+					TradeBatch.Builder builder = batches.get(stock);
+					if(builder == null){
+						builder = new TradeBatch.Builder(timestamp, stock);
+						batches.put(stock, builder);
+					}
+					builder.add(batch.isBuy(i) ? TradeType.BUY : TradeType.SELL, quantity, price);
+					if(results != null) results[i] = OfferResult.ACCEPTED;
+				} else {
+					metrics.rejected(1);
+					if(results != null) results[i] = OfferResult.INVALID;
+				}
+			}
+			List<Stock> rejected = null;
+			for(TradeBatch.Builder builder: batches.values()){
+				TradeBatch tradeBatch = builder.build();
+				ActorRef tickerActor = workers.get(tradeBatch.stock);
+				TickerImpl ticker = tickers.get(tradeBatch.stock);
+				if(tickerActor==null || ticker==null){
+					metrics.rejected(tradeBatch.size);
+					if(results != null) mark(batch, tradeBatch.stock, OfferResult.INVALID, results);
+				} else if(admit(ticker.queued, tradeBatch.size, wait)){
+					if(admitted(tradeBatch.stock, tickerActor, ticker, tradeBatch.size)){
+						metrics.accepted(tradeBatch.size);
+						tickerActor.tell(tradeBatch, ActorRef.noSender());
+					} else if(results != null) mark(batch, tradeBatch.stock, OfferResult.INVALID, results);
+				} else {
+					metrics.rejected(tradeBatch.size);
+					if(results != null) mark(batch, tradeBatch.stock, OfferResult.FULL, results);
+					if(rejected == null) rejected = new ArrayList<>();
+					rejected.add(tradeBatch.stock);
 				}
 			}
+			return rejected;
 		} else {
 			throw new StockExchangeClosedException();
 		}
 	}
 
+	private static void mark(OrderBatch batch, Stock stock, OfferResult result, OfferResult[] results){
+		for(int i = 0; i < batch.size(); i++){
+			if(results[i] == OfferResult.ACCEPTED && batch.stock(i).equals(stock)) results[i] = result;
+		}
+	}
+
 	@Override
 	public Ticker watch(Stock stock){
 		return tickers.get(stock);
 	}
 
+	@Override
+	public Subscription subscribe(Collection<Stock> stocks, TickerListener listener){
+		List<TickerTopic> topics = new ArrayList<>(stocks.size());
+		for(Stock stock: stocks){
+			TickerImpl ticker = tickers.get(stock);
+			if(ticker != null) topics.add(ticker.topic);
+		}
+		return new TickerSubscriber(topics, listener, actorSystem.dispatcher());
+	}
+
+	@Override
+	public List<Candle> candles(Stock stock, Resolution resolution, int count){
+		TickerImpl ticker = tickers.get(stock);
+		return ticker != null ? ticker.candles.last(resolution, count) : Collections.<Candle>emptyList();
+	}
+
+	/**
+	 * Covers the trades retained by the stock {@link TradeHistory}: the latest
+	 * {@link TradeHistory#DEFAULT_MAX_BLOCKS} blocks of {@link TradeHistory#DEFAULT_BLOCK_SIZE} trades.
+	 * A trade older than the newest one recorded is stored with the newest timestamp.
+	 * Memory-mapped history files are deleted once mapped, so after a restart the history
+	 * holds only the trades recovered from the journal.
+	 */
+	@Override
+	public TradeSummary history(Stock stock, Instant from, Instant to){
+		TickerImpl ticker = tickers.get(stock);
+		return ticker != null ? ticker.history.summary(from, to) : TradeSummary.empty(from, to);
+	}
+
 	@Override
 	public double allShareIndex(){
-		return allShareIndex.get();
+		return allShareIndex.value();
+	}
+
+	@Override
+	public MarketSnapshot snapshot(){
+		return marketSnapshots.take(Instant.now(clock));
+	}
+
+	/** @return index of the listed stocks, whose log-sum and count are partial sums of a partitioned exchange */
+	public AllShareIndex index(){
+		return allShareIndex;
+	}
+
+	@Override
+	public MetricsSnapshot metrics(){
+		return metrics.snapshot();
 	}
 
 	@Override
 	public synchronized StockExchange close(){
 		if(isOpen){
 			isOpen = false;
-			workers.values().stream().forEach(w -> w.tell(PoisonPill.getInstance(), ActorRef.noSender()));
+			metrics.unregister();
+			// workers journal the trades still queued before they stop, only then the journal is flushed
+			List<scala.concurrent.Future<Boolean>> stopped = new ArrayList<>();
+			workers.values().stream().forEach(w -> stopped.add(Patterns.gracefulStop(w, CLOSE_TIMEOUT)));
+			workers.clear();
+			for(scala.concurrent.Future<Boolean> worker: stopped){
+				try {
+					Await.result(worker, CLOSE_TIMEOUT);
+				} catch (Exception e){
+					// worker did not stop in time, trades it still holds are not flushed
+				}
+			}
+			expiryWheel.stop();
+			if(checkpoints != null){
+				// stopped workers saved their snapshots
+				checkpoints.cancel();
+				checkpoint();
+			}
+			journal.flush();
 			if(actorSystem.name().startsWith(DEFAULT_ACTOR_SYSTEM_NAME)){
 				actorSystem.shutdown();
 			}
@@ -162,37 +540,4 @@ public class SimpleStockExchange implements StockExchange {
 		return this;
 	}
 
-	private static class TickerImpl implements Ticker {
-
-		private final Stock stock;
-		private final AtomicReference<StockInfo> stockInfoRef;
-
-		TickerImpl(Stock stock, AtomicReference<StockInfo> stockInfoRef){
-			this.stock = stock;
-			this.stockInfoRef = stockInfoRef;
-		}
-
-		@Override
-		public Stock stock(){
-			return stock;
-		}
-
-		@Override
-		public Money price(){
-			return stockInfoRef.get().price;
-		}
-
-		@Override
-		public Money volume(){
-			return stockInfoRef.get().volume;
-		}
-
-		@Override
-		public int quantity(){
-			return stockInfoRef.get().quantity;
-		}
-
-
-	}
-	
 }
\ No newline at end of file
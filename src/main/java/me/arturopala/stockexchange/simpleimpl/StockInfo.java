@@ -1,21 +1,47 @@
 package me.arturopala.stockexchange.simpleimpl;
 
 import me.arturopala.stockexchange.util.Money;
+import me.arturopala.stockexchange.util.FixedMoney;
 
 public class StockInfo {
 
-	public final Money price;
+	public final long fixedPrice;
 	public final int quantity;
-	public final Money volume;
+	public final long fixedVolume;
+	/** sequence of the ticker publication this state was read from */
+	public final long version;
 
-	public StockInfo(Money price, int quantity, Money volume){
-		this.price = price;
+	public StockInfo(long fixedPrice, int quantity, long fixedVolume, long version){
+		this.fixedPrice = fixedPrice;
 		this.quantity = quantity;
-		this.volume = volume;
-	} 
+		this.fixedVolume = fixedVolume;
+		this.version = version;
+	}
+
+	public StockInfo(long fixedPrice, int quantity, long fixedVolume){
+		this(fixedPrice, quantity, fixedVolume, 0);
+	}
+
+	public StockInfo(Money price, int quantity, Money volume){
+		this(FixedMoney.valueOf(price), quantity, FixedMoney.valueOf(volume));
+	}
 
 	public StockInfo(){
-		this(Money.UNDEFINED,0,Money.UNDEFINED);
+		this(FixedMoney.UNDEFINED,0,FixedMoney.UNDEFINED);
+	}
+
+	/** @return true if the other state has the same version, price, quantity and volume */
+	public boolean sameAs(StockInfo other){
+		return other.version == version && other.fixedPrice == fixedPrice
+			&& other.quantity == quantity && other.fixedVolume == fixedVolume;
+	}
+
+	public Money price(){
+		return FixedMoney.toMoney(fixedPrice);
+	}
+
+	public Money volume(){
+		return FixedMoney.toMoney(fixedVolume);
 	}
 
-}
\ No newline at end of file
+}
@@ -5,9 +5,16 @@ import java.time.Instant;
 public class Tick {
 
 	public final Instant timestamp;
+	public final long nanos;
 
 	public Tick(Instant timestamp){
+		this(timestamp, System.nanoTime());
+	}
+
+	/** @param nanos when the tick was due, in {@link System#nanoTime()} terms */
+	public Tick(Instant timestamp, long nanos){
 		this.timestamp = timestamp;
+		this.nanos = nanos;
 	}
 
-}
\ No newline at end of file
+}
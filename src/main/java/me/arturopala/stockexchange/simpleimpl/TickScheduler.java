@@ -0,0 +1,43 @@
+package me.arturopala.stockexchange.simpleimpl;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import akka.actor.ActorRef;
+import me.arturopala.stockexchange.util.TimingWheel;
+
+/**
+ * Wakes a ticker actor with a {@link Tick} when the oldest trade of its window expires,
+ * or earlier when asked to, using a {@link TimingWheel} shared by all tickers of an exchange.
+ * Deadlines are in {@link System#nanoTime()} terms, window timestamps in the exchange clock.
+ */
+public class TickScheduler {
+
+	/** Never wakes anybody, tickers then expire only on ticks sent to them. */
+	public static final TickScheduler NONE = new TickScheduler(null, Clock.systemUTC(), Duration.ZERO);
+
+	private final TimingWheel wheel;
+	private final Clock clock;
+	private final Duration priceCalculationPeriod;
+	private final long periodMicros;
+
+	public TickScheduler(TimingWheel wheel, Clock clock, Duration priceCalculationPeriod){
+		this.wheel = wheel;
+		this.clock = clock;
+		this.priceCalculationPeriod = priceCalculationPeriod;
+		this.periodMicros = priceCalculationPeriod.toNanos() / 1000L;
+	}
+
+	/** @return nano time at which a trade of given window timestamp leaves the window */
+	public long expiryOf(long timestamp){
+		long micros = timestamp + periodMicros + 1 - TradeWindow.timestampOf(clock.instant());
+		return System.nanoTime() + Math.max(0, micros) * 1000L;
+	}
+
+	/** @return handle of the wake-up, or null if this scheduler never wakes anybody */
+	public TimingWheel.Timeout schedule(ActorRef ticker, long deadline){
+		if(wheel == null) return null;
+		return wheel.schedule(deadline, () -> ticker.tell(new Tick(Instant.now(clock).minus(priceCalculationPeriod), deadline), ActorRef.noSender()));
+	}
+
+}
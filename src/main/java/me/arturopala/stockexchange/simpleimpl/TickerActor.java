@@ -6,72 +6,228 @@ import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+import akka.actor.Cancellable;
 import akka.actor.UntypedActor;
+import scala.concurrent.duration.FiniteDuration;
 import me.arturopala.stockexchange.api.*;
 import me.arturopala.stockexchange.stock.*;
 import me.arturopala.stockexchange.util.*;
+import me.arturopala.stockexchange.journal.Journal;
+import me.arturopala.stockexchange.journal.SnapshotStore;
  
 public class TickerActor extends UntypedActor {
 
-  private final Stock stock;
-  private final Queue<Trade> queue = new PriorityQueue<Trade>(Trade.BY_TIME_COMPARATOR);
-  private final AtomicReference<StockInfo> stockInfoRef;
+  /** longest wait for trades admitted before a delist, those still in flight then are rejected */
+  static final FiniteDuration DELIST_WAIT = FiniteDuration.create(1, TimeUnit.SECONDS);
+
+  private static final Object DELIST_TIMEOUT = new Object();
 
-  private int quantity = 0;
-  private Money accumulated = Money.ZERO;
-  private Money volume = Money.ZERO;
+  private final Stock stock;
+  protected final TickerState state;
+  private final Journal journal;
+  private final int journalId;
+  private final SnapshotStore snapshots;
+  private final TickScheduler ticks;
+  private long nextSnapshot;
+  private boolean changed = false;
+  private TimingWheel.Timeout wakeUp;
+  private long wakeUpFor = Long.MAX_VALUE;
+  private Cancellable delistTimeout;
+  private boolean[] admitted = new boolean[8];
 
   public TickerActor(Stock stock, AtomicReference<StockInfo> stockInfoRef){
+  	this(stock, stockInfoRef, new AllShareIndex(), Journal.NONE);
+  }
+
+  public TickerActor(Stock stock, AtomicReference<StockInfo> stockInfoRef, AllShareIndex allShareIndex, Journal journal){
+  	this(stock, new TickerState(stockInfoRef, allShareIndex), journal, SnapshotStore.NONE);
+  }
+
+  public TickerActor(Stock stock, TickerState state, Journal journal, SnapshotStore snapshots){
+  	this(stock, state, journal, snapshots, TickScheduler.NONE);
+  }
+
+  public TickerActor(Stock stock, TickerState state, Journal journal, SnapshotStore snapshots, TickScheduler ticks){
   	this.stock = stock;
-  	this.stockInfoRef = stockInfoRef;
+  	this.state = state;
+  	this.journal = journal;
+  	this.journalId = journal.register(stock);
+  	this.snapshots = snapshots;
+  	this.ticks = ticks;
+  	this.nextSnapshot = System.nanoTime() + snapshots.interval().toNanos();
   }
  
   public void onReceive(Object message) throws Exception {
     if (message instanceof Trade) {
       Trade trade = (Trade) message;
-  	  if(persist(trade)){
-  	      quantity = quantity + trade.quantity;
-          Money value = trade.price.multiply(trade.quantity);
-  	      accumulated = accumulated.add(value);
-          volume = volume.add(value);
-  	      queue.add(trade);
+      state.dequeued(1);
+  	  if(record(trade)){
   	      updatePrice();
-          //System.out.println(trade);
+  	      state.published(trade.nanos);
   	  }
+      afterTrades();
+    } else if (message instanceof TradeBatch) {
+      TradeBatch batch = (TradeBatch) message;
+      state.dequeued(batch.size);
+      if(record(batch)){
+        updatePrice();
+        state.published(batch.nanos);
+      }
+      afterTrades();
+    } else if (message == Delist.INSTANCE) {
+      if (delistTimeout != null) return;
+      if (state.queued() > 0) {
+        // trades admitted before the delist are still on their way, the last one stops the ticker
+        delistTimeout = getContext().system().scheduler().scheduleOnce(DELIST_WAIT, getSelf(), DELIST_TIMEOUT,
+          getContext().dispatcher(), getSelf());
+      } else {
+        delisted();
+      }
+    } else if (message == DELIST_TIMEOUT) {
+      state.rejectQueued();
+      delisted();
     } else if (message instanceof Tick) {
       Tick tick = (Tick) message;
+      if(wakeUp != null && wakeUp.isExpired()){
+        wakeUp = null;
+      }
       cleanAndUpdate(tick.timestamp);
+      state.expired(tick.nanos);
+      if(System.nanoTime() - nextSnapshot >= 0){
+        snapshot();
+      }
+      scheduleWakeUp();
     } else {
       unhandled(message);
     }
   }
 
-  public void cleanAndUpdate(Instant last){
-  	Trade trade = queue.peek();
-  	while (trade != null && hasExpired(trade.timestamp, last)){
-  		quantity = quantity - trade.quantity;
-  		accumulated = accumulated.subtract(trade.price.multiply(trade.quantity));
-  		queue.poll();
-  		trade = queue.peek();
+  /** Stops a delisted ticker once the last trade queued before the delist is taken, otherwise schedules its next wake-up. */
+  protected void afterTrades(){
+  	if(delistTimeout != null && state.queued() <= 0){
+  	  delisted();
+  	} else {
+  	  scheduleWakeUp();
   	}
-  	updatePrice();
   }
 
-  public void updatePrice(){
-   if(quantity > 0){
-     Money price = accumulated.divide(quantity);
-	   stockInfoRef.set(new StockInfo(price,quantity,volume));
-   } else {
-     stockInfoRef.set(new StockInfo());
-   }
+  private void delisted(){
+  	if(delistTimeout != null){
+  	  delistTimeout.cancel();
+  	}
+  	state.delist();
+  	getContext().stop(getSelf());
+  }
+
+  protected boolean record(Trade trade){
+  	return record(TradeWindow.timestampOf(trade.timestamp), trade.type, trade.fixedPrice, trade.quantity);
   }
 
-  public boolean persist(Trade trade){
-  	//not required to implement persistent storage
+  protected boolean record(long timestamp, TradeType type, long price, int quantity){
+  	if(!state.canAdd(price, quantity)){
+  	  state.rejected();
+  	  return false;
+  	}
+  	if(persist(timestamp, type, price, quantity)){
+  	  state.add(timestamp, price, quantity);
+  	  changed = true;
+  	  return true;
+  	}
+  	return false;
+  }
+
+  /** Records the trades of the batch which do not overflow the running totals, journaled at once. */
+  protected boolean record(TradeBatch batch){
+  	if(admitted.length < batch.size) admitted = new boolean[batch.size];
+  	if(state.admit(batch, admitted) == 0) return false;
+  	long timestamp = TradeWindow.timestampOf(batch.timestamp);
+  	state.unsaved();
+  	long position = journal.append(journalId, batch, timestamp, admitted);
+  	if(position == Journal.FAILED){
+  	  return false;
+  	}
+  	state.journalPosition(position);
+  	for(int i = 0; i < batch.size; i++){
+  	  if(admitted[i]) state.add(timestamp, batch.fixedPrice(i), batch.quantity(i));
+  	}
+  	changed = true;
   	return true;
   }
 
-  public boolean hasExpired(Instant timestamp, Instant last){
-  	return timestamp.isBefore(last);
+  public void cleanAndUpdate(Instant last){
+  	changed |= state.expire(TradeWindow.timestampOf(last));
+  	updatePrice();
+  }
+
+  /** Saves the ticker state if it changed since the last snapshot. */
+  public void snapshot(){
+  	if(changed && snapshots != SnapshotStore.NONE){
+  	  // every trade of this ticker journaled so far is already in its state
+  	  long position = journal.position();
+  	  if(snapshots.save(stock, state.snapshot(position))){
+  	    state.saved(position);
+  	    changed = false;
+  	  }
+  	}
+  	nextSnapshot = System.nanoTime() + snapshots.interval().toNanos();
+  }
+
+  /**
+   * Keeps a single wake-up pending for the earlier of the oldest trade expiry and the next
+   * snapshot due, so a ticker with an empty window and nothing to save is never woken.
+   */
+  protected void scheduleWakeUp(){
+  	if(ticks == TickScheduler.NONE) return;
+  	long oldest = oldestTimestamp();
+  	boolean expiring = oldest != Long.MAX_VALUE;
+  	boolean snapshotDue = changed && snapshots != SnapshotStore.NONE;
+  	if(!expiring && !snapshotDue) return;
+  	if(wakeUp != null && !wakeUp.isExpired() && wakeUpFor <= oldest
+  	    && (!snapshotDue || wakeUp.deadline() - nextSnapshot <= 0)){
+  	  return;
+  	}
+  	long deadline = expiring ? ticks.expiryOf(oldest) : nextSnapshot;
+  	if(snapshotDue && nextSnapshot - deadline < 0){
+  	  deadline = nextSnapshot;
+  	}
+  	if(wakeUp != null){
+  	  wakeUp.cancel();
+  	}
+  	wakeUp = ticks.schedule(getSelf(), deadline);
+  	wakeUpFor = oldest;
+  }
+
+  /** @return window timestamp of the oldest thing to expire on a tick, or Long.MAX_VALUE if there is none */
+  protected long oldestTimestamp(){
+  	TradeWindow window = state.window();
+  	return window.isEmpty() ? Long.MAX_VALUE : window.oldestTimestamp();
+  }
+
+  @Override
+  public void preStart(){
+  	scheduleWakeUp();
+  }
+
+  @Override
+  public void postStop(){
+  	if(wakeUp != null){
+  	  wakeUp.cancel();
+  	}
+  	snapshot();
+  }
+
+  public void updatePrice(){
+  	state.publish();
+  }
+
+  public boolean persist(long timestamp, TradeType type, long price, int quantity){
+  	state.unsaved();
+  	long position = journal.append(journalId, type, price, quantity, timestamp);
+  	if(position == Journal.FAILED){
+  	  return false;
+  	}
+  	state.journalPosition(position);
+  	return true;
   }
 }
\ No newline at end of file
@@ -0,0 +1,111 @@
+package me.arturopala.stockexchange.simpleimpl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import me.arturopala.stockexchange.api.*;
+import me.arturopala.stockexchange.history.TradeHistory;
+import me.arturopala.stockexchange.util.FixedMoney;
+import me.arturopala.stockexchange.util.Money;
+
+public class TickerImpl implements Ticker {
+
+	private final Stock stock;
+	volatile TickerSlots.Slot slot;
+	final TickerTopic topic;
+	final CandleAggregator candles;
+	final TradeHistory history;
+	final AtomicInteger queued = new AtomicInteger();
+
+	public TickerImpl(Stock stock){
+		this(stock, new TickerSlots(1).allocate(stock));
+	}
+
+	public TickerImpl(Stock stock, TickerSlots.Slot slot){
+		this(stock, slot, ForkJoinPool.commonPool());
+	}
+
+	public TickerImpl(Stock stock, TickerSlots.Slot slot, Executor executor){
+		this(stock, slot, executor, new TradeHistory());
+	}
+
+	public TickerImpl(Stock stock, TickerSlots.Slot slot, Executor executor, TradeHistory history){
+		this(stock, slot, executor, new CandleAggregator(), history);
+	}
+
+	/** @param candles and history may be null for tickers that only mirror state kept elsewhere */
+	public TickerImpl(Stock stock, TickerSlots.Slot slot, Executor executor, CandleAggregator candles, TradeHistory history){
+		this.stock = stock;
+		this.slot = slot;
+		this.topic = new TickerTopic(stock, slot, executor);
+		this.candles = candles;
+		this.history = history;
+	}
+
+	public TickerSlots.Slot slot(){
+		return slot;
+	}
+
+	/**
+	 * Moves the ticker and its topic to a private copy of the last published state,
+	 * so a delisted ticker keeps it for its watchers while the slot is reused.
+	 * @return slot the ticker used before
+	 */
+	public TickerSlots.Slot detach(){
+		TickerSlots.Slot shared = slot;
+		TickerSlots.Slot copy = new TickerSlots(1).allocate(stock);
+		StockInfo info = shared.stockInfo();
+		copy.publish(info.fixedPrice, info.quantity, info.fixedVolume);
+		topic.detach(copy);
+		slot = copy;
+		return shared;
+	}
+
+	public TickerTopic topic(){
+		return topic;
+	}
+
+	public CandleAggregator candles(){
+		return candles;
+	}
+
+	public TradeHistory history(){
+		return history;
+	}
+
+	/** @return trades sent to the ticker worker and not yet taken off its queue */
+	public AtomicInteger queued(){
+		return queued;
+	}
+
+	@Override
+	public Stock stock(){
+		return stock;
+	}
+
+	@Override
+	public Money price(){
+		return FixedMoney.toMoney(slot.price());
+	}
+
+	@Override
+	public Money volume(){
+		return FixedMoney.toMoney(slot.volume());
+	}
+
+	@Override
+	public int quantity(){
+		return slot.quantity();
+	}
+
+	@Override
+	public double dividendYield(){
+		return slot.dividendYield();
+	}
+
+	@Override
+	public double peRatio(){
+		return slot.peRatio();
+	}
+
+}
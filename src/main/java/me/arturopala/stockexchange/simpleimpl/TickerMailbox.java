@@ -0,0 +1,136 @@
+package me.arturopala.stockexchange.simpleimpl;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.DeadLetter;
+import akka.dispatch.BoundedMessageQueueSemantics;
+import akka.dispatch.Envelope;
+import akka.dispatch.MailboxType;
+import akka.dispatch.MessageQueue;
+import akka.dispatch.ProducesMessageQueue;
+import com.typesafe.config.Config;
+import scala.Option;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Bounded mailbox of ticker actors, configured under {@link #CONFIG} with mailbox-capacity
+ * rounded up to a power of two. Trades that do not fit go to dead letters, so the exchange
+ * admits orders against its own per-stock bound, smaller than the mailbox capacity.
+ * Any other message, like a tick or a stop request, is never dropped: if the ring is full
+ * it waits in an unbounded overflow queue, taken after the ring.
+ */
+public class TickerMailbox implements MailboxType, ProducesMessageQueue<TickerMailbox.TickerMessageQueue> {
+
+	public static final String CONFIG = "me.arturopala.stockexchange.ticker-mailbox";
+
+	private final int capacity;
+
+	public TickerMailbox(ActorSystem.Settings settings, Config config){
+		this(config.getInt("mailbox-capacity"));
+	}
+
+	public TickerMailbox(int capacity){
+		if(capacity < 1) throw new IllegalArgumentException("Mailbox capacity must be positive");
+		this.capacity = capacity;
+	}
+
+	public static int capacity(ActorSystem actorSystem){
+		return actorSystem.settings().config().getInt(CONFIG+".mailbox-capacity");
+	}
+
+	@Override
+	public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system){
+		return new TickerMessageQueue(capacity, system.isDefined() ? system.get().deadLetters() : null);
+	}
+
+	/**
+	 * Multi-producer, single-consumer ring of envelopes. Producers claim a slot with a CAS on
+	 * the tail after checking there is room, then store the envelope with an ordered write;
+	 * the actor clears each slot as it takes the envelope and advances the head.
+	 */
+	public static final class TickerMessageQueue implements MessageQueue, BoundedMessageQueueSemantics {
+
+		private final AtomicReferenceArray<Envelope> slots;
+		private final int mask;
+		private final AtomicLong head = new AtomicLong();
+		private final AtomicLong tail = new AtomicLong();
+		private final ConcurrentLinkedQueue<Envelope> overflow = new ConcurrentLinkedQueue<>();
+		private final ActorRef deadLetters;
+
+		public TickerMessageQueue(int capacity, ActorRef deadLetters){
+			int size = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+			this.slots = new AtomicReferenceArray<>(size);
+			this.mask = size - 1;
+			this.deadLetters = deadLetters;
+		}
+
+		public boolean offer(Envelope envelope){
+			long current;
+			do {
+				current = tail.get();
+				if(current - head.get() >= slots.length()) return false;
+			} while(!tail.compareAndSet(current, current + 1));
+			slots.lazySet((int) current & mask, envelope);
+			return true;
+		}
+
+		@Override
+		public void enqueue(ActorRef receiver, Envelope handle){
+			if(offer(handle)) return;
+			Object message = handle.message();
+			if(!(message instanceof Trade) && !(message instanceof TradeBatch)){
+				overflow.add(handle);
+			} else if(deadLetters != null){
+				deadLetters.tell(new DeadLetter(message, handle.sender(), receiver), handle.sender());
+			}
+		}
+
+		@Override
+		public Envelope dequeue(){
+			long current = head.get();
+			int slot = (int) current & mask;
+			Envelope envelope = slots.get(slot);
+			if(envelope == null){
+				if(current == tail.get()) return overflow.poll();
+				// producer claimed the slot but has not stored the envelope yet
+				while((envelope = slots.get(slot)) == null){
+					Thread.yield();
+				}
+			}
+			slots.lazySet(slot, null);
+			head.lazySet(current + 1);
+			return envelope;
+		}
+
+		@Override
+		public int numberOfMessages(){
+			return (int) Math.max(0, tail.get() - head.get()) + overflow.size();
+		}
+
+		@Override
+		public boolean hasMessages(){
+			return tail.get() != head.get() || !overflow.isEmpty();
+		}
+
+		@Override
+		public void cleanUp(ActorRef owner, MessageQueue deadLetters){
+			Envelope envelope;
+			while((envelope = dequeue()) != null){
+				deadLetters.enqueue(owner, envelope);
+			}
+		}
+
+		@Override
+		public Duration pushTimeOut(){
+			return Duration.Zero();
+		}
+
+		public int capacity(){
+			return slots.length();
+		}
+	}
+
+}
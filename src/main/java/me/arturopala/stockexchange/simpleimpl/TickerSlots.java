@@ -0,0 +1,189 @@
+package me.arturopala.stockexchange.simpleimpl;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.util.FixedMoney;
+
+/**
+ * Preallocated publication slots of tickers, laid out in arrays of blocks with every slot
+ * padded to 128 bytes, so tickers updated by different threads never share a cache line.
+ * Each slot is written by one thread at a time under a sequence lock: the sequence is odd
+ * while price, quantity and volume are being replaced, and readers of more than one field
+ * retry until they see the same even sequence before and after reading, so publishing
+ * neither locks nor allocates. Slots of a known stock also cache its dividend yield and P/E
+ * ratio, recalculated by the writer only when the price changes. Released slots are handed
+ * out again before new ones, their sequence carrying on so versions never repeat. Every reuse
+ * bumps the slot generation, so a reader still holding the released slot notices it after
+ * its read and returns the state the slot had when released instead of the next stock's.
+ */
+public final class TickerSlots {
+
+	/** longs per slot, two cache lines */
+	private static final int STRIDE = 16;
+	private static final int SEQUENCE = 0;
+	private static final int PRICE = 1;
+	private static final int QUANTITY = 2;
+	private static final int VOLUME = 3;
+	private static final int DIVIDEND_YIELD = 4;
+	private static final int PE_RATIO = 5;
+	private static final int GENERATION = 6;
+	private static final long NAN = Double.doubleToRawLongBits(Double.NaN);
+
+	private final int blockSize;
+	private AtomicLongArray block;
+	private int allocated;
+	private final ArrayDeque<Slot> released = new ArrayDeque<>();
+
+	public TickerSlots(int blockSize){
+		if(blockSize < 1) throw new IllegalArgumentException("Block size must be positive but was "+blockSize);
+		this.blockSize = blockSize;
+		this.allocated = blockSize;
+	}
+
+	public Slot allocate(){
+		return allocate(null, null);
+	}
+
+	public Slot allocate(Stock stock){
+		return allocate(stock, null);
+	}
+
+	/**
+	 * @param stock stock to cache analytics of, or null
+	 * @param mirror reference also set to every state published, or null
+	 */
+	public synchronized Slot allocate(Stock stock, AtomicReference<StockInfo> mirror){
+		Slot free = released.poll();
+		if(free != null){
+			return new Slot(free.array, free.base, free.generation + 1, stock, mirror);
+		}
+		if(allocated == blockSize){
+			// leading stride keeps the first slot off the array header
+			block = new AtomicLongArray((blockSize + 1) * STRIDE);
+			allocated = 0;
+		}
+		return new Slot(block, ++allocated * STRIDE, 0, stock, mirror);
+	}
+
+	/** Returns the slot for reuse, it must not be published to anymore but its readers keep its last state. */
+	public synchronized void release(Slot slot){
+		slot.retired = slot.stockInfo();
+		released.add(slot);
+	}
+
+	/** @return number of released slots waiting for reuse */
+	public synchronized int released(){
+		return released.size();
+	}
+
+	/** Published state of one ticker. */
+	public static final class Slot {
+
+		private final AtomicLongArray array;
+		private final int base;
+		private final long generation;
+		private final Stock stock;
+		private final AtomicReference<StockInfo> mirror;
+		/** state at release, set before the slot is handed out again */
+		private volatile StockInfo retired;
+
+		private Slot(AtomicLongArray array, int base, long generation, Stock stock, AtomicReference<StockInfo> mirror){
+			this.array = array;
+			this.base = base;
+			this.generation = generation;
+			this.stock = stock;
+			this.mirror = mirror;
+			long sequence = array.get(base + SEQUENCE);
+			if(sequence != 0) array.set(base + SEQUENCE, sequence + 1);
+			array.set(base + GENERATION, generation);
+			array.set(base + PRICE, FixedMoney.UNDEFINED);
+			array.set(base + QUANTITY, 0);
+			array.set(base + VOLUME, FixedMoney.UNDEFINED);
+			array.set(base + DIVIDEND_YIELD, NAN);
+			array.set(base + PE_RATIO, NAN);
+			if(sequence != 0) array.set(base + SEQUENCE, sequence + 2);
+		}
+
+		/** Replaces published state, callers must not publish to the same slot concurrently. */
+		public void publish(long price, int quantity, long volume){
+			long sequence = array.get(base + SEQUENCE);
+			boolean repriced = stock != null && price != array.get(base + PRICE);
+			long dividendYield = repriced ? Double.doubleToRawLongBits(stock.calculateDividendYield(price)) : 0;
+			long peRatio = repriced ? Double.doubleToRawLongBits(stock.calculatePERatio(price)) : 0;
+			array.set(base + SEQUENCE, sequence + 1);
+			array.lazySet(base + PRICE, price);
+			array.lazySet(base + QUANTITY, quantity);
+			array.lazySet(base + VOLUME, volume);
+			if(repriced){
+				array.lazySet(base + DIVIDEND_YIELD, dividendYield);
+				array.lazySet(base + PE_RATIO, peRatio);
+			}
+			array.lazySet(base + SEQUENCE, sequence + 2);
+			if(mirror != null) mirror.set(new StockInfo(price, quantity, volume, sequence + 2));
+		}
+
+		public void clear(){
+			publish(FixedMoney.UNDEFINED, 0, FixedMoney.UNDEFINED);
+		}
+
+		/** @return even sequence of the last state published, changes with every publication */
+		public long version(){
+			long sequence;
+			while(((sequence = array.get(base + SEQUENCE)) & 1) != 0){
+				Thread.yield();
+			}
+			return reused() ? retired.version : sequence;
+		}
+
+		public long price(){
+			long price = array.get(base + PRICE);
+			return reused() ? retired.fixedPrice : price;
+		}
+
+		public int quantity(){
+			long quantity = array.get(base + QUANTITY);
+			return reused() ? retired.quantity : (int) quantity;
+		}
+
+		public long volume(){
+			long volume = array.get(base + VOLUME);
+			return reused() ? retired.fixedVolume : volume;
+		}
+
+		/** @return dividend yield at the published price, NaN if not defined or the stock is unknown */
+		public double dividendYield(){
+			long dividendYield = array.get(base + DIVIDEND_YIELD);
+			if(reused()) return stock != null ? stock.calculateDividendYield(retired.fixedPrice) : Double.NaN;
+			return Double.longBitsToDouble(dividendYield);
+		}
+
+		/** @return P/E ratio at the published price, NaN if not defined or the stock is unknown */
+		public double peRatio(){
+			long peRatio = array.get(base + PE_RATIO);
+			if(reused()) return stock != null ? stock.calculatePERatio(retired.fixedPrice) : Double.NaN;
+			return Double.longBitsToDouble(peRatio);
+		}
+
+		/** @return copy of the last state published, never torn */
+		public StockInfo stockInfo(){
+			while(true){
+				long sequence = version();
+				long price = array.get(base + PRICE);
+				long quantity = array.get(base + QUANTITY);
+				long volume = array.get(base + VOLUME);
+				if(reused()) return retired;
+				if(array.get(base + SEQUENCE) == sequence){
+					return new StockInfo(price, (int) quantity, volume, sequence);
+				}
+			}
+		}
+
+		/** @return true if the slot was released and handed out again, checked after reading its fields */
+		private boolean reused(){
+			return array.get(base + GENERATION) != generation;
+		}
+	}
+
+}
@@ -0,0 +1,32 @@
+package me.arturopala.stockexchange.simpleimpl;
+
+/**
+ * Point-in-time copy of a {@link TickerState}: the window columns, running totals
+ * and the journal position of the last trade included.
+ */
+public class TickerSnapshot {
+
+	public final long journalPosition;
+	public final int quantity;
+	public final long accumulated;
+	public final long volume;
+	public final long[] timestamps;
+	public final long[] prices;
+	public final int[] quantities;
+
+	public TickerSnapshot(long journalPosition, int quantity, long accumulated, long volume, long[] timestamps, long[] prices, int[] quantities){
+		if(timestamps.length != prices.length || timestamps.length != quantities.length) throw new IllegalArgumentException("Window columns must have the same length");
+		this.journalPosition = journalPosition;
+		this.quantity = quantity;
+		this.accumulated = accumulated;
+		this.volume = volume;
+		this.timestamps = timestamps;
+		this.prices = prices;
+		this.quantities = quantities;
+	}
+
+	public int size(){
+		return timestamps.length;
+	}
+
+}
@@ -0,0 +1,270 @@
+package me.arturopala.stockexchange.simpleimpl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import me.arturopala.stockexchange.history.TradeHistory;
+import me.arturopala.stockexchange.metrics.ExchangeMetrics;
+import me.arturopala.stockexchange.util.*;
+
+/**
+ * Single-writer price window of one stock: trades from the calculation period,
+ * their running totals, and publication of the resulting state to the ticker slot.
+ */
+public class TickerState {
+
+	private final TickerSlots.Slot slot;
+	private final AllShareIndex allShareIndex;
+	private final TickerTopic topic;
+	private final CandleAggregator candles;
+	private final TradeHistory history;
+	private final AtomicInteger queued;
+	private final ExchangeMetrics metrics;
+	private final TradeWindow window = new TradeWindow();
+	private final MoneyAccumulator accumulated = new MoneyAccumulator();
+	private final MoneyAccumulator volume = new MoneyAccumulator();
+
+	private int quantity = 0;
+	private long journalPosition = 0;
+	private volatile boolean unsaved = false;
+	private volatile long savedPosition = 0;
+
+	public TickerState(AtomicReference<StockInfo> stockInfoRef, AllShareIndex allShareIndex){
+		this(stockInfoRef, allShareIndex, null);
+	}
+
+	public TickerState(AtomicReference<StockInfo> stockInfoRef, AllShareIndex allShareIndex, TickerTopic topic){
+		this(new TickerSlots(1).allocate(null, stockInfoRef), allShareIndex, topic, null, null, null, null);
+	}
+
+	public TickerState(TickerSlots.Slot slot, AllShareIndex allShareIndex){
+		this(slot, allShareIndex, null, null, null, null, null);
+	}
+
+	public TickerState(TickerImpl ticker, AllShareIndex allShareIndex, ExchangeMetrics metrics){
+		this(ticker.slot, allShareIndex, ticker.topic, ticker.candles, ticker.history, ticker.queued, metrics);
+	}
+
+	public TickerState(TickerSlots.Slot slot, AllShareIndex allShareIndex, TickerTopic topic, CandleAggregator candles, TradeHistory history,
+			AtomicInteger queued, ExchangeMetrics metrics){
+		this.slot = slot;
+		this.allShareIndex = allShareIndex;
+		this.topic = topic;
+		this.candles = candles;
+		this.history = history;
+		this.queued = queued;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Adds the trade to the window and the running totals, or throws ArithmeticException
+	 * leaving the state as it was if the totals would overflow.
+	 */
+	public void add(long timestamp, long price, int quantity){
+		long value = FixedMoney.multiply(price, quantity);
+		long newAccumulated = FixedMoney.add(accumulated.value(), value);
+		long newVolume = FixedMoney.add(volume.value(), value);
+		int newQuantity = Math.addExact(this.quantity, quantity);
+		if(history != null && !history.canAdd(price, quantity)) throw new ArithmeticException("Trade history totals overflow");
+		accumulated.reset().add(newAccumulated);
+		volume.reset().add(newVolume);
+		this.quantity = newQuantity;
+		window.add(timestamp, price, quantity);
+		if(candles != null) candles.add(timestamp, price, quantity);
+		if(history != null) history.add(timestamp, price, quantity);
+	}
+
+	/** @return false if adding the trade would overflow the running totals */
+	public boolean canAdd(long price, int quantity){
+		try {
+			return canAddTotals(FixedMoney.multiply(price, quantity), quantity);
+		} catch (ArithmeticException e){
+			return false;
+		}
+	}
+
+	/**
+	 * Flags the trades of the batch which can be added one after another, each as {@link #canAdd(long, int)}
+	 * would tell once the trades flagged before it were added, and records the others as rejected.
+	 * @return number of trades flagged
+	 */
+	public int admit(TradeBatch batch, boolean[] admitted){
+		long value = 0;
+		long quantity = 0;
+		int count = 0;
+		for(int i = 0; i < batch.size; i++){
+			boolean fits;
+			try {
+				long newValue = Math.addExact(value, FixedMoney.multiply(batch.fixedPrice(i), batch.quantity(i)));
+				long newQuantity = quantity + batch.quantity(i);
+				fits = canAddTotals(newValue, newQuantity);
+				if(fits){
+					value = newValue;
+					quantity = newQuantity;
+				}
+			} catch (ArithmeticException e){
+				fits = false;
+			}
+			admitted[i] = fits;
+			if(fits) count++;
+			else rejected();
+		}
+		return count;
+	}
+
+	private boolean canAddTotals(long value, long quantity){
+		try {
+			FixedMoney.add(accumulated.value(), value);
+			FixedMoney.add(volume.value(), value);
+			Math.toIntExact(this.quantity + quantity);
+			return history == null || history.canAddTotals(value, quantity);
+		} catch (ArithmeticException e){
+			return false;
+		}
+	}
+
+	public boolean expire(long last){
+		boolean expired = false;
+		while (!window.isEmpty() && window.oldestTimestamp() < last){
+			int expiredQuantity = window.oldestQuantity();
+			quantity = quantity - expiredQuantity;
+			accumulated.subtract(window.oldestPrice(), expiredQuantity);
+			window.removeOldest();
+			expired = true;
+		}
+		return expired;
+	}
+
+	public void publish(){
+		long previousPrice = slot.price();
+		long price = quantity > 0 ? accumulated.divide(quantity) : FixedMoney.UNDEFINED;
+		if(quantity > 0) slot.publish(price, quantity, volume.value());
+		else slot.clear();
+		if(metrics != null){
+			long start = System.nanoTime();
+			allShareIndex.update(previousPrice, price);
+			metrics.indexUpdate.record(System.nanoTime() - start);
+		} else {
+			allShareIndex.update(previousPrice, price);
+		}
+		if(topic != null) topic.publish();
+	}
+
+	/** Removes the last published price from the all share index, the ticker keeps it for its watchers. */
+	public void delist(){
+		allShareIndex.update(slot.price(), FixedMoney.UNDEFINED);
+	}
+
+	/** @return trades admitted to the ticker queue and not yet taken off */
+	public int queued(){
+		return queued != null ? queued.get() : 0;
+	}
+
+	/** Takes trades off the ticker queue, recording its depth. */
+	public void dequeued(int trades){
+		if(queued != null){
+			int depth = queued.getAndAdd(-trades);
+			if(metrics != null) metrics.dequeued(trades, depth);
+		}
+	}
+
+	/** Records a trade dropped by the ticker. */
+	public void rejected(){
+		if(metrics != null) metrics.rejected(1);
+	}
+
+	/** Takes the trades still on the ticker queue off it and records them as rejected. */
+	public int rejectQueued(){
+		int trades = queued();
+		if(trades > 0){
+			dequeued(trades);
+			if(metrics != null) metrics.rejected(trades);
+		}
+		return trades;
+	}
+
+	/** Records latency of a trade submitted at given {@link System#nanoTime()} and just published. */
+	public void published(long submittedNanos){
+		if(metrics != null) metrics.tradeToPublish.record(System.nanoTime() - submittedNanos);
+	}
+
+	/** Records delay of the window expiry scheduled at given {@link System#nanoTime()}. */
+	public void expired(long scheduledNanos){
+		if(metrics != null) metrics.tickDelay.record(System.nanoTime() - scheduledNanos);
+	}
+
+	public TickerSnapshot snapshot(){
+		return snapshot(journalPosition);
+	}
+
+	/** @param journalPosition position up to which every journaled trade of the ticker is in this state */
+	public TickerSnapshot snapshot(long journalPosition){
+		int size = window.size();
+		long[] timestamps = new long[size];
+		long[] prices = new long[size];
+		int[] quantities = new int[size];
+		for(int i = 0; i < size; i++){
+			timestamps[i] = window.timestamp(i);
+			prices[i] = window.price(i);
+			quantities[i] = window.quantity(i);
+		}
+		return new TickerSnapshot(journalPosition, quantity, accumulated.value(), volume.value(), timestamps, prices, quantities);
+	}
+
+	public void restore(TickerSnapshot snapshot){
+		window.clear();
+		for(int i = 0; i < snapshot.size(); i++){
+			window.add(snapshot.timestamps[i], snapshot.prices[i], snapshot.quantities[i]);
+			if(candles != null) candles.add(snapshot.timestamps[i], snapshot.prices[i], snapshot.quantities[i]);
+			if(history != null) history.add(snapshot.timestamps[i], snapshot.prices[i], snapshot.quantities[i]);
+		}
+		quantity = snapshot.quantity;
+		accumulated.reset().add(snapshot.accumulated);
+		volume.reset().add(snapshot.volume);
+		journalPosition = snapshot.journalPosition;
+	}
+
+	/** Marks the state as having trades not in a saved snapshot, called before journaling them. */
+	public void unsaved(){
+		if(!unsaved) unsaved = true;
+	}
+
+	/** Marks the state as saved in a snapshot covering the journal up to the position. */
+	public void saved(long journalPosition){
+		savedPosition = journalPosition;
+		unsaved = false;
+	}
+
+	/**
+	 * @param journalPosition current position of the journal, read before calling
+	 * @return position up to which every journaled trade of the ticker is in a saved snapshot
+	 */
+	public long savedPosition(long journalPosition){
+		return unsaved ? savedPosition : journalPosition;
+	}
+
+	/** @return journal position of the last trade added */
+	public long journalPosition(){
+		return journalPosition;
+	}
+
+	public void journalPosition(long journalPosition){
+		this.journalPosition = journalPosition;
+	}
+
+	public int quantity(){
+		return quantity;
+	}
+
+	public long accumulated(){
+		return accumulated.value();
+	}
+
+	public long volume(){
+		return volume.value();
+	}
+
+	public TradeWindow window(){
+		return window;
+	}
+
+}
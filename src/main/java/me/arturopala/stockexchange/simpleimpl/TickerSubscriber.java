@@ -0,0 +1,93 @@
+package me.arturopala.stockexchange.simpleimpl;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import me.arturopala.stockexchange.api.*;
+
+/**
+ * Subscription to a set of tickers. Signalled topics are only marked pending,
+ * so at most one update per stock waits for the listener and it is read
+ * at delivery time, which conflates whatever happened in between. A state equal to the one
+ * delivered before is skipped, comparing values too as states read from a reference may
+ * all have version 0.
+ * Deliveries run on the executor, one drain at a time per subscriber.
+ */
+public final class TickerSubscriber implements Subscription {
+
+	private final List<TickerTopic> topics;
+	private final TickerListener listener;
+	private final Executor executor;
+	private final Set<TickerTopic> pending = ConcurrentHashMap.newKeySet();
+	private final Map<TickerTopic, StockInfo> delivered = new HashMap<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	private final Runnable drain = this::drain;
+
+	private volatile boolean cancelled = false;
+
+	public TickerSubscriber(Collection<TickerTopic> topics, TickerListener listener, Executor executor){
+		this.topics = new ArrayList<>(topics);
+		this.listener = listener;
+		this.executor = executor;
+		for(TickerTopic topic: this.topics){
+			topic.add(this);
+		}
+		for(TickerTopic topic: this.topics){
+			signal(topic);
+		}
+	}
+
+	@Override
+	public void cancel(){
+		cancelled = true;
+		for(TickerTopic topic: topics){
+			topic.remove(this);
+		}
+		pending.clear();
+	}
+
+	@Override
+	public boolean isCancelled(){
+		return cancelled;
+	}
+
+	void signal(TickerTopic topic){
+		if(!cancelled && pending.add(topic)){
+			schedule();
+		}
+	}
+
+	private void schedule(){
+		if(scheduled.compareAndSet(false, true)){
+			try {
+				executor.execute(drain);
+			} catch (RejectedExecutionException e){
+				scheduled.set(false);
+			}
+		}
+	}
+
+	private void drain(){
+		Iterator<TickerTopic> iterator = pending.iterator();
+		while(iterator.hasNext() && !cancelled){
+			TickerTopic topic = iterator.next();
+			iterator.remove();
+			StockInfo stockInfo = topic.stockInfo();
+			StockInfo previous = delivered.put(topic, stockInfo);
+			if(previous == null || !previous.sameAs(stockInfo)){
+				try {
+					listener.onUpdate(new TickerUpdate(topic.stock(), stockInfo));
+				} catch (RuntimeException e){
+					cancel();
+				}
+			}
+		}
+		scheduled.set(false);
+		if(!pending.isEmpty() && !cancelled){
+			schedule();
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+package me.arturopala.stockexchange.simpleimpl;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import me.arturopala.stockexchange.api.Stock;
+
+/**
+ * Fan-out point of one ticker's updates. Publishing only flips a flag and hands over
+ * to the executor, which signals every subscriber of the stock, so the ticker
+ * never waits for subscribers however many there are.
+ */
+public final class TickerTopic {
+
+	private final Stock stock;
+	private volatile TickerSlots.Slot slot;
+	private final AtomicReference<StockInfo> stockInfoRef;
+	private final Executor executor;
+	private final CopyOnWriteArrayList<TickerSubscriber> subscribers = new CopyOnWriteArrayList<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	private final Runnable fanOut = this::fanOut;
+
+	public TickerTopic(Stock stock, TickerSlots.Slot slot, Executor executor){
+		this(stock, slot, null, executor);
+	}
+
+	public TickerTopic(Stock stock, AtomicReference<StockInfo> stockInfoRef, Executor executor){
+		this(stock, null, stockInfoRef, executor);
+	}
+
+	private TickerTopic(Stock stock, TickerSlots.Slot slot, AtomicReference<StockInfo> stockInfoRef, Executor executor){
+		this.stock = stock;
+		this.slot = slot;
+		this.stockInfoRef = stockInfoRef;
+		this.executor = executor;
+	}
+
+	public void publish(){
+		if(!subscribers.isEmpty() && scheduled.compareAndSet(false, true)){
+			try {
+				executor.execute(fanOut);
+			} catch (RejectedExecutionException e){
+				scheduled.set(false);
+			}
+		}
+	}
+
+	public Stock stock(){
+		return stock;
+	}
+
+	/** Reads the state from the given slot from now on, see {@link TickerImpl#detach()}. */
+	void detach(TickerSlots.Slot slot){
+		this.slot = slot;
+	}
+
+	public StockInfo stockInfo(){
+		return slot != null ? slot.stockInfo() : stockInfoRef.get();
+	}
+
+	public int subscribers(){
+		return subscribers.size();
+	}
+
+	void add(TickerSubscriber subscriber){
+		subscribers.add(subscriber);
+	}
+
+	void remove(TickerSubscriber subscriber){
+		subscribers.remove(subscriber);
+	}
+
+	private void fanOut(){
+		scheduled.set(false);
+		for(TickerSubscriber subscriber: subscribers){
+			subscriber.signal(this);
+		}
+	}
+
+}
@@ -0,0 +1,42 @@
+package me.arturopala.stockexchange.simpleimpl;
+
+import me.arturopala.stockexchange.api.*;
+import me.arturopala.stockexchange.util.Money;
+
+/** Immutable ticker state delivered to subscribers. */
+public final class TickerUpdate implements Ticker {
+
+	private final Stock stock;
+	private final StockInfo stockInfo;
+
+	public TickerUpdate(Stock stock, StockInfo stockInfo){
+		this.stock = stock;
+		this.stockInfo = stockInfo;
+	}
+
+	@Override
+	public Stock stock(){
+		return stock;
+	}
+
+	@Override
+	public Money price(){
+		return stockInfo.price();
+	}
+
+	@Override
+	public Money volume(){
+		return stockInfo.volume();
+	}
+
+	@Override
+	public int quantity(){
+		return stockInfo.quantity;
+	}
+
+	@Override
+	public String toString(){
+		return "TickerUpdate("+stock.symbol()+","+price()+","+quantity()+","+volume()+")";
+	}
+
+}
@@ -15,6 +15,8 @@ public class Trade {
 	public final Stock stock;
 	public final int quantity;
 	public final Money price;
+	public final long fixedPrice;
+	public final long nanos = System.nanoTime();
 
 	public Trade (Instant timestamp, TradeType type, Stock stock, int quantity, Money price){
 		this.timestamp = timestamp;
@@ -22,6 +24,16 @@ public class Trade {
 		this.stock = stock;
 		this.quantity = quantity;
 		this.price = price;
+		this.fixedPrice = FixedMoney.valueOf(price);
+	}
+
+	public Trade (Instant timestamp, TradeType type, Stock stock, int quantity, long fixedPrice){
+		this.timestamp = timestamp;
+		this.type = type;
+		this.stock = stock;
+		this.quantity = quantity;
+		this.price = FixedMoney.toMoney(fixedPrice);
+		this.fixedPrice = fixedPrice;
 	}
 
 	@Override
@@ -0,0 +1,78 @@
+package me.arturopala.stockexchange.simpleimpl;
+
+import java.time.Instant;
+import java.util.Arrays;
+import me.arturopala.stockexchange.api.*;
+
+public class TradeBatch {
+
+	public final Instant timestamp;
+	public final Stock stock;
+	public final int size;
+	public final long nanos = System.nanoTime();
+
+	private final TradeType[] types;
+	private final int[] quantities;
+	private final long[] prices;
+
+	private TradeBatch(Builder builder){
+		this.timestamp = builder.timestamp;
+		this.stock = builder.stock;
+		this.size = builder.size;
+		this.types = builder.types;
+		this.quantities = builder.quantities;
+		this.prices = builder.prices;
+	}
+
+	public TradeType type(int index){
+		return types[index];
+	}
+
+	public int quantity(int index){
+		return quantities[index];
+	}
+
+	public long fixedPrice(int index){
+		return prices[index];
+	}
+
+	@Override
+	public String toString(){
+		return "TradeBatch(stock="+stock+", size="+size+", time="+timestamp+")";
+	}
+
+	public static class Builder {
+
+		private final Instant timestamp;
+		private final Stock stock;
+
+		private TradeType[] types = new TradeType[8];
+		private int[] quantities = new int[8];
+		private long[] prices = new long[8];
+		private int size = 0;
+
+		public Builder(Instant timestamp, Stock stock){
+			this.timestamp = timestamp;
+			this.stock = stock;
+		}
+
+		public Builder add(TradeType type, int quantity, long price){
+			if(size == types.length){
+				int capacity = size << 1;
+				types = Arrays.copyOf(types, capacity);
+				quantities = Arrays.copyOf(quantities, capacity);
+				prices = Arrays.copyOf(prices, capacity);
+			}
+			types[size] = type;
+			quantities[size] = quantity;
+			prices[size] = price;
+			size++;
+			return this;
+		}
+
+		public TradeBatch build(){
+			return new TradeBatch(this);
+		}
+	}
+
+}
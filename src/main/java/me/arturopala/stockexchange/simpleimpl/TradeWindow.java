@@ -0,0 +1,148 @@
+package me.arturopala.stockexchange.simpleimpl;
+
+import java.time.Instant;
+
+/**
+ * Sliding window of trades kept in a growable ring buffer of primitive columns
+ * (timestamp, fixed-point price, quantity), ordered by timestamp.
+ * Trades arriving in order are appended at the tail and expired trades are
+ * evicted from the head, both in O(1). A trade older than the current tail
+ * is inserted in place by shifting the younger entries.
+ * Not thread-safe: meant to be owned by a single actor.
+ */
+public final class TradeWindow {
+
+	private long[] timestamps;
+	private long[] prices;
+	private int[] quantities;
+
+	private int head = 0;
+	private int size = 0;
+	private int mask;
+
+	public TradeWindow(){
+		this(1024);
+	}
+
+	public TradeWindow(int initialCapacity){
+		int capacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+		timestamps = new long[capacity];
+		prices = new long[capacity];
+		quantities = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	public static long timestampOf(Instant instant){
+		return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1000000L), instant.getNano() / 1000);
+	}
+
+	public void add(long timestamp, long price, int quantity){
+		if(size == timestamps.length) grow();
+		if(size == 0 || timestamps[(head + size - 1) & mask] <= timestamp){
+			int tail = (head + size) & mask;
+			timestamps[tail] = timestamp;
+			prices[tail] = price;
+			quantities[tail] = quantity;
+		} else {
+			insertOutOfOrder(timestamp, price, quantity);
+		}
+		size++;
+	}
+
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public long oldestTimestamp(){
+		checkNotEmpty();
+		return timestamps[head];
+	}
+
+	public long oldestPrice(){
+		checkNotEmpty();
+		return prices[head];
+	}
+
+	public int oldestQuantity(){
+		checkNotEmpty();
+		return quantities[head];
+	}
+
+	public void removeOldest(){
+		checkNotEmpty();
+		head = (head + 1) & mask;
+		size--;
+	}
+
+	public long timestamp(int index){
+		return timestamps[slot(index)];
+	}
+
+	public long price(int index){
+		return prices[slot(index)];
+	}
+
+	public int quantity(int index){
+		return quantities[slot(index)];
+	}
+
+	public void clear(){
+		head = 0;
+		size = 0;
+	}
+
+	private int slot(int index){
+		if(index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: "+index+", size: "+size);
+		return (head + index) & mask;
+	}
+
+	private void checkNotEmpty(){
+		if(size == 0) throw new IllegalStateException("Trade window is empty");
+	}
+
+	// finds the first entry younger than the timestamp, so equal timestamps keep arrival order
+	private void insertOutOfOrder(long timestamp, long price, int quantity){
+		int low = 0;
+		int high = size - 1;
+		while(low <= high){
+			int mid = (low + high) >>> 1;
+			if(timestamps[(head + mid) & mask] <= timestamp) low = mid + 1;
+			else high = mid - 1;
+		}
+		for(int i = size; i > low; i--){
+			int to = (head + i) & mask;
+			int from = (head + i - 1) & mask;
+			timestamps[to] = timestamps[from];
+			prices[to] = prices[from];
+			quantities[to] = quantities[from];
+		}
+		int slot = (head + low) & mask;
+		timestamps[slot] = timestamp;
+		prices[slot] = price;
+		quantities[slot] = quantity;
+	}
+
+	private void grow(){
+		int capacity = timestamps.length << 1;
+		long[] newTimestamps = new long[capacity];
+		long[] newPrices = new long[capacity];
+		int[] newQuantities = new int[capacity];
+		int first = Math.min(size, timestamps.length - head);
+		System.arraycopy(timestamps, head, newTimestamps, 0, first);
+		System.arraycopy(prices, head, newPrices, 0, first);
+		System.arraycopy(quantities, head, newQuantities, 0, first);
+		System.arraycopy(timestamps, 0, newTimestamps, first, size - first);
+		System.arraycopy(prices, 0, newPrices, first, size - first);
+		System.arraycopy(quantities, 0, newQuantities, first, size - first);
+		timestamps = newTimestamps;
+		prices = newPrices;
+		quantities = newQuantities;
+		head = 0;
+		mask = capacity - 1;
+	}
+
+}
@@ -2,6 +2,7 @@ package me.arturopala.stockexchange.stock;
 
 import java.math.BigDecimal;
 import me.arturopala.stockexchange.util.Money;
+import me.arturopala.stockexchange.util.FixedMoney;
 import me.arturopala.stockexchange.api.Stock;
 import me.arturopala.stockexchange.api.StockType;
 
@@ -10,11 +11,14 @@ public abstract class AbstractStock implements Stock {
 	private final String symbol;
 	private final Money parValue;
 	private final Money lastDividend;
+	private final long fixedLastDividend;
 
 	public AbstractStock(String symbol, Money parValue, Money lastDividend){
 		this.symbol = symbol;
 		this.parValue = parValue;
+		if(!FixedMoney.fits(lastDividend)) throw new IllegalArgumentException("Last dividend of "+symbol+" is out of range: "+lastDividend);
 		this.lastDividend = lastDividend;
+		this.fixedLastDividend = FixedMoney.valueOf(lastDividend);
 	}
 
 	@Override
@@ -31,9 +35,30 @@ public abstract class AbstractStock implements Stock {
 		return lastDividend;
 	}
 
+	@Override
+	public long fixedLastDividend(){
+		return fixedLastDividend;
+	}
+
+	/** Prices too large for fixed values are calculated in doubles. */
+	@Override
+	public double calculateDividendYield(Money tickerPrice){
+		if(!FixedMoney.fits(tickerPrice)) return FixedMoney.doubleValue(fixedDividendValue()) / tickerPrice.doubleValue();
+		return calculateDividendYield(FixedMoney.valueOf(tickerPrice));
+	}
+
+	/** Prices too large for fixed values are calculated in doubles. */
 	@Override
 	public double calculatePERatio(Money tickerPrice){
-		return tickerPrice.divide(lastDividend);
+		if(!FixedMoney.fits(tickerPrice)){
+			return fixedLastDividend == FixedMoney.ZERO ? Double.NaN : tickerPrice.doubleValue() / FixedMoney.doubleValue(fixedLastDividend);
+		}
+		return calculatePERatio(FixedMoney.valueOf(tickerPrice));
+	}
+
+	@Override
+	public double calculatePERatio(long tickerPrice){
+		return FixedMoney.divide(tickerPrice, fixedLastDividend);
 	}
 
 	@Override
@@ -2,6 +2,7 @@ package me.arturopala.stockexchange.stock;
 
 import java.math.BigDecimal;
 import me.arturopala.stockexchange.util.Money;
+import me.arturopala.stockexchange.util.FixedMoney;
 import me.arturopala.stockexchange.api.Stock;
 import me.arturopala.stockexchange.api.StockType;
 
@@ -17,8 +18,13 @@ public class CommonStock extends AbstractStock {
 	}
 	
 	@Override
-	public double calculateDividendYield(Money tickerPrice){
-		return lastDividend().divide(tickerPrice);
+	public long fixedDividendValue(){
+		return fixedLastDividend();
+	}
+
+	@Override
+	public double calculateDividendYield(long tickerPrice){
+		return FixedMoney.divide(fixedLastDividend(), tickerPrice);
 	}
 
 }
\ No newline at end of file
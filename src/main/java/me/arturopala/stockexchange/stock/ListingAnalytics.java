@@ -0,0 +1,87 @@
+package me.arturopala.stockexchange.stock;
+
+import java.util.*;
+import java.util.stream.IntStream;
+import me.arturopala.stockexchange.api.MarketSnapshot;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.api.Ticker;
+import me.arturopala.stockexchange.util.FixedMoney;
+import me.arturopala.stockexchange.util.Money;
+
+/**
+ * Dividend yield and P/E ratio of a whole listing at once. Dividends are taken out of the stocks
+ * up front, so a calculation is a pass of plain double divisions over the price array,
+ * split into chunks calculated in parallel for large listings. Figures are the ones of
+ * {@link Stock#calculateDividendYield(long)} and {@link Stock#calculatePERatio(long)}
+ * up to double rounding.
+ */
+public final class ListingAnalytics {
+
+	/** listings from this size are calculated in parallel */
+	public static final int PARALLEL_THRESHOLD = 8192;
+	private static final int CHUNK = 2048;
+
+	private final List<Stock> stocks;
+	private final double[] dividendValues;
+	private final double[] lastDividends;
+
+	public ListingAnalytics(Collection<Stock> stocks){
+		this.stocks = Collections.unmodifiableList(new ArrayList<>(stocks));
+		this.dividendValues = new double[stocks.size()];
+		this.lastDividends = new double[stocks.size()];
+		for(int i = 0; i < dividendValues.length; i++){
+			Stock stock = this.stocks.get(i);
+			dividendValues[i] = FixedMoney.doubleValue(stock.fixedDividendValue());
+			lastDividends[i] = FixedMoney.doubleValue(stock.fixedLastDividend());
+		}
+	}
+
+	/** @return stocks in the order of the calculated arrays */
+	public List<Stock> stocks(){
+		return stocks;
+	}
+
+	public int size(){
+		return stocks.size();
+	}
+
+	/** @return prices of the stocks in the snapshot, NaN where not defined */
+	public double[] prices(MarketSnapshot snapshot){
+		double[] prices = new double[stocks.size()];
+		for(int i = 0; i < prices.length; i++){
+			Ticker ticker = snapshot.ticker(stocks.get(i));
+			Money price = ticker != null ? ticker.price() : Money.UNDEFINED;
+			prices[i] = FixedMoney.doubleValue(FixedMoney.valueOf(price));
+		}
+		return prices;
+	}
+
+	/**
+	 * @param prices prices of the stocks, NaN where not defined
+	 * @param dividendYields filled with dividend yields, NaN where not defined
+	 * @param peRatios filled with P/E ratios, NaN where not defined
+	 */
+	public void calculate(double[] prices, double[] dividendYields, double[] peRatios){
+		int size = stocks.size();
+		if(prices.length < size || dividendYields.length < size || peRatios.length < size){
+			throw new IllegalArgumentException("Arrays must hold at least "+size+" stocks");
+		}
+		if(size < PARALLEL_THRESHOLD){
+			calculate(prices, dividendYields, peRatios, 0, size);
+		} else {
+			IntStream.range(0, (size + CHUNK - 1) / CHUNK).parallel().forEach(chunk -> {
+				int from = chunk * CHUNK;
+				calculate(prices, dividendYields, peRatios, from, Math.min(size, from + CHUNK));
+			});
+		}
+	}
+
+	private void calculate(double[] prices, double[] dividendYields, double[] peRatios, int from, int to){
+		for(int i = from; i < to; i++){
+			double price = prices[i];
+			dividendYields[i] = price != 0 ? dividendValues[i] / price : Double.NaN;
+			peRatios[i] = lastDividends[i] != 0 ? price / lastDividends[i] : Double.NaN;
+		}
+	}
+
+}
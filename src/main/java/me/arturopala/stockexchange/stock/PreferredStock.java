@@ -2,16 +2,21 @@ package me.arturopala.stockexchange.stock;
 
 import java.math.BigDecimal;
 import me.arturopala.stockexchange.util.Money;
+import me.arturopala.stockexchange.util.FixedMoney;
 import me.arturopala.stockexchange.api.Stock;
 import me.arturopala.stockexchange.api.StockType;
 
 public class PreferredStock extends AbstractStock {
 
 	private final BigDecimal fixedDividend;
+	private final long fixedDividendValue;
 
 	public PreferredStock(String symbol, Money parValue, Money lastDividend, BigDecimal fixedDividend) {
 		super(symbol, parValue,lastDividend);
+		Money dividendValue = parValue.multiply(fixedDividend);
+		if(!FixedMoney.fits(dividendValue)) throw new IllegalArgumentException("Fixed dividend of "+symbol+" is out of range: "+dividendValue);
 		this.fixedDividend = fixedDividend;
+		this.fixedDividendValue = FixedMoney.valueOf(dividendValue);
 	}
 
 	@Override
@@ -20,8 +25,13 @@ public class PreferredStock extends AbstractStock {
 	}
 	
 	@Override
-	public double calculateDividendYield(Money tickerPrice){
-		return (parValue().multiply(fixedDividend)).divide(tickerPrice);
+	public long fixedDividendValue(){
+		return fixedDividendValue;
+	}
+
+	@Override
+	public double calculateDividendYield(long tickerPrice){
+		return FixedMoney.divide(fixedDividendValue, tickerPrice);
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package me.arturopala.stockexchange.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point counterpart of {@link Money}: amounts are plain longs holding
+ * the value scaled by 10^4, so arithmetic on the trade path allocates nothing.
+ * Same rules as Money apply: values are never negative, {@link #UNDEFINED}
+ * propagates through every operation, and overflow is reported with ArithmeticException.
+ */
+public final class FixedMoney {
+
+	public static final int DIGITS = 4;
+	public static final long SCALE = 10000L;
+
+	public static final long ZERO = 0L;
+	public static final long UNDEFINED = Long.MIN_VALUE;
+
+	public static boolean isDefined(long value){
+		return value != UNDEFINED && value > 0;
+	}
+
+	/** @return true if the money is undefined or small enough to be held as a fixed value */
+	public static boolean fits(Money money){
+		return money != null && (money == Money.UNDEFINED || money.value().unscaledValue().bitLength() < Long.SIZE);
+	}
+
+	public static long valueOf(int value){
+		if(value < 0) throw new IllegalArgumentException("Money value cannot be lower than zero!");
+		return value * SCALE;
+	}
+
+	public static long valueOf(Money money){
+		if(money == null) throw new IllegalArgumentException("Money value cannot be null!");
+		if(money == Money.UNDEFINED) return UNDEFINED;
+		return valueOf(money.value());
+	}
+
+	public static long valueOf(BigDecimal value){
+		if(value == null) throw new IllegalArgumentException("Money value cannot be null!");
+		if(value.signum() < 0) throw new IllegalArgumentException("Money value cannot be lower than zero!");
+		return value.setScale(DIGITS, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
+
+	public static Money toMoney(long value){
+		if(value == UNDEFINED) return Money.UNDEFINED;
+		if(value == ZERO) return Money.ZERO;
+		return new Money(BigDecimal.valueOf(value, DIGITS));
+	}
+
+	public static long add(long value1, long value2){
+		if(value1 == UNDEFINED || value2 == UNDEFINED) return UNDEFINED;
+		return Math.addExact(value1, value2);
+	}
+
+	public static long subtract(long value1, long value2){
+		if(value1 == UNDEFINED || value2 == UNDEFINED) return UNDEFINED;
+		long result = value1 - value2;
+		if(result < 0) throw new IllegalArgumentException("Money value cannot be lower than zero!");
+		return result;
+	}
+
+	public static long multiply(long value, int multiplier){
+		if(value == UNDEFINED) return UNDEFINED;
+		if(multiplier < 0) throw new IllegalArgumentException("Money value cannot be lower than zero!");
+		return Math.multiplyExact(value, (long) multiplier);
+	}
+
+	public static long divide(long value, int divisor){
+		if(value == UNDEFINED || divisor == 0) return UNDEFINED;
+		if(divisor < 0) throw new IllegalArgumentException("Money value cannot be lower than zero!");
+		long quotient = value / divisor;
+		long remainder = value % divisor;
+		return (remainder << 1) >= divisor ? quotient + 1 : quotient;
+	}
+
+	public static double divide(long value1, long value2){
+		if(value1 == UNDEFINED || value2 == UNDEFINED || value2 == ZERO) return Double.NaN;
+		return (double) value1 / value2;
+	}
+
+	public static double doubleValue(long value){
+		if(value == UNDEFINED) return Double.NaN;
+		return (double) value / SCALE;
+	}
+
+	public static String toString(long value){
+		return toMoney(value).toString();
+	}
+
+	private FixedMoney(){}
+
+}
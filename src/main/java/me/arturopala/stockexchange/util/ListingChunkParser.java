@@ -0,0 +1,204 @@
+package me.arturopala.stockexchange.util;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import me.arturopala.stockexchange.api.Stock;
+import me.arturopala.stockexchange.stock.CommonStock;
+import me.arturopala.stockexchange.stock.PreferredStock;
+
+/**
+ * Parses one chunk of a stock listing straight from bytes, without regular expressions
+ * or per-line strings. A value is a run of bytes accepted by {@link ParseUtils#VALUE_REGEX},
+ * any other byte separates values. Lines without any value are skipped.
+ * The chunk must start at a line boundary and end at one or at the end of the listing.
+ */
+final class ListingChunkParser extends RecursiveTask<ListingChunkParser.Result> {
+
+	private static final long serialVersionUID = 1L;
+	private static final int FIELDS = 5;
+	private static final int MAX_DIGITS = 18;
+	private static final boolean[] VALUE = new boolean[256];
+	private static final byte[] COMMON = "Common".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] PREFERRED = "Preferred".getBytes(StandardCharsets.US_ASCII);
+	private static final BigDecimal HUNDRED = new BigDecimal(100);
+
+	static {
+		for(int c = 'A'; c <= 'Z'; c++) VALUE[c] = true;
+		for(int c = 'a'; c <= 'z'; c++) VALUE[c] = true;
+		for(int c = '0'; c <= '9'; c++) VALUE[c] = true;
+		VALUE['%'] = true;
+		VALUE['.'] = true;
+		VALUE['-'] = true;
+	}
+
+	/** Number of lines in the chunk and errors numbered from 0 at its first line. */
+	static final class Result {
+		final long lines;
+		final List<ListingParseException.LineError> errors;
+
+		Result(long lines, List<ListingParseException.LineError> errors){
+			this.lines = lines;
+			this.errors = errors;
+		}
+	}
+
+	private final ByteBuffer buffer;
+	private final boolean skipHeader;
+	private final Consumer<Stock> consumer;
+
+	private final int[] starts = new int[FIELDS];
+	private final int[] ends = new int[FIELDS];
+
+	ListingChunkParser(ByteBuffer buffer, boolean skipHeader, Consumer<Stock> consumer){
+		this.buffer = buffer;
+		this.skipHeader = skipHeader;
+		this.consumer = consumer;
+	}
+
+	@Override
+	protected Result compute(){
+		List<ListingParseException.LineError> errors = new ArrayList<>(0);
+		int limit = buffer.limit();
+		int position = buffer.position();
+		long line = 0;
+		while(position < limit){
+			int end = position;
+			while(end < limit && buffer.get(end) != '\n') end++;
+			if(line > 0 || !skipHeader){
+				Stock stock = null;
+				try {
+					stock = parseLine(position, end);
+				} catch (RuntimeException e){
+					errors.add(new ListingParseException.LineError(line, reason(e)));
+				}
+				if(stock != null) consumer.accept(stock);
+			}
+			line++;
+			position = end + 1;
+		}
+		return new Result(line, errors);
+	}
+
+	private Stock parseLine(int start, int end){
+		int fields = 0;
+		int i = start;
+		while(i < end){
+			if(VALUE[buffer.get(i) & 0xFF]){
+				int valueStart = i;
+				while(i < end && VALUE[buffer.get(i) & 0xFF]) i++;
+				if(fields < FIELDS){
+					starts[fields] = valueStart;
+					ends[fields] = i;
+				}
+				fields++;
+			} else {
+				i++;
+			}
+		}
+		if(fields == 0) return null;
+		if(fields < FIELDS){
+			throw new IllegalArgumentException("Stock definition must consist of at least 5 arguments"
+				+ " separated by any character except point [.] or dash [-]: Symbol,Type,LastDividend,FixedDividend,ParValue");
+		}
+		String symbol = string(starts[0], ends[0]);
+		Money lastDividend = money(starts[2], ends[2]);
+		Money parValue = money(starts[4], ends[4]);
+		if(matches(starts[1], ends[1], COMMON)){
+			return new CommonStock(symbol, parValue, lastDividend);
+		} else if(matches(starts[1], ends[1], PREFERRED)){
+			return new PreferredStock(symbol, parValue, lastDividend, decimal(starts[3], ends[3]));
+		} else {
+			throw new IllegalArgumentException("Unknown Stock type: "+string(starts[1], ends[1]));
+		}
+	}
+
+	/** Same result as {@link Money#parse(String)}: leading number of the value, or zero. */
+	private Money money(int start, int end){
+		long unscaled = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean point = false;
+		for(int i = start; i < end; i++){
+			byte c = buffer.get(i);
+			if(c >= '0' && c <= '9'){
+				if(digits == MAX_DIGITS) return Money.parse(string(start, end));
+				unscaled = unscaled * 10 + (c - '0');
+				digits++;
+				if(point) scale++;
+			} else if(c == '.' && !point){
+				point = true;
+			} else if(c == 'E'){
+				return Money.parse(string(start, end));
+			} else {
+				break;
+			}
+		}
+		if(digits == 0) return Money.ZERO;
+		return new Money(BigDecimal.valueOf(unscaled, scale));
+	}
+
+	/** Same result as {@link ParseUtils#parseDecimal(String, BigDecimal)} with zero default. */
+	private BigDecimal decimal(int start, int end){
+		int i = start;
+		while(i < end && isLetter(buffer.get(i))) i++;
+		int runEnd = i;
+		while(runEnd < end && !isLetter(buffer.get(runEnd))) runEnd++;
+		if(i == runEnd) return BigDecimal.ZERO;
+		boolean negative = buffer.get(i) == '-';
+		if(negative){
+			i++;
+			if(i == runEnd) return BigDecimal.ZERO;
+		}
+		boolean percent = buffer.get(runEnd - 1) == '%';
+		int numberEnd = percent ? runEnd - 1 : runEnd;
+		long unscaled = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean point = false;
+		for(; i < numberEnd; i++){
+			byte c = buffer.get(i);
+			if(c >= '0' && c <= '9' && digits < MAX_DIGITS){
+				unscaled = unscaled * 10 + (c - '0');
+				digits++;
+				if(point) scale++;
+			} else if(c == '.' && !point){
+				point = true;
+			} else {
+				return ParseUtils.parseDecimal(string(start, end), BigDecimal.ZERO);
+			}
+		}
+		if(digits == 0) return ParseUtils.parseDecimal(string(start, end), BigDecimal.ZERO);
+		BigDecimal value = BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+		return percent ? value.divide(HUNDRED) : value;
+	}
+
+	private boolean matches(int start, int end, byte[] expected){
+		if(end - start != expected.length) return false;
+		for(int i = 0; i < expected.length; i++){
+			if(buffer.get(start + i) != expected[i]) return false;
+		}
+		return true;
+	}
+
+	private String string(int start, int end){
+		byte[] bytes = new byte[end - start];
+		for(int i = 0; i < bytes.length; i++){
+			bytes[i] = buffer.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+	private static boolean isLetter(byte c){
+		return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+	}
+
+	private static String reason(RuntimeException e){
+		return e.getMessage() != null ? e.getMessage() : e.toString();
+	}
+
+}
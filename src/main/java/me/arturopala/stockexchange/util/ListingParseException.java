@@ -0,0 +1,51 @@
+package me.arturopala.stockexchange.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Thrown after the whole listing has been read if any of its lines could not be parsed.
+ * Stocks from valid lines have already been passed to the consumer by then.
+ */
+public class ListingParseException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+	private static final int MAX_REPORTED = 10;
+
+	private final List<LineError> errors;
+
+	public ListingParseException(List<LineError> errors){
+		super(errors.size()+" invalid line(s) in stock listing: "+errors.stream()
+			.limit(MAX_REPORTED)
+			.map(LineError::toString)
+			.collect(Collectors.joining("; ")));
+		this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+	}
+
+	public List<LineError> errors(){
+		return errors;
+	}
+
+	public static class LineError implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		/** 1-based line number, the header being line 1 */
+		public final long line;
+		public final String reason;
+
+		public LineError(long line, String reason){
+			this.line = line;
+			this.reason = reason;
+		}
+
+		@Override
+		public String toString(){
+			return "line "+line+": "+reason;
+		}
+	}
+
+}
@@ -68,6 +68,10 @@ public final class Money {
 		else return new Money(this.value.subtract(that.value));
 	}
 
+	BigDecimal value(){
+		return value;
+	}
+
 	public double doubleValue(){
 		if(this==UNDEFINED) return Double.NaN;
 		else return value.doubleValue();
@@ -0,0 +1,58 @@
+package me.arturopala.stockexchange.util;
+
+/**
+ * Mutable running total of {@link FixedMoney} amounts, meant to be owned by a single writer.
+ */
+public final class MoneyAccumulator {
+
+	private long value;
+
+	public MoneyAccumulator(){
+		this(FixedMoney.ZERO);
+	}
+
+	public MoneyAccumulator(long value){
+		this.value = value;
+	}
+
+	public MoneyAccumulator add(long amount){
+		value = FixedMoney.add(value, amount);
+		return this;
+	}
+
+	public MoneyAccumulator add(long price, int quantity){
+		return add(FixedMoney.multiply(price, quantity));
+	}
+
+	public MoneyAccumulator subtract(long amount){
+		value = FixedMoney.subtract(value, amount);
+		return this;
+	}
+
+	public MoneyAccumulator subtract(long price, int quantity){
+		return subtract(FixedMoney.multiply(price, quantity));
+	}
+
+	public MoneyAccumulator reset(){
+		value = FixedMoney.ZERO;
+		return this;
+	}
+
+	public long value(){
+		return value;
+	}
+
+	public long divide(int divisor){
+		return FixedMoney.divide(value, divisor);
+	}
+
+	public Money toMoney(){
+		return FixedMoney.toMoney(value);
+	}
+
+	@Override
+	public String toString(){
+		return FixedMoney.toString(value);
+	}
+
+}
@@ -10,6 +10,16 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.BufferedReader;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.util.function.Function;
@@ -19,6 +29,8 @@ public class ParseUtils {
 	public static final Pattern VALUE_REGEX = Pattern.compile("[A-Za-z0-9%.-]+");
 	public static final Pattern DECIMAL_REGEX = Pattern.compile("[0-9%.-]+");
 
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
 	public static final Function<String,Stock> STOCK_PARSER = new Function<String,Stock>() {
 		public Stock apply(String line){
 			String[] attrs = split(line, VALUE_REGEX);
@@ -42,21 +54,129 @@ public class ParseUtils {
 		}
 	};
 
+	/**
+	 * Parses listing with the streaming loader, skipping the header line.
+	 * Lines without any value are skipped, whereas {@link #STOCK_PARSER} rejects them.
+	 * @throws ListingParseException with line numbers of invalid lines
+	 */
 	public static Set<Stock> parseStockListing(InputStream inputStream){
 		if(inputStream == null) return Collections.<Stock>emptySet();
 		try {
-			BufferedReader source = new BufferedReader(new InputStreamReader(inputStream, "utf-8"));
-			return source
-				.lines()
-				.skip(1)
-				.map(STOCK_PARSER)
-				.collect(Collectors.toSet());
+			Set<Stock> listing = ConcurrentHashMap.newKeySet();
+			streamStockListing(Channels.newChannel(inputStream), listing::add);
+			return listing;
 		}
-		catch(Exception e){
+		catch(IOException e){
 			throw new RuntimeException("Could not parse listing from input stream", e);
 		}
 	}
 
+	public static Set<Stock> parseStockListing(Path file) throws IOException {
+		Set<Stock> listing = ConcurrentHashMap.newKeySet();
+		streamStockListing(file, listing::add);
+		return listing;
+	}
+
+	public static void streamStockListing(Path file, Consumer<Stock> consumer) throws IOException {
+		streamStockListing(file, consumer, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Parses memory-mapped listing file in chunks split at line boundaries, in parallel on the pool.
+	 * Consumer is called concurrently from pool threads, in no particular order. Blank lines are skipped.
+	 * @throws ListingParseException with line numbers of invalid lines, after all valid stocks were consumed
+	 */
+	public static void streamStockListing(Path file, Consumer<Stock> consumer, ForkJoinPool pool, int chunkSize) throws IOException {
+		if(chunkSize < 1) throw new IllegalArgumentException("Chunk size must be positive");
+		Deque<ForkJoinTask<ListingChunkParser.Result>> chunks = new ArrayDeque<>();
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			long size = channel.size();
+			long start = 0;
+			while(start < size){
+				long end = nextLine(channel, Math.min(size, start + chunkSize), size);
+				ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+				chunks.add(pool.submit(new ListingChunkParser(chunk, start == 0, consumer)));
+				start = end;
+			}
+		}
+		join(chunks, new ArrayList<>(chunks.size()));
+	}
+
+	public static void streamStockListing(ReadableByteChannel channel, Consumer<Stock> consumer) throws IOException {
+		streamStockListing(channel, consumer, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Reads listing from the channel in chunks cut at line boundaries and parses them in parallel
+	 * on the pool while reading goes on. At most a few chunks per pool thread are held in memory.
+	 * Consumer is called concurrently from pool threads, in no particular order. Blank lines are skipped.
+	 * @throws ListingParseException with line numbers of invalid lines, after all valid stocks were consumed
+	 */
+	public static void streamStockListing(ReadableByteChannel channel, Consumer<Stock> consumer, ForkJoinPool pool, int chunkSize) throws IOException {
+		if(chunkSize < 1) throw new IllegalArgumentException("Chunk size must be positive");
+		// chunks are dropped as their parsing is joined, only the results are kept
+		Deque<ForkJoinTask<ListingChunkParser.Result>> chunks = new ArrayDeque<>();
+		List<ListingChunkParser.Result> results = new ArrayList<>();
+		int maxPending = pool.getParallelism() * 4;
+		ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+		boolean eof = false;
+		while(!eof){
+			eof = channel.read(buffer) < 0;
+			if(buffer.hasRemaining() && !eof) continue;
+			int end = eof ? buffer.position() : lastLineEnd(buffer);
+			int remaining = buffer.position() - end;
+			ByteBuffer next = ByteBuffer.allocate(end > 0 ? Math.max(chunkSize, remaining * 2) : buffer.capacity() * 2);
+			ByteBuffer remainder = buffer.duplicate();
+			remainder.flip().position(end);
+			next.put(remainder);
+			if(end > 0){
+				buffer.flip().limit(end);
+				chunks.add(pool.submit(new ListingChunkParser(buffer, chunks.isEmpty() && results.isEmpty(), consumer)));
+				if(chunks.size() > maxPending) results.add(chunks.poll().join());
+			}
+			buffer = next;
+		}
+		join(chunks, results);
+	}
+
+	private static long nextLine(FileChannel channel, long position, long size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		while(position < size){
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if(read < 0) break;
+			for(int i = 0; i < read; i++){
+				if(buffer.get(i) == '\n') return position + i + 1;
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	private static int lastLineEnd(ByteBuffer buffer){
+		for(int i = buffer.position() - 1; i >= 0; i--){
+			if(buffer.get(i) == '\n') return i + 1;
+		}
+		return 0;
+	}
+
+	/** Joins the remaining chunks after the results of those joined before, then reports errors of all of them. */
+	private static void join(Deque<ForkJoinTask<ListingChunkParser.Result>> chunks, List<ListingChunkParser.Result> results){
+		ForkJoinTask<ListingChunkParser.Result> chunk;
+		while((chunk = chunks.poll()) != null){
+			results.add(chunk.join());
+		}
+		List<ListingParseException.LineError> errors = new ArrayList<>();
+		long line = 1;
+		for(ListingChunkParser.Result result: results){
+			for(ListingParseException.LineError error: result.errors){
+				errors.add(new ListingParseException.LineError(line + error.line, error.reason));
+			}
+			line += result.lines;
+		}
+		if(!errors.isEmpty()) throw new ListingParseException(errors);
+	}
+
 	public static String[] split(String line, Pattern pattern){
 		Matcher m = pattern.matcher(line);
 		List<String> list = new LinkedList<>();
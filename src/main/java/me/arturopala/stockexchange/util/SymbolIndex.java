@@ -0,0 +1,75 @@
+package me.arturopala.stockexchange.util;
+
+import me.arturopala.stockexchange.api.Stock;
+import java.util.*;
+
+/**
+ * Immutable index of stocks by symbol. Exact lookups hit a hash map of
+ * preallocated Optionals, prefix and range queries binary search a sorted array.
+ * When a symbol is listed more than once the first stock wins exact lookups.
+ */
+public final class SymbolIndex {
+
+	private final Map<String, Optional<Stock>> bySymbol;
+	private final String[] symbols;
+	private final Stock[] stocks;
+
+	public SymbolIndex(Collection<Stock> listing){
+		this.bySymbol = new HashMap<>(listing.size() * 2);
+		this.stocks = listing.toArray(new Stock[listing.size()]);
+		Arrays.sort(stocks, BY_SYMBOL);
+		this.symbols = new String[stocks.length];
+		for(int i = 0; i < stocks.length; i++){
+			symbols[i] = stocks[i].symbol();
+		}
+		for(Stock stock: listing){
+			bySymbol.putIfAbsent(stock.symbol(), Optional.of(stock));
+		}
+	}
+
+	public Optional<Stock> find(String symbol){
+		Optional<Stock> found = bySymbol.get(symbol);
+		return found != null ? found : Optional.<Stock>empty();
+	}
+
+	public List<Stock> findByPrefix(String prefix, int limit){
+		int from = lowerBound(prefix);
+		int to = from;
+		int max = Math.min(stocks.length, from + Math.max(0, limit));
+		while(to < max && symbols[to].startsWith(prefix)) to++;
+		return view(from, to);
+	}
+
+	public List<Stock> findInRange(String fromSymbol, String toSymbol, int limit){
+		int from = lowerBound(fromSymbol);
+		int to = Math.max(from, lowerBound(toSymbol));
+		return view(from, Math.min(to, from + Math.max(0, limit)));
+	}
+
+	public int size(){
+		return stocks.length;
+	}
+
+	private int lowerBound(String symbol){
+		int low = 0;
+		int high = symbols.length;
+		while(low < high){
+			int mid = (low + high) >>> 1;
+			if(symbols[mid].compareTo(symbol) < 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	private List<Stock> view(int from, int to){
+		if(from >= to) return Collections.<Stock>emptyList();
+		return Collections.unmodifiableList(Arrays.asList(stocks).subList(from, to));
+	}
+
+	private static final Comparator<Stock> BY_SYMBOL = new Comparator<Stock>(){
+		public int compare(Stock stock1, Stock stock2){
+			return stock1.symbol().compareTo(stock2.symbol());
+		}
+	};
+
+}
@@ -0,0 +1,215 @@
+package me.arturopala.stockexchange.util;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hierarchical timing wheel. A timer is hashed into one of 64 slots of the level whose span
+ * covers its deadline and moves down a level each time its slot comes round, so scheduling,
+ * cancelling and expiring a timer take constant time however many timers are pending.
+ * A single thread advances the wheel every resolution tick and runs expired tasks, which
+ * must be short. Other threads hand timers over through a lock-free stack, and with no
+ * timers pending the thread parks until one is scheduled, so an idle wheel costs nothing.
+ */
+public final class TimingWheel {
+
+	private static final int LEVEL_BITS = 6;
+	private static final int SLOTS = 1 << LEVEL_BITS;
+	private static final int MASK = SLOTS - 1;
+	private static final int LEVELS = 4;
+	private static final long SPAN = 1L << (LEVEL_BITS * LEVELS);
+
+	private final long resolution;
+	private final String name;
+	private final Timeout[][] slots = new Timeout[LEVELS][SLOTS];
+	private final AtomicReference<Timeout> incoming = new AtomicReference<>();
+
+	private volatile Thread thread;
+	private volatile boolean idle = false;
+	private long start;
+	private long tick;
+	private int pending;
+
+	public TimingWheel(Duration resolution, String name){
+		if(resolution.toNanos() < 1) throw new IllegalArgumentException("Timing wheel resolution must be positive");
+		this.resolution = resolution.toNanos();
+		this.name = name;
+	}
+
+	public synchronized TimingWheel start(){
+		if(thread == null){
+			start = System.nanoTime();
+			tick = 0;
+			Thread worker = new Thread(this::run, name);
+			worker.setDaemon(true);
+			thread = worker;
+			worker.start();
+		}
+		return this;
+	}
+
+	/** Stops the wheel thread, dropping pending timers without running them. */
+	public synchronized TimingWheel stop(){
+		Thread worker = thread;
+		if(worker != null){
+			thread = null;
+			LockSupport.unpark(worker);
+			try {
+				worker.join();
+			} catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+		}
+		return this;
+	}
+
+	public boolean isRunning(){
+		return thread != null;
+	}
+
+	public Duration resolution(){
+		return Duration.ofNanos(resolution);
+	}
+
+	/**
+	 * Runs the task on the wheel thread at the first tick not earlier than the deadline.
+	 * @param deadline in {@link System#nanoTime()} terms
+	 */
+	public Timeout schedule(long deadline, Runnable task){
+		Timeout timeout = new Timeout(deadline, task);
+		Timeout head;
+		do {
+			head = incoming.get();
+			timeout.next = head;
+		} while(!incoming.compareAndSet(head, timeout));
+		if(idle){
+			Thread worker = thread;
+			if(worker != null) LockSupport.unpark(worker);
+		}
+		return timeout;
+	}
+
+	private void run(){
+		Thread current = Thread.currentThread();
+		while(thread == current){
+			long target = (System.nanoTime() - start) / resolution;
+			if(pending == 0 && tick < target){
+				tick = target;
+			}
+			transfer();
+			while(tick < target){
+				advance();
+			}
+			if(pending == 0){
+				idle = true;
+				if(incoming.get() == null && thread == current) LockSupport.park(this);
+				idle = false;
+			} else {
+				LockSupport.parkNanos(this, start + (tick + 1) * resolution - System.nanoTime());
+			}
+		}
+		for(Timeout[] level: slots){
+			Arrays.fill(level, null);
+		}
+		incoming.set(null);
+		pending = 0;
+	}
+
+	private void transfer(){
+		Timeout timeout = incoming.getAndSet(null);
+		while(timeout != null){
+			Timeout next = timeout.next;
+			if(timeout.state == Timeout.PENDING){
+				place(timeout);
+				pending++;
+			}
+			timeout = next;
+		}
+	}
+
+	private void place(Timeout timeout){
+		long elapsed = timeout.deadline - start;
+		long due = elapsed <= 0 ? 0 : (elapsed + resolution - 1) / resolution;
+		if(due <= tick) due = tick + 1;
+		long delta = due - tick;
+		if(delta >= SPAN) due = tick + SPAN - 1;
+		int level = 0;
+		while(delta >= 1L << (LEVEL_BITS * (level + 1)) && level < LEVELS - 1) level++;
+		int slot = (int) ((due >>> (LEVEL_BITS * level)) & MASK);
+		timeout.next = slots[level][slot];
+		slots[level][slot] = timeout;
+	}
+
+	private void advance(){
+		tick++;
+		for(int level = LEVELS - 1; level > 0; level--){
+			if((tick & ((1L << (LEVEL_BITS * level)) - 1)) == 0){
+				int slot = (int) ((tick >>> (LEVEL_BITS * level)) & MASK);
+				Timeout timeout = slots[level][slot];
+				slots[level][slot] = null;
+				while(timeout != null){
+					Timeout next = timeout.next;
+					if(timeout.state == Timeout.PENDING) place(timeout);
+					else pending--;
+					timeout = next;
+				}
+			}
+		}
+		int slot = (int) (tick & MASK);
+		Timeout timeout = slots[0][slot];
+		slots[0][slot] = null;
+		while(timeout != null){
+			Timeout next = timeout.next;
+			timeout.next = null;
+			pending--;
+			if(Timeout.STATE.compareAndSet(timeout, Timeout.PENDING, Timeout.EXPIRED)){
+				try {
+					timeout.task.run();
+				} catch (RuntimeException e){
+					// a failing task must not stop the wheel
+				}
+			}
+			timeout = next;
+		}
+	}
+
+	/** Handle of a scheduled task. */
+	public static final class Timeout {
+
+		private static final int PENDING = 0;
+		private static final int CANCELLED = 1;
+		private static final int EXPIRED = 2;
+		private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+		private final long deadline;
+		private final Runnable task;
+		private volatile int state = PENDING;
+		private Timeout next;
+
+		private Timeout(long deadline, Runnable task){
+			this.deadline = deadline;
+			this.task = task;
+		}
+
+		public long deadline(){
+			return deadline;
+		}
+
+		/** @return true if the task will not run, false if it has already run */
+		public boolean cancel(){
+			return STATE.compareAndSet(this, PENDING, CANCELLED) || state == CANCELLED;
+		}
+
+		public boolean isCancelled(){
+			return state == CANCELLED;
+		}
+
+		public boolean isExpired(){
+			return state == EXPIRED;
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+import org.scalatest.{ WordSpecLike, Matchers }
+import java.time.Instant
+import me.arturopala.stockexchange.api.{ Candle, Resolution }
+import me.arturopala.stockexchange.util.{ Money, FixedMoney }
+import me.arturopala.stockexchange.simpleimpl.CandleAggregator
+import collection.JavaConversions._
+
+class CandleAggregatorSpec extends WordSpecLike with Matchers {
+
+  val second = 1000000L
+  val minute = 60 * second
+
+  def ohlc(candle: Candle): (Long, Money, Money, Money, Money, Long, Int) =
+    (candle.start.getEpochSecond, candle.open, candle.high, candle.low, candle.close, candle.quantity, candle.trades)
+
+  "A CandleAggregator" should {
+
+    "aggregate trades into bars of every resolution" in {
+      val candles = new CandleAggregator()
+      candles.add(10 * second, FixedMoney.valueOf(10), 1)
+      candles.add(10 * second + 500, FixedMoney.valueOf(12), 2)
+      candles.add(11 * second, FixedMoney.valueOf(8), 3)
+      candles.add(61 * second, FixedMoney.valueOf(11), 4)
+      candles.last(Resolution.SECOND, 10).map(ohlc) should be(Seq(
+        (10L, new Money(10), new Money(12), new Money(10), new Money(12), 3L, 2),
+        (11L, new Money(8), new Money(8), new Money(8), new Money(8), 3L, 1),
+        (61L, new Money(11), new Money(11), new Money(11), new Money(11), 4L, 1)))
+      candles.last(Resolution.MINUTE, 10).map(ohlc) should be(Seq(
+        (0L, new Money(10), new Money(12), new Money(8), new Money(8), 6L, 3),
+        (60L, new Money(11), new Money(11), new Money(11), new Money(11), 4L, 1)))
+      val bar = candles.last(Resolution.FIFTEEN_MINUTES, 1).head
+      bar.start should be(Instant.EPOCH)
+      bar.end should be(Instant.ofEpochSecond(900))
+      bar.quantity should be(10)
+      bar.volume should be(new Money(10 + 24 + 24 + 44))
+      bar.trades should be(4)
+    }
+
+    "return requested number of latest bars, oldest first" in {
+      val candles = new CandleAggregator()
+      for (i <- 0 until 10) candles.add(i * second, FixedMoney.valueOf(i + 1), 1)
+      candles.last(Resolution.SECOND, 3).map(_.start.getEpochSecond) should be(Seq(7L, 8L, 9L))
+      candles.last(Resolution.SECOND, 0) should be(empty)
+      candles.size(Resolution.SECOND) should be(10)
+      candles.size(Resolution.MINUTE) should be(1)
+    }
+
+    "keep bounded history of bars" in {
+      val candles = new CandleAggregator(4)
+      for (i <- 0 until 10) candles.add(i * second, FixedMoney.valueOf(i + 1), 1)
+      candles.size(Resolution.SECOND) should be(4)
+      candles.last(Resolution.SECOND, 100).map(_.start.getEpochSecond) should be(Seq(6L, 7L, 8L, 9L))
+    }
+
+    "update or insert bars for late trades" in {
+      val candles = new CandleAggregator(4)
+      candles.add(1 * second, FixedMoney.valueOf(10), 1)
+      candles.add(4 * second, FixedMoney.valueOf(40), 1)
+      candles.add(1 * second + 1, FixedMoney.valueOf(5), 2)
+      candles.add(2 * second, FixedMoney.valueOf(20), 1)
+      candles.last(Resolution.SECOND, 10).map(ohlc) should be(Seq(
+        (1L, new Money(10), new Money(10), new Money(5), new Money(5), 3L, 2),
+        (2L, new Money(20), new Money(20), new Money(20), new Money(20), 1L, 1),
+        (4L, new Money(40), new Money(40), new Money(40), new Money(40), 1L, 1)))
+      candles.add(5 * second, FixedMoney.valueOf(50), 1)
+      candles.add(3 * second, FixedMoney.valueOf(30), 1)
+      candles.last(Resolution.SECOND, 10).map(_.start.getEpochSecond) should be(Seq(2L, 3L, 4L, 5L))
+      candles.add(0, FixedMoney.valueOf(1), 1)
+      candles.last(Resolution.SECOND, 10).map(_.start.getEpochSecond) should be(Seq(2L, 3L, 4L, 5L))
+    }
+
+    "move open and close of a bar only for trades earlier or later than them" in {
+      val candles = new CandleAggregator(4)
+      candles.add(1 * second + 500, FixedMoney.valueOf(10), 1)
+      candles.add(1 * second + 200, FixedMoney.valueOf(8), 1)
+      candles.add(1 * second + 300, FixedMoney.valueOf(9), 1)
+      candles.add(1 * second + 500, FixedMoney.valueOf(11), 1)
+      candles.add(2 * second, FixedMoney.valueOf(20), 1)
+      candles.add(1 * second + 100, FixedMoney.valueOf(7), 1)
+      candles.add(1 * second + 400, FixedMoney.valueOf(12), 1)
+      candles.add(1 * second + 600, FixedMoney.valueOf(13), 1)
+      candles.add(1 * second + 550, FixedMoney.valueOf(6), 1)
+      candles.last(Resolution.SECOND, 10).map(ohlc) should be(Seq(
+        (1L, new Money(7), new Money(13), new Money(6), new Money(13), 8L, 8),
+        (2L, new Money(20), new Money(20), new Money(20), new Money(20), 1L, 1)))
+    }
+
+    "serve readers while trades are added" in {
+      val candles = new CandleAggregator()
+      val writer = new Thread(new Runnable {
+        def run(): Unit = for (i <- 0 until 100000) candles.add(i * 10000L, FixedMoney.valueOf(10), 1)
+      })
+      writer.start()
+      while (writer.isAlive) {
+        val bars = candles.last(Resolution.SECOND, 16)
+        bars.map(_.start) should be(bars.map(_.start).sorted)
+        all(bars.map(_.open)) should be(new Money(10))
+      }
+      candles.last(Resolution.SECOND, 1).head.trades should be(100)
+    }
+  }
+
+}
@@ -0,0 +1,98 @@
+import org.scalatest.{ WordSpecLike, Matchers }
+import org.scalatest.prop.PropertyChecks
+import java.math.BigDecimal;
+import me.arturopala.stockexchange.util.{ Money, FixedMoney, MoneyAccumulator }
+
+class FixedMoneySpec extends WordSpecLike with Matchers with PropertyChecks {
+
+  "A FixedMoney" should {
+
+    "be created from Money with the same scale" in {
+      FixedMoney.valueOf(Money.parse("16678.89888")) should be(166788989L)
+      FixedMoney.valueOf(new Money(15)) should be(150000L)
+      FixedMoney.valueOf(Money.ZERO) should be(FixedMoney.ZERO)
+      FixedMoney.valueOf(Money.UNDEFINED) should be(FixedMoney.UNDEFINED)
+    }
+
+    "be converted back to Money" in {
+      FixedMoney.toMoney(166788989L) should be(Money.parse("16678.8989"))
+      FixedMoney.toMoney(FixedMoney.ZERO) should be(Money.ZERO)
+      FixedMoney.toMoney(FixedMoney.UNDEFINED) should be(Money.UNDEFINED)
+    }
+
+    "round trip any Money value" in {
+      forAll { (n: Int, d: Short) =>
+        whenever(n >= 0 && d >= 0) {
+          val money = new Money(new BigDecimal(n).add(new BigDecimal(d).movePointLeft(4)))
+          FixedMoney.toMoney(FixedMoney.valueOf(money)) should be(money)
+        }
+      }
+    }
+
+    "have isDefined check" in {
+      FixedMoney.isDefined(FixedMoney.valueOf(Money.parse("10.19"))) should be(true)
+      FixedMoney.isDefined(FixedMoney.ZERO) should be(false)
+      FixedMoney.isDefined(FixedMoney.UNDEFINED) should be(false)
+    }
+
+    "add, subtract and multiply like Money" in {
+      val a = FixedMoney.valueOf(Money.parse("12.3456"))
+      val b = FixedMoney.valueOf(Money.parse("5.8942"))
+      FixedMoney.toMoney(FixedMoney.add(a, b)) should be(Money.parse("12.3456").add(Money.parse("5.8942")))
+      FixedMoney.toMoney(FixedMoney.subtract(a, b)) should be(Money.parse("12.3456").subtract(Money.parse("5.8942")))
+      FixedMoney.toMoney(FixedMoney.multiply(a, 17)) should be(Money.parse("12.3456").multiply(17))
+    }
+
+    "divide by quantity rounding half up" in {
+      FixedMoney.toMoney(FixedMoney.divide(FixedMoney.valueOf(3200), 210)) should be(Money.parse("15.2381"))
+      FixedMoney.toMoney(FixedMoney.divide(FixedMoney.valueOf(12000), 460)) should be(Money.parse("26.087"))
+      FixedMoney.divide(FixedMoney.valueOf(10), 0) should be(FixedMoney.UNDEFINED)
+    }
+
+    "divide by another amount" in {
+      FixedMoney.divide(FixedMoney.valueOf(2), FixedMoney.valueOf(10)) should be(0.2)
+      java.lang.Double.isNaN(FixedMoney.divide(FixedMoney.valueOf(2), FixedMoney.ZERO)) should be(true)
+    }
+
+    "not go below zero" in {
+      an[IllegalArgumentException] should be thrownBy FixedMoney.subtract(FixedMoney.valueOf(1), FixedMoney.valueOf(2))
+      an[IllegalArgumentException] should be thrownBy FixedMoney.multiply(FixedMoney.valueOf(1), -2)
+      an[IllegalArgumentException] should be thrownBy FixedMoney.valueOf(new BigDecimal("-0.001"))
+    }
+
+    "detect overflow" in {
+      an[ArithmeticException] should be thrownBy FixedMoney.add(Long.MaxValue - 1, 2)
+      an[ArithmeticException] should be thrownBy FixedMoney.multiply(Long.MaxValue / 2, 3)
+      an[ArithmeticException] should be thrownBy FixedMoney.valueOf(new BigDecimal("1e20"))
+    }
+
+    "tell which money fits in a fixed value" in {
+      FixedMoney.fits(Money.UNDEFINED) should be(true)
+      FixedMoney.fits(Money.parse("922337203685477.5807")) should be(true)
+      FixedMoney.fits(Money.parse("922337203685477.5808")) should be(false)
+      FixedMoney.fits(null) should be(false)
+    }
+
+    "have any operation on UNDEFINED return UNDEFINED" in {
+      FixedMoney.add(FixedMoney.UNDEFINED, 1) should be(FixedMoney.UNDEFINED)
+      FixedMoney.subtract(1, FixedMoney.UNDEFINED) should be(FixedMoney.UNDEFINED)
+      FixedMoney.multiply(FixedMoney.UNDEFINED, 5) should be(FixedMoney.UNDEFINED)
+      FixedMoney.divide(FixedMoney.UNDEFINED, 5) should be(FixedMoney.UNDEFINED)
+      java.lang.Double.isNaN(FixedMoney.divide(FixedMoney.UNDEFINED, 1L)) should be(true)
+    }
+  }
+
+  "A MoneyAccumulator" should {
+
+    "accumulate price times quantity in place" in {
+      val acc = new MoneyAccumulator()
+      acc.add(FixedMoney.valueOf(10), 100).add(FixedMoney.valueOf(20), 110)
+      acc.toMoney should be(new Money(3200))
+      acc.divide(210) should be(FixedMoney.valueOf(Money.parse("15.2381")))
+      acc.subtract(FixedMoney.valueOf(10), 100)
+      acc.toMoney should be(new Money(2200))
+      acc.reset().value should be(FixedMoney.ZERO)
+    }
+  }
+
+}
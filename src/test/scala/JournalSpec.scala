@@ -0,0 +1,330 @@
+import org.scalatest.{ WordSpecLike, Matchers, BeforeAndAfterAll }
+import java.time.{ Duration, Instant }
+import java.nio.file.{ Files, Path }
+import java.math.BigDecimal;
+import me.arturopala.stockexchange.api._
+import me.arturopala.stockexchange.stock._
+import me.arturopala.stockexchange.util.{ Money, FixedMoney }
+import me.arturopala.stockexchange.simpleimpl._
+import me.arturopala.stockexchange.journal._
+import java.util.concurrent.atomic.AtomicReference
+import scala.collection.mutable.ArrayBuffer
+import collection.JavaConversions._
+
+class JournalSpec extends WordSpecLike with Matchers with BeforeAndAfterAll {
+
+  val stock = new CommonStock("COMM", new Money(100), new Money(10))
+  val stock2 = new PreferredStock("PREF", new Money(100), new Money(10), new BigDecimal("0.2"))
+
+  val directories = ArrayBuffer[Path]()
+
+  def tempDirectory(prefix: String): Path = {
+    val directory = Files.createTempDirectory(prefix)
+    directories += directory
+    directory
+  }
+
+  override def afterAll(): Unit = directories.foreach { directory =>
+    Files.walk(directory).sorted(java.util.Comparator.reverseOrder()).forEach(new java.util.function.Consumer[Path] {
+      def accept(path: Path): Unit = Files.deleteIfExists(path)
+    })
+  }
+
+  case class Record(symbol: String, stockType: StockType, tradeType: TradeType, price: Long, quantity: Int, timestamp: Long)
+
+  def replay(directory: Path): Seq[Record] = {
+    val records = ArrayBuffer[Record]()
+    JournalReader.replay(directory, new JournalRecordHandler {
+      def onTrade(symbol: String, stockType: StockType, tradeType: TradeType, price: Long, quantity: Int, timestamp: Long, position: Long): Unit =
+        records += Record(symbol, stockType, tradeType, price, quantity, timestamp)
+    })
+    records
+  }
+
+  "A TradeJournal" should {
+
+    "replay appended trades in order" in {
+      val directory = tempDirectory("journal")
+      val journal = new TradeJournal(directory, TradeJournal.FsyncPolicy.NEVER)
+      val id = journal.register(stock)
+      val id2 = journal.register(stock2)
+      journal.register(stock) should be(id)
+      val p1 = journal.append(id, TradeType.BUY, FixedMoney.valueOf(10), 100, 1000L)
+      val p2 = journal.append(id2, TradeType.SELL, FixedMoney.valueOf(20), 200, 2000L)
+      val p3 = journal.append(id, TradeType.SELL, FixedMoney.valueOf(30), 300, 3000L)
+      p1 should be > 0L
+      p2 should be > p1
+      p3 should be > p2
+      journal.close()
+      replay(directory) should be(Seq(
+        Record("COMM", StockType.COMMON, TradeType.BUY, FixedMoney.valueOf(10), 100, 1000L),
+        Record("PREF", StockType.PREFERRED, TradeType.SELL, FixedMoney.valueOf(20), 200, 2000L),
+        Record("COMM", StockType.COMMON, TradeType.SELL, FixedMoney.valueOf(30), 300, 3000L)))
+      journal.append(id, TradeType.BUY, FixedMoney.valueOf(10), 100, 4000L) should be(Journal.FAILED)
+      journal.stats.failures should be(1)
+    }
+
+    "roll over segments and recycle only those covered by snapshots" in {
+      val directory = tempDirectory("journal")
+      val journal = new TradeJournal(directory, 1024, 3, TradeJournal.FsyncPolicy.ASYNC, Duration.ofMillis(1))
+      val id = journal.register(stock)
+      for (i <- 0 until 200) journal.append(id, TradeType.BUY, FixedMoney.valueOf(i + 1), i + 1, i) should not be(Journal.FAILED)
+      journal.segments.size should be > 3
+      replay(directory).size should be(200)
+      journal.truncate(journal.position)
+      for (i <- 200 until 250) journal.append(id, TradeType.BUY, FixedMoney.valueOf(i + 1), i + 1, i) should not be(Journal.FAILED)
+      journal.close()
+      journal.segments.size should be(3)
+      JournalReader.segments(directory).size should be(3)
+      val records = replay(directory)
+      records.size should be < 250
+      records.map(_.timestamp) should be(records.head.timestamp until 250)
+      records.head.timestamp should be < 200L
+      records.last should be(Record("COMM", StockType.COMMON, TradeType.BUY, FixedMoney.valueOf(250), 250, 249))
+      // recycled files are zeroed, nothing of the older segment is left behind the last record
+      val bytes = Files.readAllBytes(JournalReader.segments(directory).last)
+      bytes.drop((journal.position % 1024).toInt).forall(_ == 0) should be(true)
+    }
+
+    "continue after the last segment when reopened" in {
+      val directory = tempDirectory("journal")
+      val journal = new TradeJournal(directory, TradeJournal.FsyncPolicy.NEVER)
+      journal.append(journal.register(stock), TradeType.BUY, FixedMoney.valueOf(10), 100, 1000L)
+      journal.close()
+      val reopened = new TradeJournal(directory, TradeJournal.FsyncPolicy.NEVER)
+      reopened.append(reopened.register(stock2), TradeType.SELL, FixedMoney.valueOf(20), 200, 2000L)
+      reopened.close()
+      replay(directory).map(_.symbol) should be(Seq("COMM", "PREF"))
+    }
+
+    "wait for fsync under SYNC policy" in {
+      val directory = tempDirectory("journal")
+      val journal = new TradeJournal(directory, TradeJournal.FsyncPolicy.SYNC)
+      val id = journal.register(stock)
+      val threads = (0 until 4).map { t =>
+        new Thread(new Runnable {
+          def run(): Unit = for (i <- 0 until 50) journal.append(id, TradeType.BUY, FixedMoney.valueOf(10), 1, i)
+        })
+      }
+      threads.foreach(_.start())
+      threads.foreach(_.join())
+      journal.close()
+      journal.stats.appends should be(200)
+      journal.stats.fsyncs should be > 0L
+      journal.stats.fsyncs should be <= 201L
+      journal.stats.fsync.snapshot.max should be > 0L
+      journal.stats.append.snapshot.count should be(200)
+      replay(directory).size should be(200)
+    }
+
+    "append included trades of a batch at once" in {
+      val directory = tempDirectory("journal")
+      val journal = new TradeJournal(directory, TradeJournal.FsyncPolicy.SYNC)
+      val id = journal.register(stock)
+      val builder = new TradeBatch.Builder(Instant.now(), stock)
+      for (i <- 1 to 100) builder.add(if (i % 2 == 0) TradeType.BUY else TradeType.SELL, i, FixedMoney.valueOf(10))
+      val batch = builder.build()
+      val included = Array.tabulate(100)(_ % 2 == 1)
+      val position = journal.append(id, batch, 1000L, included)
+      position should be(journal.position())
+      journal.append(id, batch, 1000L, new Array[Boolean](100)) should be(Journal.FAILED)
+      journal.close()
+      journal.stats.appends should be(50)
+      journal.stats.fsyncs should be < 50L
+      val records = replay(directory)
+      records.map(_.quantity) should be((2 to 100 by 2).toSeq)
+      records.forall(r => r.tradeType == TradeType.BUY && r.timestamp == 1000L) should be(true)
+      journal.append(id, batch, 1000L, included) should be(Journal.FAILED)
+    }
+  }
+
+  "A FileSnapshotStore" should {
+
+    "save and load the latest snapshot" in {
+      val store = new FileSnapshotStore(tempDirectory("snapshots"))
+      store.load(stock).isPresent should be(false)
+      store.save(stock, new TickerSnapshot(10L, 3, 30L, 50L, Array(1L, 2L), Array(10L, 10L), Array(1, 2))) should be(true)
+      store.save(stock, new TickerSnapshot(20L, 5, 50L, 70L, Array(1L, 2L, 3L), Array(10L, 10L, 10L), Array(1, 2, 2))) should be(true)
+      val snapshot = store.load(stock).get
+      snapshot.journalPosition should be(20L)
+      snapshot.quantity should be(5)
+      snapshot.volume should be(70L)
+      snapshot.quantities.toSeq should be(Seq(1, 2, 2))
+      store.load(stock2).isPresent should be(false)
+      store.checkpoint should be(0L)
+      store.checkpoint(123L) should be(true)
+      new FileSnapshotStore(store.directory).checkpoint should be(123L)
+    }
+
+    "ignore corrupted snapshot" in {
+      val store = new FileSnapshotStore(tempDirectory("snapshots"))
+      store.save(stock, new TickerSnapshot(10L, 3, 30L, 50L, Array(1L, 2L), Array(10L, 10L), Array(1, 2)))
+      val file = Files.list(store.directory).findFirst.get
+      val bytes = Files.readAllBytes(file)
+      bytes(bytes.length - 20) = (bytes(bytes.length - 20) + 1).toByte
+      Files.write(file, bytes)
+      store.load(stock).isPresent should be(false)
+    }
+  }
+
+  "A JournalRecovery" should {
+
+    "restore snapshot and replay only the journal tail after it" in {
+      val directory = tempDirectory("journal")
+      val journal = new TradeJournal(directory, TradeJournal.FsyncPolicy.NEVER)
+      val store = new FileSnapshotStore(directory.resolve("snapshots"))
+      val id = journal.register(stock)
+      val state = new TickerState(new AtomicReference[StockInfo](new StockInfo()), new AllShareIndex())
+      def trade(timestamp: Long, price: Int, quantity: Int) = {
+        state.journalPosition(journal.append(id, TradeType.BUY, FixedMoney.valueOf(price), quantity, timestamp))
+        state.add(timestamp, FixedMoney.valueOf(price), quantity)
+      }
+      trade(1000, 10, 100)
+      trade(2000, 20, 110)
+      store.save(stock, state.snapshot())
+      trade(3000, 30, 120)
+      journal.append(journal.register(stock2), TradeType.SELL, FixedMoney.valueOf(40), 130, 3500)
+      journal.close()
+
+      val index = new AllShareIndex()
+      val stockInfoRef = new AtomicReference[StockInfo](new StockInfo())
+      val states = new java.util.HashMap[Stock, TickerState]()
+      states.put(stock, new TickerState(stockInfoRef, index))
+      states.put(stock2, new TickerState(new AtomicReference[StockInfo](new StockInfo()), index))
+      val restored = JournalRecovery.recover(states, store, new TradeJournal(directory, TradeJournal.FsyncPolicy.NEVER), 1500)
+      restored.toSet should be(Set(stock, stock2))
+      val recovered = states.get(stock)
+      recovered.quantity should be(230)
+      recovered.volume should be(FixedMoney.valueOf(1000 + 2200 + 3600))
+      recovered.window.size should be(2)
+      recovered.journalPosition should be(state.journalPosition)
+      states.get(stock2).quantity should be(130)
+      recovered.publish()
+      stockInfoRef.get.price should be(FixedMoney.toMoney(FixedMoney.divide(FixedMoney.valueOf(2200 + 3600), 230)))
+    }
+  }
+
+  "A JournalRecovery" should {
+
+    "replay from the checkpoint even if some stocks never traded" in {
+      val directory = tempDirectory("journal")
+      val journal = new TradeJournal(directory, TradeJournal.FsyncPolicy.NEVER)
+      val store = new FileSnapshotStore(directory.resolve("snapshots"))
+      val id = journal.register(stock)
+      val state = new TickerState(new AtomicReference[StockInfo](new StockInfo()), new AllShareIndex())
+      for (i <- 1 to 10) {
+        state.journalPosition(journal.append(id, TradeType.BUY, FixedMoney.valueOf(10), i, i))
+        state.add(i, FixedMoney.valueOf(10), i)
+      }
+      val checkpoint = journal.position
+      store.save(stock, state.snapshot(checkpoint))
+      store.checkpoint(checkpoint)
+      journal.append(id, TradeType.BUY, FixedMoney.valueOf(10), 11, 11)
+      journal.close()
+
+      def states() = {
+        val states = new java.util.HashMap[Stock, TickerState]()
+        states.put(stock, new TickerState(new AtomicReference[StockInfo](new StockInfo()), new AllShareIndex()))
+        states.put(stock2, new TickerState(new AtomicReference[StockInfo](new StockInfo()), new AllShareIndex()))
+        states
+      }
+      JournalRecovery.replayPosition(states(), SnapshotStore.NONE) should be(0L)
+      JournalRecovery.replayPosition(states(), store) should be(checkpoint)
+      val recovered = states()
+      JournalRecovery.recover(recovered, store, new TradeJournal(directory, TradeJournal.FsyncPolicy.NEVER), 0)
+      recovered.get(stock).quantity should be(66)
+      recovered.get(stock).savedPosition(Long.MaxValue) should be(checkpoint)
+      recovered.get(stock2).savedPosition(Long.MaxValue) should be(Long.MaxValue)
+    }
+  }
+
+  "A SimpleStockExchange" should {
+
+    "recover prices after restart" in {
+      import akka.actor.ActorSystem
+      val directory = tempDirectory("journal")
+      val listing = new java.util.HashSet[Stock](java.util.Arrays.asList(stock, stock2))
+      val journal = new TradeJournal(directory, TradeJournal.FsyncPolicy.NEVER)
+      val system = ActorSystem("stockexchange-recovery")
+      val exchange = new SimpleStockExchange(listing, system, new ExchangeOptions.Builder().journal(journal)
+        .snapshots(new FileSnapshotStore(directory.resolve("snapshots"))).build())
+      exchange.open()
+      exchange.sell(stock, 100, new Money(10))
+      exchange.buy(stock, 110, new Money(20))
+      exchange.sell(stock2, 50, new Money(5))
+      while (exchange.watch(stock).quantity < 210 || exchange.watch(stock2).quantity < 50) Thread.sleep(10)
+      exchange.close()
+      system.awaitTermination()
+      new FileSnapshotStore(directory.resolve("snapshots")).checkpoint should be(journal.position)
+      journal.close()
+
+      val restarted = new SimpleStockExchange(listing, ActorSystem("stockexchange-recovery"), new ExchangeOptions.Builder()
+        .journal(new TradeJournal(directory, TradeJournal.FsyncPolicy.NEVER)).snapshots(new FileSnapshotStore(directory.resolve("snapshots"))).build())
+      restarted.watch(stock).price should be(Money.UNDEFINED)
+      restarted.open()
+      restarted.watch(stock).price should be(Money.parse("15.2381"))
+      restarted.watch(stock).quantity should be(210)
+      restarted.watch(stock2).price should be(new Money(5))
+      restarted.allShareIndex should be(Math.sqrt(15.2381 * 5) +- 1e-9)
+      restarted.close()
+    }
+
+    "journal every queued trade before closing" in {
+      import akka.actor.ActorSystem
+      import com.typesafe.config.ConfigFactory
+      val directory = tempDirectory("journal")
+      val listing = new java.util.HashSet[Stock](java.util.Arrays.asList(stock, stock2))
+      val journal = new TradeJournal(directory, TradeJournal.FsyncPolicy.NEVER)
+      val config = ConfigFactory.parseString("akka.actor.deployment.\"/*\".dispatcher = akka.actor.default-dispatcher").withFallback(ConfigFactory.load())
+      val system = ActorSystem("stockexchange-close", config)
+      val exchange = new SimpleStockExchange(listing, system, new ExchangeOptions.Builder().journal(journal)
+        .admission(Admission.block(Admission.DEFAULT_CAPACITY, Duration.ofSeconds(5))).build())
+      exchange.open()
+      for (i <- 1 to 10000) exchange.sell(if (i % 2 == 0) stock else stock2, 1, new Money(10))
+      exchange.close()
+      system.awaitTermination()
+      journal.close()
+      replay(directory).size should be(10000)
+      exchange.metrics.journalAppend.count should be > 0L
+      exchange.metrics.journalAppend.max should be > 0L
+    }
+  }
+
+  "A TickerActor" should {
+
+    import akka.actor._
+    import akka.testkit._
+
+    "persist trades to the journal" in {
+      implicit val system = ActorSystem()
+      val directory = tempDirectory("journal")
+      val journal = new TradeJournal(directory, TradeJournal.FsyncPolicy.NEVER)
+      val stockInfoRef = new AtomicReference[StockInfo](new StockInfo())
+      val actor = TestActorRef(Props(classOf[TickerActor], stock, stockInfoRef, new AllShareIndex(), journal))
+      actor ! new Trade(Instant.now(), TradeType.SELL, stock, 100, new Money(10))
+      actor ! new Trade(Instant.now(), TradeType.BUY, stock, 110, new Money(20))
+      stockInfoRef.get.quantity should be(210)
+      journal.close()
+      replay(directory).map(r => (r.symbol, r.tradeType, r.quantity)) should be(Seq(("COMM", TradeType.SELL, 100), ("COMM", TradeType.BUY, 110)))
+      system.shutdown()
+    }
+
+    "persist a trade batch at once, leaving out trades overflowing the ticker totals" in {
+      implicit val system = ActorSystem()
+      val directory = tempDirectory("journal")
+      val journal = new TradeJournal(directory, TradeJournal.FsyncPolicy.NEVER)
+      val stockInfoRef = new AtomicReference[StockInfo](new StockInfo())
+      val actor = TestActorRef(Props(classOf[TickerActor], stock, stockInfoRef, new AllShareIndex(), journal))
+      actor ! new TradeBatch.Builder(Instant.now(), stock)
+        .add(TradeType.SELL, 100, FixedMoney.valueOf(10))
+        .add(TradeType.BUY, Int.MaxValue, FixedMoney.valueOf(10))
+        .add(TradeType.SELL, 10, FixedMoney.valueOf(20))
+        .build()
+      stockInfoRef.get.quantity should be(110)
+      journal.close()
+      replay(directory).map(r => (r.tradeType, r.quantity)) should be(Seq((TradeType.SELL, 100), (TradeType.SELL, 10)))
+      system.shutdown()
+    }
+  }
+
+}
@@ -0,0 +1,57 @@
+import org.scalatest.{ WordSpecLike, Matchers }
+import org.scalatest.prop.PropertyChecks
+import me.arturopala.stockexchange.metrics.LatencyHistogram
+
+class LatencyHistogramSpec extends WordSpecLike with Matchers with PropertyChecks {
+
+  "A LatencyHistogram" should {
+
+    "report percentiles within bucket precision" in {
+      val histogram = new LatencyHistogram()
+      for (i <- 1 to 10000) histogram.record(i * 1000L)
+      val snapshot = histogram.snapshot()
+      snapshot.count should be(10000)
+      snapshot.max should be(10000000L)
+      snapshot.p50.toDouble should be(5000000d +- 5000000 * 0.04)
+      snapshot.p99.toDouble should be(9900000d +- 9900000 * 0.04)
+      snapshot.p999.toDouble should be(9990000d +- 9990000 * 0.04)
+      snapshot.mean should be(5000500d +- 5000500 * 0.04)
+    }
+
+    "keep small values exact" in {
+      val histogram = new LatencyHistogram()
+      for (i <- 0 until 32) histogram.record(i)
+      histogram.record(-5)
+      val snapshot = histogram.snapshot()
+      snapshot.count should be(33)
+      snapshot.p50 should be(15)
+      snapshot.max should be(31)
+    }
+
+    "never report percentile above the maximum" in {
+      forAll { (values: List[Long]) =>
+        val histogram = new LatencyHistogram()
+        values.foreach(v => histogram.record(math.abs(v % Long.MaxValue)))
+        val snapshot = histogram.snapshot()
+        snapshot.count should be(values.size)
+        snapshot.p999 should be <= snapshot.max
+        snapshot.p50 should be <= snapshot.p99
+      }
+    }
+
+    "count concurrent records without losing any" in {
+      val histogram = new LatencyHistogram()
+      val threads = (0 until 4).map { t =>
+        new Thread(new Runnable {
+          def run(): Unit = for (i <- 0 until 100000) histogram.record(i % 1000)
+        })
+      }
+      threads.foreach(_.start())
+      threads.foreach(_.join())
+      histogram.snapshot().count should be(400000)
+      histogram.reset()
+      histogram.snapshot().count should be(0)
+    }
+  }
+
+}
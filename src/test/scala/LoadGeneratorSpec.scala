@@ -0,0 +1,101 @@
+import org.scalatest.{ WordSpecLike, Matchers }
+import java.time.Duration
+import java.util.SplittableRandom
+import java.math.BigDecimal
+import me.arturopala.stockexchange.api._
+import me.arturopala.stockexchange.stock._
+import me.arturopala.stockexchange.util.Money
+import me.arturopala.stockexchange.simpleimpl.SimpleStockExchange
+import me.arturopala.stockexchange.ringimpl.RingStockExchange
+import me.arturopala.stockexchange.load._
+import collection.JavaConversions._
+
+class LoadGeneratorSpec extends WordSpecLike with Matchers {
+
+  val stocks: Array[Stock] = (1 to 10).map(i => new CommonStock("S" + i, new Money(10 * i), new Money(i))).toArray
+  val listing = new java.util.HashSet[Stock](java.util.Arrays.asList(stocks: _*))
+
+  "A ZipfDistribution" should {
+
+    "draw ranks with skewed probability" in {
+      val zipf = new ZipfDistribution(10, 1.0)
+      zipf.probability(0) should be(zipf.probability(1) * 2 +- 1e-9)
+      val random = new SplittableRandom(1)
+      val counts = new Array[Int](10)
+      for (i <- 0 until 100000) counts(zipf.sample(random)) += 1
+      (counts(0) / 100000.0) should be(zipf.probability(0) +- 0.01)
+      (counts(9) / 100000.0) should be(zipf.probability(9) +- 0.01)
+    }
+
+    "be uniform for zero exponent" in {
+      val zipf = new ZipfDistribution(4, 0)
+      (0 until 4).map(zipf.probability) should be(Seq(0.25, 0.25, 0.25, 0.25))
+    }
+  }
+
+  "An OrderSource" should {
+
+    def orders(seed: Long) = {
+      val source = new OrderSource(stocks, new ZipfDistribution(stocks.length, 1.2), seed, 100)
+      (0 until 1000).map { _ => source.next(); (source.stock, source.isBuy, source.quantity, source.price) }
+    }
+
+    "repeat the same orders for the same seed" in {
+      orders(7) should be(orders(7))
+      orders(7) should not be (orders(8))
+    }
+
+    "keep prices within 5% around par value" in {
+      all(orders(3).map { case (stock, _, quantity, price) => (quantity, price.divide(stock.parValue).doubleValue) }) should matchPattern {
+        case (q: Int, r: Double) if q >= 1 && q <= 100 && r >= 0.95 && r <= 1.05 =>
+      }
+    }
+  }
+
+  "A LoadGenerator" should {
+
+    "send orders at fixed rate in open loop" in {
+      val exchange = new SimpleStockExchange(listing).open()
+      val report = new LoadGenerator.Builder().mode(LoadGenerator.Mode.OPEN).rate(2000).threads(2)
+        .duration(Duration.ofSeconds(1)).warmup(Duration.ofMillis(200)).skew(1.1).build().run(exchange)
+      report.sent.toDouble should be(2000d +- 50)
+      report.sendRate should be(2000d +- 50)
+      report.latency.count should be(report.sent)
+      report.engine.tradesAccepted should be(2400L +- 50)
+      report.engine.queued should be(0)
+      report.sustained should be(true)
+      report.toString should include("target sustained")
+      exchange.close()
+    }
+
+    "not count rejected orders as sustained throughput" in {
+      // orders for the stock only advertised in the listing are rejected as invalid
+      val listed = listing.head
+      val unlisted = new CommonStock("NONE", new Money(100), new Money(10))
+      val exchange = new SimpleStockExchange(Set[Stock](listed)) {
+        override def listing(): java.util.Set[Stock] = Set[Stock](listed, unlisted)
+      }.open()
+      val report = new LoadGenerator.Builder().mode(LoadGenerator.Mode.OPEN).rate(2000).threads(2)
+        .duration(Duration.ofSeconds(1)).warmup(Duration.ofMillis(200)).build().run(exchange)
+      report.sendRate should be(2000d +- 50)
+      report.rejected should be > 500L
+      report.throughput should be < 1500d
+      report.sustained should be(false)
+      report.toString should include("target NOT sustained")
+      exchange.close()
+    }
+
+    "saturate the exchange in closed loop" in {
+      val exchange = new RingStockExchange(listing, new ExchangeOptions.Builder().partitions(2)
+        .admission(Admission.block(ExchangeOptions.DEFAULT_RING_SIZE, Duration.ofSeconds(5))).build()).open()
+      val report = new LoadGenerator.Builder().mode(LoadGenerator.Mode.CLOSED).threads(2)
+        .duration(Duration.ofMillis(500)).warmup(Duration.ofMillis(100)).build().run(exchange)
+      report.sent should be > 1000L
+      report.throughput should be > 0d
+      report.engine.tradesRejected should be(0)
+      report.engine.queued should be(0)
+      exchange.close()
+    }
+  }
+
+}
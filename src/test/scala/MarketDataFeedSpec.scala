@@ -0,0 +1,170 @@
+import org.scalatest.{ WordSpecLike, Matchers }
+import java.nio.file.{ Files, Path }
+import java.math.BigDecimal
+import java.util.concurrent.atomic.AtomicBoolean
+import me.arturopala.stockexchange.api._
+import me.arturopala.stockexchange.stock._
+import me.arturopala.stockexchange.util.{ Money, FixedMoney }
+import me.arturopala.stockexchange.simpleimpl.SimpleStockExchange
+import me.arturopala.stockexchange.feed._
+import collection.JavaConversions._
+import collection.mutable.ArrayBuffer
+
+class MarketDataFeedSpec extends WordSpecLike with Matchers {
+
+  val stock = new CommonStock("COMM", new Money(100), new Money(10))
+  val stock2 = new PreferredStock("PREF", new Money(100), new Money(10), new BigDecimal("0.2"))
+
+  def tempFile(): Path = {
+    val file = Files.createTempFile("market-data", ".ring")
+    file.toFile.deleteOnExit()
+    file
+  }
+
+  def fixed(value: Long): Long = FixedMoney.valueOf(BigDecimal.valueOf(value))
+  def fixed(value: String): Long = FixedMoney.valueOf(new BigDecimal(value))
+
+  def listing(size: Int): Seq[Stock] = (0 until size).map(i => new CommonStock("S%05d".format(i), new Money(100), new Money(1)))
+
+  def collector(updates: ArrayBuffer[(Int, Long, Int, Long)]) = new MarketDataReader.Handler {
+    def onUpdate(stockId: Int, price: Long, quantity: Int, volume: Long): Unit = updates += ((stockId, price, quantity, volume))
+  }
+
+  "A market data feed" should {
+
+    "deliver every update to each reader, starting from the full state" in {
+      val file = tempFile()
+      val publisher = new MarketDataPublisher(file, Set[Stock](stock2, stock), 1 << 12)
+      publisher.stocks.toList should be(List(stock, stock2))
+      val reader = new MarketDataReader(file)
+      reader.stocks should be(2)
+      reader.symbol(1) should be("PREF")
+      reader.stockId("COMM", StockType.COMMON) should be(0)
+      reader.stockId("COMM", StockType.PREFERRED) should be(-1)
+      val updates = ArrayBuffer[(Int, Long, Int, Long)]()
+      reader.poll(collector(updates)) should be(2)
+      updates.toList should be(List((0, FixedMoney.UNDEFINED, 0, FixedMoney.UNDEFINED), (1, FixedMoney.UNDEFINED, 0, FixedMoney.UNDEFINED)))
+      updates.clear()
+      publisher.publish(0, fixed(10), 100, fixed(1000))
+      publisher.publish(1, fixed(20), 10, fixed(200))
+      publisher.publish(0, fixed(10), 100, fixed(1000))
+      publisher.publish(0, fixed("11.5"), 130, fixed(1345))
+      publisher.updates should be(3)
+      reader.poll(collector(updates)) should be(3)
+      updates.toList should be(List(
+        (0, fixed(10), 100, fixed(1000)),
+        (1, fixed(20), 10, fixed(200)),
+        (0, fixed("11.5"), 130, fixed(1345))))
+      reader.poll(collector(updates)) should be(0)
+      reader.lag should be(0)
+      val late = new MarketDataReader(file)
+      late.poll(collector(ArrayBuffer()))
+      late.price(0) should be(fixed("11.5"))
+      late.quantity(1) should be(10)
+      late.laps should be(0)
+      publisher.close()
+    }
+
+    "encode small changes in a few bytes" in {
+      val publisher = new MarketDataPublisher(tempFile(), listing(100), 1 << 20)
+      val start = publisher.position
+      for (i <- 1 to 10000) publisher.publish(i % 100, fixed(100 + i % 7), 1000 + i, fixed(100000L + i * 50))
+      ((publisher.position - start) / 10000.0) should be < 12.0
+      publisher.close()
+    }
+
+    "recover a lapped reader from the latest snapshot" in {
+      val file = tempFile()
+      val publisher = new MarketDataPublisher(file, listing(10), 1 << 12)
+      val reader = new MarketDataReader(file)
+      for (i <- 1 to 5000) publisher.publish(i % 10, fixed(i), i, fixed(i * 2L))
+      reader.poll(collector(ArrayBuffer())) should be > 0
+      reader.laps should be >= 1L
+      for (id <- 0 until 10) {
+        val i = 4990 + (if (id == 0) 10 else id)
+        reader.price(id) should be(fixed(i))
+        reader.quantity(id) should be(i)
+        reader.volume(id) should be(fixed(i * 2L))
+      }
+      an[IllegalArgumentException] should be thrownBy new MarketDataPublisher(tempFile(), listing(1000), 1 << 12)
+      an[IllegalArgumentException] should be thrownBy new MarketDataPublisher(tempFile(), listing(10), 5000)
+      publisher.close()
+    }
+
+    "never hand torn updates to a reader racing the writer" in {
+      val file = tempFile()
+      val publisher = new MarketDataPublisher(file, listing(50), 1 << 13)
+      val running = new AtomicBoolean(true)
+      val writer = new Thread(new Runnable {
+        def run(): Unit = {
+          var i = 1
+          while (running.get) {
+            publisher.publish(i % 50, fixed(i), i, fixed(i * 3L))
+            i += 1
+          }
+          publisher.publish(0, fixed(50), 50, fixed(150))
+        }
+      })
+      val reader = new MarketDataReader(file)
+      var torn = 0
+      var handled = 0L
+      val handler = new MarketDataReader.Handler {
+        def onUpdate(stockId: Int, price: Long, quantity: Int, volume: Long): Unit = {
+          handled += 1
+          if (quantity != 0 && (price != fixed(quantity) || volume != fixed(quantity * 3L) || quantity % 50 != stockId)) torn += 1
+        }
+      }
+      writer.start()
+      val end = System.nanoTime() + 500000000L
+      while (System.nanoTime() < end) reader.poll(handler)
+      running.set(false)
+      writer.join()
+      reader.poll(handler)
+      torn should be(0)
+      handled should be > 0L
+      reader.quantity(0) should be(50)
+      info(s"${publisher.updates} updates written, $handled read, ${reader.laps} laps")
+      publisher.close()
+    }
+
+    "move readers to the new file when the publisher restarts" in {
+      val file = tempFile()
+      val publisher = new MarketDataPublisher(file, listing(3), 1 << 12)
+      val reader = new MarketDataReader(file)
+      for (i <- 1 to 50) publisher.publish(2, fixed(i), i, fixed(i))
+      reader.poll(collector(ArrayBuffer())) should be > 0
+      reader.quantity(2) should be(50)
+      publisher.close()
+      val restarted = new MarketDataPublisher(file, listing(4), 1 << 12)
+      restarted.publish(3, fixed(7), 7, fixed(49))
+      val updates = ArrayBuffer[(Int, Long, Int, Long)]()
+      reader.poll(collector(updates)) should be(5)
+      reader.restarts should be(1)
+      reader.stocks should be(4)
+      reader.quantity(2) should be(0)
+      reader.quantity(3) should be(7)
+      updates.last should be((3, fixed(7), 7, fixed(49)))
+      reader.poll(collector(updates)) should be(0)
+      restarted.close()
+    }
+
+    "publish ticker updates of an exchange" in {
+      val file = tempFile()
+      val exchange = new SimpleStockExchange(Set[Stock](stock, stock2)).open()
+      val publisher = new MarketDataPublisher(file, exchange.listing)
+      val subscription = publisher.attach(exchange)
+      val reader = new MarketDataReader(file)
+      exchange.sell(stock, 10, new Money(20))
+      exchange.buy(stock2, 30, new Money(10))
+      val deadline = System.currentTimeMillis + 5000
+      def stocksSeen = { reader.poll(collector(ArrayBuffer())); reader.quantity(0) == 10 && reader.quantity(1) == 30 }
+      while (!stocksSeen && System.currentTimeMillis < deadline) Thread.sleep(10)
+      reader.price(0) should be(fixed(20))
+      reader.volume(1) should be(fixed(300))
+      publisher.close()
+      subscription.isCancelled should be(true)
+      exchange.close()
+    }
+  }
+
+}
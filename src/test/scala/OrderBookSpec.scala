@@ -0,0 +1,202 @@
+import org.scalatest.{ WordSpecLike, Matchers }
+import org.scalatest.prop.PropertyChecks
+import java.time.Instant
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReference
+import me.arturopala.stockexchange.api._
+import me.arturopala.stockexchange.stock._
+import me.arturopala.stockexchange.util.{ Money, FixedMoney }
+import me.arturopala.stockexchange.simpleimpl._
+import me.arturopala.stockexchange.matchingimpl._
+import scala.collection.mutable.ListBuffer
+import collection.JavaConversions._
+
+class OrderBookSpec extends WordSpecLike with Matchers with PropertyChecks {
+
+  val stock = new CommonStock("COMM", new Money(100), new Money(10))
+
+  def price(value: String): Long = FixedMoney.valueOf(Money.parse(value))
+
+  class Fills extends FillListener {
+    val fills = ListBuffer[(Long, Long, Int)]()
+    def onFill(orderId: Long, fixedPrice: Long, quantity: Int): Unit = fills += ((orderId, fixedPrice, quantity))
+  }
+
+  "An OrderBook" should {
+
+    "rest orders which do not cross" in {
+      val book = new OrderBook()
+      val fills = new Fills
+      book.submit(TradeType.BUY, price("10"), 100, fills) should not be (OrderBook.NO_ORDER)
+      book.submit(TradeType.BUY, price("11"), 50, fills)
+      book.submit(TradeType.SELL, price("12"), 70, fills)
+      book.submit(TradeType.SELL, price("13"), 30, fills)
+      fills.fills should be(empty)
+      book.bestBid should be(price("11"))
+      book.bestAsk should be(price("12"))
+      book.levels(TradeType.BUY) should be(2)
+      book.levels(TradeType.SELL) should be(2)
+      book.restingOrders should be(4)
+    }
+
+    "match at resting price in price-time priority" in {
+      val book = new OrderBook()
+      val fills = new Fills
+      val first = book.submit(TradeType.SELL, price("12"), 30, fills)
+      val second = book.submit(TradeType.SELL, price("12"), 40, fills)
+      val third = book.submit(TradeType.SELL, price("11.5"), 20, fills)
+      book.submit(TradeType.BUY, price("12.5"), 60, fills) should be(OrderBook.NO_ORDER)
+      fills.fills.toList should be(List((third, price("11.5"), 20), (first, price("12"), 30), (second, price("12"), 10)))
+      book.depth(TradeType.SELL, price("12")) should be(30)
+      book.bestAsk should be(price("12"))
+      book.restingOrders should be(1)
+    }
+
+    "rest remainder of partially filled order" in {
+      val book = new OrderBook()
+      val fills = new Fills
+      book.submit(TradeType.BUY, price("10"), 30, fills)
+      val remainder = book.submit(TradeType.SELL, price("9"), 50, fills)
+      remainder should not be (OrderBook.NO_ORDER)
+      fills.fills.toList.map(f => (f._2, f._3)) should be(List((price("10"), 30)))
+      book.bestBid should be(FixedMoney.UNDEFINED)
+      book.bestAsk should be(price("9"))
+      book.depth(TradeType.SELL, price("9")) should be(20)
+    }
+
+    "cancel resting orders" in {
+      val book = new OrderBook()
+      val fills = new Fills
+      val o1 = book.submit(TradeType.BUY, price("10"), 10, fills)
+      val o2 = book.submit(TradeType.BUY, price("10"), 20, fills)
+      val o3 = book.submit(TradeType.BUY, price("9"), 30, fills)
+      book.cancel(o2) should be(true)
+      book.cancel(o2) should be(false)
+      book.depth(TradeType.BUY, price("10")) should be(10)
+      book.cancel(o1) should be(true)
+      book.bestBid should be(price("9"))
+      book.cancel(o3) should be(true)
+      book.levels(TradeType.BUY) should be(0)
+      book.restingOrders should be(0)
+      val o4 = book.submit(TradeType.BUY, price("10"), 10, fills)
+      book.cancel(o1) should be(false)
+      book.cancel(o4) should be(true)
+    }
+
+    "reject remainders which do not fit in a full book" in {
+      val book = new OrderBook(16, 2)
+      val fills = new Fills
+      book.submit(TradeType.BUY, price("10"), 10, fills) should be >= 0L
+      val o2 = book.submit(TradeType.BUY, price("9"), 10, fills)
+      book.submit(TradeType.BUY, price("8"), 10, fills) should be(OrderBook.REJECTED)
+      book.restingOrders should be(2)
+      book.levels(TradeType.BUY) should be(2)
+      book.submit(TradeType.SELL, price("10"), 5, fills) should be(OrderBook.NO_ORDER)
+      book.submit(TradeType.SELL, price("11"), 5, fills) should be(OrderBook.REJECTED)
+      book.cancel(o2) should be(true)
+      book.submit(TradeType.SELL, price("11"), 5, fills) should be >= 0L
+      an[IllegalArgumentException] should be thrownBy new OrderBook(16, 0)
+    }
+
+    "expire resting orders oldest first" in {
+      val book = new OrderBook()
+      val fills = new Fills
+      book.oldestTimestamp should be(Long.MaxValue)
+      book.submit(TradeType.BUY, price("10"), 10, 100L, fills)
+      val o2 = book.submit(TradeType.SELL, price("12"), 10, 200L, fills)
+      book.submit(TradeType.BUY, price("10"), 20, 300L, fills)
+      book.oldestTimestamp should be(100L)
+      book.expire(100L) should be(0)
+      book.cancel(o2) should be(true)
+      book.expire(301L) should be(2)
+      book.restingOrders should be(0)
+      book.levels(TradeType.BUY) should be(0)
+      book.oldestTimestamp should be(Long.MaxValue)
+      book.submit(TradeType.SELL, price("12"), 10, 400L, fills)
+      book.submit(TradeType.SELL, price("11"), 10, 500L, fills)
+      book.expire(450L) should be(1)
+      book.bestAsk should be(price("11"))
+      book.depth(TradeType.SELL, price("12")) should be(0)
+    }
+
+    "keep levels sorted for any sequence of orders" in {
+      forAll { (orders: List[(Boolean, Byte, Byte)]) =>
+        val book = new OrderBook(16)
+        val fills = new Fills
+        orders.foreach {
+          case (isBuy, p, q) =>
+            book.submit(if (isBuy) TradeType.BUY else TradeType.SELL, FixedMoney.valueOf(1 + (p & 0x1f)), 1 + (q & 0x7f), fills)
+        }
+        if (book.levels(TradeType.BUY) > 0 && book.levels(TradeType.SELL) > 0) {
+          book.bestBid should be < book.bestAsk
+        }
+      }
+    }
+  }
+
+  "An OrderBookActor" should {
+
+    import akka.actor._
+    import akka.testkit._
+
+    "calculate price from matched fills only" in {
+      implicit val system = ActorSystem()
+      val stockInfoRef = new AtomicReference[StockInfo](new StockInfo())
+      val actor = TestActorRef(Props(classOf[OrderBookActor], stock, stockInfoRef))
+      val now = Instant.now()
+      actor ! new Trade(now, TradeType.SELL, stock, 100, new Money(10))
+      actor ! new Trade(now, TradeType.SELL, stock, 100, new Money(20))
+      stockInfoRef.get.price should be(Money.UNDEFINED)
+      actor ! new Trade(now, TradeType.BUY, stock, 150, new Money(25))
+      stockInfoRef.get.price should be(Money.parse("13.3333"))
+      stockInfoRef.get.quantity should be(150)
+      stockInfoRef.get.volume should be(new Money(2000))
+      system.shutdown()
+    }
+
+    "expire resting orders with the price window" in {
+      implicit val system = ActorSystem()
+      val stockInfoRef = new AtomicReference[StockInfo](new StockInfo())
+      val actor = TestActorRef(Props(classOf[OrderBookActor], stock, stockInfoRef))
+      val now = Instant.now()
+      actor ! new Trade(now.minusSeconds(60), TradeType.SELL, stock, 100, new Money(10))
+      actor ! new Trade(now, TradeType.SELL, stock, 100, new Money(20))
+      actor ! new Tick(now.minusSeconds(30))
+      actor ! new Trade(now, TradeType.BUY, stock, 150, new Money(25))
+      stockInfoRef.get.price should be(new Money(20))
+      stockInfoRef.get.quantity should be(100)
+      system.shutdown()
+    }
+  }
+
+  "A MatchingStockExchange" should {
+
+    "match buy and sell orders and publish price" in {
+      val exchange = new MatchingStockExchange(Set[Stock](stock)).open()
+      exchange.sell(stock, 10, new Money(12))
+      exchange.buy(stock, 10, new Money(11))
+      exchange.buy(stock, 5, new Money(13))
+      Thread.sleep(1000)
+      exchange.watch(stock).price() should be(new Money(12))
+      exchange.watch(stock).quantity() should be(5)
+      exchange.close()
+    }
+
+    "bound resting orders per stock as configured" in {
+      val system = akka.actor.ActorSystem("matching-bounded")
+      val exchange = new MatchingStockExchange(Set[Stock](stock), system, ExchangeOptions.DEFAULT, 2).open()
+      exchange.sell(stock, 10, new Money(12))
+      exchange.sell(stock, 10, new Money(13))
+      exchange.sell(stock, 10, new Money(14))
+      exchange.buy(stock, 30, new Money(15))
+      // the third sell does not fit in the book, the buy fills both resting sells and rests its remainder
+      while (exchange.watch(stock).quantity() < 20) Thread.sleep(10)
+      exchange.watch(stock).price() should be(Money.parse("12.5"))
+      exchange.metrics().tradesRejected should be(1)
+      exchange.close()
+      an[IllegalArgumentException] should be thrownBy new MatchingStockExchange(Set[Stock](stock), system, ExchangeOptions.DEFAULT, 0)
+      system.shutdown()
+    }
+  }
+
+}
@@ -0,0 +1,202 @@
+import org.scalatest.{ WordSpecLike, Matchers }
+import java.net.InetSocketAddress
+import java.nio.ByteBuffer
+import java.time.{ Clock, Duration }
+import java.math.BigDecimal
+import me.arturopala.stockexchange.api._
+import me.arturopala.stockexchange.stock._
+import me.arturopala.stockexchange.util.{ Money, FixedMoney }
+import me.arturopala.stockexchange.simpleimpl.SimpleStockExchange
+import me.arturopala.stockexchange.ringimpl.RingStockExchange
+import me.arturopala.stockexchange.gateway._
+import me.arturopala.stockexchange.gateway.OrderEntryProtocol._
+import collection.JavaConversions._
+import collection.mutable.ArrayBuffer
+
+class OrderGatewaySpec extends WordSpecLike with Matchers {
+
+  val stock = new CommonStock("COMM", new Money(100), new Money(10))
+  val stock2 = new PreferredStock("PREF", new Money(100), new Money(10), new BigDecimal("0.2"))
+  val loopback = new InetSocketAddress("127.0.0.1", 0)
+
+  def collect(client: OrderEntryClient, count: Int): Seq[(Long, Int)] = {
+    val acks = ArrayBuffer[(Long, Int)]()
+    while (acks.size < count) {
+      client.receive(new OrderEntryClient.AckHandler {
+        def onAck(orderId: Long, result: Int): Unit = acks += ((orderId, result))
+      }) should be > 0
+    }
+    acks
+  }
+
+  "A StockExchange" should {
+
+    "offer a batch of orders without waiting, with the outcome of each order" in {
+      val exchange = new SimpleStockExchange(Set[Stock](stock, stock2)).open()
+      val other = new CommonStock("OTHER", new Money(100), new Money(1))
+      val batch = new OrderBatch().buy(stock, 10, new Money(10)).sell(other, 10, new Money(10)).sell(stock2, 0, new Money(10)).sell(stock2, 5, new Money(20))
+      val results = new Array[OfferResult](batch.size)
+      exchange.offer(batch, results)
+      results.toList should be(List(OfferResult.ACCEPTED, OfferResult.INVALID, OfferResult.INVALID, OfferResult.ACCEPTED))
+      exchange.watch(stock).quantity should be(10)
+      exchange.watch(stock2).quantity should be(5)
+      exchange.close()
+      an[StockExchangeClosedException] should be thrownBy exchange.offer(batch, results)
+    }
+  }
+
+  "An OrderGateway" should {
+
+    "number stocks by symbol and type" in {
+      OrderEntryProtocol.stocks(Set[Stock](stock2, stock)).toList should be(List(stock, stock2))
+    }
+
+    "ack every order over loopback, in order" in {
+      val exchange = new SimpleStockExchange(Set[Stock](stock, stock2)).open()
+      val gateway = new OrderGateway(exchange, loopback).start()
+      gateway.stocks.toList should be(List(stock, stock2))
+      val client = new OrderEntryClient(gateway.localAddress)
+      client.buy(1, 0, 10, FixedMoney.valueOf(10))
+      client.sell(2, 1, 20, FixedMoney.valueOf(30))
+      client.sell(3, 7, 20, FixedMoney.valueOf(30))
+      client.send(4, 0, 9, 20, FixedMoney.valueOf(30))
+      client.buy(5, 0, -1, FixedMoney.valueOf(30))
+      client.buy(6, 0, 30, FixedMoney.UNDEFINED)
+      client.sell(7, 0, 10, FixedMoney.valueOf(20))
+      client.flush()
+      collect(client, 7) should be(Seq(1L -> ACCEPTED, 2L -> ACCEPTED, 3L -> INVALID, 4L -> INVALID, 5L -> INVALID, 6L -> INVALID, 7L -> ACCEPTED))
+      exchange.watch(stock).quantity should be(20)
+      exchange.watch(stock).price should be(Money.parse("15"))
+      exchange.watch(stock2).quantity should be(20)
+      gateway.ordersReceived should be(7)
+      client.close()
+      gateway.stop()
+      gateway.isRunning should be(false)
+      exchange.close()
+    }
+
+    "decode orders split across reads" in {
+      val exchange = new SimpleStockExchange(Set[Stock](stock, stock2)).open()
+      val gateway = new OrderGateway(exchange, loopback).start()
+      val client = new OrderEntryClient(gateway.localAddress)
+      val bytes = ByteBuffer.allocate(2 * ORDER_LENGTH)
+      putOrder(bytes, 11, 0, BUY, 10, FixedMoney.valueOf(10))
+      putOrder(bytes, 12, 1, SELL, 10, FixedMoney.valueOf(10))
+      bytes.flip()
+      for (end <- Seq(5, ORDER_LENGTH + 3, 2 * ORDER_LENGTH)) {
+        val part = bytes.duplicate()
+        part.limit(end)
+        client.sendRaw(part)
+        bytes.position(end)
+        Thread.sleep(20)
+      }
+      collect(client, 2) should be(Seq(11L -> ACCEPTED, 12L -> ACCEPTED))
+      client.close()
+      gateway.stop()
+      exchange.close()
+    }
+
+    "ack orders as closed when the exchange is closed" in {
+      val exchange = new SimpleStockExchange(Set[Stock](stock, stock2))
+      val gateway = new OrderGateway(exchange, loopback).start()
+      val client = new OrderEntryClient(gateway.localAddress)
+      client.buy(1, 0, 10, FixedMoney.valueOf(10))
+      client.buy(2, 5, 10, FixedMoney.valueOf(10))
+      client.flush()
+      collect(client, 2) should be(Seq(1L -> CLOSED, 2L -> INVALID))
+      client.close()
+      gateway.stop()
+    }
+
+    "feed the ring engine from many connections at once" in {
+      val exchange = new RingStockExchange(Set[Stock](stock, stock2), new ExchangeOptions.Builder().partitions(2).build()).open()
+      val gateway = new OrderGateway(exchange, loopback, OrderEntryProtocol.stocks(exchange.listing), 8192).start()
+      val perClient = 100000
+      val window = 1000
+      val accepted = new java.util.concurrent.atomic.AtomicLong()
+      val clients = (0 until 3).map { c =>
+        new Thread(new Runnable {
+          def run(): Unit = {
+            val client = new OrderEntryClient(gateway.localAddress)
+            var next = 0L
+            for (chunk <- 0 until perClient / window) {
+              for (i <- 0 until window) {
+                client.buy(next, (next % 2).toInt, 1, FixedMoney.valueOf(10))
+                next += 1
+              }
+              client.flush()
+              val acks = collect(client, window)
+              acks.map(_._1) should be(((next - window) until next).toSeq)
+              accepted.addAndGet(acks.count(_._2 == ACCEPTED))
+            }
+            client.close()
+          }
+        })
+      }
+      val start = System.nanoTime()
+      clients.foreach(_.start())
+      clients.foreach(_.join())
+      val seconds = (System.nanoTime() - start) / 1e9
+      gateway.ordersReceived should be(3 * perClient)
+      accepted.get should be > 0L
+      info(f"${3 * perClient / seconds}%.0f orders/s through the gateway")
+      val deadline = System.currentTimeMillis + 10000
+      while (exchange.metrics.tradesAccepted > exchange.watch(stock).quantity + exchange.watch(stock2).quantity && System.currentTimeMillis < deadline) Thread.sleep(10)
+      exchange.metrics.tradesAccepted should be(accepted.get)
+      (exchange.watch(stock).quantity + exchange.watch(stock2).quantity) should be(accepted.get)
+      gateway.stop()
+      exchange.close()
+    }
+
+    "ack every order sent before the client finished, then close" in {
+      val exchange = new SimpleStockExchange(Set[Stock](stock, stock2)).open()
+      val gateway = new OrderGateway(exchange, loopback, OrderEntryProtocol.stocks(exchange.listing), 4096).start()
+      val client = new OrderEntryClient(gateway.localAddress)
+      val count = 20000
+      val sender = new Thread(new Runnable {
+        def run(): Unit = {
+          for (i <- 0 until count) client.buy(i, i % 2, 1, FixedMoney.valueOf(10))
+          client.finish()
+        }
+      })
+      sender.start()
+      collect(client, count).map(_._1) should be((0L until count).toSeq)
+      client.receive(new OrderEntryClient.AckHandler { def onAck(orderId: Long, result: Int): Unit = () }) should be(-1)
+      sender.join()
+      gateway.ordersReceived should be(count)
+      client.close()
+      gateway.stop()
+      exchange.close()
+    }
+
+    "close only the connection whose orders fail in the exchange" in {
+      val exchange = new SimpleStockExchange(Set[Stock](stock, stock2)) {
+        override def offer(batch: OrderBatch, results: Array[OfferResult]): Unit = {
+          if ((0 until batch.size).exists(batch.quantity(_) == 13)) throw new IllegalStateException("unexpected order")
+          super.offer(batch, results)
+        }
+      }.open()
+      val gateway = new OrderGateway(exchange, loopback).start()
+      val failing = new OrderEntryClient(gateway.localAddress)
+      val client = new OrderEntryClient(gateway.localAddress)
+      failing.buy(1, 0, 13, FixedMoney.valueOf(10))
+      failing.flush()
+      failing.receive(new OrderEntryClient.AckHandler { def onAck(orderId: Long, result: Int): Unit = () }) should be(-1)
+      client.buy(2, 0, 10, FixedMoney.valueOf(10))
+      client.flush()
+      collect(client, 1) should be(Seq(2L -> ACCEPTED))
+      gateway.isRunning should be(true)
+      failing.close()
+      client.close()
+      gateway.stop()
+      exchange.close()
+    }
+
+    "require room for at least one order" in {
+      val exchange = new SimpleStockExchange(Set[Stock](stock))
+      an[IllegalArgumentException] should be thrownBy new OrderGateway(exchange, loopback, OrderEntryProtocol.stocks(exchange.listing), ORDER_LENGTH - 1)
+      exchange.close()
+    }
+  }
+
+}
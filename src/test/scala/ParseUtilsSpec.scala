@@ -5,9 +5,13 @@ import java.time.temporal.ChronoUnit
 import java.time.Instant
 import java.math.BigDecimal;
 import me.arturopala.stockexchange.api._
-import me.arturopala.stockexchange.util.ParseUtils
-import me.arturopala.stockexchange.util.Money
+import me.arturopala.stockexchange.util.{ ParseUtils, Money, ListingParseException }
 import me.arturopala.stockexchange.stock._
+import java.nio.file.Files
+import java.nio.channels.Channels
+import java.io.ByteArrayInputStream
+import java.util.concurrent.{ ConcurrentLinkedQueue, ForkJoinPool }
+import collection.JavaConversions._
 
 class ParseUtilsSpec extends WordSpecLike with Matchers with PropertyChecks {
 
@@ -68,6 +72,83 @@ class ParseUtilsSpec extends WordSpecLike with Matchers with PropertyChecks {
       val decimal = ParseUtils.parseDecimal(text, new BigDecimal("18.333"))
       decimal should be(new BigDecimal("18.333"))
     }
+
+    val listingText = Seq(
+      "Symbol\tType\t\tLastDividend\tFixedDividend\tParValue",
+      "TEA\t\tCommon\t\t0\t\t\t\t-\t\t\t\t100",
+      "POP Common 8 - 100",
+      "ALE, Common, 23; -, 60",
+      "",
+      "GIN;Preferred;8;2%;100;",
+      "JOE/Common/13.25/x/250.5\r",
+      "BAR|Preferred|1.5|abc0.125|99.9999",
+      "BAZ Preferred 1 0.5%x 10") mkString "\n"
+
+    def describe(stock: Stock) = (stock.toString, stock.calculateDividendYield(new Money(7)).toString, stock.calculatePERatio(new Money(7)).toString)
+
+    def expectedListing(text: String) = text.split("\n").drop(1).filter(_.trim.nonEmpty).map(ParseUtils.STOCK_PARSER(_)).map(describe).toSet
+
+    "stream listing file in parallel chunks with the same result as the line parser" in {
+      val file = Files.createTempFile("listing", ".txt")
+      try {
+        Files.write(file, listingText.getBytes("utf-8"))
+        for (chunkSize <- Seq(1, 7, 32, 1 << 20)) {
+          val stocks = new ConcurrentLinkedQueue[Stock]()
+          ParseUtils.streamStockListing(file, new java.util.function.Consumer[Stock] { def accept(s: Stock) = stocks.add(s) }, ForkJoinPool.commonPool(), chunkSize)
+          stocks.size should be(7)
+          stocks.map(describe).toSet should be(expectedListing(listingText))
+        }
+        ParseUtils.parseStockListing(file).map(_.symbol).toSet should be(Set("TEA", "POP", "ALE", "GIN", "JOE", "BAR", "BAZ"))
+      } finally {
+        Files.delete(file)
+      }
+    }
+
+    "stream listing from channel with the same result as the line parser" in {
+      val pool = new ForkJoinPool(3)
+      for (chunkSize <- Seq(1, 5, 64, 1 << 20)) {
+        val stocks = new ConcurrentLinkedQueue[Stock]()
+        val channel = Channels.newChannel(new ByteArrayInputStream(listingText.getBytes("utf-8")))
+        ParseUtils.streamStockListing(channel, new java.util.function.Consumer[Stock] { def accept(s: Stock) = stocks.add(s) }, pool, chunkSize)
+        stocks.map(describe).toSet should be(expectedListing(listingText))
+      }
+      pool.shutdown()
+    }
+
+    "number invalid lines across chunks joined while reading" in {
+      val pool = new ForkJoinPool(1)
+      val text = ("header" +: (1 until 200).map(i => if (i % 50 == 0) s"BAD$i Common 1" else s"S$i Common 1 - 10")).mkString("\n")
+      val stocks = new ConcurrentLinkedQueue[Stock]()
+      val channel = Channels.newChannel(new ByteArrayInputStream(text.getBytes("utf-8")))
+      val e = the[ListingParseException] thrownBy ParseUtils.streamStockListing(channel, new java.util.function.Consumer[Stock] { def accept(s: Stock) = stocks.add(s) }, pool, 16)
+      e.errors.map(_.line) should be(Seq(51L, 101L, 151L))
+      stocks.size should be(196)
+      pool.shutdown()
+    }
+
+    "parse many generated lines" in {
+      val text = "header\n" + (0 until 10000).map(i => s"S$i;${if (i % 2 == 0) "Common" else "Preferred"};${i % 17}.${i % 10};${i % 5}%;${i % 300 + 1}").mkString("\n")
+      val stocks = ParseUtils.parseStockListing(new ByteArrayInputStream(text.getBytes("utf-8")))
+      stocks.size should be(10000)
+      stocks.map(describe).toSet should be(expectedListing(text))
+    }
+
+    "report invalid lines with line numbers" in {
+      val text = Seq("header", "ALE Common 23 - 60", "BAD Common 1", "", "FOO Ordinary 1 2 3", "GIN Preferred 8 2% 100") mkString "\n"
+      for (chunkSize <- Seq(1, 10, 1 << 20)) {
+        val stocks = new ConcurrentLinkedQueue[Stock]()
+        val channel = Channels.newChannel(new ByteArrayInputStream(text.getBytes("utf-8")))
+        val e = the[ListingParseException] thrownBy ParseUtils.streamStockListing(channel, new java.util.function.Consumer[Stock] { def accept(s: Stock) = stocks.add(s) }, ForkJoinPool.commonPool(), chunkSize)
+        e.errors.map(_.line) should be(Seq(3L, 5L))
+        e.errors.get(1).reason should include("Ordinary")
+        e.getMessage should include("line 3")
+        stocks.map(_.symbol).toSet should be(Set("ALE", "GIN"))
+        val bytes = new java.io.ByteArrayOutputStream()
+        new java.io.ObjectOutputStream(bytes).writeObject(e)
+        val copy = new java.io.ObjectInputStream(new java.io.ByteArrayInputStream(bytes.toByteArray)).readObject().asInstanceOf[ListingParseException]
+        copy.errors.map(_.line) should be(Seq(3L, 5L))
+      }
+    }
   }
 
 }
\ No newline at end of file
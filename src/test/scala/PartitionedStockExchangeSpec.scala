@@ -0,0 +1,171 @@
+import org.scalatest.{ WordSpecLike, Matchers }
+import java.time.{ Duration, Instant }
+import akka.actor.ActorSystem
+import com.typesafe.config.ConfigFactory
+import me.arturopala.stockexchange.api._
+import me.arturopala.stockexchange.stock._
+import me.arturopala.stockexchange.util.{ Money, FixedMoney }
+import me.arturopala.stockexchange.journal.{ TradeJournal, FileSnapshotStore }
+import me.arturopala.stockexchange.partition._
+import collection.JavaConversions._
+
+class PartitionedStockExchangeSpec extends WordSpecLike with Matchers {
+
+  val stocks: Seq[Stock] = (1 to 200).map(i => new CommonStock("S" + i, new Money(10 + i % 7), new Money(i % 5)))
+  val listing = new java.util.HashSet[Stock](stocks)
+
+  // nodes in one JVM, each on its own actor system with regular dispatchers
+  def actorSystem(name: String) = ActorSystem(name, ConfigFactory
+    .parseString("akka.actor.deployment { \"/*\" { dispatcher = akka.actor.default-dispatcher } }")
+    .withFallback(ConfigFactory.load()))
+
+  def eventually(condition: => Boolean): Unit = {
+    val deadline = System.nanoTime() + 5000000000L
+    while (!condition && System.nanoTime() < deadline) Thread.sleep(10)
+    condition should be(true)
+  }
+
+  "A Partitioning" should {
+
+    "assign every stock to one partition, the same way every time" in {
+      val partitioning = new Partitioning(listing, 4)
+      val again = new Partitioning(listing, 4)
+      (0 until 4).map(p => partitioning.listing(p).size).sum should be(200)
+      for (stock <- stocks) {
+        val id = partitioning.id(stock)
+        partitioning.stock(id) should be(stock)
+        partitioning.partitionOf(id) should be(partitioning.partitionOf(stock.symbol))
+        again.partitionOf(again.id(stock)) should be(partitioning.partitionOf(id))
+        partitioning.listing(partitioning.partitionOf(id)) should contain(stock)
+      }
+      partitioning.id(new CommonStock("NONE", new Money(1), new Money(1))) should be(-1)
+    }
+
+    "spread stocks evenly" in {
+      val partitioning = new Partitioning(listing, 4)
+      for (p <- 0 until 4) partitioning.listing(p).size should be(50 +- 25)
+    }
+
+    "move only stocks of the added partition when scaling out" in {
+      val before = new Partitioning(listing, 4)
+      val after = new Partitioning(listing, 5)
+      val moved = stocks.filter(s => before.partitionOf(s.symbol) != after.partitionOf(s.symbol))
+      moved.foreach(s => after.partitionOf(s.symbol) should be(4))
+      moved.size should be(40 +- 25)
+    }
+  }
+
+  "A PartitionedStockExchange" should {
+
+    "route orders to partition nodes and aggregate the all share index" in {
+      val nodeSystems = (0 until 3).map(p => actorSystem("node-" + p))
+      val nodes = nodeSystems.zipWithIndex.map { case (system, p) => new PartitionNode(listing, 3, p, system).open() }
+      val system = actorSystem("front-end")
+      val exchange = new PartitionedStockExchange(listing, system, nodes.map(_.ref))
+      exchange.open()
+      val traded = stocks.take(30)
+      for ((stock, i) <- traded.zipWithIndex) {
+        exchange.buy(stock, 10, new Money(10 + i))
+        exchange.sell(stock, 30, new Money(20 + i))
+      }
+      exchange.offerBuy(stocks(0), 0, new Money(10)) should be(OfferResult.INVALID)
+      exchange.offerBuy(new CommonStock("NONE", new Money(1), new Money(1)), 10, new Money(10)) should be(OfferResult.INVALID)
+      eventually(traded.forall(stock => exchange.watch(stock).quantity == 40))
+      val prices = traded.zipWithIndex.map { case (stock, i) => (10.0 * (10 + i) + 30.0 * (20 + i)) / 40 }
+      for ((stock, price) <- traded.zip(prices)) FixedMoney.doubleValue(FixedMoney.valueOf(exchange.watch(stock).price)) should be(price +- 1e-3)
+      eventually(Math.abs(exchange.allShareIndex - Math.exp(prices.map(Math.log).sum / prices.size)) < 1e-6)
+      traded.map(stock => exchange.partitioning.partitionOf(stock.symbol)).toSet.size should be(3)
+      val snapshot = exchange.snapshot()
+      snapshot.stocks.size should be(200)
+      traded.foreach(stock => snapshot.ticker(stock).quantity should be(40))
+      snapshot.allShareIndex should be(exchange.allShareIndex +- 1e-6)
+
+      val metrics = exchange.metrics()
+      metrics.tradesAccepted should be(60)
+      metrics.tradesRejected should be(2)
+      metrics.queued should be(0)
+      val summary = exchange.history(traded(1), Instant.now().minusSeconds(60), Instant.now().plusSeconds(1))
+      summary.trades should be(2)
+      summary.quantity should be(40)
+      exchange.candles(traded(1), Resolution.MINUTE, 5).map(_.trades).sum should be(2)
+      exchange.candles(new CommonStock("NONE", new Money(1), new Money(1)), Resolution.MINUTE, 5) should be(empty)
+      exchange.occupancy(traded(1)) should be(0.0)
+
+      exchange.close()
+      an[StockExchangeClosedException] should be thrownBy exchange.buy(traded(0), 10, new Money(20))
+      nodes.foreach(_.close())
+      (nodeSystems :+ system).foreach(_.shutdown())
+    }
+
+    "connect to nodes by path and push mirrored ticker updates to subscribers" in {
+      val system = actorSystem("node-single")
+      val node = new PartitionNode(listing, 1, 0, system).open()
+      an[IllegalStateException] should be thrownBy PartitionedStockExchange.connect(listing, system, Seq("/user/none"), Duration.ofMillis(200))
+      val exchange = PartitionedStockExchange.connect(listing, system, Seq(PartitionNode.PATH), Duration.ofSeconds(1))
+      exchange.open()
+      val updates = new java.util.concurrent.LinkedBlockingQueue[Money]()
+      val subscription = exchange.subscribe(stocks(5), new TickerListener {
+        def onUpdate(ticker: Ticker): Unit = updates.put(ticker.price)
+      })
+      exchange.buy(stocks(5), 10, new Money(42))
+      eventually(updates.exists(price => price.isDefined && price == new Money(42)))
+      subscription.cancel()
+      exchange.close()
+      node.close()
+      system.shutdown()
+    }
+
+    "journal trades of a node to its own journal and recover them on restart" in {
+      val directory = java.nio.file.Files.createTempDirectory("partition-journal")
+      def options(journal: TradeJournal) = new ExchangeOptions.Builder().journal(journal)
+        .snapshots(new FileSnapshotStore(directory.resolve("snapshots"))).build()
+      val system = actorSystem("node-journal")
+      val journal = new TradeJournal(directory)
+      val node = new PartitionNode(new Partitioning(listing, 1), 0, system, options(journal)).open()
+      val exchange = PartitionedStockExchange.connect(listing, system, Seq(PartitionNode.PATH), Duration.ofSeconds(1))
+      exchange.open()
+      exchange.buy(stocks(7), 10, new Money(42))
+      eventually(journal.stats.appends == 1)
+      exchange.close()
+      node.close()
+      journal.close()
+      system.shutdown()
+      val restartedSystem = actorSystem("node-journal-restarted")
+      val reopened = new TradeJournal(directory)
+      val restarted = new PartitionNode(new Partitioning(listing, 1), 0, restartedSystem, options(reopened)).open()
+      restarted.exchange.watch(stocks(7)).price should be(new Money(42))
+      restarted.close()
+      reopened.close()
+      restartedSystem.shutdown()
+    }
+
+    "count orders dropped by a full node and reject invalid batch orders without failing the batch" in {
+      val system = actorSystem("node-dropping")
+      val node = system.actorOf(akka.actor.Props.create(classOf[DroppingNode]))
+      val exchange = new PartitionedStockExchange(listing, system, java.util.Collections.singletonList(node))
+      exchange.open()
+      exchange.offerBuy(stocks(0), 10, new Money(10)) should be(OfferResult.ACCEPTED)
+      exchange.sell(stocks(1), 10, new Money(10))
+      val batch = new OrderBatch().buy(stocks(2), 10, FixedMoney.valueOf(10)).buy(stocks(2), 10, -FixedMoney.valueOf(10))
+        .sell(stocks(2), 10, FixedMoney.UNDEFINED)
+      val results = new Array[OfferResult](batch.size)
+      exchange.offer(batch, results)
+      results.toList should be(List(OfferResult.ACCEPTED, OfferResult.INVALID, OfferResult.INVALID))
+      eventually(exchange.dropped == 3)
+      exchange.submit(new OrderBatch().buy(stocks(2), 10, -FixedMoney.valueOf(10)).sell(stocks(2), 10, FixedMoney.UNDEFINED)
+        .buy(stocks(2), 10, FixedMoney.valueOf(10)))
+      eventually(exchange.dropped == 4)
+      exchange.close()
+      system.shutdown()
+    }
+  }
+
+}
+
+/** Node replying to every order that the stock queue was full. */
+class DroppingNode extends akka.actor.UntypedActor {
+  def onReceive(message: Any): Unit = message match {
+    case order: PartitionProtocol.Order => sender().tell(new PartitionProtocol.Dropped(order.stock), self)
+    case _ =>
+  }
+}
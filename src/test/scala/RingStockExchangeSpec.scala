@@ -0,0 +1,257 @@
+import org.scalatest.{ WordSpecLike, Matchers }
+import org.scalatest.prop.PropertyChecks
+import java.time.{ Clock, Duration, Instant, ZoneId }
+import java.math.BigDecimal;
+import me.arturopala.stockexchange.api._
+import me.arturopala.stockexchange.stock._
+import me.arturopala.stockexchange.util.{ Money, FixedMoney }
+import me.arturopala.stockexchange.ringimpl._
+import me.arturopala.stockexchange.journal.Journal
+import me.arturopala.stockexchange.gbce.GBCE
+import collection.JavaConversions._
+
+class RingStockExchangeSpec extends WordSpecLike with Matchers with PropertyChecks {
+
+  val stock = new CommonStock("COMM", new Money(100), new Money(10))
+  val stock2 = new PreferredStock("PREF", new Money(100), new Money(10), new BigDecimal("0.2"))
+
+  class MutableClock(@volatile var now: Instant) extends Clock {
+    def getZone(): ZoneId = ZoneId.of("UTC")
+    def withZone(zone: ZoneId): Clock = this
+    def instant(): Instant = now
+  }
+
+  "A TradeRing" should {
+
+    "publish claimed slots in sequence" in {
+      val ring = new TradeRing(8)
+      val s0 = ring.tryClaim(1, 8)
+      val s1 = ring.tryClaim(1, 8)
+      s0 should be(0)
+      s1 should be(1)
+      ring.write(s1, 7, true, 10, 100, 1000)
+      ring.publish(s1)
+      ring.highestPublished(0) should be(-1)
+      ring.write(s0, 3, false, 20, 200, 2000)
+      ring.publish(s0)
+      ring.highestPublished(0) should be(1)
+      ring.stockId(0) should be(3)
+      ring.isBuy(1) should be(true)
+      ring.quantity(1) should be(10)
+      ring.price(1) should be(100)
+      ring.timestamp(0) should be(2000)
+    }
+
+    "not let producers overwrite unconsumed slots" in {
+      val ring = new TradeRing(4)
+      for (i <- 0 until 4) ring.publish(ring.tryClaim(1, 16))
+      ring.tryClaim(1, 16) should be(-1)
+      ring.release(0)
+      ring.tryClaim(1, 16) should be(4)
+    }
+
+    "claim slots without waiting only up to the limit" in {
+      val ring = new TradeRing(8)
+      ring.tryClaim(2, 3) should be(1)
+      ring.tryClaim(1, 3) should be(2)
+      ring.tryClaim(1, 3) should be(-1)
+      ring.release(0)
+      ring.tryClaim(1, 3) should be(3)
+      ring.tryClaim(1, 16) should be(4)
+      ring.tryClaim(5, 16) should be(-1)
+    }
+
+    "refuse claims once sealed and continue after unsealing" in {
+      val ring = new TradeRing(8)
+      ring.tryClaim(2, 8) should be(1)
+      ring.seal() should be(1)
+      ring.isSealed should be(true)
+      ring.claimed() should be(1)
+      ring.tryClaim(1, 8) should be(-1)
+      ring.seal() should be(1)
+      ring.publish(0)
+      ring.publish(1)
+      ring.highestPublished(0) should be(1)
+      ring.unseal()
+      ring.isSealed should be(false)
+      ring.tryClaim(1, 8) should be(2)
+    }
+
+    "require power of 2 size" in {
+      an[IllegalArgumentException] should be thrownBy new TradeRing(6)
+    }
+  }
+
+  "A RingStockExchange" should {
+
+    "allow to sell, buy and watch stocks when open" in {
+      val exchange = new RingStockExchange(Set[Stock](stock, stock2), new ExchangeOptions.Builder().partitions(2).ringSize(1024).build()).open()
+      val ticker1 = exchange.watch(stock)
+      val ticker2 = exchange.watch(stock2)
+      for (i <- 1 to 10) {
+        exchange.sell(stock, 10 - i, new Money(10 + i))
+        exchange.buy(stock2, 10 + i, new Money(10 - i))
+      }
+      Thread.sleep(500);
+      ticker1.price() should be(Money.parse("13.6667"))
+      ticker2.price() should be(Money.parse("4.5556"))
+      exchange.allShareIndex() should be(Math.sqrt(13.6667 * 4.5556) +- 1e-3)
+      exchange.close()
+      an[StockExchangeClosedException] should be thrownBy exchange.sell(stock, 15, new Money(20))
+    }
+
+    "accept batch of orders" in {
+      val exchange = new RingStockExchange(Set[Stock](stock, stock2),
+        new ExchangeOptions.Builder().partitions(1).ringSize(16).admission(Admission.block(16, Duration.ofSeconds(5))).build()).open()
+      val batch = new OrderBatch()
+      for (i <- 1 to 100) batch.sell(stock, 10, new Money(20)).buy(stock2, 5, new Money(7))
+      exchange.submit(batch)
+      Thread.sleep(500);
+      exchange.watch(stock).quantity() should be(1000)
+      exchange.watch(stock2).volume() should be(new Money(3500))
+      exchange.close()
+    }
+
+    "offer orders without waiting and report ring occupancy" in {
+      val exchange = new RingStockExchange(Set[Stock](stock, stock2),
+        new ExchangeOptions.Builder().partitions(1).ringSize(16).admission(Admission.reject(8)).build()).open()
+      exchange.offerSell(stock, 10, new Money(20)) should be(OfferResult.ACCEPTED)
+      exchange.offerBuy(stock2, 0, new Money(20)) should be(OfferResult.INVALID)
+      exchange.offerBuy(new CommonStock("NONE", new Money(1), new Money(1)), 10, new Money(20)) should be(OfferResult.INVALID)
+      // trades leave the queue count before their ring slots are released
+      while (exchange.metrics().queued > 0 || exchange.occupancy(stock) > 0) Thread.sleep(10)
+      exchange.occupancy(stock) should be(0.0)
+      exchange.watch(stock).quantity() should be(10)
+      exchange.close()
+      an[StockExchangeClosedException] should be thrownBy exchange.offerSell(stock, 15, new Money(20))
+    }
+
+    "consume every trade accepted before close" in {
+      val exchange = new RingStockExchange(Set[Stock](stock, stock2), new ExchangeOptions.Builder().partitions(2).ringSize(64).build())
+      exchange.open()
+      val accepted = new java.util.concurrent.atomic.AtomicLong()
+      val producers = (1 to 4).map(i => new Thread(new Runnable {
+        def run(): Unit = try {
+          while (true) {
+            if (exchange.offerBuy(if (i % 2 == 0) stock else stock2, 1, new Money(10)) == OfferResult.ACCEPTED) accepted.incrementAndGet()
+          }
+        } catch {
+          case e: StockExchangeClosedException =>
+        }
+      }))
+      producers.foreach(_.start())
+      Thread.sleep(200)
+      exchange.close()
+      producers.foreach(_.join())
+      exchange.backlog() should be(0)
+      (exchange.watch(stock).quantity() + exchange.watch(stock2).quantity()) should be(accepted.get)
+    }
+
+    "expire trades older than calculation period" in {
+      val clock = new MutableClock(Instant.now())
+      val exchange = new RingStockExchange(Set[Stock](stock),
+        new ExchangeOptions.Builder().clock(clock).priceCalculationPeriod(Duration.ofSeconds(60)).partitions(1).ringSize(64).build()).open()
+      exchange.sell(stock, 10, new Money(20))
+      clock.now = clock.now.plusSeconds(30)
+      exchange.buy(stock, 10, new Money(40))
+      Thread.sleep(300);
+      exchange.watch(stock).price() should be(new Money(30))
+      clock.now = clock.now.plusSeconds(45)
+      Thread.sleep(1500);
+      exchange.watch(stock).price() should be(new Money(40))
+      exchange.close()
+    }
+
+    "push ticker updates to subscribers" in {
+      val exchange = new RingStockExchange(Set[Stock](stock, stock2), new ExchangeOptions.Builder().partitions(2).ringSize(64).build()).open()
+      val updates = new java.util.concurrent.LinkedBlockingQueue[Ticker]()
+      val subscription = exchange.subscribe(stock2, new TickerListener { def onUpdate(ticker: Ticker): Unit = updates.put(ticker) })
+      updates.poll(5, java.util.concurrent.TimeUnit.SECONDS).price should be(Money.UNDEFINED)
+      exchange.buy(stock2, 5, new Money(7))
+      val update = updates.poll(5, java.util.concurrent.TimeUnit.SECONDS)
+      update.price should be(new Money(7))
+      update.quantity should be(5)
+      subscription.cancel()
+      exchange.close()
+    }
+
+    "take market snapshots" in {
+      val exchange = new RingStockExchange(Set[Stock](stock, stock2), new ExchangeOptions.Builder().partitions(2).ringSize(64).build()).open()
+      exchange.sell(stock, 10, new Money(20))
+      exchange.buy(stock2, 10, new Money(5))
+      while (exchange.watch(stock).quantity < 10 || exchange.watch(stock2).quantity < 10) Thread.sleep(10)
+      val snapshot = exchange.snapshot()
+      snapshot.stocks.toList should be(List(stock, stock2))
+      snapshot.ticker(stock2).price should be(new Money(5))
+      snapshot.allShareIndex should be(10d +- 1e-9)
+      exchange.snapshot().epoch should be(snapshot.epoch)
+      exchange.close()
+    }
+
+    "record trade counters and latencies" in {
+      val exchange = new RingStockExchange(Set[Stock](stock, stock2), new ExchangeOptions.Builder().partitions(2).ringSize(64)
+        .admission(Admission.block(64, Duration.ofSeconds(5))).build()).open()
+      for (i <- 1 to 100) exchange.sell(stock, 1, new Money(10))
+      exchange.buy(stock2, -1, new Money(10))
+      while (exchange.metrics().queued > 0 || exchange.watch(stock).quantity < 100) Thread.sleep(10)
+      Thread.sleep(1200)
+      val metrics = exchange.metrics()
+      metrics.tradesAccepted should be(100)
+      metrics.tradesRejected should be(1)
+      metrics.queued should be(0)
+      metrics.tradeToPublish.count should be(100)
+      metrics.queueDepth.count should be > 0L
+      metrics.tickDelay.count should be > 0L
+      exchange.close()
+    }
+
+    "reject trades overflowing the ticker totals without changing the ticker" in {
+      val exchange = new RingStockExchange(Set[Stock](stock, stock2), new ExchangeOptions.Builder().partitions(2).ringSize(64).build()).open()
+      exchange.sell(stock, 10, new Money(20))
+      exchange.buy(stock, 1000000, new Money(new BigDecimal("100000000000")))
+      exchange.sell(stock, 10, new Money(10))
+      while (exchange.metrics().queued > 0 || exchange.watch(stock).quantity < 20) Thread.sleep(10)
+      exchange.metrics().tradesRejected should be(1)
+      exchange.watch(stock).quantity should be(20)
+      exchange.watch(stock).price should be(Money.parse("15"))
+      exchange.close()
+    }
+
+    "recover prices after restart and checkpoint the journal" in {
+      import me.arturopala.stockexchange.journal.{ TradeJournal, FileSnapshotStore }
+      val directory = java.nio.file.Files.createTempDirectory("ring-journal")
+      val listing = Set[Stock](stock, stock2)
+      val journal = new TradeJournal(directory, TradeJournal.FsyncPolicy.NEVER)
+      val snapshots = new FileSnapshotStore(directory.resolve("snapshots"), Duration.ofMillis(10))
+      val exchange = new RingStockExchange(listing, new ExchangeOptions.Builder().partitions(2).ringSize(64)
+        .journal(journal).snapshots(snapshots).build()).open()
+      exchange.sell(stock, 100, new Money(10))
+      exchange.buy(stock, 110, new Money(20))
+      exchange.sell(stock2, 50, new Money(5))
+      while (exchange.watch(stock).quantity < 210 || exchange.watch(stock2).quantity < 50) Thread.sleep(10)
+      while (snapshots.checkpoint < journal.position) Thread.sleep(10)
+      exchange.close()
+      snapshots.checkpoint should be(journal.position)
+      journal.close()
+
+      val restarted = new RingStockExchange(listing, new ExchangeOptions.Builder().partitions(2).ringSize(64)
+        .journal(new TradeJournal(directory, TradeJournal.FsyncPolicy.NEVER)).snapshots(new FileSnapshotStore(directory.resolve("snapshots"))).build())
+      restarted.watch(stock).price should be(Money.UNDEFINED)
+      restarted.open()
+      restarted.watch(stock).price should be(Money.parse("15.2381"))
+      restarted.watch(stock).quantity should be(210)
+      restarted.watch(stock2).price should be(new Money(5))
+      restarted.close()
+      restarted.open()
+      restarted.watch(stock).quantity should be(210)
+      restarted.close()
+    }
+
+    "be selectable as GBCE engine" in {
+      val exchange = GBCE.stockExchange(GBCE.Engine.RING, Clock.systemUTC(), Duration.ofMinutes(15), null)
+      exchange shouldBe a[RingStockExchange]
+      exchange.listing().toSet should contain theSameElementsAs GBCE.LISTING
+    }
+  }
+
+}
@@ -6,7 +6,7 @@ import java.time.Instant
 import java.math.BigDecimal;
 import me.arturopala.stockexchange.api._
 import me.arturopala.stockexchange.stock._
-import me.arturopala.stockexchange.util.Money
+import me.arturopala.stockexchange.util.{ Money, FixedMoney }
 import collection.JavaConversions._
 import me.arturopala.stockexchange.gbce.GBCE
 import me.arturopala.stockexchange.simpleimpl._
@@ -121,6 +121,23 @@ class StockExchangeSpec extends WordSpecLike with Matchers with PropertyChecks {
       system.shutdown()
     }
 
+    "receive TradeBatch message and calculate current price once" in {
+      implicit val system = ActorSystem()
+      val stockInfoRef = new AtomicReference[StockInfo](new StockInfo())
+      val props = Props(classOf[TickerActor], stock, stockInfoRef)
+      val actor = TestActorRef(props)
+      val batch = new TradeBatch.Builder(Instant.now(), stock)
+        .add(TradeType.SELL, 100, FixedMoney.valueOf(10))
+        .add(TradeType.BUY, 110, FixedMoney.valueOf(20))
+        .add(TradeType.SELL, 120, FixedMoney.valueOf(30))
+        .build()
+      actor ! batch
+      stockInfoRef.get.price should be(Money.parse("20.6061"))
+      stockInfoRef.get.quantity should be(330)
+      stockInfoRef.get.volume should be(new Money(6800))
+      system.shutdown()
+    }
+
     "receive Trade and Tick messages in any order" in {
       implicit val system = ActorSystem()
       val stockInfoRef = new AtomicReference[StockInfo](new StockInfo())
@@ -200,6 +217,22 @@ class StockExchangeSpec extends WordSpecLike with Matchers with PropertyChecks {
       exchange.close()
     }
 
+    "accept batch of orders for many stocks" in {
+      val listing = Set[Stock](stock, stock2)
+      val exchange = new SimpleStockExchange(listing).open()
+      val batch = new OrderBatch()
+      for (i <- 1 to 10) {
+        batch.sell(stock, 10 - i, new Money(10 + i))
+        batch.buy(stock2, 10 + i, new Money(10 - i))
+      }
+      exchange.submit(batch)
+      Thread.sleep(1000);
+      exchange.watch(stock).price() should be(Money.parse("13.6667"))
+      exchange.watch(stock2).price() should be(Money.parse("4.5556"))
+      exchange.close()
+      an[StockExchangeClosedException] should be thrownBy exchange.submit(batch)
+    }
+
     "do not allow to sell or buy when closed" in {
       val listing = Set[Stock](stock, stock2)
       val exchange = new SimpleStockExchange(listing)
@@ -219,10 +252,490 @@ class StockExchangeSpec extends WordSpecLike with Matchers with PropertyChecks {
       Thread.sleep(1000);
       ticker1.price() should be(Money.parse("20"))
       ticker2.price() should be(Money.parse("7"))
-      exchange.asInstanceOf[SimpleStockExchange].calculateAllShareIndex() should be(11.832159566199232d)
+      exchange.asInstanceOf[SimpleStockExchange].calculateAllShareIndex().doubleValue should be(11.832159566199232d +- 1e-9)
+      exchange.allShareIndex() should be(11.832159566199232d +- 1e-9)
+      exchange.close()
+    }
+
+    "update all share index incrementally with every price change" in {
+      val stock3 = new CommonStock("EXT", new Money(18), new Money(5))
+      val listing = Set[Stock](stock, stock2, stock3)
+      val exchange = new SimpleStockExchange(listing).open()
+      java.lang.Double.isNaN(exchange.allShareIndex()) should be(true)
+      exchange.sell(stock, 15, new Money(20))
+      Thread.sleep(200);
+      exchange.allShareIndex() should be(20d +- 1e-9)
+      exchange.buy(stock2, 100, new Money(7))
+      exchange.buy(stock3, 100, new Money(50))
+      Thread.sleep(200);
+      exchange.allShareIndex() should be(Math.cbrt(20d * 7 * 50) +- 1e-9)
+      exchange.allShareIndex() should be(exchange.asInstanceOf[SimpleStockExchange].calculateAllShareIndex().doubleValue)
+      exchange.close()
+    }
+
+  }
+
+
+  "A market snapshot" should {
+
+    "hold a consistent view of all tickers and the index, with epochs advancing on change" in {
+      val others = (1 to 600).map(i => new CommonStock("S" + i, new Money(1), new Money(1)))
+      val exchange = new SimpleStockExchange(Set[Stock](stock, stock2) ++ others).open()
+      val empty = exchange.snapshot()
+      empty.stocks.size should be(602)
+      empty.stocks.map(_.symbol) should be(empty.stocks.map(_.symbol).sorted)
+      java.lang.Double.isNaN(empty.allShareIndex) should be(true)
+      exchange.snapshot() should be theSameInstanceAs (empty)
+
+      exchange.sell(stock, 15, new Money(20))
+      exchange.buy(others(599), 100, new Money(7))
+      while (exchange.watch(others(599)).quantity < 100) Thread.sleep(10)
+      val first = exchange.snapshot()
+      first.epoch should be > empty.epoch
+      first.ticker(stock).price should be(new Money(20))
+      first.ticker(stock).quantity should be(15)
+      first.ticker(stock).dividendYield should be(0.5)
+      first.ticker(stock).peRatio should be(2.0)
+      first.ticker(others(599)).price should be(new Money(7))
+      first.ticker(stock2).price.isDefined should be(false)
+      first.ticker(new CommonStock("NONE", new Money(1), new Money(1))) should be(null)
+      first.allShareIndex should be(Math.sqrt(20d * 7) +- 1e-9)
+      first.tickers.map(_.stock).toList should be(first.stocks.toList)
+
+      exchange.buy(stock, 5, new Money(40))
+      while (exchange.watch(stock).quantity < 20) Thread.sleep(10)
+      val second = exchange.snapshot()
+      second.epoch should be > first.epoch
+      second.ticker(stock).price should be(new Money(25))
+      second.allShareIndex should be(Math.sqrt(25d * 7) +- 1e-9)
+      second.allShareIndex should be(exchange.allShareIndex +- 1e-9)
+      second.ticker(stock).dividendYield should be(0.4)
+      first.ticker(stock).price should be(new Money(20))
+      first.ticker(stock).quantity should be(15)
+      first.ticker(stock).dividendYield should be(0.5)
+
+      exchange.delist(others(599)) should be(true)
+      val third = exchange.snapshot()
+      third.epoch should be > second.epoch
+      third.stocks.size should be(601)
+      third.allShareIndex should be(25d +- 1e-9)
+      exchange.close()
+    }
+  }
+
+  "A ticker subscription" should {
+
+    import java.util.concurrent.{ Executors, CountDownLatch, LinkedBlockingQueue, TimeUnit }
+
+    def collect(queue: LinkedBlockingQueue[Ticker]) = new TickerListener { def onUpdate(ticker: Ticker): Unit = queue.put(ticker) }
+
+    "push current state and every price change to the listener" in {
+      val exchange = new SimpleStockExchange(Set[Stock](stock, stock2)).open()
+      val updates = new LinkedBlockingQueue[Ticker]()
+      val subscription = exchange.subscribe(stock, collect(updates))
+      updates.poll(5, TimeUnit.SECONDS).price should be(Money.UNDEFINED)
+      exchange.sell(stock, 10, new Money(20))
+      val update = updates.poll(5, TimeUnit.SECONDS)
+      update.stock should be(stock)
+      update.price should be(new Money(20))
+      update.quantity should be(10)
+      update.volume should be(new Money(200))
+      subscription.cancel()
+      subscription.isCancelled should be(true)
+      exchange.sell(stock, 10, new Money(30))
+      Thread.sleep(200)
+      updates.poll(100, TimeUnit.MILLISECONDS) should be(null)
+      exchange.close()
+    }
+
+    "deliver every change of a state read from a reference, skipping repeated ones" in {
+      val direct = new java.util.concurrent.Executor { def execute(task: Runnable): Unit = task.run() }
+      val stockInfoRef = new AtomicReference[StockInfo](new StockInfo())
+      val topic = new TickerTopic(stock, stockInfoRef, direct)
+      val updates = new LinkedBlockingQueue[Ticker]()
+      val subscription = new TickerSubscriber(java.util.Collections.singleton(topic), collect(updates), direct)
+      stockInfoRef.set(new StockInfo(FixedMoney.valueOf(10), 5, FixedMoney.valueOf(50)))
+      topic.publish()
+      topic.publish()
+      stockInfoRef.set(new StockInfo(FixedMoney.valueOf(12), 6, FixedMoney.valueOf(62)))
+      topic.publish()
+      updates.toList.map(_.quantity) should be(List(0, 5, 6))
+      subscription.cancel()
+    }
+
+    "conflate updates for a slow listener" in {
+      val executor = Executors.newFixedThreadPool(2)
+      val stockInfoRef = new AtomicReference[StockInfo](new StockInfo())
+      val topic = new TickerTopic(stock, stockInfoRef, executor)
+      val state = new TickerState(stockInfoRef, new AllShareIndex(), topic)
+      val started = new CountDownLatch(1)
+      val release = new CountDownLatch(1)
+      val updates = new LinkedBlockingQueue[Ticker]()
+      val subscriber = new TickerSubscriber(java.util.Collections.singleton(topic), new TickerListener {
+        def onUpdate(ticker: Ticker): Unit = {
+          started.countDown()
+          release.await()
+          updates.put(ticker)
+        }
+      }, executor)
+      started.await(5, TimeUnit.SECONDS) should be(true)
+      for (i <- 1 to 1000) {
+        state.add(i, FixedMoney.valueOf(10), 1)
+        state.publish()
+      }
+      release.countDown()
+      updates.poll(5, TimeUnit.SECONDS).quantity should be(0)
+      val latest = updates.poll(5, TimeUnit.SECONDS)
+      latest.quantity should be(1000)
+      updates.poll(200, TimeUnit.MILLISECONDS) should be(null)
+      subscriber.cancel()
+      topic.subscribers should be(0)
+      executor.shutdown()
+    }
+
+    "cancel subscription when listener throws" in {
+      val stockInfoRef = new AtomicReference[StockInfo](new StockInfo())
+      val topic = new TickerTopic(stock, stockInfoRef, java.util.concurrent.ForkJoinPool.commonPool())
+      val subscriber = new TickerSubscriber(java.util.Collections.singleton(topic), new TickerListener {
+        def onUpdate(ticker: Ticker): Unit = throw new IllegalStateException("listener failure")
+      }, java.util.concurrent.ForkJoinPool.commonPool())
+      val deadline = System.currentTimeMillis + 5000
+      while (!subscriber.isCancelled && System.currentTimeMillis < deadline) Thread.sleep(10)
+      subscriber.isCancelled should be(true)
+      topic.subscribers should be(0)
+    }
+
+    "deliver latest state to thousands of subscribers" in {
+      val exchange = new SimpleStockExchange(Set[Stock](stock, stock2)).open()
+      val latest = new java.util.concurrent.ConcurrentHashMap[(Int, Stock), Ticker]()
+      val subscriptions = (0 until 2000).map { i =>
+        exchange.subscribe(java.util.Arrays.asList[Stock](stock, stock2), new TickerListener {
+          def onUpdate(ticker: Ticker): Unit = latest.put((i, ticker.stock), ticker)
+        })
+      }
+      for (i <- 1 to 100) {
+        exchange.sell(stock, 1, new Money(10))
+        exchange.buy(stock2, 2, new Money(20))
+      }
+      val deadline = System.currentTimeMillis + 10000
+      def done = latest.size == 4000 && latest.values.forall(t => t.quantity == (if (t.stock == stock) 100 else 200))
+      while (!done && System.currentTimeMillis < deadline) Thread.sleep(50)
+      done should be(true)
+      subscriptions.foreach(_.cancel())
+      exchange.close()
+    }
+  }
+
+  "A candle history" should {
+
+    "aggregate trades of the stock" in {
+      val exchange = new SimpleStockExchange(Set[Stock](stock, stock2)).open()
+      exchange.sell(stock, 10, new Money(20))
+      exchange.buy(stock, 30, new Money(10))
+      while (exchange.watch(stock).quantity < 40) Thread.sleep(10)
+      val candles = exchange.candles(stock, Resolution.FIFTEEN_MINUTES, 5)
+      candles.size should be(1)
+      candles.head.high should be(new Money(20))
+      candles.head.low should be(new Money(10))
+      candles.head.quantity should be(40)
+      candles.head.trades should be(2)
+      exchange.candles(stock2, Resolution.MINUTE, 5) should be(empty)
+      exchange.candles(new CommonStock("NONE", new Money(1), new Money(1)), Resolution.MINUTE, 5) should be(empty)
+      exchange.close()
+    }
+  }
+
+  "A trade history" should {
+
+    "summarize trades of the stock within a range" in {
+      val exchange = new SimpleStockExchange(Set[Stock](stock, stock2)).open()
+      val start = Instant.now()
+      exchange.sell(stock, 10, new Money(20))
+      exchange.buy(stock, 30, new Money(10))
+      while (exchange.watch(stock).quantity < 40) Thread.sleep(10)
+      val summary = exchange.history(stock, start, Instant.now().plusSeconds(1))
+      summary.trades should be(2)
+      summary.quantity should be(40)
+      summary.volume should be(new Money(500))
+      summary.vwap should be(Money.parse("12.5"))
+      summary.low should be(new Money(10))
+      summary.high should be(new Money(20))
+      exchange.history(stock, start.minusSeconds(60), start).trades should be(0)
+      exchange.history(stock2, start, Instant.now()).trades should be(0)
+      exchange.close()
+    }
+  }
+
+  "Exchange metrics" should {
+
+    "count accepted and rejected trades and record latencies" in {
+      import java.lang.management.ManagementFactory
+      val exchange = new SimpleStockExchange(Set[Stock](stock, stock2)).open()
+      exchange.sell(stock, 10, new Money(20))
+      exchange.buy(stock, 0, new Money(20))
+      exchange.buy(stock, 10, Money.UNDEFINED)
+      exchange.buy(new CommonStock("NONE", new Money(1), new Money(1)), 10, new Money(20))
+      exchange.buy(stock2, 30, new Money(10))
+      while (exchange.watch(stock).quantity < 10 || exchange.watch(stock2).quantity < 30) Thread.sleep(10)
+      val metrics = exchange.metrics()
+      metrics.tradesAccepted should be(2)
+      metrics.tradesRejected should be(3)
+      metrics.queued should be(0)
+      metrics.queueDepth.count should be(2)
+      metrics.tradeToPublish.count should be(2)
+      metrics.tradeToPublish.max should be > 0L
+      metrics.indexUpdate.count should be >= 2L
+      val server = ManagementFactory.getPlatformMBeanServer()
+      val names = server.queryNames(new javax.management.ObjectName("me.arturopala.stockexchange:type=ExchangeMetrics,*"), null)
+      names.exists(name => server.getAttribute(name, "TradesRejected") == 3L) should be(true)
+      metrics.tickerQueues.toMap should be(Map("COMM-COMMON" -> 0, "PREF-PREFERRED" -> 0))
+      names.exists(name => server.getAttribute(name, "TickerQueues").asInstanceOf[javax.management.openmbean.TabularData].size == 2) should be(true)
+      exchange.delist(stock2)
+      exchange.metrics().tickerQueues.keySet.toSet should be(Set("COMM-COMMON"))
+      exchange.close()
+      server.queryNames(new javax.management.ObjectName("me.arturopala.stockexchange:type=ExchangeMetrics,*"), null).size should be(names.size - 1)
+    }
+  }
+
+  "Runtime listing" should {
+
+    "list and delist stocks while the exchange is open" in {
+      val exchange = new SimpleStockExchange(Set[Stock](stock)).open()
+      exchange.buy(stock, 10, new Money(16))
+      exchange.list(stock2) should be(true)
+      exchange.list(stock2) should be(false)
+      exchange.listing() should contain(stock2)
+      exchange.find("PREF").get should be(stock2)
+      exchange.sell(stock2, 10, new Money(4))
+      while (exchange.watch(stock2).quantity < 10) Thread.sleep(10)
+      exchange.allShareIndex() should be(8.0 +- 1e-9)
+
+      exchange.delist(stock) should be(true)
+      exchange.delist(stock) should be(false)
+      exchange.listing() should not contain (stock)
+      exchange.find("COMM").isPresent should be(false)
+      exchange.watch(stock) should be(null)
+      exchange.offerBuy(stock, 10, new Money(16)) should be(OfferResult.INVALID)
+      while (!(Math.abs(exchange.allShareIndex() - 4.0) < 1e-9)) Thread.sleep(10)
+
+      exchange.list(stock) should be(true)
+      exchange.watch(stock).quantity should be(0)
+      exchange.buy(stock, 5, new Money(9))
+      while (exchange.watch(stock).quantity < 5) Thread.sleep(10)
+      exchange.allShareIndex() should be(6.0 +- 1e-9)
+      exchange.close()
+    }
+
+    "reject orders with prices too large for fixed values as invalid" in {
+      val exchange = new SimpleStockExchange(Set[Stock](stock)).open()
+      val huge = new Money(new BigDecimal("1e16"))
+      exchange.offerBuy(stock, 10, huge) should be(OfferResult.INVALID)
+      exchange.buy(stock, 10, huge)
+      val results = new Array[OfferResult](1)
+      exchange.offer(new OrderBatch().sell(stock, 10, huge), results)
+      results(0) should be(OfferResult.INVALID)
+      exchange.metrics().tradesRejected should be(3)
+      exchange.occupancy(stock) should be(0.0)
+      exchange.close()
+    }
+
+    "list many stocks at once" in {
+      val exchange = new SimpleStockExchange(Set[Stock](stock))
+      val added = (1 to 1000).map(i => new CommonStock("NEW" + i, new Money(10), new Money(1)): Stock)
+      exchange.list(added) should be(1000)
+      exchange.open()
+      exchange.findByPrefix("NEW99", 20).size should be(11)
+      exchange.buy(added(999), 10, new Money(25))
+      while (exchange.watch(added(999)).quantity < 10) Thread.sleep(10)
+      exchange.delist(added) should be(1000)
+      exchange.listing().size should be(1)
+      exchange.close()
+    }
+
+    "be offered only by engines with a changeable listing" in {
+      classOf[MutableListing].isAssignableFrom(classOf[SimpleStockExchange]) should be(true)
+      classOf[MutableListing].isAssignableFrom(classOf[me.arturopala.stockexchange.matchingimpl.MatchingStockExchange]) should be(true)
+      classOf[MutableListing].isAssignableFrom(classOf[me.arturopala.stockexchange.ringimpl.RingStockExchange]) should be(false)
+      classOf[MutableListing].isAssignableFrom(classOf[me.arturopala.stockexchange.partition.PartitionedStockExchange]) should be(false)
+    }
+  }
+
+  "Order admission" should {
+
+    import akka.actor.{ ActorSystem, Props }
+    import java.util.concurrent.CountDownLatch
+    import me.arturopala.stockexchange.journal.{ Journal, SnapshotStore }
+
+    // stalled actors need a thread of their own, not the calling thread dispatcher of tests
+    def actorSystem(name: String) = ActorSystem(name, com.typesafe.config.ConfigFactory
+      .parseString("akka.actor.deployment { \"/*\" { dispatcher = akka.actor.default-dispatcher } }")
+      .withFallback(com.typesafe.config.ConfigFactory.load()))
+
+    def stalledExchange(system: ActorSystem, admission: Admission, latch: CountDownLatch) =
+      new SimpleStockExchange(Set[Stock](stock, stock2), system, new ExchangeOptions.Builder().admission(admission).build()) {
+        override def workerProps(s: Stock, state: TickerState, journal: Journal, snapshots: SnapshotStore) =
+          Props.create(classOf[StalledActor], latch)
+      }
+
+    "reject orders when the stock queue is full" in {
+      val system = actorSystem("admission-reject")
+      val latch = new CountDownLatch(1)
+      val exchange = stalledExchange(system, Admission.reject(4), latch).open()
+      for (i <- 1 to 4) exchange.buy(stock, 10, new Money(20))
+      exchange.occupancy(stock) should be(1.0)
+      exchange.occupancy(stock2) should be(0.0)
+      an[OrderRejectedException] should be thrownBy exchange.sell(stock, 10, new Money(20))
+      exchange.offerBuy(stock, 10, new Money(20)) should be(OfferResult.FULL)
+      exchange.offerBuy(stock, 0, new Money(20)) should be(OfferResult.INVALID)
+      exchange.offerBuy(stock2, 10, new Money(20)) should be(OfferResult.ACCEPTED)
+      exchange.occupancy(stock2) should be(0.25)
+      exchange.metrics().tradesAccepted should be(5)
+      exchange.metrics().tradesRejected should be(3)
+      for (i <- 1 to 3) exchange.offerSell(stock2, 10, new Money(20)) should be(OfferResult.ACCEPTED)
+      val e = the[OrderRejectedException] thrownBy exchange.submit(new OrderBatch().buy(stock, 1, new Money(20)).sell(stock2, 1, new Money(20)))
+      e.stocks.toSet should be(Set(stock, stock2))
+      latch.countDown()
+      exchange.close()
+      system.shutdown()
+    }
+
+    "wait for room up to the timeout when blocking" in {
+      val system = actorSystem("admission-block")
+      val latch = new CountDownLatch(1)
+      val exchange = stalledExchange(system, Admission.block(2, Duration.ofMillis(100)), latch).open()
+      exchange.buy(stock, 10, new Money(20))
+      exchange.buy(stock, 10, new Money(20))
+      val start = System.nanoTime()
+      an[OrderRejectedException] should be thrownBy exchange.buy(stock, 10, new Money(20))
+      (System.nanoTime() - start) should be >= 100000000L
+      exchange.offerSell(stock, 10, new Money(20)) should be(OfferResult.FULL)
+      latch.countDown()
       exchange.close()
+      system.shutdown()
     }
 
+    "keep queue counters right when a stock is delisted under load" in {
+      val system = actorSystem("admission-delist")
+      val exchange = new SimpleStockExchange(Set[Stock](stock), system, new ExchangeOptions.Builder().admission(Admission.reject(64)).build()).open()
+      @volatile var running = true
+      val producers = (1 to 4).map(_ => new Thread(new Runnable {
+        def run(): Unit = while (running) exchange.offerBuy(stock, 1, new Money(10))
+      }))
+      producers.foreach(_.start())
+      for (i <- 1 to 200) {
+        exchange.delist(stock)
+        exchange.list(stock)
+      }
+      running = false
+      producers.foreach(_.join())
+      val deadline = System.currentTimeMillis + 5000
+      while (exchange.metrics().queued > 0 && System.currentTimeMillis < deadline) Thread.sleep(10)
+      exchange.metrics().queued should be(0)
+      exchange.occupancy(stock) should be(0.0)
+      exchange.close()
+      system.shutdown()
+    }
+
+    "stop a delisted ticker even if its queue counter drifted, rejecting trades still in flight" in {
+      val system = actorSystem("admission-drift")
+      val exchange = new SimpleStockExchange(Set[Stock](stock, stock2), system, new ExchangeOptions.Builder().admission(Admission.reject(64)).build()).open()
+      exchange.buy(stock, 10, new Money(20))
+      exchange.buy(stock2, 10, new Money(5))
+      while (exchange.allShareIndex.isNaN || exchange.allShareIndex < 10 - 1e-9) Thread.sleep(10)
+      val ticker = exchange.watch(stock).asInstanceOf[TickerImpl]
+      ticker.queued.incrementAndGet()
+      val rejected = exchange.metrics().tradesRejected
+      exchange.delist(stock) should be(true)
+      val deadline = System.currentTimeMillis + 5000
+      while (Math.abs(exchange.allShareIndex - 5) > 1e-9 && System.currentTimeMillis < deadline) Thread.sleep(10)
+      exchange.allShareIndex should be(5d +- 1e-9)
+      exchange.metrics().tradesRejected should be(rejected + 1)
+      ticker.queued.get should be(0)
+      exchange.close()
+      system.shutdown()
+    }
+
+    "require admission capacity below mailbox capacity" in {
+      val system = ActorSystem("admission-capacity")
+      an[IllegalArgumentException] should be thrownBy new SimpleStockExchange(Set[Stock](stock), system,
+        new ExchangeOptions.Builder().admission(Admission.reject(TickerMailbox.capacity(system))).build())
+      system.shutdown()
+    }
+
+    "bound the ticker mailbox" in {
+      val system = ActorSystem("admission-mailbox")
+      val queue = new TickerMailbox(3).create(scala.None, scala.None).asInstanceOf[TickerMailbox.TickerMessageQueue]
+      queue.capacity should be(4)
+      for (i <- 1 to 4) queue.offer(akka.dispatch.Envelope(i, akka.actor.ActorRef.noSender, system)) should be(true)
+      queue.offer(akka.dispatch.Envelope(5, akka.actor.ActorRef.noSender, system)) should be(false)
+      queue.numberOfMessages should be(4)
+      queue.dequeue().message should be(1)
+      queue.offer(akka.dispatch.Envelope(5, akka.actor.ActorRef.noSender, system)) should be(true)
+      (2 to 5).map(i => queue.dequeue().message) should be(2 to 5)
+      queue.hasMessages should be(false)
+      queue.dequeue() should be(null)
+      system.shutdown()
+    }
+
+    "never drop messages other than trades from a full ticker mailbox" in {
+      val system = ActorSystem("admission-control")
+      val queue = new TickerMailbox(3).create(scala.None, scala.None).asInstanceOf[TickerMailbox.TickerMessageQueue]
+      def trade(quantity: Int) = akka.dispatch.Envelope(new Trade(Instant.now, TradeType.BUY, stock, quantity, new Money(10)), akka.actor.ActorRef.noSender, system)
+      for (i <- 1 to 5) queue.enqueue(akka.actor.ActorRef.noSender, trade(i))
+      queue.enqueue(akka.actor.ActorRef.noSender, akka.dispatch.Envelope(akka.actor.PoisonPill, akka.actor.ActorRef.noSender, system))
+      queue.numberOfMessages should be(5)
+      (1 to 4).map(i => queue.dequeue().message.asInstanceOf[Trade].quantity) should be(1 to 4)
+      queue.hasMessages should be(true)
+      queue.dequeue().message should be(akka.actor.PoisonPill)
+      queue.hasMessages should be(false)
+      queue.dequeue() should be(null)
+      system.shutdown()
+    }
+  }
+
+
+  "Window expiry" should {
+
+    import akka.actor.ActorSystem
+    import me.arturopala.stockexchange.journal.{ Journal, SnapshotStore }
+
+    def expiringExchange(system: ActorSystem, listing: Set[Stock], period: Duration) =
+      new SimpleStockExchange(listing, system, new ExchangeOptions.Builder().priceCalculationPeriod(period).expiryResolution(Duration.ofMillis(1)).build())
+
+    "expire trades as soon as they leave the window, leaving idle tickers alone" in {
+      val system = ActorSystem("expiry", com.typesafe.config.ConfigFactory
+        .parseString("akka.actor.deployment { \"/*\" { dispatcher = akka.actor.default-dispatcher } }")
+        .withFallback(com.typesafe.config.ConfigFactory.load()))
+      val idle = (1 to 500).map(i => new CommonStock("IDLE" + i, new Money(1), new Money(1)))
+      val exchange = expiringExchange(system, Set[Stock](stock, stock2) ++ idle, Duration.ofMillis(300))
+      exchange.open()
+      // trades are timestamped on submission, so let tickers start before timing their expiry
+      exchange.buy(stock2, 10, new Money(20))
+      while (exchange.watch(stock2).quantity < 10) Thread.sleep(1)
+      val start = System.nanoTime()
+      exchange.buy(stock, 10, new Money(20))
+      exchange.buy(stock, 20, new Money(30))
+      while (exchange.watch(stock).quantity < 30 && System.nanoTime() - start < 250000000L) Thread.sleep(1)
+      exchange.watch(stock).quantity should be(30)
+      while (exchange.watch(stock).quantity > 0 && System.nanoTime() - start < 5000000000L) Thread.sleep(1)
+      val elapsed = (System.nanoTime() - start) / 1000000L
+      exchange.watch(stock).quantity should be(0)
+      elapsed should be >= 300L
+      elapsed should be < 1000L
+      exchange.metrics().tickDelay.count should be <= 6L
+      exchange.close()
+      system.shutdown()
+    }
+
+    "require expiry resolution of at least a millisecond" in {
+      val system = ActorSystem("expiry-resolution")
+      an[IllegalArgumentException] should be thrownBy new SimpleStockExchange(Set[Stock](stock), system,
+        new ExchangeOptions.Builder().expiryResolution(Duration.ofNanos(100000)).build())
+      system.shutdown()
+    }
   }
+}
 
-}
\ No newline at end of file
+class StalledActor(latch: java.util.concurrent.CountDownLatch) extends akka.actor.Actor {
+  def receive = { case _ => latch.await() }
+}
@@ -5,7 +5,7 @@ import java.time.temporal.ChronoUnit
 import java.time.Instant
 import java.math.BigDecimal;
 import me.arturopala.stockexchange.api._
-import me.arturopala.stockexchange.util.Money
+import me.arturopala.stockexchange.util.{ Money, FixedMoney }
 import me.arturopala.stockexchange.stock._
 
 class StockSpec extends WordSpecLike with Matchers with PropertyChecks {
@@ -27,6 +27,14 @@ class StockSpec extends WordSpecLike with Matchers with PropertyChecks {
       java.lang.Double.isNaN(stock.calculatePERatio(Money.parse("2"))) should be(true)
     }
 
+    "calculate prices too large for fixed values in doubles" in {
+      val stock = new CommonStock("TEST", new Money(100), new Money(10))
+      val price = new Money(new BigDecimal("1e16"))
+      stock.calculateDividendYield(price) should be(1e-15 +- 1e-24)
+      stock.calculatePERatio(price) should be(1e15 +- 1)
+      an[IllegalArgumentException] should be thrownBy new CommonStock("HUGE", new Money(100), price)
+    }
+
   }
 
   "A PreferredStock" should {
@@ -48,4 +56,77 @@ class StockSpec extends WordSpecLike with Matchers with PropertyChecks {
 
   }
 
-}
\ No newline at end of file
+  "A ListingAnalytics" should {
+
+    def listing(size: Int): Seq[Stock] = (0 until size).map { i =>
+      if (i % 3 == 0) new PreferredStock("P" + i, new Money(100), new Money(i % 7), new BigDecimal("0.02"))
+      else new CommonStock("C" + i, new Money(100), new Money(i % 11))
+    }
+
+    def check(size: Int) = {
+      val stocks = listing(size)
+      val analytics = new ListingAnalytics(java.util.Arrays.asList(stocks: _*))
+      val prices = (0 until size).map(i => if (i % 13 == 0) Double.NaN else if (i % 17 == 0) 0d else (i % 500) / 4d).toArray
+      val yields = new Array[Double](size)
+      val peRatios = new Array[Double](size)
+      analytics.calculate(prices, yields, peRatios)
+      for (i <- 0 until size) {
+        val price = if (prices(i).isNaN) Money.UNDEFINED else new Money(new BigDecimal(prices(i)))
+        val expectedYield = stocks(i).calculateDividendYield(price)
+        val expectedPE = stocks(i).calculatePERatio(price)
+        if (expectedYield.isNaN) yields(i).isNaN should be(true) else yields(i) should be(expectedYield +- 1e-9)
+        if (expectedPE.isNaN) peRatios(i).isNaN should be(true) else peRatios(i) should be(expectedPE +- 1e-9)
+      }
+    }
+
+    "calculate dividend yield and P/E ratio of every stock" in {
+      check(100)
+    }
+
+    "calculate large listings in parallel with the same results" in {
+      check(ListingAnalytics.PARALLEL_THRESHOLD * 3 + 5)
+    }
+
+    "derive dividends of stocks implementing only the calculations" in {
+      def calculating(delegate: Stock): Stock = new Stock {
+        def symbol = delegate.symbol
+        def `type` = delegate.`type`
+        def parValue = delegate.parValue
+        def calculateDividendYield(price: Money) = delegate.calculateDividendYield(price)
+        def calculatePERatio(price: Money) = delegate.calculatePERatio(price)
+        def calculateDividendYield(price: Long) = delegate.calculateDividendYield(price)
+        def calculatePERatio(price: Long) = delegate.calculatePERatio(price)
+      }
+      for (delegate <- Seq[Stock](new CommonStock("TEA", new Money(100), Money.parse("2.5")), new CommonStock("POP", new Money(100), new Money(0)),
+        new PreferredStock("GIN", new Money(100), new Money(8), new BigDecimal("0.02")))) {
+        calculating(delegate).fixedDividendValue should be(delegate.fixedDividendValue)
+        calculating(delegate).fixedLastDividend should be(delegate.fixedLastDividend)
+      }
+    }
+
+    "calculate fixed prices of stocks implementing only the money calculations" in {
+      def calculating(delegate: Stock): Stock = new Stock {
+        def symbol = delegate.symbol
+        def `type` = delegate.`type`
+        def parValue = delegate.parValue
+        def calculateDividendYield(price: Money) = delegate.calculateDividendYield(price)
+        def calculatePERatio(price: Money) = delegate.calculatePERatio(price)
+      }
+      for (delegate <- Seq[Stock](new CommonStock("TEA", new Money(100), Money.parse("2.5")), new CommonStock("POP", new Money(100), new Money(0)),
+        new PreferredStock("GIN", new Money(100), new Money(8), new BigDecimal("0.02")))) {
+        val price = FixedMoney.valueOf(Money.parse("12.5"))
+        calculating(delegate).calculateDividendYield(price) should be(delegate.calculateDividendYield(price))
+        calculating(delegate).calculatePERatio(price).isNaN should be(delegate.calculatePERatio(price).isNaN)
+        if (!delegate.calculatePERatio(price).isNaN) calculating(delegate).calculatePERatio(price) should be(delegate.calculatePERatio(price))
+        calculating(delegate).fixedDividendValue should be(delegate.fixedDividendValue)
+        calculating(delegate).fixedLastDividend should be(delegate.fixedLastDividend)
+      }
+    }
+
+    "require arrays as large as the listing" in {
+      val analytics = new ListingAnalytics(java.util.Arrays.asList(listing(10): _*))
+      an[IllegalArgumentException] should be thrownBy analytics.calculate(new Array[Double](9), new Array[Double](10), new Array[Double](10))
+    }
+  }
+
+}
@@ -0,0 +1,58 @@
+import org.scalatest.{ WordSpecLike, Matchers }
+import org.scalatest.prop.PropertyChecks
+import me.arturopala.stockexchange.api._
+import me.arturopala.stockexchange.stock._
+import me.arturopala.stockexchange.util.{ Money, SymbolIndex }
+import me.arturopala.stockexchange.simpleimpl.SimpleStockExchange
+import collection.JavaConversions._
+
+class SymbolIndexSpec extends WordSpecLike with Matchers with PropertyChecks {
+
+  val symbols = List("ALE", "ALPHA", "ALX", "BEER", "GIN", "GINA", "JOE", "POP", "TEA")
+  val listing = symbols.map(s => new CommonStock(s, new Money(100), new Money(1)): Stock)
+
+  "A SymbolIndex" should {
+
+    "find stock by exact symbol" in {
+      val index = new SymbolIndex(listing)
+      index.size should be(9)
+      index.find("GIN").get should be(listing(4))
+      index.find("GI").isPresent should be(false)
+      index.find("GIN") should be theSameInstanceAs index.find("GIN")
+    }
+
+    "find stocks by prefix in symbol order" in {
+      val index = new SymbolIndex(listing.reverse)
+      index.findByPrefix("AL", 10).map(_.symbol).toList should be(List("ALE", "ALPHA", "ALX"))
+      index.findByPrefix("AL", 2).map(_.symbol).toList should be(List("ALE", "ALPHA"))
+      index.findByPrefix("GIN", 10).map(_.symbol).toList should be(List("GIN", "GINA"))
+      index.findByPrefix("X", 10) should be(empty)
+      index.findByPrefix("", 100).size should be(9)
+    }
+
+    "find stocks in symbol range" in {
+      val index = new SymbolIndex(listing)
+      index.findInRange("ALX", "GINA", 10).map(_.symbol).toList should be(List("ALX", "BEER", "GIN"))
+      index.findInRange("B", "C", 10).map(_.symbol).toList should be(List("BEER"))
+      index.findInRange("T", "A", 10) should be(empty)
+    }
+
+    "agree with linear scan of the listing" in {
+      forAll { (prefix: String) =>
+        val index = new SymbolIndex(listing)
+        index.findByPrefix(prefix, 100).map(_.symbol).toList should be(symbols.filter(_.startsWith(prefix)))
+      }
+    }
+  }
+
+  "A SimpleStockExchange" should {
+
+    "search listing by prefix and range" in {
+      val exchange = new SimpleStockExchange(setAsJavaSet(listing.toSet))
+      exchange.findByPrefix("GIN", 10).map(_.symbol).toList should be(List("GIN", "GINA"))
+      exchange.findInRange("JOE", "TEA", 10).map(_.symbol).toList should be(List("JOE", "POP"))
+      exchange.listing() should be theSameInstanceAs exchange.listing()
+    }
+  }
+
+}
@@ -0,0 +1,130 @@
+import org.scalatest.{ WordSpecLike, Matchers }
+import java.util.concurrent.atomic.{ AtomicBoolean, AtomicReference }
+import me.arturopala.stockexchange.simpleimpl._
+import me.arturopala.stockexchange.stock.CommonStock
+import me.arturopala.stockexchange.util.{ FixedMoney, Money }
+
+class TickerSlotsSpec extends WordSpecLike with Matchers {
+
+  "A TickerSlots" should {
+
+    "allocate empty slots across blocks" in {
+      val slots = new TickerSlots(2)
+      val allocated = (1 to 5).map(_ => slots.allocate())
+      for (slot <- allocated) {
+        slot.price should be(FixedMoney.UNDEFINED)
+        slot.quantity should be(0)
+        slot.volume should be(FixedMoney.UNDEFINED)
+        slot.version should be(0)
+      }
+      allocated(2).publish(FixedMoney.valueOf(10), 5, FixedMoney.valueOf(50))
+      allocated.map(_.quantity) should be(Seq(0, 0, 5, 0, 0))
+      an[IllegalArgumentException] should be thrownBy new TickerSlots(0)
+    }
+
+    "publish state with a new version every time" in {
+      val mirror = new AtomicReference[StockInfo](new StockInfo())
+      val slot = new TickerSlots(1).allocate(null, mirror)
+      slot.publish(FixedMoney.valueOf(10), 5, FixedMoney.valueOf(50))
+      val first = slot.stockInfo()
+      first.fixedPrice should be(FixedMoney.valueOf(10))
+      first.quantity should be(5)
+      first.fixedVolume should be(FixedMoney.valueOf(50))
+      slot.publish(FixedMoney.valueOf(10), 5, FixedMoney.valueOf(50))
+      slot.version should be > first.version
+      mirror.get.version should be(slot.version)
+      slot.clear()
+      slot.price should be(FixedMoney.UNDEFINED)
+      mirror.get.quantity should be(0)
+    }
+
+    "cache dividend yield and P/E ratio, recalculated only when the price changes" in {
+      var calculations = 0
+      val stock = new CommonStock("TEST", new Money(100), new Money(10)) {
+        override def calculateDividendYield(price: Long): Double = {
+          calculations += 1
+          super.calculateDividendYield(price)
+        }
+      }
+      val slot = new TickerSlots(1).allocate(stock)
+      slot.dividendYield.isNaN should be(true)
+      slot.peRatio.isNaN should be(true)
+      slot.publish(FixedMoney.valueOf(2), 5, FixedMoney.valueOf(10))
+      slot.dividendYield should be(5d)
+      slot.peRatio should be(0.2)
+      slot.publish(FixedMoney.valueOf(2), 8, FixedMoney.valueOf(16))
+      calculations should be(1)
+      slot.publish(FixedMoney.valueOf(4), 9, FixedMoney.valueOf(20))
+      calculations should be(2)
+      slot.dividendYield should be(2.5)
+      slot.peRatio should be(0.4)
+      new TickerImpl(stock, slot).dividendYield should be(2.5)
+      slot.clear()
+      slot.dividendYield.isNaN should be(true)
+      new TickerSlots(1).allocate().dividendYield.isNaN should be(true)
+    }
+
+    "reuse released slots while detached tickers and stale readers keep their last state" in {
+      val slots = new TickerSlots(2)
+      val stock = new CommonStock("TEST", new Money(100), new Money(10))
+      val ticker = new TickerImpl(stock, slots.allocate(stock))
+      val shared = ticker.slot
+      shared.publish(FixedMoney.valueOf(2), 5, FixedMoney.valueOf(10))
+      val version = shared.version
+      slots.release(ticker.detach())
+      slots.released should be(1)
+      ticker.slot should not be theSameInstanceAs(shared)
+      ticker.topic.stockInfo.quantity should be(5)
+      val reused = slots.allocate()
+      slots.released should be(0)
+      reused.price should be(FixedMoney.UNDEFINED)
+      reused.quantity should be(0)
+      reused.dividendYield.isNaN should be(true)
+      reused.version should be > version
+      reused.publish(FixedMoney.valueOf(7), 1, FixedMoney.valueOf(7))
+      reused.price should be(FixedMoney.valueOf(7))
+      shared.price should be(FixedMoney.valueOf(2))
+      shared.quantity should be(5)
+      shared.volume should be(FixedMoney.valueOf(10))
+      shared.dividendYield should be(5d)
+      shared.version should be(version)
+      shared.stockInfo.quantity should be(5)
+      ticker.price should be(new Money(2))
+      ticker.quantity should be(5)
+      ticker.dividendYield should be(5d)
+    }
+
+    "never let readers see a torn state" in {
+      val slots = new TickerSlots(4)
+      val slot = slots.allocate()
+      val neighbour = slots.allocate()
+      val running = new AtomicBoolean(true)
+      val writers = Seq(slot, neighbour).map { target =>
+        new Thread(new Runnable {
+          def run(): Unit = {
+            var i = 1L
+            while (running.get) {
+              target.publish(i, i.toInt, i * 3)
+              i += 1
+            }
+          }
+        })
+      }
+      writers.foreach(_.start())
+      var torn = 0
+      var last = 0L
+      val end = System.nanoTime() + 500000000L
+      while (System.nanoTime() < end) {
+        val info = slot.stockInfo()
+        if (info.version > 0 && (info.quantity != info.fixedPrice || info.fixedVolume != info.fixedPrice * 3)) torn += 1
+        info.version should be >= last
+        last = info.version
+      }
+      running.set(false)
+      writers.foreach(_.join())
+      torn should be(0)
+      last should be > 0L
+    }
+  }
+
+}
@@ -0,0 +1,81 @@
+import org.scalatest.{ WordSpecLike, Matchers }
+import java.time.Duration
+import java.util.concurrent.{ ConcurrentLinkedQueue, CountDownLatch, TimeUnit }
+import me.arturopala.stockexchange.util.TimingWheel
+import collection.JavaConversions._
+
+class TimingWheelSpec extends WordSpecLike with Matchers {
+
+  def fired(queue: ConcurrentLinkedQueue[(Int, Long)], id: Int) = new Runnable {
+    def run(): Unit = queue.add((id, System.nanoTime()))
+  }
+
+  "A TimingWheel" should {
+
+    "run tasks not earlier than their deadlines, in deadline order" in {
+      val wheel = new TimingWheel(Duration.ofMillis(1), "test-wheel").start()
+      val queue = new ConcurrentLinkedQueue[(Int, Long)]()
+      val now = System.nanoTime()
+      val deadlines = Seq(150L, 5L, 70L, 2L, 30L).map(ms => now + ms * 1000000L)
+      for ((deadline, id) <- deadlines.zipWithIndex) wheel.schedule(deadline, fired(queue, id))
+      val latch = new CountDownLatch(1)
+      wheel.schedule(now + 200000000L, new Runnable { def run(): Unit = latch.countDown() })
+      latch.await(5, TimeUnit.SECONDS) should be(true)
+      queue.toList.map(_._1) should be(List(3, 1, 4, 2, 0))
+      for ((id, at) <- queue) at should be >= deadlines(id)
+      wheel.stop()
+      wheel.isRunning should be(false)
+    }
+
+    "cascade timers from upper levels down to their slot" in {
+      val wheel = new TimingWheel(Duration.ofMillis(1), "test-wheel").start()
+      val queue = new ConcurrentLinkedQueue[(Int, Long)]()
+      // 64 ms and more away, so every timer starts above the lowest level
+      val deadlines = (0 until 50).map(i => System.nanoTime() + (64L + i * 7) * 1000000L)
+      for ((deadline, id) <- deadlines.zipWithIndex) wheel.schedule(deadline, fired(queue, id))
+      val end = System.nanoTime() + 5000000000L
+      while (queue.size < 50 && System.nanoTime() < end) Thread.sleep(10)
+      queue.toList.map(_._1) should be((0 until 50).toList)
+      for ((id, at) <- queue) {
+        at should be >= deadlines(id)
+        (at - deadlines(id)) should be < 50000000L
+      }
+      wheel.stop()
+    }
+
+    "not run cancelled tasks" in {
+      val wheel = new TimingWheel(Duration.ofMillis(1), "test-wheel").start()
+      val queue = new ConcurrentLinkedQueue[(Int, Long)]()
+      val now = System.nanoTime()
+      val cancelled = wheel.schedule(now + 10000000L, fired(queue, 1))
+      val kept = wheel.schedule(now + 20000000L, fired(queue, 2))
+      cancelled.cancel() should be(true)
+      val end = System.nanoTime() + 5000000000L
+      while (!kept.isExpired && System.nanoTime() < end) Thread.sleep(5)
+      Thread.sleep(20)
+      queue.toList.map(_._1) should be(List(2))
+      cancelled.isCancelled should be(true)
+      kept.cancel() should be(false)
+      wheel.stop()
+    }
+
+    "run timers scheduled before start and after idling" in {
+      val wheel = new TimingWheel(Duration.ofMillis(2), "test-wheel")
+      val queue = new ConcurrentLinkedQueue[(Int, Long)]()
+      wheel.schedule(System.nanoTime(), fired(queue, 1))
+      wheel.start()
+      val end = System.nanoTime() + 5000000000L
+      while (queue.isEmpty && System.nanoTime() < end) Thread.sleep(5)
+      Thread.sleep(50)
+      wheel.schedule(System.nanoTime() + 5000000L, fired(queue, 2))
+      while (queue.size < 2 && System.nanoTime() < end) Thread.sleep(5)
+      queue.toList.map(_._1) should be(List(1, 2))
+      wheel.stop()
+    }
+
+    "require positive resolution" in {
+      an[IllegalArgumentException] should be thrownBy new TimingWheel(Duration.ZERO, "test-wheel")
+    }
+  }
+
+}
@@ -0,0 +1,131 @@
+import org.scalatest.{ WordSpecLike, Matchers }
+import org.scalatest.prop.PropertyChecks
+import java.nio.file.{ Files, Path }
+import java.time.Instant
+import me.arturopala.stockexchange.api.TradeSummary
+import me.arturopala.stockexchange.util.{ Money, FixedMoney }
+import me.arturopala.stockexchange.history.TradeHistory
+
+class TradeHistorySpec extends WordSpecLike with Matchers with PropertyChecks {
+
+  case class Trade(timestamp: Long, price: Long, quantity: Int)
+
+  def expected(trades: Seq[Trade], from: Long, to: Long): (Long, Long, Money, Money, Money) = {
+    val range = trades.filter(t => t.timestamp >= from && t.timestamp < to)
+    if (range.isEmpty) (0L, 0L, Money.ZERO, Money.UNDEFINED, Money.UNDEFINED)
+    else (range.size.toLong, range.map(_.quantity.toLong).sum, FixedMoney.toMoney(range.map(t => t.price * t.quantity).sum),
+      FixedMoney.toMoney(range.map(_.price).min), FixedMoney.toMoney(range.map(_.price).max))
+  }
+
+  def actual(summary: TradeSummary): (Long, Long, Money, Money, Money) =
+    (summary.trades, summary.quantity, summary.volume, summary.low, summary.high)
+
+  "A TradeHistory" should {
+
+    "summarize trades within a range" in {
+      val history = new TradeHistory()
+      history.add(1000, FixedMoney.valueOf(10), 10)
+      history.add(2000, FixedMoney.valueOf(20), 30)
+      history.add(3000, FixedMoney.valueOf(15), 20)
+      history.size should be(3)
+      val summary = history.summary(1500, 3001)
+      summary.trades should be(2)
+      summary.quantity should be(50)
+      summary.volume should be(new Money(900))
+      summary.vwap should be(new Money(18))
+      summary.low should be(new Money(15))
+      summary.high should be(new Money(20))
+      summary.from should be(Instant.ofEpochSecond(0, 1500000))
+      history.summary(Instant.ofEpochSecond(0, 1000000), Instant.ofEpochSecond(0, 2000000)).vwap should be(new Money(10))
+      history.summary(3001, 10000).trades should be(0)
+      history.summary(3000, 1000).vwap should be(Money.UNDEFINED)
+    }
+
+    "keep timestamps sorted when a late trade arrives" in {
+      val history = new TradeHistory()
+      history.add(2000, FixedMoney.valueOf(20), 1)
+      history.add(1000, FixedMoney.valueOf(10), 1)
+      history.summary(0, 2000).trades should be(0)
+      history.summary(2000, 2001).trades should be(2)
+    }
+
+    "match a full scan across many blocks" in {
+      val history = new TradeHistory(16, null, null)
+      val random = new scala.util.Random(42)
+      var timestamp = 0L
+      val trades = (0 until 1000).map { _ =>
+        timestamp += random.nextInt(3)
+        Trade(timestamp, FixedMoney.valueOf(1 + random.nextInt(100)), 1 + random.nextInt(50))
+      }
+      trades.foreach(t => history.add(t.timestamp, t.price, t.quantity))
+      history.blocks should be(63)
+      forAll { (a: Short, b: Short) =>
+        val from = math.abs(a.toLong) % (timestamp + 10)
+        val to = math.abs(b.toLong) % (timestamp + 10)
+        actual(history.summary(from, to)) should be(if (from < to) expected(trades, from, to) else expected(Seq(), 0, 0))
+      }
+      actual(history.summary(0, timestamp + 1)) should be(expected(trades, 0, timestamp + 1))
+    }
+
+    "start with a small block and grow it as trades arrive" in {
+      val history = new TradeHistory()
+      history.reservedBytes should be(0)
+      history.add(0, FixedMoney.valueOf(1), 1)
+      val first = history.reservedBytes
+      first should be < 1024L
+      for (i <- 1 until 5000) history.add(i, FixedMoney.valueOf(i % 100 + 1), 1)
+      history.blocks should be(2)
+      history.reservedBytes should be(2 * first * TradeHistory.DEFAULT_BLOCK_SIZE / TradeHistory.FIRST_BLOCK_CAPACITY)
+      history.summary(0, 5000).volume should be(new Money((0 until 5000).map(_ % 100 + 1).sum))
+      history.summary(10, 20).low should be(new Money(11))
+    }
+
+    "store blocks in memory-mapped files" in {
+      val directory = Files.createTempDirectory("history")
+      val history = new TradeHistory(8, directory, "COMM")
+      for (i <- 0 until 100) history.add(i, FixedMoney.valueOf(i + 1), 1)
+      history.blocks should be(13)
+      history.summary(10, 90).volume should be(new Money((11 to 90).sum))
+      Files.list(directory).count should be(0)
+      Files.delete(directory)
+    }
+
+    "retain only the newest blocks" in {
+      val history = new TradeHistory(10, 3, null, null)
+      for (i <- 0 until 95) history.add(i, FixedMoney.valueOf(i + 1), 1)
+      history.size should be(95)
+      history.blocks should be(3)
+      val all = history.summary(0, 1000)
+      all.trades should be(25)
+      all.volume should be(new Money((71 to 95).sum))
+      all.low should be(new Money(71))
+      history.summary(75, 85).volume should be(new Money((76 to 85).sum))
+      history.summary(0, 60).trades should be(0)
+    }
+
+    "reject trades overflowing the totals without recording them" in {
+      val history = new TradeHistory(16, null, null)
+      history.add(1000, Long.MaxValue / 2, 1)
+      history.canAdd(Long.MaxValue / 2, 1) should be(true)
+      history.canAdd(Long.MaxValue / 2, 2) should be(false)
+      an[ArithmeticException] should be thrownBy history.add(2000, Long.MaxValue / 2, 2)
+      history.size should be(1)
+      history.summary(0, 3000).quantity should be(1)
+    }
+
+    "answer queries while trades are added" in {
+      val history = new TradeHistory(64, 4096, null, null)
+      val writer = new Thread(new Runnable {
+        def run(): Unit = for (i <- 0 until 200000) history.add(i, FixedMoney.valueOf(10), 1)
+      })
+      writer.start()
+      while (writer.isAlive) {
+        val summary = history.summary(0, Long.MaxValue)
+        summary.quantity should be(summary.trades)
+        if (summary.trades > 0) summary.vwap should be(new Money(10))
+      }
+      history.summary(100, 200).trades should be(100)
+    }
+  }
+
+}
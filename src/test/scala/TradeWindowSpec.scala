@@ -0,0 +1,61 @@
+import org.scalatest.{ WordSpecLike, Matchers }
+import org.scalatest.prop.PropertyChecks
+import java.time.Instant
+import me.arturopala.stockexchange.simpleimpl.TradeWindow
+
+class TradeWindowSpec extends WordSpecLike with Matchers with PropertyChecks {
+
+  def contents(window: TradeWindow): List[(Long, Long, Int)] =
+    (0 until window.size).map(i => (window.timestamp(i), window.price(i), window.quantity(i))).toList
+
+  "A TradeWindow" should {
+
+    "convert instant to microsecond timestamp" in {
+      TradeWindow.timestampOf(Instant.ofEpochSecond(12, 345678901)) should be(12345678L)
+    }
+
+    "append trades in order and evict oldest first" in {
+      val window = new TradeWindow(16)
+      window.add(10, 100, 1)
+      window.add(20, 200, 2)
+      window.add(20, 300, 3)
+      window.size should be(3)
+      window.oldestTimestamp should be(10)
+      window.removeOldest()
+      window.oldestPrice should be(200)
+      window.oldestQuantity should be(2)
+      window.removeOldest()
+      window.removeOldest()
+      window.isEmpty should be(true)
+      an[IllegalStateException] should be thrownBy window.oldestTimestamp
+    }
+
+    "insert out of order trade in place" in {
+      val window = new TradeWindow(16)
+      window.add(10, 100, 1)
+      window.add(30, 300, 3)
+      window.add(20, 200, 2)
+      window.add(5, 50, 5)
+      window.add(30, 310, 4)
+      contents(window) should be(List((5L, 50L, 5), (10L, 100L, 1), (20L, 200L, 2), (30L, 300L, 3), (30L, 310L, 4)))
+    }
+
+    "grow when full and keep order across wrap around" in {
+      val window = new TradeWindow(16)
+      for (i <- 1 to 20) window.add(i, i, i)
+      for (i <- 1 to 15) window.removeOldest()
+      for (i <- 21 to 100) window.add(i, i, i)
+      window.add(17, 17, 17)
+      contents(window).map(_._1) should be((16L to 100L).toList.patch(1, List(17L), 0))
+    }
+
+    "keep trades sorted for any arrival order" in {
+      forAll { (timestamps: List[Int]) =>
+        val window = new TradeWindow(16)
+        timestamps.foreach(t => window.add(t, 1, 1))
+        contents(window).map(_._1) should be(timestamps.map(_.toLong).sorted)
+      }
+    }
+  }
+
+}